@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.filter.ClassFilter;
+import io.github.neonorbit.dexplore.filter.MethodFilter;
+import io.github.neonorbit.dexplore.filter.ReferenceFilter;
+import io.github.neonorbit.dexplore.filter.ReferenceTypes;
+import io.github.neonorbit.dexplore.result.DexItemData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures {@link Dexplore#findAll(QueryBatch, int)} on a batch of
+ * class and method queries, in serial and parallel modes.
+ */
+public class BatchBenchmark extends CorpusBenchmark {
+  @Param({"false", "true"})
+  public boolean parallel;
+
+  @Param({"16"})
+  public int queries;
+
+  private Dexplore dexplore;
+  private QueryBatch batch;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    dexplore = DexFactory.load(path, new DexOptions());
+    QueryBatch.Builder builder = QueryBatch.builder().setParallel(parallel);
+    int step = Math.max(1, corpus.getClassCount() / queries);
+    for (int q = 0; q < queries; q++) {
+      int index = (q * step + step / 2) % corpus.getClassCount();
+      int method = q % corpus.getMethodsPerClass();
+      if (q % 2 == 0) {
+        builder.addClassQuery("class" + q, ClassFilter.builder()
+                .setReferenceTypes(ReferenceTypes.STRINGS_ONLY)
+                .setReferenceFilter(ReferenceFilter.contains(corpus.stringValue(index, method)))
+                .build());
+      } else {
+        builder.addMethodQuery("method" + q, ClassFilter.ofClass(corpus.className(index)),
+                MethodFilter.builder().setNumbers(corpus.numberLiteral(index, method)).build());
+      }
+    }
+    batch = builder.build();
+  }
+
+  @Benchmark
+  public Map<String, List<DexItemData>> findAll() {
+    return dexplore.findAll(batch, -1);
+  }
+}
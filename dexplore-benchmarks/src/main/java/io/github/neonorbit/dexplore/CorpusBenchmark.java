@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.neonorbit.dexplore;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base state of the benchmarks, a {@link SyntheticCorpus} written to a temporary file.
+ * Larger corpora are written as multi-dex APKs.
+ * <p>
+ * The corpus is generated once per fork with a fixed seed,
+ * so results are comparable between runs and releases.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class CorpusBenchmark {
+  @Param({"2000"})
+  public int classCount;
+
+  @Param({"false"})
+  public boolean obfuscated;
+
+  protected SyntheticCorpus corpus;
+  protected String path;
+
+  @Setup(Level.Trial)
+  public void generateCorpus() throws IOException {
+    corpus = SyntheticCorpus.builder()
+            .setClassCount(classCount)
+            .setObfuscated(obfuscated)
+            .build();
+    File file = File.createTempFile("corpus-", corpus.getDexCount() > 1 ? ".apk" : ".dex");
+    file.deleteOnExit();
+    path = corpus.write(file).getAbsolutePath();
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteCorpus() {
+    //noinspection ResultOfMethodCallIgnored
+    new File(path).delete();
+  }
+
+  /**
+   * @return the index of an annotated class with a super class, near the middle of the corpus
+   */
+  protected int target() {
+    int middle = corpus.getClassCount() / 2;
+    for (int i = middle; i < corpus.getClassCount(); i++) {
+      if (corpus.hasSuperClass(i) && corpus.hasAnnotation(i)) return i;
+    }
+    return middle;
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.filter.ReferenceTypes;
+import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures {@link DexDecoder#decode} of a whole dex file and of each class,
+ * for the given {@link ReferenceTypes}.
+ */
+public class DecodeBenchmark extends CorpusBenchmark {
+  @Param({"ALL", "STRINGS", "TYPES", "FIELDS", "METHODS", "METHOD_DETAILS"})
+  public String referenceTypes;
+
+  private ReferenceTypes types;
+  private DexDecoder decoder;
+  private DexEntry entry;
+  private List<DexBackedClassDef> classes;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    types = referenceTypes(referenceTypes);
+    decoder = new DexDecoder(new DexOptions());
+    entry = new DexContainer(path, new DexOptions()).getEntries().get(0);
+    classes = new ArrayList<>(entry.getDexFile().getClasses());
+  }
+
+  @Benchmark
+  public ReferencePool decodeDexFile() {
+    return decoder.decode(entry, types);
+  }
+
+  @Benchmark
+  public void decodeClasses(Blackhole blackhole) {
+    for (DexBackedClassDef dexClass : classes) {
+      blackhole.consume(decoder.decode(dexClass, types));
+    }
+  }
+
+  static ReferenceTypes referenceTypes(String name) {
+    switch (name) {
+      case "ALL": return ReferenceTypes.all();
+      case "STRINGS": return ReferenceTypes.STRINGS_ONLY;
+      case "TYPES": return ReferenceTypes.builder().addTypeDes().build();
+      case "FIELDS": return ReferenceTypes.builder().addField().build();
+      case "METHODS": return ReferenceTypes.builder().addMethod().build();
+      case "METHOD_DETAILS": return ReferenceTypes.builder().addMethodWithDetails().build();
+      default: throw new IllegalArgumentException(name);
+    }
+  }
+}
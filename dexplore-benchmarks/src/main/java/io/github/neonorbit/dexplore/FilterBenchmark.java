@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.filter.ClassFilter;
+import io.github.neonorbit.dexplore.filter.ReferenceFilter;
+import io.github.neonorbit.dexplore.filter.ReferenceTypes;
+import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures {@link ClassFilter#verify} over every class of the corpus,
+ * with a filter that only uses the given criterion.
+ */
+public class FilterBenchmark extends CorpusBenchmark {
+  @Param({
+          "classNames", "simpleNames", "packages", "modifiers", "superClass",
+          "interfaces", "annotations", "annotationValues", "numbers", "references"
+  })
+  public String criterion;
+
+  private ClassFilter filter;
+  private LazyDecoder<DexBackedClassDef> decoder;
+  private List<DexBackedClassDef> classes;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    filter = newFilter(criterion, target());
+    decoder = new DexDecoder(new DexOptions())::decode;
+    DexEntry entry = new DexContainer(path, new DexOptions()).getEntries().get(0);
+    classes = new ArrayList<>(entry.getDexFile().getClasses());
+  }
+
+  @Benchmark
+  public int verify() {
+    int matches = 0;
+    for (DexBackedClassDef dexClass : classes) {
+      if (filter.verify(dexClass, decoder)) matches++;
+    }
+    return matches;
+  }
+
+  private ClassFilter newFilter(String criterion, int index) {
+    ClassFilter.Builder builder = ClassFilter.builder();
+    switch (criterion) {
+      case "classNames":
+        return builder.setClasses(corpus.className(index)).build();
+      case "simpleNames":
+        return builder.setClassSimpleNames(corpus.simpleName(index)).build();
+      case "packages":
+        return builder.setPackages(corpus.packageName(index)).build();
+      case "modifiers":
+        return builder.setModifiers(Modifier.PUBLIC).build();
+      case "superClass":
+        return builder.setSuperClass(corpus.superClassName(index)).build();
+      case "interfaces":
+        return builder.setInterfaces(Collections.singletonList(SyntheticCorpus.INTERFACE)).build();
+      case "annotations":
+        return builder.containsAnnotations(SyntheticCorpus.ANNOTATION).build();
+      case "annotationValues":
+        return builder.containsAnnotationValues(corpus.annotationValue(index)).build();
+      case "numbers":
+        return builder.setNumbers(corpus.numberLiteral(index, 0)).build();
+      case "references":
+        return builder.setReferenceTypes(ReferenceTypes.STRINGS_ONLY)
+                .setReferenceFilter(ReferenceFilter.contains(corpus.stringValue(index, 0)))
+                .build();
+      default:
+        throw new IllegalArgumentException(criterion);
+    }
+  }
+}
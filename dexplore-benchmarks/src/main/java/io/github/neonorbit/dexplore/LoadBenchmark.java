@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.filter.ClassFilter;
+import io.github.neonorbit.dexplore.result.ClassData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Measures {@link DexFactory#load(String, DexOptions)},
+ * alone and followed by the first lookup that parses the dex file.
+ */
+public class LoadBenchmark extends CorpusBenchmark {
+  @Param({"false", "true"})
+  public boolean memoryMapping;
+
+  private DexOptions options() {
+    DexOptions options = new DexOptions();
+    options.memoryMapping = memoryMapping;
+    return options;
+  }
+
+  @Benchmark
+  public Dexplore load() {
+    return DexFactory.load(path, options());
+  }
+
+  @Benchmark
+  public ClassData loadAndFind() {
+    Dexplore dexplore = DexFactory.load(path, options());
+    return dexplore.findClass(ClassFilter.ofClass(corpus.className(corpus.getClassCount() - 1)));
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.filter.ClassFilter;
+import io.github.neonorbit.dexplore.filter.DexFilter;
+import io.github.neonorbit.dexplore.filter.MethodFilter;
+import io.github.neonorbit.dexplore.filter.ReferenceFilter;
+import io.github.neonorbit.dexplore.filter.ReferenceTypes;
+import io.github.neonorbit.dexplore.result.ClassData;
+import io.github.neonorbit.dexplore.result.MethodData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.List;
+
+/**
+ * Measures repeated {@link Dexplore#findClasses} and {@link Dexplore#findMethods}
+ * queries on the same instance, with and without {@link DexOptions#enableCache}.
+ */
+public class SearchBenchmark extends CorpusBenchmark {
+  @Param({"false", "true"})
+  public boolean enableCache;
+
+  private Dexplore dexplore;
+  private ClassFilter classFilter;
+  private MethodFilter methodFilter;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    DexOptions options = new DexOptions();
+    options.enableCache = enableCache;
+    dexplore = DexFactory.load(path, options);
+    int index = target();
+    classFilter = ClassFilter.builder()
+            .setReferenceTypes(ReferenceTypes.STRINGS_ONLY)
+            .setReferenceFilter(ReferenceFilter.contains(corpus.stringValue(index, 1)))
+            .build();
+    methodFilter = MethodFilter.builder()
+            .setReferenceTypes(ReferenceTypes.builder().addMethod().build())
+            .setReferenceFilter(ReferenceFilter.methodsContain(corpus.methodName(2)))
+            .setNumbers(corpus.numberLiteral(index, 2))
+            .build();
+  }
+
+  @Benchmark
+  public List<ClassData> findClasses() {
+    return dexplore.findClasses(DexFilter.MATCH_ALL, classFilter, -1);
+  }
+
+  @Benchmark
+  public List<MethodData> findMethods() {
+    return dexplore.findMethods(DexFilter.MATCH_ALL, ClassFilter.MATCH_ALL, methodFilter, -1);
+  }
+}
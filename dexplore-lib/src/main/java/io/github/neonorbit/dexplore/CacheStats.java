@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.neonorbit.dexplore;
+
+/**
+ * A snapshot of the reference pool cache statistics.
+ *
+ * @see Dexplore#getCacheStats()
+ * @see DexOptions#enableCache
+ *
+ * @author NeonOrbit
+ * @since 1.5.0
+ */
+public final class CacheStats {
+  private final long hitCount;
+  private final long missCount;
+  private final long evictionCount;
+  private final int entryCount;
+  private final long estimatedBytes;
+
+  CacheStats(long hitCount, long missCount, long evictionCount,
+             int entryCount, long estimatedBytes) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.evictionCount = evictionCount;
+    this.entryCount = entryCount;
+    this.estimatedBytes = estimatedBytes;
+  }
+
+  /**
+   * @return the number of lookups that found a cached pool
+   */
+  public long hitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return the number of lookups that required decoding
+   */
+  public long missCount() {
+    return missCount;
+  }
+
+  /**
+   * @return the number of pools evicted or released by the garbage collector
+   */
+  public long evictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * @return the number of currently cached pools
+   */
+  public int entryCount() {
+    return entryCount;
+  }
+
+  /**
+   * @return the estimated size of the currently cached pools, in bytes
+   */
+  public long estimatedBytes() {
+    return estimatedBytes;
+  }
+
+  /**
+   * @return the ratio of hits to lookups, or 1 if there were no lookups
+   */
+  public double hitRate() {
+    long total = hitCount + missCount;
+    return total == 0 ? 1.0 : (double) hitCount / total;
+  }
+
+  @Override
+  public String toString() {
+    return "CacheStats{hits=" + hitCount + ", misses=" + missCount +
+           ", evictions=" + evictionCount + ", entries=" + entryCount +
+           ", bytes=" + estimatedBytes + "}";
+  }
+}
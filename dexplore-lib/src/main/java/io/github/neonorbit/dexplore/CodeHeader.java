@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.iface.Internal;
+
+/**
+ * The header of the code item of a method.
+ * <p>
+ * The header is read without decoding the instructions of the method.
+ */
+@Internal
+public final class CodeHeader {
+  /** The header of methods without code, such as abstract and native methods. */
+  public static final CodeHeader NONE = new CodeHeader(0, 0, 0);
+
+  private final int registerCount;
+  private final int tryCount;
+  private final int codeSize;
+
+  CodeHeader(int registerCount, int tryCount, int codeSize) {
+    this.registerCount = registerCount;
+    this.tryCount = tryCount;
+    this.codeSize = codeSize;
+  }
+
+  public int registerCount() {
+    return registerCount;
+  }
+
+  public int tryCount() {
+    return tryCount;
+  }
+
+  /**
+   * @return size of the instructions, in 16-bit code units
+   */
+  public int codeSize() {
+    return codeSize;
+  }
+}
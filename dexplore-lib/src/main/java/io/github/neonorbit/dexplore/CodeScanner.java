@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.iface.Internal;
+import org.jf.dexlib2.Format;
+import org.jf.dexlib2.Opcode;
+import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.ReferenceType;
+import org.jf.dexlib2.dexbacked.CDexBackedDexFile;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.dexbacked.DexBuffer;
+import org.jf.dexlib2.dexbacked.DexReader;
+import org.jf.dexlib2.dexbacked.raw.ClassDefItem;
+import org.jf.dexlib2.dexbacked.raw.CodeItem;
+
+import javax.annotation.Nonnull;
+import java.util.function.LongPredicate;
+
+/**
+ * Reads code items directly from the dex buffer,
+ * without materializing any instruction or reference objects.
+ * <p>
+ * Only standard dex files are supported,
+ * see {@link #isSupported(DexBackedDexFile)}.
+ */
+@Internal
+final class CodeScanner {
+  private static final int PACKED_SWITCH_PAYLOAD = 0x100;
+  private static final int SPARSE_SWITCH_PAYLOAD = 0x200;
+
+  private CodeScanner() {
+    throw new AssertionError();
+  }
+
+  interface Visitor {
+    /**
+     * @param type one of {@link ReferenceType#STRING STRING}, {@link ReferenceType#TYPE TYPE},
+     *             {@link ReferenceType#FIELD FIELD} or {@link ReferenceType#METHOD METHOD}
+     * @param index index of the referenced item in its id section
+     */
+    void visitReference(int type, int index);
+
+    /**
+     * @param literal the literal value of a {@code WideLiteralInstruction}
+     */
+    void visitLiteral(long literal);
+
+    /**
+     * @return {@code true} if the rest of the code item can be skipped
+     */
+    default boolean isDone() {
+      return false;
+    }
+  }
+
+  interface MethodVisitor {
+    /**
+     * @param methodIndex index of the method in the method_ids section
+     * @param accessFlags access flags of the method
+     * @param codeOffset offset of the code item, or 0 if the method has no code
+     * @param direct whether the method is a direct method
+     */
+    void visitMethod(int methodIndex, int accessFlags, int codeOffset, boolean direct);
+  }
+
+  /**
+   * Compact and optimized (odex) dex files use different code layouts.
+   * Callers must fall back to dexlib2 for those.
+   */
+  static boolean isSupported(@Nonnull DexBackedDexFile dexFile) {
+    return !(dexFile instanceof CDexBackedDexFile) && !dexFile.supportsOptimizedOpcodes();
+  }
+
+  /**
+   * Visits the methods declared by a class, in the order of dexlib2's {@code getMethods()}.
+   */
+  static void scanMethods(@Nonnull DexBackedDexFile dexFile, int classIndex,
+                          @Nonnull MethodVisitor visitor) {
+    int classDefOffset = dexFile.getClassSection().getOffset(classIndex);
+    int classDataOffset = dexFile.getBuffer().readSmallUint(
+            classDefOffset + ClassDefItem.CLASS_DATA_OFFSET
+    );
+    if (classDataOffset == 0) return;
+    DexReader<? extends DexBuffer> reader = dexFile.getDataBuffer().readerAt(classDataOffset);
+    int staticFields = reader.readSmallUleb128();
+    int instanceFields = reader.readSmallUleb128();
+    int directMethods = reader.readSmallUleb128();
+    int virtualMethods = reader.readSmallUleb128();
+    for (int i = 0, fields = staticFields + instanceFields; i < fields; i++) {
+      reader.skipUleb128();
+      reader.skipUleb128();
+    }
+    scanMethods(reader, directMethods, true, visitor);
+    scanMethods(reader, virtualMethods, false, visitor);
+  }
+
+  /**
+   * Reads the header of the class_data_item of a class.
+   *
+   * @return the number of fields and the number of methods declared by the class
+   */
+  @Nonnull
+  static int[] countMembers(@Nonnull DexBackedDexFile dexFile, int classIndex) {
+    int classDefOffset = dexFile.getClassSection().getOffset(classIndex);
+    int classDataOffset = dexFile.getBuffer().readSmallUint(
+            classDefOffset + ClassDefItem.CLASS_DATA_OFFSET
+    );
+    if (classDataOffset == 0) return new int[2];
+    DexReader<? extends DexBuffer> reader = dexFile.getDataBuffer().readerAt(classDataOffset);
+    int fields = reader.readSmallUleb128() + reader.readSmallUleb128();
+    int methods = reader.readSmallUleb128() + reader.readSmallUleb128();
+    return new int[]{fields, methods};
+  }
+
+  private static void scanMethods(DexReader<? extends DexBuffer> reader, int count,
+                                  boolean direct, MethodVisitor visitor) {
+    int methodIndex = 0;
+    for (int i = 0; i < count; i++) {
+      int diff = reader.readLargeUleb128();
+      int accessFlags = reader.readSmallUleb128();
+      int codeOffset = reader.readSmallUleb128();
+      // dexlib2 skips duplicate entries as well
+      if (i > 0 && diff == 0) continue;
+      methodIndex += diff;
+      visitor.visitMethod(methodIndex, accessFlags, codeOffset, direct);
+    }
+  }
+
+  /**
+   * Reads the header of a code item.
+   *
+   * @param dexFile a {@linkplain #isSupported(DexBackedDexFile) supported} dex file
+   * @param codeOffset offset of the code item, or 0 if the method has no code
+   * @return the header of the code item
+   */
+  @Nonnull
+  static CodeHeader readHeader(@Nonnull DexBackedDexFile dexFile, int codeOffset) {
+    if (codeOffset == 0) return CodeHeader.NONE;
+    DexBuffer buffer = dexFile.getDataBuffer();
+    return new CodeHeader(buffer.readUshort(codeOffset + CodeItem.REGISTERS_OFFSET),
+                          buffer.readUshort(codeOffset + CodeItem.TRIES_SIZE_OFFSET),
+                          buffer.readSmallUint(codeOffset + CodeItem.INSTRUCTION_COUNT_OFFSET));
+  }
+
+  /**
+   * Visits the references and literals of a code item, until the visitor is {@linkplain Visitor#isDone() done}.
+   *
+   * @param dexFile a {@linkplain #isSupported(DexBackedDexFile) supported} dex file
+   * @param codeOffset offset of the code item
+   * @param visitor the visitor
+   */
+  static void scanCode(@Nonnull DexBackedDexFile dexFile, int codeOffset,
+                       @Nonnull Visitor visitor) {
+    if (codeOffset == 0) return;
+    DexBuffer buffer = dexFile.getDataBuffer();
+    Opcodes opcodes = dexFile.getOpcodes();
+    int start = codeOffset + CodeItem.INSTRUCTION_START_OFFSET;
+    int end = start + buffer.readSmallUint(codeOffset + CodeItem.INSTRUCTION_COUNT_OFFSET) * 2;
+    for (int offset = start; offset < end && !visitor.isDone();) {
+      int value = buffer.readUbyte(offset);
+      if (value == 0) value = buffer.readUshort(offset);
+      Opcode opcode = opcodes.getOpcodeByValue(value);
+      if (opcode == null) {
+        offset += 2;
+      } else if (opcode.format.isPayloadFormat) {
+        offset += payloadSize(buffer, offset, value);
+      } else {
+        visitInstruction(dexFile, buffer, offset, opcode, visitor);
+        offset += opcode.format.size;
+      }
+    }
+  }
+
+  /**
+   * Visits the literals of a code item, until the visitor returns {@code true}.
+   *
+   * @param dexFile a {@linkplain #isSupported(DexBackedDexFile) supported} dex file
+   * @param codeOffset offset of the code item
+   * @param visitor receives the literal value of each {@code WideLiteralInstruction}
+   * @return {@code true} if the visitor stopped the scan
+   */
+  static boolean scanLiterals(@Nonnull DexBackedDexFile dexFile, int codeOffset,
+                              @Nonnull LongPredicate visitor) {
+    if (codeOffset == 0) return false;
+    DexBuffer buffer = dexFile.getDataBuffer();
+    Opcodes opcodes = dexFile.getOpcodes();
+    int start = codeOffset + CodeItem.INSTRUCTION_START_OFFSET;
+    int end = start + buffer.readSmallUint(codeOffset + CodeItem.INSTRUCTION_COUNT_OFFSET) * 2;
+    for (int offset = start; offset < end;) {
+      int value = buffer.readUbyte(offset);
+      if (value == 0) value = buffer.readUshort(offset);
+      Opcode opcode = opcodes.getOpcodeByValue(value);
+      if (opcode == null) {
+        offset += 2;
+      } else if (opcode.format.isPayloadFormat) {
+        offset += payloadSize(buffer, offset, value);
+      } else {
+        if (hasLiteral(opcode.format) && visitor.test(readLiteral(buffer, offset, opcode.format))) {
+          return true;
+        }
+        offset += opcode.format.size;
+      }
+    }
+    return false;
+  }
+
+  private static void visitInstruction(DexBackedDexFile dexFile, DexBuffer buffer,
+                                       int offset, Opcode opcode, Visitor visitor) {
+    if (hasLiteral(opcode.format)) {
+      visitor.visitLiteral(readLiteral(buffer, offset, opcode.format));
+      return;
+    }
+    int type = opcode.referenceType;
+    if (type > ReferenceType.METHOD) return;
+    int index = opcode.format == Format.Format31c ?
+            buffer.readSmallUint(offset + 2) : buffer.readUshort(offset + 2);
+    if (index < sectionSize(dexFile, type)) {
+      visitor.visitReference(type, index);
+    }
+  }
+
+  private static boolean hasLiteral(Format format) {
+    switch (format) {
+      case Format11n:
+      case Format21s:
+      case Format22s:
+      case Format21ih:
+      case Format21lh:
+      case Format22b:
+      case Format31i:
+      case Format51l:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static long readLiteral(DexBuffer buffer, int offset, Format format) {
+    switch (format) {
+      case Format11n: return buffer.readByte(offset + 1) >> 4;
+      case Format21s:
+      case Format22s: return buffer.readShort(offset + 2);
+      case Format21ih: return buffer.readShort(offset + 2) << 16;
+      case Format21lh: return ((long) buffer.readShort(offset + 2)) << 48;
+      case Format22b: return buffer.readByte(offset + 3);
+      case Format31i: return buffer.readInt(offset + 2);
+      default: return buffer.readLong(offset + 2);
+    }
+  }
+
+  private static int sectionSize(DexBackedDexFile dexFile, int type) {
+    switch (type) {
+      case ReferenceType.STRING: return dexFile.getStringSection().size();
+      case ReferenceType.TYPE: return dexFile.getTypeSection().size();
+      case ReferenceType.FIELD: return dexFile.getFieldSection().size();
+      default: return dexFile.getMethodSection().size();
+    }
+  }
+
+  private static int payloadSize(DexBuffer buffer, int offset, int value) {
+    if (value == PACKED_SWITCH_PAYLOAD) {
+      return (4 + buffer.readUshort(offset + 2) * 2) * 2;
+    } else if (value == SPARSE_SWITCH_PAYLOAD) {
+      return (2 + buffer.readUshort(offset + 2) * 4) * 2;
+    } else {
+      int width = buffer.readUshort(offset + 2);
+      int count = buffer.readSmallUint(offset + 4);
+      return (4 + (int) (((long) width * count + 1) / 2)) * 2;
+    }
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.filter.ValueResolver;
+import io.github.neonorbit.dexplore.iface.Internal;
+import io.github.neonorbit.dexplore.reference.DexRefData;
+import io.github.neonorbit.dexplore.reference.FieldRefData;
+import io.github.neonorbit.dexplore.reference.MethodRefData;
+import io.github.neonorbit.dexplore.reference.StringRefData;
+import io.github.neonorbit.dexplore.reference.TypeRefData;
+import org.jf.dexlib2.ReferenceType;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.dexbacked.DexBuffer;
+import org.jf.dexlib2.dexbacked.raw.FieldIdItem;
+import org.jf.dexlib2.dexbacked.raw.MethodIdItem;
+import org.jf.dexlib2.dexbacked.raw.ProtoIdItem;
+import org.jf.dexlib2.dexbacked.raw.TypeListItem;
+import org.jf.dexlib2.dexbacked.reference.DexBackedFieldReference;
+import org.jf.dexlib2.dexbacked.reference.DexBackedMethodReference;
+import org.jf.dexlib2.dexbacked.reference.DexBackedStringReference;
+import org.jf.dexlib2.dexbacked.reference.DexBackedTypeReference;
+
+import javax.annotation.Nonnull;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A section of a {@link ReferencePool}, stored as the sorted and distinct
+ * indices of its references in the id sections of a dex file.
+ * <p>
+ * Elements are created on access.
+ * {@link #containsValue(String) Lookups} are answered from the raw id items,
+ * without creating any element.
+ *
+ * @param <T> element type
+ */
+@Internal
+final class CompactSection<T extends DexRefData> extends AbstractList<T> implements RandomAccess {
+  private final DexSymbols symbols;
+  private final int type;
+  private final int[] indices;
+  private final boolean details;
+
+  /**
+   * @param type one of {@link ReferenceType#STRING STRING}, {@link ReferenceType#TYPE TYPE},
+   *             {@link ReferenceType#FIELD FIELD} or {@link ReferenceType#METHOD METHOD}
+   * @param indices sorted and distinct indices
+   * @param details whether the field or method elements include details
+   */
+  CompactSection(@Nonnull DexSymbols symbols, int type, @Nonnull int[] indices, boolean details) {
+    this.symbols = symbols;
+    this.type = type;
+    this.indices = indices;
+    this.details = details;
+  }
+
+  @Nonnull
+  ValueResolver getResolver() {
+    return symbols;
+  }
+
+  @Override
+  public int size() {
+    return indices.length;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T get(int i) {
+    DexBackedDexFile dexFile = symbols.dexFile;
+    int index = indices[i];
+    switch (type) {
+      case ReferenceType.STRING:
+        return (T) StringRefData.build(new DexBackedStringReference(dexFile, index));
+      case ReferenceType.TYPE:
+        return (T) TypeRefData.build(new DexBackedTypeReference(dexFile, index));
+      case ReferenceType.FIELD:
+        return (T) FieldRefData.build(new DexBackedFieldReference(dexFile, index), details);
+      default:
+        return (T) MethodRefData.build(new DexBackedMethodReference(dexFile, index), details);
+    }
+  }
+
+  /**
+   * Equivalent to checking {@link DexRefData#contains(String)} for each element.
+   */
+  boolean containsValue(@Nonnull String value) {
+    if (type == ReferenceType.STRING) return containsIndex(symbols.findString(value));
+    return contains(symbols.resolve(value));
+  }
+
+  /**
+   * Same as {@link #containsValue(String)}, for a value resolved in advance.
+   */
+  boolean contains(@Nonnull ValueResolver.Resolved value) {
+    if (!value.isOf(symbols.dexFile)) return containsValue(value.value);
+    int stringIndex = value.stringIndex, typeIndex = value.typeIndex;
+    switch (type) {
+      case ReferenceType.STRING:
+        return containsIndex(stringIndex);
+      case ReferenceType.TYPE:
+        return typeIndex == ValueResolver.UNRESOLVABLE ? scan(value.value) : containsIndex(typeIndex);
+      default:
+        if (!details) typeIndex = ValueResolver.NOT_FOUND;
+        if (typeIndex == ValueResolver.UNRESOLVABLE) return scan(value.value);
+        if (stringIndex < 0 && typeIndex < 0) return false;
+        for (int index : indices) {
+          if (matches(symbols.dexFile, type, index, stringIndex, typeIndex)) return true;
+        }
+        return false;
+    }
+  }
+
+  /**
+   * Same as {@link #contains(ValueResolver.Resolved)}, for a single reference.
+   * <p>
+   * Values with an {@linkplain ValueResolver#UNRESOLVABLE unresolvable} type are not supported.
+   *
+   * @param type the section of the reference
+   * @param index index of the reference in its id section
+   * @param value a value resolved against the dex file of the reference
+   * @param details whether the details of field and method references are included
+   * @return {@code true} if the reference matches the value
+   */
+  static boolean matches(@Nonnull DexBackedDexFile dexFile, int type, int index,
+                         @Nonnull ValueResolver.Resolved value, boolean details) {
+    switch (type) {
+      case ReferenceType.STRING:
+        return index == value.stringIndex;
+      case ReferenceType.TYPE:
+        return index == value.typeIndex;
+      default:
+        return matches(dexFile, type, index, value.stringIndex, details ? value.typeIndex : ValueResolver.NOT_FOUND);
+    }
+  }
+
+  private static boolean matches(DexBackedDexFile dexFile, int type, int index, int nameIndex, int typeIndex) {
+    return type == ReferenceType.FIELD ?
+            fieldMatches(dexFile, index, nameIndex, typeIndex) : methodMatches(dexFile, index, nameIndex, typeIndex);
+  }
+
+  private boolean containsIndex(int index) {
+    return index >= 0 && Arrays.binarySearch(indices, index) >= 0;
+  }
+
+  private static boolean fieldMatches(DexBackedDexFile dexFile, int index, int nameIndex, int typeIndex) {
+    DexBuffer buffer = dexFile.getBuffer();
+    int offset = dexFile.getFieldSection().getOffset(index);
+    if (buffer.readSmallUint(offset + FieldIdItem.NAME_OFFSET) == nameIndex) return true;
+    if (typeIndex < 0) return false;
+    return buffer.readUshort(offset + FieldIdItem.CLASS_OFFSET) == typeIndex ||
+           buffer.readUshort(offset + FieldIdItem.TYPE_OFFSET) == typeIndex;
+  }
+
+  private static boolean methodMatches(DexBackedDexFile dexFile, int index, int nameIndex, int typeIndex) {
+    DexBuffer buffer = dexFile.getBuffer();
+    int offset = dexFile.getMethodSection().getOffset(index);
+    if (buffer.readSmallUint(offset + MethodIdItem.NAME_OFFSET) == nameIndex) return true;
+    if (typeIndex < 0) return false;
+    if (buffer.readUshort(offset + MethodIdItem.CLASS_OFFSET) == typeIndex) return true;
+    int protoOffset = dexFile.getProtoSection().getOffset(
+            buffer.readUshort(offset + MethodIdItem.PROTO_OFFSET)
+    );
+    if (buffer.readSmallUint(protoOffset + ProtoIdItem.RETURN_TYPE_OFFSET) == typeIndex) return true;
+    int parameters = buffer.readSmallUint(protoOffset + ProtoIdItem.PARAMETERS_OFFSET);
+    return parameters != 0 && containsParameter(dexFile.getDataBuffer(), parameters, typeIndex);
+  }
+
+  private static boolean containsParameter(DexBuffer buffer, int typeList, int typeIndex) {
+    int size = buffer.readSmallUint(typeList + TypeListItem.SIZE_OFFSET);
+    for (int i = 0; i < size; i++) {
+      if (buffer.readUshort(typeList + TypeListItem.LIST_OFFSET + i * 2) == typeIndex) return true;
+    }
+    return false;
+  }
+
+  private boolean scan(String value) {
+    for (int i = 0; i < indices.length; i++) {
+      if (get(i).contains(value)) return true;
+    }
+    return false;
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.iface.Internal;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.dexbacked.DexBuffer;
+import org.jf.dexlib2.dexbacked.raw.ClassDefItem;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Locates the class definitions of a dex file by name.
+ * <p>
+ * Full names and name prefixes are resolved by a binary search over the sorted
+ * type_ids section, followed by a lookup in a table mapping each type to its
+ * class_def index.
+ * Simple names are resolved by a binary search over a sorted suffix index,
+ * built on first use.
+ */
+@Internal
+final class DexClassTable {
+  private static final int NONE = -1;
+
+  private final DexBackedDexFile dexFile;
+  // class_def index of each type, or NONE
+  private final int[] classByType;
+  private volatile Suffixes suffixes;
+
+  DexClassTable(@Nonnull DexBackedDexFile dexFile) {
+    this.dexFile = dexFile;
+    this.classByType = new int[dexFile.getTypeSection().size()];
+    Arrays.fill(classByType, NONE);
+    DexBuffer buffer = dexFile.getBuffer();
+    for (int i = 0, size = dexFile.getClassSection().size(); i < size; i++) {
+      int offset = dexFile.getClassSection().getOffset(i);
+      classByType[buffer.readSmallUint(offset + ClassDefItem.CLASS_OFFSET)] = i;
+    }
+  }
+
+  /**
+   * @param descriptors dex type descriptors, eg: {@code Ljava/lang/Object;}
+   * @return sorted indices of the classes defined with any of the types
+   */
+  @Nonnull
+  int[] findClasses(@Nonnull Collection<String> descriptors) {
+    int[] classes = new int[descriptors.size()];
+    int size = 0;
+    for (String descriptor : descriptors) {
+      int type = DexLookup.findType(dexFile, descriptor);
+      if (type != DexLookup.NOT_FOUND && classByType[type] != NONE) {
+        classes[size++] = classByType[type];
+      }
+    }
+    return sortedDistinct(classes, size);
+  }
+
+  /**
+   * @param prefixes type descriptor prefixes, eg: {@code Ljava/lang/}
+   * @return sorted indices of the classes whose types start with any of the prefixes
+   */
+  @Nonnull
+  int[] findClassesByPrefix(@Nonnull Collection<String> prefixes) {
+    int[] classes = new int[0];
+    int size = 0;
+    List<String> types = dexFile.getTypeSection();
+    for (String prefix : prefixes) {
+      int[] range = DexLookup.findTypeRange(dexFile, prefix);
+      int from = range == null ? 0 : range[0], to = range == null ? types.size() : range[1];
+      for (int type = from; type < to; type++) {
+        if (classByType[type] == NONE || range == null && !types.get(type).startsWith(prefix)) continue;
+        if (size == classes.length) classes = Arrays.copyOf(classes, Math.max(16, size * 2));
+        classes[size++] = classByType[type];
+      }
+    }
+    return sortedDistinct(classes, size);
+  }
+
+  /**
+   * @param simpleNames simple names terminated by a semicolon, eg: {@code Object;}
+   * @return sorted indices of the classes matching any of the simple names
+   * @see io.github.neonorbit.dexplore.filter.ClassFilter.Builder#setClassSimpleNames(String...)
+   */
+  @Nonnull
+  int[] findClassesBySimpleName(@Nonnull Collection<String> simpleNames) {
+    Suffixes suffixes = getSuffixes();
+    int[] classes = new int[0];
+    int size = 0;
+    for (String simpleName : simpleNames) {
+      int from = suffixes.lowerBound(simpleName), to = from;
+      while (to < suffixes.keys.length && suffixes.keys[to].equals(simpleName)) to++;
+      if (from == to) continue;
+      classes = Arrays.copyOf(classes, size + to - from);
+      System.arraycopy(suffixes.classes, from, classes, size, to - from);
+      size += to - from;
+    }
+    return sortedDistinct(classes, size);
+  }
+
+  private static int[] sortedDistinct(int[] values, int size) {
+    Arrays.sort(values, 0, size);
+    int last = 0;
+    for (int i = 0; i < size; i++) {
+      if (i == 0 || values[i] != values[last - 1]) values[last++] = values[i];
+    }
+    return Arrays.copyOf(values, last);
+  }
+
+  private Suffixes getSuffixes() {
+    if (suffixes == null) {
+      synchronized (this) {
+        if (suffixes == null) {
+          suffixes = new Suffixes(dexFile);
+        }
+      }
+    }
+    return suffixes;
+  }
+
+  /**
+   * Maps each suffix of the class names that can be matched by a simple name
+   * (the whole descriptor, and each part following a {@code /} or {@code $})
+   * to the classes having it, sorted by suffix.
+   */
+  private static final class Suffixes {
+    final String[] keys;
+    final int[] classes;
+
+    Suffixes(DexBackedDexFile dexFile) {
+      List<String> keys = new ArrayList<>();
+      List<Integer> classes = new ArrayList<>();
+      List<String> types = dexFile.getTypeSection();
+      DexBuffer buffer = dexFile.getBuffer();
+      for (int i = 0, size = dexFile.getClassSection().size(); i < size; i++) {
+        int offset = dexFile.getClassSection().getOffset(i);
+        String type = types.get(buffer.readSmallUint(offset + ClassDefItem.CLASS_OFFSET));
+        keys.add(type);
+        classes.add(i);
+        int start = type.lastIndexOf('/');
+        if (start >= 0) {
+          keys.add(type.substring(start + 1));
+          classes.add(i);
+        }
+        for (int k = type.indexOf('$', start + 1); k >= 0; k = type.indexOf('$', k + 1)) {
+          keys.add(type.substring(k + 1));
+          classes.add(i);
+        }
+      }
+      Integer[] order = new Integer[keys.size()];
+      for (int i = 0; i < order.length; i++) order[i] = i;
+      Arrays.sort(order, (a, b) -> {
+        int cmp = keys.get(a).compareTo(keys.get(b));
+        return cmp != 0 ? cmp : Integer.compare(classes.get(a), classes.get(b));
+      });
+      this.keys = new String[order.length];
+      this.classes = new int[order.length];
+      for (int i = 0; i < order.length; i++) {
+        this.keys[i] = keys.get(order[i]);
+        this.classes[i] = classes.get(order[i]);
+      }
+    }
+
+    int lowerBound(String key) {
+      int low = 0, high = keys.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (keys[mid].compareTo(key) < 0) low = mid + 1;
+        else high = mid;
+      }
+      return low;
+    }
+  }
+}
@@ -35,6 +35,10 @@ import java.util.List;
 @Internal
 final class DexContainer {
   private final boolean rootDexOnly;
+  private final boolean releasable;
+  private final boolean indexing;
+  private final boolean recording;
+  private final File indexDirectory;
   private volatile List<DexEntry> dexEntries;
   private final MultiDexContainer<DexBackedDexFile> internal;
 
@@ -49,6 +53,21 @@ final class DexContainer {
   DexContainer(MultiDexContainer<DexBackedDexFile> container, DexOptions options) {
     this.internal = container;
     this.rootDexOnly = options.rootDexOnly;
+    this.releasable = container instanceof FastContainer && ((FastContainer) container).isMapped();
+    this.indexDirectory = options.indexDirectory == null ? null : new File(options.indexDirectory);
+    this.indexing = options.enableIndex || this.indexDirectory != null;
+    this.recording = options.searchListener != null;
+  }
+
+  boolean isIndexing() {
+    return indexing;
+  }
+
+  /**
+   * @return whether loaded dex files may be released and reloaded later
+   */
+  boolean isReleasable() {
+    return releasable;
   }
 
   @Nonnull
@@ -56,6 +75,22 @@ final class DexContainer {
     return new ArrayList<>(getDexEntries());
   }
 
+  /**
+   * @return the entry at the given position of {@link #getEntries()}
+   * @throws IndexOutOfBoundsException if the position is out of range
+   */
+  @Nonnull
+  DexEntry getEntry(int index) {
+    return getDexEntries().get(index);
+  }
+
+  /**
+   * @return the position of the entry in {@link #getEntries()}
+   */
+  int indexOf(@Nonnull DexEntry entry) {
+    return getDexEntries().indexOf(entry);
+  }
+
   @Nonnull
   public List<DexEntry> getEntries(@Nullable List<String> preferred) {
     List<DexEntry> dexEntries = getEntries();
@@ -69,7 +104,20 @@ final class DexContainer {
     return dexEntries;
   }
 
-  synchronized DexBackedDexFile loadDexFile(String dexName) {
+  DexBackedDexFile loadDexFile(String dexName) {
+    SearchRecorder.Probe probe = recording ? SearchRecorder.probe() : null;
+    if (probe == null) return loadDexFile0(dexName);
+    probe.enter(SearchStats.Phase.LOAD);
+    try {
+      DexBackedDexFile dexFile = loadDexFile0(dexName);
+      probe.dexLoaded(dexFile);
+      return dexFile;
+    } finally {
+      probe.exit();
+    }
+  }
+
+  private synchronized DexBackedDexFile loadDexFile0(String dexName) {
     DexLog.d("Loading: " + dexName);
     MultiDexContainer.DexEntry<? extends DexBackedDexFile> entry;
     try {
@@ -83,6 +131,11 @@ final class DexContainer {
     return entry.getDexFile();
   }
 
+  DexIndex loadDexIndex(DexEntry dexEntry) {
+    DexLog.d("Indexing: " + dexEntry.getDexName());
+    return DexIndex.load(dexEntry.getDexFile(), indexDirectory);
+  }
+
   private List<DexEntry> getDexEntries() {
     if (this.dexEntries == null) {
       synchronized (this) {
@@ -114,12 +167,18 @@ final class DexContainer {
     }));
   }
 
+  @Nullable
+  private static File getMappingDirectory(DexOptions opt) {
+    if (!opt.memoryMapping) return null;
+    return opt.mappingDirectory == null ? DexMapper.getDefaultCacheDirectory() : new File(opt.mappingDirectory);
+  }
+
   @SuppressWarnings("unchecked")
   private static MultiDexContainer<DexBackedDexFile> loadDexContainer(String path, DexOptions opt) {
     MultiDexContainer<? extends DexBackedDexFile> container;
     try {
       File file = new File(path);
-      container = FastContainer.load(file, opt.opcodes.get(), opt.rootDexOnly);
+      container = FastContainer.load(file, opt.opcodes.get(), opt.rootDexOnly, getMappingDirectory(opt));
       if (container == null) {
         container = DexFileFactory.loadDexContainer(file, opt.opcodes.get());
       }
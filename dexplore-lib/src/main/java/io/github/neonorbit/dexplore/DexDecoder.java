@@ -16,10 +16,15 @@
 
 package io.github.neonorbit.dexplore;
 
+import io.github.neonorbit.dexplore.filter.ReferenceCriterion;
+import io.github.neonorbit.dexplore.filter.ReferenceMatcher;
 import io.github.neonorbit.dexplore.filter.ReferenceTypes;
 import io.github.neonorbit.dexplore.iface.Internal;
+import io.github.neonorbit.dexplore.util.DexEvents;
 import io.github.neonorbit.dexplore.util.DexLog;
 import io.github.neonorbit.dexplore.util.DexUtils;
+import io.github.neonorbit.dexplore.util.LiteralSet;
+import org.jf.dexlib2.ReferenceType;
 import org.jf.dexlib2.ValueType;
 import org.jf.dexlib2.dexbacked.DexBackedClassDef;
 import org.jf.dexlib2.dexbacked.DexBackedDexFile;
@@ -47,55 +52,394 @@ import org.jf.dexlib2.iface.value.ShortEncodedValue;
 import org.jf.dexlib2.iface.value.StringEncodedValue;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.LongPredicate;
 
 @Internal
 public final class DexDecoder {
   private final boolean cache;
-  private final RefPoolCache<DexEntry> dexCache;
-  private final RefPoolCache<DexBackedClassDef> classCache;
+  private final boolean recording;
+  private final RefPoolCache refPoolCache;
 
   DexDecoder(DexOptions options) {
     this.cache = options.enableCache;
-    this.dexCache = new RefPoolCache<>();
-    this.classCache = new RefPoolCache<>();
+    this.recording = options.searchListener != null;
+    this.refPoolCache = cache ? RefPoolCache.newCache(options) : null;
+  }
+
+  @Nullable
+  CacheStats getCacheStats() {
+    return cache ? refPoolCache.getStats() : null;
   }
 
   @Nonnull
   public ReferencePool decode(@Nonnull DexEntry dexEntry,
                               @Nonnull ReferenceTypes types) {
-    if (types.hasNone()) return ReferencePool.emptyPool();
-    ReferencePool pool = cache ? dexCache.get(dexEntry, types) : null;
-    if (pool == null) {
-      pool = decodeDexReferences(dexEntry.getDexFile(), types, false);
-      if (cache) dexCache.put(dexEntry, types, pool);
-    }
-    return pool;
+    return decode(dexEntry, cache ? dexEntry : null, types,
+            (item, t) -> decodeDexReferences(item.getSymbols(), t, false));
   }
 
   @Nonnull
   public ReferencePool decode(@Nonnull DexBackedClassDef dexClass,
                               @Nonnull ReferenceTypes types) {
+    return decode(dexClass, cache ? new TypeKey(dexClass) : null, types,
+            (item, t) -> decodeClassReferences(item, t, false));
+  }
+
+  /**
+   * @param key the cache key of the item, or null if the pool should not be cached
+   */
+  private <T> ReferencePool decode(T item, @Nullable Object key, ReferenceTypes types,
+                                   LazyDecoder<T> lazyDecoder) {
     if (types.hasNone()) return ReferencePool.emptyPool();
-    ReferencePool pool = cache ? classCache.get(dexClass, types) : null;
-    if (pool == null) {
-      pool = decodeClassReferences(dexClass, types, false);
-      if (cache) classCache.put(dexClass, types, pool);
+    LazyDecoder<T> decoder = DexEvents.isActive() ? traced(lazyDecoder) : lazyDecoder;
+    SearchRecorder.Probe probe = recording ? SearchRecorder.probe() : null;
+    if (probe != null) return decode(item, key, types, decoder, probe);
+    if (key == null) return decoder.decode(item, types);
+    return refPoolCache.get(key, types, t -> decoder.decode(item, t));
+  }
+
+  private <T> ReferencePool decode(T item, @Nullable Object key, ReferenceTypes types,
+                                   LazyDecoder<T> decoder, SearchRecorder.Probe probe) {
+    probe.enter(SearchStats.Phase.DECODE);
+    try {
+      if (key == null) {
+        probe.poolDecoded();
+        return decoder.decode(item, types);
+      }
+      long decoded = probe.poolCount();
+      ReferencePool pool = refPoolCache.get(key, types, t -> {
+        probe.poolDecoded();
+        return decoder.decode(item, t);
+      });
+      probe.cacheLookup(probe.poolCount() == decoded);
+      return pool;
+    } finally {
+      probe.exit();
+    }
+  }
+
+  private static <T> LazyDecoder<T> traced(LazyDecoder<T> decoder) {
+    return (item, types) -> {
+      DexEvents.Event event = DexEvents.begin(DexEvents.Type.POOL_DECODE);
+      ReferencePool pool = decoder.decode(item, types);
+      if (event != null) {
+        int size = pool.getStringSection().size() + pool.getTypeSection().size() +
+                   pool.getFieldSection().size() + pool.getMethodSection().size();
+        event.commit(item.toString(), types.toString(), size);
+      }
+      return pool;
+    };
+  }
+
+  /**
+   * @return a new class decoder that identifies cached classes by their position
+   */
+  @Nonnull
+  ClassDecoder newClassDecoder() {
+    return new ClassDecoder();
+  }
+
+  /**
+   * A class decoder for scanning the classes of dex entries.
+   * <p>
+   * The position of each class must be {@linkplain #at(DexEntry, int) set} before decoding it.
+   * Cached pools are then identified without decoding the class name,
+   * and the code items are read directly by {@link CodeScanner}.
+   * <p>
+   * Instances are not thread-safe.
+   */
+  final class ClassDecoder implements LazyDecoder<DexBackedClassDef> {
+    private final LazyDecoder<DexBackedMethod> methods = new MethodDecoder();
+    private DexEntry dexEntry;
+    private int classIndex;
+    // methods of the current class, read on demand
+    private int[] methodIndices = new int[16];
+    private int[] accessFlags = new int[16];
+    private int[] codeOffsets = new int[16];
+    private int methodCount = -1;
+    private int directCount;
+    // position of the next method, methods are usually looked up in order
+    private int cursor;
+
+    private ClassDecoder() {}
+
+    /**
+     * @param dexEntry the dex entry of the next class
+     * @param classIndex index of the next class in the class_defs section
+     * @return {@code this} decoder
+     */
+    ClassDecoder at(@Nonnull DexEntry dexEntry, int classIndex) {
+      this.dexEntry = dexEntry;
+      this.classIndex = classIndex;
+      this.methodCount = -1;
+      return this;
+    }
+
+    /**
+     * @return the dex entry of the current class
+     */
+    DexEntry entry() {
+      return dexEntry;
+    }
+
+    /**
+     * @return index of the current class in the class_defs section
+     */
+    int classIndex() {
+      return classIndex;
+    }
+
+    /**
+     * @return a decoder for the methods of the current class
+     */
+    LazyDecoder<DexBackedMethod> methods() {
+      return methods;
+    }
+
+    @Override
+    public ReferencePool decode(DexBackedClassDef dexClass, ReferenceTypes types) {
+      return DexDecoder.this.decode(dexClass, cache ? new ClassKey(dexEntry, classIndex) : null,
+              types, this::decodeClass);
+    }
+
+    @Override
+    public boolean matches(DexBackedClassDef dexClass, ReferenceTypes types, ReferenceCriterion criterion) {
+      ReferenceMatcher matcher = newMatcher(dexClass.dexFile, criterion);
+      if (matcher == null) return LazyDecoder.super.matches(dexClass, types, criterion);
+      DexBackedDexFile dexFile = dexClass.dexFile;
+      MatchingReferences visitor = new MatchingReferences(types, matcher, dexFile);
+      if (types.hasString()) {
+        for (DexBackedField dexField : DexUtils.dexStaticFields(dexClass)) {
+          if (visitor.isDone()) return matcher.result();
+          EncodedValue value = dexField.getInitialValue();
+          if (value != null && value.getValueType() == ValueType.STRING) {
+            int index = DexLookup.findString(dexFile, ((StringEncodedValue) value).getValue());
+            if (index != DexLookup.NOT_FOUND) visitor.visitReference(ReferenceType.STRING, index);
+          }
+        }
+      }
+      for (int i = 0; i < methodCount && !visitor.isDone(); i++) {
+        if (isInScope(types, accessFlags[i], i < directCount)) {
+          CodeScanner.scanCode(dexFile, codeOffsets[i], visitor);
+        }
+      }
+      return matcher.result();
+    }
+
+    @Override
+    public Boolean containsLiterals(DexBackedClassDef dexClass, LiteralSet literals, boolean synthetic) {
+      DexBackedDexFile dexFile = dexClass.dexFile;
+      if (!readMethods(dexFile)) return DexDecoder.containsLiterals(dexClass, literals, synthetic);
+      LiteralSet.Matcher matcher = literals.newMatcher();
+      for (DexBackedField dexField : DexUtils.dexStaticFields(dexClass)) {
+        if (scanNumberLiterals(dexField, matcher)) return true;
+      }
+      for (int i = 0; i < methodCount; i++) {
+        if (DexUtils.skipSynthetic(synthetic, accessFlags[i])) continue;
+        if (CodeScanner.scanLiterals(dexFile, codeOffsets[i], matcher)) return true;
+      }
+      return matcher.isComplete();
+    }
+
+    @Override
+    public int[] countMembers(DexBackedClassDef dexClass) {
+      if (dexEntry == null || dexClass.dexFile != dexEntry.getDexFile() ||
+          !CodeScanner.isSupported(dexClass.dexFile)) {
+        return DexDecoder.countMembers(dexClass);
+      }
+      return CodeScanner.countMembers(dexClass.dexFile, classIndex);
+    }
+
+    private ReferencePool decodeClass(DexBackedClassDef dexClass, ReferenceTypes types) {
+      DexBackedDexFile dexFile = dexClass.dexFile;
+      DexSymbols symbols = dexEntry == null ? null : dexEntry.getSymbols();
+      if (symbols == null || symbols.dexFile != dexFile || !CodeScanner.isSupported(dexFile)) {
+        return decodeClassReferences(dexClass, types, false);
+      }
+      RefPoolBuffer buffer = new RefPoolBuffer(types, symbols);
+      decodeClassFieldReferences(dexClass, types, buffer);
+      CodeReferences visitor = new CodeReferences(types, buffer);
+      CodeScanner.scanMethods(dexFile, classIndex, (methodIndex, flags, codeOffset, direct) -> {
+        if (isInScope(types, flags, direct)) CodeScanner.scanCode(dexFile, codeOffset, visitor);
+      });
+      return buffer.getPool(false);
+    }
+
+    private ReferencePool decodeMethod(DexBackedMethod dexMethod, ReferenceTypes types) {
+      int codeOffset = codeOffsetOf(dexMethod);
+      if (codeOffset < 0) return decodeMethodReferences(dexMethod, types, false);
+      RefPoolBuffer buffer = new RefPoolBuffer(types, dexEntry.getSymbols());
+      CodeScanner.scanCode(dexMethod.dexFile, codeOffset, new CodeReferences(types, buffer));
+      return buffer.getPool(false);
+    }
+
+    /**
+     * Creates a matcher to evaluate a reference filter while scanning the current class.
+     * <p>
+     * Items are matched from their pools if the pools are cached or recorded,
+     * or if the methods of the class cannot be read by {@link CodeScanner}.
+     *
+     * @return a matcher, or null if the filter must be applied to the full pool
+     */
+    private ReferenceMatcher newMatcher(DexBackedDexFile dexFile, ReferenceCriterion criterion) {
+      if (cache || recording || DexEvents.isActive()) return null;
+      DexSymbols symbols = dexEntry == null ? null : dexEntry.getSymbols();
+      if (symbols == null || symbols.dexFile != dexFile || !readMethods(dexFile)) return null;
+      return criterion.newMatcher(symbols);
+    }
+
+    /**
+     * Finds the code offset of a method of the current class.
+     * <p>
+     * The next method in order is found directly, any other one by a binary search:
+     * the direct and the virtual methods are each sorted by method index.
+     *
+     * @return the code offset of the method, or -1 if unknown
+     */
+    private int codeOffsetOf(DexBackedMethod dexMethod) {
+      if (!readMethods(dexMethod.dexFile)) return -1;
+      int methodIndex = dexMethod.methodIndex;
+      int i = cursor < methodCount && methodIndices[cursor] == methodIndex ? cursor :
+              Arrays.binarySearch(methodIndices, 0, directCount, methodIndex);
+      if (i < 0) i = Arrays.binarySearch(methodIndices, directCount, methodCount, methodIndex);
+      if (i < 0) return -1;
+      cursor = i + 1;
+      return codeOffsets[i];
+    }
+
+    /**
+     * Reads the methods of the current class, if not read already.
+     *
+     * @param dexFile the dex file of the item being decoded
+     * @return {@code false} if the methods cannot be read by {@link CodeScanner}
+     */
+    private boolean readMethods(DexBackedDexFile dexFile) {
+      if (dexEntry == null || !CodeScanner.isSupported(dexFile)) return false;
+      if (methodCount < 0) {
+        if (dexFile != dexEntry.getDexFile()) return false;
+        methodCount = directCount = cursor = 0;
+        CodeScanner.scanMethods(dexFile, classIndex, (methodIndex, flags, codeOffset, direct) -> {
+          // direct methods come first
+          if (direct) directCount++;
+          if (methodCount == methodIndices.length) {
+            methodIndices = Arrays.copyOf(methodIndices, methodCount * 2);
+            accessFlags = Arrays.copyOf(accessFlags, methodCount * 2);
+            codeOffsets = Arrays.copyOf(codeOffsets, methodCount * 2);
+          }
+          methodIndices[methodCount] = methodIndex;
+          accessFlags[methodCount] = flags;
+          codeOffsets[methodCount++] = codeOffset;
+        });
+      }
+      return true;
+    }
+
+    private final class MethodDecoder implements LazyDecoder<DexBackedMethod> {
+      @Override
+      public ReferencePool decode(DexBackedMethod dexMethod, ReferenceTypes types) {
+        return DexDecoder.this.decode(dexMethod, null, types, ClassDecoder.this::decodeMethod);
+      }
+
+      @Override
+      public boolean matches(DexBackedMethod dexMethod, ReferenceTypes types, ReferenceCriterion criterion) {
+        int codeOffset = codeOffsetOf(dexMethod);
+        ReferenceMatcher matcher = codeOffset < 0 ? null : newMatcher(dexMethod.dexFile, criterion);
+        if (matcher == null) return LazyDecoder.super.matches(dexMethod, types, criterion);
+        CodeScanner.scanCode(dexMethod.dexFile, codeOffset, new MatchingReferences(types, matcher, dexMethod.dexFile));
+        return matcher.result();
+      }
+
+      @Override
+      public Boolean containsLiterals(DexBackedMethod dexMethod, LiteralSet literals, boolean synthetic) {
+        int codeOffset = codeOffsetOf(dexMethod);
+        if (codeOffset < 0) return DexDecoder.containsLiterals(dexMethod, literals);
+        LiteralSet.Matcher matcher = literals.newMatcher();
+        return CodeScanner.scanLiterals(dexMethod.dexFile, codeOffset, matcher) || matcher.isComplete();
+      }
+
+      @Override
+      public CodeHeader readCodeHeader(DexBackedMethod dexMethod) {
+        int codeOffset = codeOffsetOf(dexMethod);
+        if (codeOffset < 0) return DexDecoder.readCodeHeader(dexMethod);
+        return CodeScanner.readHeader(dexMethod.dexFile, codeOffset);
+      }
+    }
+  }
+
+  private static final class ClassKey {
+    private final DexEntry dexEntry;
+    private final int classIndex;
+
+    private ClassKey(DexEntry dexEntry, int classIndex) {
+      this.dexEntry = dexEntry;
+      this.classIndex = classIndex;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * dexEntry.hashCode() + classIndex;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (obj instanceof ClassKey) {
+        ClassKey another = (ClassKey) obj;
+        return this.classIndex == another.classIndex &&
+               this.dexEntry.equals(another.dexEntry);
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Identifies a class without its dex entry: a dex file defines each type at most once.
+   * The dex file is only weakly referenced, cached pools must not keep it alive.
+   */
+  private static final class TypeKey {
+    private final WeakReference<DexBackedDexFile> dexFile;
+    private final String type;
+    private final int hash;
+
+    private TypeKey(DexBackedClassDef dexClass) {
+      this.dexFile = new WeakReference<>(dexClass.dexFile);
+      this.type = dexClass.getType();
+      this.hash = 31 * System.identityHashCode(dexClass.dexFile) + type.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (obj instanceof TypeKey) {
+        TypeKey another = (TypeKey) obj;
+        DexBackedDexFile dexFile = this.dexFile.get();
+        return dexFile != null && dexFile == another.dexFile.get() &&
+               this.type.equals(another.type);
+      }
+      return false;
     }
-    return pool;
   }
 
   @Nonnull
   public ReferencePool decode(@Nonnull DexBackedMethod dexMethod,
                               @Nonnull ReferenceTypes types) {
-    return decodeMethodReferences(dexMethod, types, false);
+    return decode(dexMethod, null, types, (item, t) -> decodeMethodReferences(item, t, false));
   }
 
   @Nonnull
   public static ReferencePool decodeFully(@Nonnull DexBackedDexFile dexFile) {
-    return decodeDexReferences(dexFile, ReferenceTypes.all(), true);
+    return decodeDexReferences(new DexSymbols(dexFile), ReferenceTypes.all(), true);
   }
 
   @Nonnull
@@ -129,18 +473,88 @@ public final class DexDecoder {
     return numbers;
   }
 
+  /**
+   * Checks whether a class contains all the given number literals.
+   * <p>
+   * The class is read only until all the literals are found.
+   *
+   * @param dexClass the class to check
+   * @param literals the literals to look for
+   * @param synthetic whether to include synthetic methods
+   * @return {@code true} if the class contains all the literals
+   */
+  public static boolean containsLiterals(@Nonnull DexBackedClassDef dexClass,
+                                         @Nonnull LiteralSet literals, boolean synthetic) {
+    LiteralSet.Matcher matcher = literals.newMatcher();
+    for (DexBackedField dexField : DexUtils.dexStaticFields(dexClass)) {
+      if (scanNumberLiterals(dexField, matcher)) return true;
+    }
+    for (DexBackedMethod dexMethod : DexUtils.dexMethods(dexClass, synthetic)) {
+      if (scanNumberLiterals(dexMethod, matcher)) return true;
+    }
+    return matcher.isComplete();
+  }
+
+  /**
+   * Checks whether a method contains all the given number literals.
+   * <p>
+   * The method is read only until all the literals are found.
+   *
+   * @param dexMethod the method to check
+   * @param literals the literals to look for
+   * @return {@code true} if the method contains all the literals
+   */
+  public static boolean containsLiterals(@Nonnull DexBackedMethod dexMethod,
+                                         @Nonnull LiteralSet literals) {
+    LiteralSet.Matcher matcher = literals.newMatcher();
+    return scanNumberLiterals(dexMethod, matcher) || matcher.isComplete();
+  }
+
+  /**
+   * Reads the header of the code item of a method through dexlib2.
+   * <p>
+   * The instructions are decoded to measure the code size.
+   *
+   * @param dexMethod a method
+   * @return the header of the code item
+   */
+  @Nonnull
+  public static CodeHeader readCodeHeader(@Nonnull DexBackedMethod dexMethod) {
+    MethodImplementation implementation = dexMethod.getImplementation();
+    if (implementation == null) return CodeHeader.NONE;
+    int codeSize = 0;
+    for (Instruction instruction : implementation.getInstructions()) {
+      codeSize += instruction.getCodeUnits();
+    }
+    return new CodeHeader(implementation.getRegisterCount(),
+                          implementation.getTryBlocks().size(), codeSize);
+  }
+
+  /**
+   * @param dexClass a class
+   * @return the number of fields and the number of methods declared by the class
+   */
+  @Nonnull
+  public static int[] countMembers(@Nonnull DexBackedClassDef dexClass) {
+    int fields = 0, methods = 0;
+    for (DexBackedField ignored : dexClass.getFields()) fields++;
+    for (DexBackedMethod ignored : dexClass.getMethods()) methods++;
+    return new int[]{fields, methods};
+  }
+
   public static Object decodeFieldValue(@Nonnull DexBackedField dexField) {
     return decodeValue(dexField.getInitialValue());
   }
 
-  private static ReferencePool decodeDexReferences(DexBackedDexFile dexFile,
+  private static ReferencePool decodeDexReferences(DexSymbols symbols,
                                                    ReferenceTypes types,
                                                    boolean resolve) {
-    RefPoolBuffer buffer = new RefPoolBuffer(types);
-    if (types.hasString()) dexFile.getStringReferences().forEach(buffer::add);
-    if (types.hasTypeDes()) dexFile.getTypeReferences().forEach(buffer::add);
-    if (types.hasField()) dexFile.getFieldSection().forEach(buffer::add);
-    if (types.hasMethod()) dexFile.getMethodSection().forEach(buffer::add);
+    DexBackedDexFile dexFile = symbols.dexFile;
+    RefPoolBuffer buffer = new RefPoolBuffer(types, symbols);
+    if (types.hasString()) buffer.addAll(ReferenceType.STRING, dexFile.getStringSection().size());
+    if (types.hasTypeDes()) buffer.addAll(ReferenceType.TYPE, dexFile.getTypeSection().size());
+    if (types.hasField()) buffer.addAll(ReferenceType.FIELD, dexFile.getFieldSection().size());
+    if (types.hasMethod()) buffer.addAll(ReferenceType.METHOD, dexFile.getMethodSection().size());
     return buffer.getPool(resolve);
   }
 
@@ -163,6 +577,16 @@ public final class DexDecoder {
     }
   }
 
+  private static boolean isInScope(ReferenceTypes types, int accessFlags, boolean direct) {
+    if (DexUtils.skipSynthetic(types.synthRefs(), accessFlags)) return false;
+    switch (types.getScope()) {
+      default: return false;
+      case ALL: return true;
+      case DIRECT: return direct;
+      case VIRTUAL: return !direct;
+    }
+  }
+
   private static void decodeClassFieldReferences(DexBackedClassDef dexClass,
                                                  ReferenceTypes types,
                                                  RefPoolBuffer buffer) {
@@ -175,7 +599,7 @@ public final class DexDecoder {
                                             RefPoolBuffer buffer) {
     EncodedValue value = dexField.getInitialValue();
     if (value != null && value.getValueType() == ValueType.STRING) {
-      buffer.add(((StringEncodedValue) value).getValue());
+      buffer.add(dexField.dexFile, ((StringEncodedValue) value).getValue());
     }
   }
 
@@ -202,6 +626,81 @@ public final class DexDecoder {
     }
   }
 
+  /**
+   * Passes the requested references of code items to a buffer, by their indices.
+   */
+  private static final class CodeReferences implements CodeScanner.Visitor {
+    private final RefPoolBuffer buffer;
+    private final boolean strings, typeDes, fields, methods;
+
+    CodeReferences(ReferenceTypes types, RefPoolBuffer buffer) {
+      this.buffer = buffer;
+      this.strings = types.hasString();
+      this.typeDes = types.hasTypeDes();
+      this.fields = types.hasField();
+      this.methods = types.hasMethod();
+    }
+
+    @Override
+    public void visitReference(int type, int index) {
+      switch (type) {
+        case ReferenceType.STRING: if (!strings) return; break;
+        case ReferenceType.TYPE: if (!typeDes) return; break;
+        case ReferenceType.FIELD: if (!fields) return; break;
+        default: if (!methods) return;
+      }
+      buffer.add(type, index);
+    }
+
+    @Override
+    public void visitLiteral(long literal) {}
+  }
+
+  /**
+   * Passes the requested references of code items to a matcher, until its result is known.
+   */
+  private static final class MatchingReferences implements CodeScanner.Visitor {
+    private final ReferenceMatcher matcher;
+    private final DexBackedDexFile dexFile;
+    private final boolean strings, typeDes, fields, methods;
+    private final boolean fieldDetails, methodDetails;
+
+    MatchingReferences(ReferenceTypes types, ReferenceMatcher matcher, DexBackedDexFile dexFile) {
+      this.matcher = matcher;
+      this.dexFile = dexFile;
+      this.strings = types.hasString();
+      this.typeDes = types.hasTypeDes();
+      this.fields = types.hasField();
+      this.methods = types.hasMethod();
+      this.fieldDetails = types.hasFieldDetails();
+      this.methodDetails = types.hasMethodDetails();
+    }
+
+    @Override
+    public void visitReference(int type, int index) {
+      boolean details = false;
+      switch (type) {
+        case ReferenceType.STRING: if (!strings) return; break;
+        case ReferenceType.TYPE: if (!typeDes) return; break;
+        case ReferenceType.FIELD: if (!fields) return; details = fieldDetails; break;
+        default: if (!methods) return; details = methodDetails;
+      }
+      int section = 1 << type;
+      for (int i = 0, size = matcher.size(); i < size; i++) {
+        if ((matcher.sections(i) & section) == 0 || matcher.isFound(i)) continue;
+        if (CompactSection.matches(dexFile, type, index, matcher.value(i), details) && matcher.found(i)) return;
+      }
+    }
+
+    @Override
+    public void visitLiteral(long literal) {}
+
+    @Override
+    public boolean isDone() {
+      return matcher.isDecided();
+    }
+  }
+
   private static void decodeReference(Reference reference,
                                       ReferenceTypes types,
                                       RefPoolBuffer buffer) {
@@ -222,34 +721,53 @@ public final class DexDecoder {
   }
 
   private static void decodeNumberLiterals(DexBackedMethod dexMethod, Set<Long> numbers) {
+    scanNumberLiterals(dexMethod, value -> {
+      numbers.add(value);
+      return false;
+    });
+  }
+
+  static void decodeNumberLiterals(DexBackedField dexField, Set<Long> numbers) {
+    scanNumberLiterals(dexField, value -> {
+      numbers.add(value);
+      return false;
+    });
+  }
+
+  /**
+   * @return {@code true} if the visitor stopped the scan
+   */
+  private static boolean scanNumberLiterals(DexBackedMethod dexMethod, LongPredicate visitor) {
     MethodImplementation implementation = dexMethod.getImplementation();
-    if (implementation == null) return;
+    if (implementation == null) return false;
     for (Instruction instruction : implementation.getInstructions()) {
-      if (instruction instanceof WideLiteralInstruction) {
-        numbers.add(((WideLiteralInstruction) instruction).getWideLiteral());
+      if (instruction instanceof WideLiteralInstruction &&
+          visitor.test(((WideLiteralInstruction) instruction).getWideLiteral())) {
+        return true;
       }
     }
+    return false;
   }
 
-  private static void decodeNumberLiterals(DexBackedField dexField, Set<Long> numbers) {
+  /**
+   * @return the result of the visitor, or {@code false} if the field has no number literal
+   */
+  private static boolean scanNumberLiterals(DexBackedField dexField, LongPredicate visitor) {
     EncodedValue value = dexField.getInitialValue();
-    if (!DexUtils.hasValue(value)) return;
+    if (!DexUtils.hasValue(value)) return false;
     switch (value.getValueType()) {
       case ValueType.SHORT:
-        numbers.add((long) ((ShortEncodedValue) value).getValue());
-        break;
+        return visitor.test(((ShortEncodedValue) value).getValue());
       case ValueType.INT:
-        numbers.add((long) ((IntEncodedValue) value).getValue());
-        break;
+        return visitor.test(((IntEncodedValue) value).getValue());
       case ValueType.LONG:
-        numbers.add(((LongEncodedValue) value).getValue());
-        break;
+        return visitor.test(((LongEncodedValue) value).getValue());
       case ValueType.FLOAT:
-        numbers.add((long) Float.floatToRawIntBits(((FloatEncodedValue) value).getValue()));
-        break;
+        return visitor.test(Float.floatToRawIntBits(((FloatEncodedValue) value).getValue()));
       case ValueType.DOUBLE:
-        numbers.add(Double.doubleToRawLongBits(((DoubleEncodedValue) value).getValue()));
-        break;
+        return visitor.test(Double.doubleToRawLongBits(((DoubleEncodedValue) value).getValue()));
+      default:
+        return false;
     }
   }
 
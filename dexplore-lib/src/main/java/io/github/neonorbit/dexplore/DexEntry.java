@@ -17,15 +17,23 @@
 package io.github.neonorbit.dexplore;
 
 import io.github.neonorbit.dexplore.iface.Internal;
+import io.github.neonorbit.dexplore.util.DexEvents;
 import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.dexbacked.raw.HeaderItem;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.ref.SoftReference;
 
 @Internal
 public final class DexEntry implements Comparable<DexEntry> {
   private final String dexName;
   private final DexContainer container;
   private volatile DexBackedDexFile dexFile;
+  private volatile SoftReference<DexBackedDexFile> released;
+  private volatile boolean indexed;
+  private DexIndex dexIndex;
+  private volatile SoftReference<DexSymbols> symbols;
 
   DexEntry(DexContainer container, String dexName) {
     this.dexName = dexName;
@@ -39,14 +47,66 @@ public final class DexEntry implements Comparable<DexEntry> {
 
   @Nonnull
   public DexBackedDexFile getDexFile() {
-    if (this.dexFile == null) {
+    DexBackedDexFile dexFile = this.dexFile;
+    if (dexFile == null) dexFile = get(this.released);
+    if (dexFile == null) {
       synchronized (this) {
-        if (this.dexFile == null) {
-          this.dexFile = container.loadDexFile(this.dexName);
+        dexFile = this.dexFile;
+        // reloaded only once the released instance has been cleared
+        if (dexFile == null) dexFile = get(this.released);
+        if (dexFile == null) {
+          DexEvents.Event event = DexEvents.begin(DexEvents.Type.DEX_LOAD);
+          dexFile = container.loadDexFile(this.dexName);
+          if (event != null) {
+            event.commit(dexName, dexFile.getBuffer().readSmallUint(HeaderItem.FILE_SIZE_OFFSET));
+          }
+          if (container.isReleasable()) {
+            // retained only while in use, reloaded from the mapped file otherwise
+            this.released = new SoftReference<>(dexFile);
+          } else {
+            this.dexFile = dexFile;
+          }
         }
       }
     }
-    return this.dexFile;
+    return dexFile;
+  }
+
+  @Nullable
+  private static DexBackedDexFile get(@Nullable SoftReference<DexBackedDexFile> reference) {
+    return reference == null ? null : reference.get();
+  }
+
+  /**
+   * @return the symbols of the current dex file instance
+   */
+  @Nonnull
+  DexSymbols getSymbols() {
+    DexBackedDexFile dexFile = getDexFile();
+    SoftReference<DexSymbols> reference = this.symbols;
+    DexSymbols symbols = reference == null ? null : reference.get();
+    if (symbols == null || symbols.dexFile != dexFile) {
+      // softly reachable, so that the symbols do not retain a released dex file
+      symbols = new DexSymbols(dexFile);
+      this.symbols = new SoftReference<>(symbols);
+    }
+    return symbols;
+  }
+
+  /**
+   * @return the index of the dex file, or null if the dex file cannot be indexed
+   */
+  @Nullable
+  DexIndex getDexIndex() {
+    if (!this.indexed) {
+      synchronized (this) {
+        if (!this.indexed) {
+          this.dexIndex = container.loadDexIndex(this);
+          this.indexed = true;
+        }
+      }
+    }
+    return this.dexIndex;
   }
 
   @Override
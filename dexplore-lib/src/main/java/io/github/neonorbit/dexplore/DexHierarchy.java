@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.iface.Internal;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.dexbacked.DexBuffer;
+import org.jf.dexlib2.dexbacked.raw.ClassDefItem;
+import org.jf.dexlib2.dexbacked.raw.TypeListItem;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A class hierarchy spanning all the dex files of a container.
+ * <p>
+ * Maps each type to the classes directly extending or implementing it.
+ * Types are identified by their dex descriptors, and a type may be
+ * defined by multiple dex files, each definition is kept separately.
+ * <p>
+ * The hierarchy is built in a single pass over the class_defs sections,
+ * without decoding the classes.
+ */
+@Internal
+final class DexHierarchy {
+  private final Map<String, Node> nodes = new HashMap<>();
+
+  private DexHierarchy() {}
+
+  static DexHierarchy build(@Nonnull List<DexEntry> entries) {
+    DexHierarchy hierarchy = new DexHierarchy();
+    for (int dex = 0; dex < entries.size(); dex++) {
+      hierarchy.addDexFile(dex, entries.get(dex).getDexFile());
+    }
+    return hierarchy;
+  }
+
+  private void addDexFile(int dexIndex, DexBackedDexFile dexFile) {
+    DexBuffer buffer = dexFile.getBuffer();
+    DexBuffer data = dexFile.getDataBuffer();
+    // nodes of the types of this dex file, resolved on demand
+    Node[] types = new Node[dexFile.getTypeSection().size()];
+    for (int i = 0, size = dexFile.getClassSection().size(); i < size; i++) {
+      int offset = dexFile.getClassSection().getOffset(i);
+      Definition definition = new Definition(
+              nodeOf(dexFile, types, buffer.readSmallUint(offset + ClassDefItem.CLASS_OFFSET)), dexIndex, i
+      );
+      int superClass = buffer.readOptionalUint(offset + ClassDefItem.SUPERCLASS_OFFSET);
+      if (superClass != -1) nodeOf(dexFile, types, superClass).subtypes.add(definition);
+      int interfaces = buffer.readSmallUint(offset + ClassDefItem.INTERFACES_OFFSET);
+      if (interfaces == 0) continue;
+      int count = data.readSmallUint(interfaces + TypeListItem.SIZE_OFFSET);
+      for (int k = 0; k < count; k++) {
+        int type = data.readUshort(interfaces + TypeListItem.LIST_OFFSET + k * 2);
+        nodeOf(dexFile, types, type).subtypes.add(definition);
+      }
+    }
+  }
+
+  private Node nodeOf(DexBackedDexFile dexFile, Node[] types, int typeIndex) {
+    Node node = types[typeIndex];
+    if (node == null) {
+      node = nodes.computeIfAbsent(dexFile.getTypeSection().get(typeIndex), Node::new);
+      types[typeIndex] = node;
+    }
+    return node;
+  }
+
+  /**
+   * Finds the subtypes of a type.
+   * <p>
+   * Transitive subtypes are visited in breadth-first order, each definition at most once.
+   *
+   * @param descriptor a dex type descriptor, eg: {@code Ljava/lang/Object;}
+   * @param transitive whether to include indirect subtypes
+   * @return the definitions of the subtypes
+   */
+  @Nonnull
+  List<Definition> subtypes(@Nonnull String descriptor, boolean transitive) {
+    Node root = nodes.get(descriptor);
+    if (root == null) return Collections.emptyList();
+    if (!transitive) return Collections.unmodifiableList(root.subtypes);
+    Set<Definition> result = new LinkedHashSet<>();
+    Set<Node> visited = new HashSet<>();
+    Deque<Node> pending = new ArrayDeque<>();
+    visited.add(root);
+    pending.add(root);
+    while (!pending.isEmpty()) {
+      for (Definition definition : pending.poll().subtypes) {
+        result.add(definition);
+        if (visited.add(definition.node)) pending.add(definition.node);
+      }
+    }
+    return new ArrayList<>(result);
+  }
+
+  /**
+   * Finds the classes of a dex file directly extending or implementing a type.
+   *
+   * @param descriptor a dex type descriptor, eg: {@code Ljava/lang/Object;}
+   * @param dexIndex the position of the dex file in the container
+   * @return sorted indices of the subtypes in the class_defs section of the dex file
+   */
+  @Nonnull
+  int[] directSubtypes(@Nonnull String descriptor, int dexIndex) {
+    Node node = nodes.get(descriptor);
+    if (node == null) return new int[0];
+    return node.subtypes.stream()
+            .filter(definition -> definition.dexIndex == dexIndex)
+            .mapToInt(definition -> definition.classIndex)
+            .sorted().distinct().toArray();
+  }
+
+  private static final class Node {
+    final String type;
+    final List<Definition> subtypes = new ArrayList<>(2);
+
+    Node(String type) {
+      this.type = type;
+    }
+  }
+
+  /**
+   * A class definition: the position of a class in the dex files.
+   */
+  static final class Definition {
+    private final Node node;
+    final int dexIndex;
+    final int classIndex;
+
+    private Definition(Node node, int dexIndex, int classIndex) {
+      this.node = node;
+      this.dexIndex = dexIndex;
+      this.classIndex = classIndex;
+    }
+
+    String getType() {
+      return node.type;
+    }
+  }
+}
@@ -0,0 +1,1152 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.filter.ClassFilter;
+import io.github.neonorbit.dexplore.filter.MethodFilter;
+import io.github.neonorbit.dexplore.iface.Internal;
+import io.github.neonorbit.dexplore.util.DexLog;
+import io.github.neonorbit.dexplore.util.DexUtils;
+import io.github.neonorbit.dexplore.util.Utils;
+import org.jf.dexlib2.ReferenceType;
+import org.jf.dexlib2.ValueType;
+import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.dexbacked.DexBackedField;
+import org.jf.dexlib2.dexbacked.DexBuffer;
+import org.jf.dexlib2.dexbacked.DexReader;
+import org.jf.dexlib2.dexbacked.raw.AnnotationDirectoryItem;
+import org.jf.dexlib2.dexbacked.raw.ClassDefItem;
+import org.jf.dexlib2.dexbacked.raw.HeaderItem;
+import org.jf.dexlib2.dexbacked.raw.FieldIdItem;
+import org.jf.dexlib2.dexbacked.raw.MethodIdItem;
+import org.jf.dexlib2.dexbacked.raw.ProtoIdItem;
+import org.jf.dexlib2.dexbacked.raw.TypeListItem;
+import org.jf.dexlib2.iface.value.EncodedValue;
+import org.jf.dexlib2.iface.value.StringEncodedValue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A per-dex summary of every class definition.
+ * <p>
+ * For each class (by class_def index), the index holds the access flags,
+ * the superclass, the interfaces, the names of the declared methods, the annotation types
+ * and the string and type annotation values of the class and its members,
+ * the number literals, and the string, type, field and method ids referenced
+ * by the code of all of its methods.
+ * <p>
+ * Additionally, for each class and each declared method, it holds the
+ * <em>touched</em> strings: the referenced string literals, and the names and
+ * type descriptors of the referenced types, fields and methods. These are
+ * inverted on demand to map each string to the classes and methods touching it.
+ * Likewise, the number literals of each declared method are held separately,
+ * and the literals are inverted on demand to map each value to the classes and
+ * methods using it. The annotation types and values of each declared method
+ * are held separately too, and all annotations are inverted on demand
+ * to map each type or value to the classes and methods annotated with it.
+ * The superclasses and interfaces are inverted on demand as well,
+ * to map each type to the classes directly extending or implementing it.
+ * <p>
+ * The summary covers synthetic members as well, so it is always a superset of
+ * what the filters check. It can therefore only be used to reject classes,
+ * matching classes must still be verified by the filters.
+ */
+@Internal
+final class DexIndex {
+  private static final int MAGIC = 0x44584958;
+  private static final int VERSION = 5;
+  private static final int TABLES = 12;
+  private static final String EXTENSION = ".dxi";
+
+  private final byte[] signature;
+  private final int[] accessFlags;
+  private final int[] superClasses;
+  private final IntTable strings;
+  private final IntTable types;
+  private final IntTable fields;
+  private final IntTable methods;
+  private final IntTable methodNames;
+  private final IntTable annotations;
+  // string ids of the string values and type descriptors of the type values
+  private final IntTable annotValues;
+  // rows are aligned with methodRefs
+  private final IntTable methodAnnotations;
+  private final IntTable methodAnnotValues;
+  private final IntTable interfaces;
+  private final LongTable literals;
+  // rows are aligned with methodRefs
+  private final LongTable methodLiterals;
+  private final IntTable classRefs;
+  private final IntTable methodRefs;
+  // method_id index of each methodRefs row, rows are grouped by class
+  private final int[] methodIds;
+  private final int[] classMethods;
+  private volatile Postings postings;
+  private volatile LiteralPostings literalPostings;
+  private volatile AnnotationPostings annotationPostings;
+  private volatile HierarchyPostings hierarchyPostings;
+
+  private DexIndex(byte[] signature, int[] accessFlags, int[] superClasses,
+                   int[] methodIds, int[] classMethods,
+                   IntTable[] tables, LongTable[] longTables) {
+    this.signature = signature;
+    this.accessFlags = accessFlags;
+    this.superClasses = superClasses;
+    this.methodIds = methodIds;
+    this.classMethods = classMethods;
+    this.strings = tables[0];
+    this.types = tables[1];
+    this.fields = tables[2];
+    this.methods = tables[3];
+    this.methodNames = tables[4];
+    this.annotations = tables[5];
+    this.classRefs = tables[6];
+    this.methodRefs = tables[7];
+    this.annotValues = tables[8];
+    this.methodAnnotations = tables[9];
+    this.methodAnnotValues = tables[10];
+    this.interfaces = tables[11];
+    this.literals = longTables[0];
+    this.methodLiterals = longTables[1];
+  }
+
+  private LongTable[] getLongTables() {
+    return new LongTable[]{literals, methodLiterals};
+  }
+
+  private IntTable[] getTables() {
+    return new IntTable[]{
+            strings, types, fields, methods, methodNames, annotations,
+            classRefs, methodRefs, annotValues, methodAnnotations, methodAnnotValues, interfaces
+    };
+  }
+
+  int getClassCount() {
+    return accessFlags.length;
+  }
+
+  /**
+   * Loads the index of a dex file.
+   * <p>
+   * If a directory is specified, the index is read from it if available,
+   * otherwise the index is built and saved to the directory.
+   *
+   * @param dexFile the dex file
+   * @param directory the index directory, or null to skip persistence
+   * @return the index, or null if the dex file is not supported
+   */
+  @Nullable
+  static DexIndex load(@Nonnull DexBackedDexFile dexFile, @Nullable File directory) {
+    if (!CodeScanner.isSupported(dexFile)) return null;
+    byte[] signature = readSignature(dexFile);
+    File file = directory == null ? null : new File(directory, Utils.toHex(signature) + EXTENSION);
+    if (file != null && file.isFile()) {
+      try {
+        DexIndex index = read(file);
+        if (Arrays.equals(index.signature, signature) &&
+            index.getClassCount() == dexFile.getClassSection().size()) {
+          return index;
+        }
+        DexLog.w("Index mismatched: " + file.getName());
+      } catch (IOException e) {
+        DexLog.w("Failed to read index: " + file.getName());
+      }
+    }
+    DexIndex index = build(dexFile, signature);
+    if (file != null) {
+      try {
+        index.write(file);
+      } catch (IOException e) {
+        DexLog.w("Failed to write index: " + file.getName());
+      }
+    }
+    return index;
+  }
+
+  private static byte[] readSignature(DexBackedDexFile dexFile) {
+    return dexFile.getBuffer().readByteRange(HeaderItem.SIGNATURE_OFFSET, HeaderItem.SIGNATURE_SIZE);
+  }
+
+  static DexIndex build(@Nonnull DexBackedDexFile dexFile, byte[] signature) {
+    Builder builder = new Builder(dexFile);
+    for (int i = 0, count = dexFile.getClassSection().size(); i < count; i++) {
+      builder.addClass(i);
+    }
+    return builder.build(signature);
+  }
+
+  private static final class Builder implements CodeScanner.Visitor {
+    private final DexBackedDexFile dexFile;
+    private final DexBuffer buffer;
+    private final int[] accessFlags;
+    private final int[] superClasses;
+    private final int[] classMethods;
+    private final IntTable.Builder strings, types, fields, methods;
+    private final IntTable.Builder methodNames, annotations, annotValues;
+    private final IntTable.Builder methodAnnotations, methodAnnotValues;
+    private final IntTable.Builder interfaces;
+    private final IntTable.Builder classRefs, methodRefs;
+    private final LongTable.Builder literals, methodLiterals;
+    private int[] methodIds = new int[64];
+    private int methodCount;
+    // annotation set offsets of the annotated methods of the current class
+    private int[] annotatedMethods = new int[16];
+    private int[] annotationSets = new int[16];
+    private int annotatedCount;
+    // 0: unknown, 1: a system annotation, 2: otherwise
+    private final byte[] systemTypes;
+
+    private Builder(DexBackedDexFile dexFile) {
+      int count = dexFile.getClassSection().size();
+      this.dexFile = dexFile;
+      this.buffer = dexFile.getBuffer();
+      this.accessFlags = new int[count];
+      this.superClasses = new int[count];
+      this.classMethods = new int[count + 1];
+      this.strings = new IntTable.Builder(count);
+      this.types = new IntTable.Builder(count);
+      this.fields = new IntTable.Builder(count);
+      this.methods = new IntTable.Builder(count);
+      this.methodNames = new IntTable.Builder(count);
+      this.annotations = new IntTable.Builder(count);
+      this.annotValues = new IntTable.Builder(count);
+      this.methodAnnotations = new IntTable.Builder(count);
+      this.methodAnnotValues = new IntTable.Builder(count);
+      this.interfaces = new IntTable.Builder(count);
+      this.systemTypes = new byte[dexFile.getTypeSection().size()];
+      this.classRefs = new IntTable.Builder(count);
+      this.methodRefs = new IntTable.Builder(count);
+      this.literals = new LongTable.Builder(count);
+      this.methodLiterals = new LongTable.Builder(count);
+    }
+
+    private void addClass(int classIndex) {
+      int classDefOffset = dexFile.getClassSection().getOffset(classIndex);
+      accessFlags[classIndex] = buffer.readInt(classDefOffset + ClassDefItem.ACCESS_FLAGS_OFFSET);
+      superClasses[classIndex] = buffer.readOptionalUint(classDefOffset + ClassDefItem.SUPERCLASS_OFFSET);
+      collectInterfaces(classDefOffset);
+      collectAnnotations(classDefOffset);
+      CodeScanner.scanMethods(dexFile, classIndex, (methodIndex, flags, codeOffset, direct) -> {
+        int methodIdOffset = dexFile.getMethodSection().getOffset(methodIndex);
+        methodNames.add(buffer.readSmallUint(methodIdOffset + MethodIdItem.NAME_OFFSET));
+        CodeScanner.scanCode(dexFile, codeOffset, this);
+        if (methodCount == methodIds.length) methodIds = Arrays.copyOf(methodIds, methodCount * 2);
+        methodIds[methodCount++] = methodIndex;
+        methodRefs.commit();
+        methodLiterals.commit();
+        for (int i = 0; i < annotatedCount; i++) {
+          if (annotatedMethods[i] == methodIndex) {
+            collectAnnotationSet(annotationSets[i], methodAnnotations, methodAnnotValues);
+          }
+        }
+        methodAnnotations.commit();
+        methodAnnotValues.commit();
+      });
+      classMethods[classIndex + 1] = methodCount;
+      collectStaticValues(dexFile.getClassSection().get(classIndex), strings, literals);
+      for (int i = strings.rowStart(); i < strings.size(); i++) {
+        classRefs.add(strings.get(i));
+      }
+      strings.commit(); types.commit(); fields.commit(); methods.commit();
+      methodNames.commit(); annotations.commit(); literals.commit(); classRefs.commit();
+      annotValues.commit(); interfaces.commit();
+    }
+
+    private void collectInterfaces(int classDefOffset) {
+      int list = buffer.readSmallUint(classDefOffset + ClassDefItem.INTERFACES_OFFSET);
+      if (list == 0) return;
+      DexBuffer data = dexFile.getDataBuffer();
+      int size = data.readSmallUint(list + TypeListItem.SIZE_OFFSET);
+      for (int i = 0; i < size; i++) {
+        interfaces.add(data.readUshort(list + TypeListItem.LIST_OFFSET + i * 2));
+      }
+    }
+
+    private void collectAnnotations(int classDefOffset) {
+      annotatedCount = 0;
+      int directory = buffer.readSmallUint(classDefOffset + ClassDefItem.ANNOTATIONS_OFFSET);
+      if (directory == 0) return;
+      DexBuffer data = dexFile.getDataBuffer();
+      int classSet = data.readSmallUint(directory + AnnotationDirectoryItem.CLASS_ANNOTATIONS_OFFSET);
+      collectAnnotationSet(classSet, annotations, annotValues);
+      int fieldCount = data.readSmallUint(directory + AnnotationDirectoryItem.FIELD_SIZE_OFFSET);
+      int methodCount = data.readSmallUint(directory + AnnotationDirectoryItem.ANNOTATED_METHOD_SIZE_OFFSET);
+      // field and method annotations: [member_idx, annotations_off] pairs
+      int offset = directory + 16;
+      for (int i = 0, size = fieldCount + methodCount; i < size; i++, offset += 8) {
+        int setOffset = data.readSmallUint(offset + 4);
+        collectAnnotationSet(setOffset, annotations, annotValues);
+        if (i < fieldCount) continue;
+        if (annotatedCount == annotatedMethods.length) {
+          annotatedMethods = Arrays.copyOf(annotatedMethods, annotatedCount * 2);
+          annotationSets = Arrays.copyOf(annotationSets, annotatedCount * 2);
+        }
+        annotatedMethods[annotatedCount] = data.readSmallUint(offset);
+        annotationSets[annotatedCount++] = setOffset;
+      }
+    }
+
+    private void collectAnnotationSet(int setOffset, IntTable.Builder types, IntTable.Builder values) {
+      if (setOffset == 0) return;
+      DexBuffer data = dexFile.getDataBuffer();
+      int size = data.readSmallUint(setOffset);
+      for (int i = 0; i < size; i++) {
+        int annotationOffset = data.readSmallUint(setOffset + 4 + i * 4);
+        // annotation_item: [visibility, encoded_annotation: [type_idx, size, elements]]
+        DexReader<? extends DexBuffer> reader = data.readerAt(annotationOffset + 1);
+        int type = reader.readSmallUleb128();
+        types.add(type);
+        // the filters skip the values of system annotations
+        if (isSystemType(type)) continue;
+        for (int k = 0, count = reader.readSmallUleb128(); k < count; k++) {
+          reader.skipUleb128();
+          collectValue(reader, values);
+        }
+      }
+    }
+
+    private void collectValue(DexReader<? extends DexBuffer> reader, IntTable.Builder values) {
+      int header = reader.readUbyte();
+      int valueArg = header >>> 5;
+      switch (header & 0x1f) {
+        case ValueType.STRING:
+          values.add(reader.readSizedSmallUint(valueArg + 1));
+          break;
+        case ValueType.TYPE:
+          values.add(descriptorOf(reader.readSizedSmallUint(valueArg + 1)));
+          break;
+        case ValueType.ARRAY:
+          for (int i = 0, size = reader.readSmallUleb128(); i < size; i++) {
+            collectValue(reader, values);
+          }
+          break;
+        case ValueType.ANNOTATION:
+          reader.skipUleb128();
+          for (int i = 0, size = reader.readSmallUleb128(); i < size; i++) {
+            reader.skipUleb128();
+            collectValue(reader, values);
+          }
+          break;
+        case ValueType.NULL:
+        case ValueType.BOOLEAN:
+          break;
+        default:
+          reader.moveRelative(valueArg + 1);
+      }
+    }
+
+    private boolean isSystemType(int typeIndex) {
+      if (systemTypes[typeIndex] == 0) {
+        String type = dexFile.getTypeSection().get(typeIndex);
+        systemTypes[typeIndex] = (byte) (type.startsWith("Ldalvik/annotation/") ? 1 : 2);
+      }
+      return systemTypes[typeIndex] == 1;
+    }
+
+    private int descriptorOf(int typeIndex) {
+      return buffer.readSmallUint(dexFile.getTypeSection().getOffset(typeIndex));
+    }
+
+    @Override
+    public void visitReference(int type, int index) {
+      switch (type) {
+        case ReferenceType.STRING:
+          strings.add(index);
+          touch(index);
+          break;
+        case ReferenceType.TYPE:
+          types.add(index);
+          touchType(index);
+          break;
+        case ReferenceType.FIELD:
+          fields.add(index);
+          int fieldIdOffset = dexFile.getFieldSection().getOffset(index);
+          touchType(buffer.readUshort(fieldIdOffset + FieldIdItem.CLASS_OFFSET));
+          touchType(buffer.readUshort(fieldIdOffset + FieldIdItem.TYPE_OFFSET));
+          touch(buffer.readSmallUint(fieldIdOffset + FieldIdItem.NAME_OFFSET));
+          break;
+        case ReferenceType.METHOD:
+          methods.add(index);
+          int methodIdOffset = dexFile.getMethodSection().getOffset(index);
+          touchType(buffer.readUshort(methodIdOffset + MethodIdItem.CLASS_OFFSET));
+          touch(buffer.readSmallUint(methodIdOffset + MethodIdItem.NAME_OFFSET));
+          int protoIndex = buffer.readUshort(methodIdOffset + MethodIdItem.PROTO_OFFSET);
+          int protoIdOffset = dexFile.getProtoSection().getOffset(protoIndex);
+          touchType(buffer.readSmallUint(protoIdOffset + ProtoIdItem.RETURN_TYPE_OFFSET));
+          int parameters = buffer.readSmallUint(protoIdOffset + ProtoIdItem.PARAMETERS_OFFSET);
+          if (parameters != 0) {
+            DexBuffer data = dexFile.getDataBuffer();
+            int size = data.readSmallUint(parameters + TypeListItem.SIZE_OFFSET);
+            for (int i = 0; i < size; i++) {
+              touchType(data.readUshort(parameters + TypeListItem.LIST_OFFSET + i * 2));
+            }
+          }
+          break;
+      }
+    }
+
+    @Override
+    public void visitLiteral(long literal) {
+      literals.add(literal);
+      methodLiterals.add(literal);
+    }
+
+    private void touchType(int typeIndex) {
+      touch(descriptorOf(typeIndex));
+    }
+
+    private void touch(int stringIndex) {
+      classRefs.add(stringIndex);
+      methodRefs.add(stringIndex);
+    }
+
+    private DexIndex build(byte[] signature) {
+      IntTable[] tables = {
+              strings.build(), types.build(), fields.build(), methods.build(),
+              methodNames.build(), annotations.build(), classRefs.build(), methodRefs.build(),
+              annotValues.build(), methodAnnotations.build(), methodAnnotValues.build(),
+              interfaces.build()
+      };
+      LongTable[] longTables = {literals.build(), methodLiterals.build()};
+      return new DexIndex(signature, accessFlags, superClasses,
+              Arrays.copyOf(methodIds, methodCount), classMethods, tables, longTables);
+    }
+  }
+
+  private static void collectStaticValues(DexBackedClassDef dexClass,
+                                          IntTable.Builder strings,
+                                          LongTable.Builder literals) {
+    Set<Long> numbers = new HashSet<>();
+    for (DexBackedField field : dexClass.getStaticFields()) {
+      EncodedValue value = field.getInitialValue();
+      if (value != null && value.getValueType() == ValueType.STRING) {
+        int index = DexLookup.findString(dexClass.dexFile, ((StringEncodedValue) value).getValue());
+        if (index != DexLookup.NOT_FOUND) strings.add(index);
+      } else {
+        DexDecoder.decodeNumberLiterals(field, numbers);
+      }
+    }
+    numbers.forEach(literals::add);
+  }
+
+  /**
+   * Creates a query for rejecting the classes that cannot be matched by the given filters.
+   *
+   * @param dexFile the dex file this index belongs to
+   * @param classFilter the class filter
+   * @param methodFilter an optional method filter, for method searches
+   * @return a query, or null if the filters have no indexed criteria
+   */
+  @Nullable
+  Query newQuery(@Nonnull DexBackedDexFile dexFile,
+                 @Nonnull ClassFilter classFilter,
+                 @Nullable MethodFilter methodFilter) {
+    Query query = new Query();
+    query.flag = classFilter.modifiers();
+    query.skipFlag = classFilter.skippedModifiers();
+    if (classFilter.superClass() != null) {
+      query.superClass = resolveType(dexFile, classFilter.superClass(), query);
+    }
+    query.annotations = resolveTypes(dexFile, classFilter.annotations(), query);
+    query.literals = toSortedArray(classFilter.numLiterals());
+    query.candidates = resolveReferences(dexFile, classFilter.requiredReferences(), false, query);
+    int[] subtypes = resolveHierarchy(dexFile, classFilter.interfaces(), query);
+    if (subtypes != null) query.candidates = intersect(query.candidates, subtypes);
+    int[] annotated = resolveAnnotations(dexFile, query.annotations, classFilter.annotationValues(), false, query);
+    if (annotated != null) query.candidates = intersect(query.candidates, annotated);
+    if (query.literals != null) {
+      query.candidates = intersect(query.candidates, resolveLiterals(query.literals, false));
+    }
+    if (methodFilter != null) {
+      if (methodFilter.methodNames() != null) {
+        int[] names = methodFilter.methodNames().stream()
+                .mapToInt(name -> DexLookup.findString(dexFile, name))
+                .filter(index -> index != DexLookup.NOT_FOUND)
+                .sorted().toArray();
+        if (names.length == 0) query.empty = true;
+        query.methodNames = names;
+      }
+      query.methodAnnotations = resolveTypes(dexFile, methodFilter.annotations(), query);
+      query.methodLiterals = toSortedArray(methodFilter.numLiterals());
+      int[] rows = resolveReferences(dexFile, methodFilter.requiredReferences(), true, query);
+      int[] annotatedRows = resolveAnnotations(dexFile, query.methodAnnotations,
+              methodFilter.annotationValues(), true, query);
+      if (annotatedRows != null) rows = intersect(rows, annotatedRows);
+      if (query.methodLiterals != null) {
+        rows = intersect(rows, resolveLiterals(query.methodLiterals, true));
+      }
+      if (rows != null) {
+        query.methodCandidates = toMethodIds(rows);
+        query.candidates = intersect(query.candidates, toClasses(rows));
+      }
+    }
+    if (query.candidates != null && query.candidates.length == 0) {
+      query.empty = true;
+    }
+    return query.isTrivial() ? null : query;
+  }
+
+  private static int resolveType(DexBackedDexFile dexFile, String type, Query query) {
+    int index = DexLookup.findType(dexFile, type);
+    if (index == DexLookup.NOT_FOUND) query.empty = true;
+    return index;
+  }
+
+  private static int[] resolveTypes(DexBackedDexFile dexFile, Set<String> types, Query query) {
+    if (types == null) return null;
+    return types.stream().mapToInt(type -> resolveType(dexFile, type, query)).sorted().toArray();
+  }
+
+  private static long[] toSortedArray(Set<Long> values) {
+    return values == null ? null : values.stream().mapToLong(Long::longValue).sorted().toArray();
+  }
+
+  /**
+   * Resolves the candidates touching the required references.
+   *
+   * @param clauses the {@linkplain io.github.neonorbit.dexplore.filter.BaseFilter#requiredReferences() requirements}
+   * @param methodLevel whether to resolve methodRefs rows instead of classes
+   * @return sorted candidates, or null if there are no requirements
+   */
+  private int[] resolveReferences(DexBackedDexFile dexFile, @Nullable List<Set<String>> clauses,
+                                  boolean methodLevel, Query query) {
+    if (clauses == null || clauses.isEmpty() || query.empty) return null;
+    Postings postings = getPostings(dexFile);
+    IntTable table = methodLevel ? postings.methods : postings.classes;
+    int[] result = null;
+    for (Set<String> clause : clauses) {
+      int[] union = new int[0];
+      for (String value : clause) {
+        for (String candidate : new String[]{value, DexUtils.javaToDexTypeName(value)}) {
+          int index = DexLookup.findString(dexFile, candidate);
+          if (index != DexLookup.NOT_FOUND) union = union(union, table.row(index));
+        }
+      }
+      result = intersect(result, union);
+      if (result.length == 0) break;
+    }
+    return result;
+  }
+
+  /**
+   * Resolves the candidates directly extending the superclass of the query
+   * and implementing all the given interfaces.
+   *
+   * @param interfaces the interface descriptors, or null if there are no interfaces
+   * @return sorted candidates, or null if there are no requirements
+   */
+  @Nullable
+  private int[] resolveHierarchy(DexBackedDexFile dexFile, @Nullable List<String> interfaces, Query query) {
+    boolean hasInterfaces = interfaces != null && !interfaces.isEmpty();
+    if ((query.superClass == Query.UNSET && !hasInterfaces) || query.empty) return null;
+    HierarchyPostings postings = getHierarchyPostings(dexFile);
+    int[] result = query.superClass == Query.UNSET ? null : postings.subclasses.row(query.superClass);
+    if (hasInterfaces) {
+      for (String type : interfaces) {
+        int index = resolveType(dexFile, type, query);
+        if (index == DexLookup.NOT_FOUND) return new int[0];
+        result = intersect(result, postings.implementors.row(index));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Resolves the candidates annotated with all the given types and values.
+   *
+   * @param types the resolved annotation types, or null if there are no types
+   * @param values the annotation values, or null if there are no values
+   * @param methodLevel whether to resolve methodRefs rows instead of classes
+   * @return sorted candidates, or null if there are no requirements
+   */
+  @Nullable
+  private int[] resolveAnnotations(DexBackedDexFile dexFile, @Nullable int[] types,
+                                   @Nullable Set<String> values, boolean methodLevel, Query query) {
+    if ((types == null && values == null) || query.empty) return null;
+    AnnotationPostings postings = getAnnotationPostings(dexFile);
+    int[] result = null;
+    if (types != null) {
+      IntTable table = methodLevel ? postings.methodTypes : postings.classTypes;
+      for (int type : types) {
+        result = intersect(result, table.row(type));
+        if (result.length == 0) return result;
+      }
+    }
+    if (values != null) {
+      IntTable table = methodLevel ? postings.methodValues : postings.classValues;
+      for (String value : values) {
+        int[] union = new int[0];
+        for (String candidate : new String[]{value, DexUtils.javaToDexTypeName(value)}) {
+          int index = DexLookup.findString(dexFile, candidate);
+          if (index != DexLookup.NOT_FOUND) union = union(union, table.row(index));
+        }
+        result = intersect(result, union);
+        if (result.length == 0) return result;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Resolves the candidates using all the given literals.
+   *
+   * @param literals the required literals
+   * @param methodLevel whether to resolve methodRefs rows instead of classes
+   * @return sorted candidates
+   */
+  private int[] resolveLiterals(long[] literals, boolean methodLevel) {
+    LiteralPostings postings = getLiteralPostings();
+    LongPostings table = methodLevel ? postings.methods : postings.classes;
+    int[] result = null;
+    for (long literal : literals) {
+      result = intersect(result, table.rows(literal));
+      if (result.length == 0) break;
+    }
+    return result;
+  }
+
+  private int[] toMethodIds(int[] rows) {
+    int[] ids = new int[rows.length];
+    for (int i = 0; i < rows.length; i++) ids[i] = methodIds[rows[i]];
+    Arrays.sort(ids);
+    return ids;
+  }
+
+  private int[] toClasses(int[] rows) {
+    int[] classes = new int[rows.length];
+    int size = 0;
+    for (int row : rows) {
+      int index = Arrays.binarySearch(classMethods, row);
+      // classMethods holds the first row of each class, skip empty classes
+      if (index < 0) index = -index - 2;
+      else while (classMethods[index + 1] == row) index++;
+      if (size == 0 || classes[size - 1] != index) classes[size++] = index;
+    }
+    return Arrays.copyOf(classes, size);
+  }
+
+  private Postings getPostings(DexBackedDexFile dexFile) {
+    if (postings == null) {
+      synchronized (this) {
+        if (postings == null) {
+          int strings = dexFile.getStringSection().size();
+          postings = new Postings(classRefs.invert(strings), methodRefs.invert(strings));
+        }
+      }
+    }
+    return postings;
+  }
+
+  private AnnotationPostings getAnnotationPostings(DexBackedDexFile dexFile) {
+    if (annotationPostings == null) {
+      synchronized (this) {
+        if (annotationPostings == null) {
+          int types = dexFile.getTypeSection().size();
+          int strings = dexFile.getStringSection().size();
+          annotationPostings = new AnnotationPostings(
+                  annotations.invert(types), annotValues.invert(strings),
+                  methodAnnotations.invert(types), methodAnnotValues.invert(strings));
+        }
+      }
+    }
+    return annotationPostings;
+  }
+
+  private HierarchyPostings getHierarchyPostings(DexBackedDexFile dexFile) {
+    if (hierarchyPostings == null) {
+      synchronized (this) {
+        if (hierarchyPostings == null) {
+          IntTable.Builder builder = new IntTable.Builder(superClasses.length);
+          for (int superClass : superClasses) {
+            if (superClass >= 0) builder.add(superClass);
+            builder.commit();
+          }
+          int types = dexFile.getTypeSection().size();
+          hierarchyPostings = new HierarchyPostings(builder.build().invert(types), interfaces.invert(types));
+        }
+      }
+    }
+    return hierarchyPostings;
+  }
+
+  private LiteralPostings getLiteralPostings() {
+    if (literalPostings == null) {
+      synchronized (this) {
+        if (literalPostings == null) {
+          literalPostings = new LiteralPostings(literals.invert(), methodLiterals.invert());
+        }
+      }
+    }
+    return literalPostings;
+  }
+
+  private static int[] union(int[] a, int[] b) {
+    if (a.length == 0) return b;
+    int[] result = new int[a.length + b.length];
+    int i = 0, j = 0, k = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] < b[j]) result[k++] = a[i++];
+      else if (a[i] > b[j]) result[k++] = b[j++];
+      else { result[k++] = a[i++]; j++; }
+    }
+    while (i < a.length) result[k++] = a[i++];
+    while (j < b.length) result[k++] = b[j++];
+    return Arrays.copyOf(result, k);
+  }
+
+  static int[] intersect(@Nullable int[] a, @Nonnull int[] b) {
+    if (a == null) return b;
+    int[] result = new int[Math.min(a.length, b.length)];
+    int i = 0, j = 0, k = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] < b[j]) i++;
+      else if (a[i] > b[j]) j++;
+      else { result[k++] = a[i++]; j++; }
+    }
+    return Arrays.copyOf(result, k);
+  }
+
+  /**
+   * Inverted references: string index to the classes and the methodRefs rows touching it.
+   */
+  private static final class Postings {
+    private final IntTable classes;
+    private final IntTable methods;
+
+    private Postings(IntTable classes, IntTable methods) {
+      this.classes = classes;
+      this.methods = methods;
+    }
+  }
+
+  /**
+   * Inverted literals: number literal to the classes and the methodRefs rows using it.
+   */
+  private static final class LiteralPostings {
+    private final LongPostings classes;
+    private final LongPostings methods;
+
+    private LiteralPostings(LongPostings classes, LongPostings methods) {
+      this.classes = classes;
+      this.methods = methods;
+    }
+  }
+
+  /**
+   * Inverted annotations: annotation type or value to the classes and the methodRefs rows annotated with it.
+   */
+  private static final class AnnotationPostings {
+    private final IntTable classTypes;
+    private final IntTable classValues;
+    private final IntTable methodTypes;
+    private final IntTable methodValues;
+
+    private AnnotationPostings(IntTable classTypes, IntTable classValues,
+                               IntTable methodTypes, IntTable methodValues) {
+      this.classTypes = classTypes;
+      this.classValues = classValues;
+      this.methodTypes = methodTypes;
+      this.methodValues = methodValues;
+    }
+  }
+
+  /**
+   * Inverted hierarchy: type to the classes directly extending or implementing it.
+   */
+  private static final class HierarchyPostings {
+    private final IntTable subclasses;
+    private final IntTable implementors;
+
+    private HierarchyPostings(IntTable subclasses, IntTable implementors) {
+      this.subclasses = subclasses;
+      this.implementors = implementors;
+    }
+  }
+
+  final class Query {
+    private static final int NEG = -1;
+    private static final int UNSET = -2;
+
+    private boolean empty;
+    private int flag = NEG;
+    private int skipFlag = NEG;
+    private int superClass = UNSET;
+    private int[] annotations;
+    private long[] literals;
+    private int[] candidates;
+    private int[] methodNames;
+    private int[] methodAnnotations;
+    private long[] methodLiterals;
+    private int[] methodCandidates;
+
+    private Query() {}
+
+    private boolean isTrivial() {
+      return !empty && flag == NEG && skipFlag == NEG && superClass == UNSET &&
+             annotations == null && literals == null && candidates == null &&
+             methodNames == null && methodAnnotations == null && methodLiterals == null;
+    }
+
+    /**
+     * @return true if no class of the dex file can be matched
+     */
+    boolean isEmpty() {
+      return empty;
+    }
+
+    /**
+     * @return sorted indices of the candidate classes, or null if all classes are candidates
+     */
+    @Nullable
+    int[] getCandidates() {
+      return candidates;
+    }
+
+    /**
+     * @param classIndex index of the class in the class_defs section
+     * @return true if the class is one of the {@linkplain #getCandidates() candidates}
+     */
+    boolean isCandidate(int classIndex) {
+      return candidates == null || Arrays.binarySearch(candidates, classIndex) >= 0;
+    }
+
+    /**
+     * @param classIndex index of the class in the class_defs section
+     * @return false if the class cannot be matched
+     */
+    boolean test(int classIndex) {
+      int classFlags = accessFlags[classIndex];
+      return !empty &&
+             (flag == NEG || (classFlags & flag) == flag) &&
+             (skipFlag == NEG || (classFlags & skipFlag) == 0) &&
+             (superClass == UNSET || superClasses[classIndex] == superClass) &&
+             (annotations == null || DexIndex.this.annotations.containsAll(classIndex, annotations)) &&
+             (literals == null || DexIndex.this.literals.containsAll(classIndex, literals)) &&
+             (methodNames == null || DexIndex.this.methodNames.containsAny(classIndex, methodNames)) &&
+             (methodAnnotations == null || DexIndex.this.annotations.containsAll(classIndex, methodAnnotations)) &&
+             (methodLiterals == null || DexIndex.this.literals.containsAll(classIndex, methodLiterals));
+    }
+
+    /**
+     * @param methodIndex index of the method in the method_ids section
+     * @return false if the method cannot be matched
+     */
+    boolean testMethod(int methodIndex) {
+      return methodCandidates == null || Arrays.binarySearch(methodCandidates, methodIndex) >= 0;
+    }
+  }
+
+  private void write(File file) throws IOException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Failed to create directory: " + parent);
+    }
+    // unique per writer, published atomically once complete
+    File temp = File.createTempFile(file.getName(), ".tmp", parent);
+    try {
+      writeTo(temp);
+      try {
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                   StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      //noinspection ResultOfMethodCallIgnored
+      temp.delete();
+    }
+  }
+
+  private void writeTo(File temp) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.write(signature);
+      writeInts(out, accessFlags);
+      writeInts(out, superClasses);
+      writeInts(out, methodIds);
+      writeInts(out, classMethods);
+      for (IntTable table : getTables()) {
+        writeInts(out, table.offsets);
+        writeInts(out, table.values);
+      }
+      for (LongTable table : getLongTables()) {
+        writeInts(out, table.offsets);
+        out.writeInt(table.values.length);
+        for (long value : table.values) out.writeLong(value);
+      }
+    }
+  }
+
+  private static DexIndex read(File file) throws IOException {
+    try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Unsupported index: " + file);
+      }
+      byte[] signature = new byte[HeaderItem.SIGNATURE_SIZE];
+      in.readFully(signature);
+      int[] accessFlags = readInts(in);
+      int[] superClasses = readInts(in);
+      int[] methodIds = readInts(in);
+      int[] classMethods = readInts(in);
+      IntTable[] tables = new IntTable[TABLES];
+      for (int i = 0; i < tables.length; i++) {
+        tables[i] = new IntTable(readInts(in), readInts(in));
+      }
+      LongTable[] longTables = new LongTable[2];
+      for (int i = 0; i < longTables.length; i++) {
+        int[] offsets = readInts(in);
+        long[] values = new long[in.readInt()];
+        for (int k = 0; k < values.length; k++) values[k] = in.readLong();
+        longTables[i] = new LongTable(offsets, values);
+      }
+      return new DexIndex(signature, accessFlags, superClasses, methodIds,
+              classMethods, tables, longTables);
+    }
+  }
+
+  private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+    out.writeInt(values.length);
+    for (int value : values) out.writeInt(value);
+  }
+
+  private static int[] readInts(DataInputStream in) throws IOException {
+    int[] values = new int[in.readInt()];
+    for (int i = 0; i < values.length; i++) values[i] = in.readInt();
+    return values;
+  }
+
+  /**
+   * Sorted and deduplicated int rows.
+   */
+  static final class IntTable {
+    final int[] offsets;
+    final int[] values;
+
+    IntTable(int[] offsets, int[] values) {
+      this.offsets = offsets;
+      this.values = values;
+    }
+
+    int[] row(int row) {
+      return Arrays.copyOfRange(values, offsets[row], offsets[row + 1]);
+    }
+
+    boolean contains(int row, int value) {
+      return Arrays.binarySearch(values, offsets[row], offsets[row + 1], value) >= 0;
+    }
+
+    boolean containsAll(int row, int[] sorted) {
+      if (offsets[row + 1] - offsets[row] < sorted.length) return false;
+      for (int value : sorted) {
+        if (!contains(row, value)) return false;
+      }
+      return true;
+    }
+
+    boolean containsAny(int row, int[] sorted) {
+      for (int value : sorted) {
+        if (contains(row, value)) return true;
+      }
+      return false;
+    }
+
+    /**
+     * @param range the exclusive upper bound of the values
+     * @return a table mapping each value to the rows containing it
+     */
+    IntTable invert(int range) {
+      int[] inverted = new int[range + 1];
+      for (int value : values) inverted[value + 1]++;
+      for (int i = 0; i < range; i++) inverted[i + 1] += inverted[i];
+      int[] position = Arrays.copyOf(inverted, range);
+      int[] rows = new int[values.length];
+      for (int row = 0; row < offsets.length - 1; row++) {
+        for (int i = offsets[row]; i < offsets[row + 1]; i++) {
+          rows[position[values[i]]++] = row;
+        }
+      }
+      return new IntTable(inverted, rows);
+    }
+
+    static final class Builder {
+      private int size;
+      private int[] values = new int[64];
+      private int[] offsets;
+      private int row;
+
+      Builder(int rows) {
+        this.offsets = new int[rows + 1];
+      }
+
+      void add(int value) {
+        if (size == values.length) values = Arrays.copyOf(values, size * 2);
+        values[size++] = value;
+      }
+
+      int rowStart() {
+        return offsets[row];
+      }
+
+      int size() {
+        return size;
+      }
+
+      int get(int index) {
+        return values[index];
+      }
+
+      void commit() {
+        int start = offsets[row];
+        Arrays.sort(values, start, size);
+        int last = start;
+        for (int i = start; i < size; i++) {
+          if (i == start || values[i] != values[last - 1]) values[last++] = values[i];
+        }
+        size = last;
+        if (row + 1 == offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        offsets[++row] = size;
+      }
+
+      IntTable build() {
+        return new IntTable(Arrays.copyOf(offsets, row + 1), Arrays.copyOf(values, size));
+      }
+    }
+  }
+
+  /**
+   * Sorted and deduplicated long rows.
+   */
+  static final class LongTable {
+    final int[] offsets;
+    final long[] values;
+
+    LongTable(int[] offsets, long[] values) {
+      this.offsets = offsets;
+      this.values = values;
+    }
+
+    boolean contains(int row, long value) {
+      return Arrays.binarySearch(values, offsets[row], offsets[row + 1], value) >= 0;
+    }
+
+    boolean containsAll(int row, long[] sorted) {
+      if (offsets[row + 1] - offsets[row] < sorted.length) return false;
+      for (long value : sorted) {
+        if (!contains(row, value)) return false;
+      }
+      return true;
+    }
+
+    /**
+     * @return postings mapping each value to the rows containing it
+     */
+    LongPostings invert() {
+      long[] keys = values.clone();
+      Arrays.sort(keys);
+      int count = 0;
+      for (int i = 0; i < keys.length; i++) {
+        if (i == 0 || keys[i] != keys[count - 1]) keys[count++] = keys[i];
+      }
+      keys = Arrays.copyOf(keys, count);
+      int[] keyIndices = new int[values.length];
+      int[] inverted = new int[count + 1];
+      for (int i = 0; i < values.length; i++) {
+        keyIndices[i] = Arrays.binarySearch(keys, values[i]);
+        inverted[keyIndices[i] + 1]++;
+      }
+      for (int i = 0; i < count; i++) inverted[i + 1] += inverted[i];
+      int[] position = Arrays.copyOf(inverted, count);
+      int[] rows = new int[values.length];
+      for (int row = 0; row < offsets.length - 1; row++) {
+        for (int i = offsets[row]; i < offsets[row + 1]; i++) {
+          rows[position[keyIndices[i]]++] = row;
+        }
+      }
+      return new LongPostings(keys, new IntTable(inverted, rows));
+    }
+
+    static final class Builder {
+      private int size;
+      private long[] values = new long[64];
+      private int[] offsets;
+      private int row;
+
+      Builder(int rows) {
+        this.offsets = new int[rows + 1];
+      }
+
+      void add(long value) {
+        if (size == values.length) values = Arrays.copyOf(values, size * 2);
+        values[size++] = value;
+      }
+
+      void commit() {
+        int start = offsets[row];
+        Arrays.sort(values, start, size);
+        int last = start;
+        for (int i = start; i < size; i++) {
+          if (i == start || values[i] != values[last - 1]) values[last++] = values[i];
+        }
+        size = last;
+        if (row + 1 == offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        offsets[++row] = size;
+      }
+
+      LongTable build() {
+        return new LongTable(Arrays.copyOf(offsets, row + 1), Arrays.copyOf(values, size));
+      }
+    }
+  }
+
+  /**
+   * Sorted distinct values, each with the sorted rows containing it.
+   */
+  static final class LongPostings {
+    private final long[] keys;
+    private final IntTable rows;
+
+    LongPostings(long[] keys, IntTable rows) {
+      this.keys = keys;
+      this.rows = rows;
+    }
+
+    int[] rows(long value) {
+      int index = Arrays.binarySearch(keys, value);
+      return index < 0 ? new int[0] : rows.row(index);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.iface.Internal;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Resolves values to their indices in the sorted id sections of a dex file.
+ */
+@Internal
+final class DexLookup {
+  static final int NOT_FOUND = -1;
+
+  private DexLookup() {
+    throw new AssertionError();
+  }
+
+  /**
+   * @return index of the string in the string_ids section, or {@link #NOT_FOUND}
+   */
+  static int findString(@Nonnull DexBackedDexFile dexFile, @Nonnull String value) {
+    return find(dexFile.getStringSection(), value);
+  }
+
+  /**
+   * @param descriptor a dex type descriptor, eg: {@code Ljava/lang/Object;}
+   * @return index of the type in the type_ids section, or {@link #NOT_FOUND}
+   */
+  static int findType(@Nonnull DexBackedDexFile dexFile, @Nonnull String descriptor) {
+    return find(dexFile.getTypeSection(), descriptor);
+  }
+
+  /**
+   * @param prefix a type descriptor prefix, eg: {@code Ljava/lang/}
+   * @return indices of the first type starting with the prefix and of the first one
+   *         past them, or null if the prefix cannot be located by a binary search
+   */
+  @Nullable
+  static int[] findTypeRange(@Nonnull DexBackedDexFile dexFile, @Nonnull String prefix) {
+    if (!isOrderSafe(prefix)) return null;
+    List<String> section = dexFile.getTypeSection();
+    int low = 0, high = section.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (section.get(mid).compareTo(prefix) < 0) low = mid + 1;
+      else high = mid;
+    }
+    int end = low;
+    while (end < section.size() && section.get(end).startsWith(prefix)) end++;
+    return new int[]{low, end};
+  }
+
+  private static int find(List<String> section, String value) {
+    if (!isOrderSafe(value)) return section.indexOf(value);
+    int low = 0, high = section.size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = section.get(mid).compareTo(value);
+      if (cmp < 0) low = mid + 1;
+      else if (cmp > 0) high = mid - 1;
+      else return mid;
+    }
+    return NOT_FOUND;
+  }
+
+  // The id sections are sorted by code points, String::compareTo compares code units.
+  // Both orders agree unless surrogates or higher characters are involved.
+  // A value free of them compares the same way in both orders with any string.
+  private static boolean isOrderSafe(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      if (value.charAt(i) >= Character.MIN_SURROGATE) return false;
+    }
+    return true;
+  }
+}
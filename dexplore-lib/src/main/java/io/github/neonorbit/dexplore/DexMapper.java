@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.iface.Internal;
+import io.github.neonorbit.dexplore.util.DexLog;
+import io.github.neonorbit.dexplore.util.Utils;
+import org.jf.dexlib2.dexbacked.raw.HeaderItem;
+
+import javax.annotation.Nonnull;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads dex entries of a zip file through memory-mapped files.
+ * <p>
+ * Stored (uncompressed) entries are mapped directly from the zip file.
+ * Compressed entries are inflated once into a cache file, identified by
+ * the SHA-1 signature of the dex file, which is then mapped as well.
+ * Cache files are reused by later instances, even across processes,
+ * once their content is verified against the signature.
+ * The least recently used cache files are deleted beyond {@link #MAX_CACHE_SIZE}.
+ * <p>
+ * <b>Note:</b> dexlib2 only reads dex files from heap arrays.
+ * The mapped data is copied into an array of the exact size on each load,
+ * so a loaded dex file still occupies its full size on the heap.
+ * Only the reloads are cheaper, they neither inflate nor read the zip file again.
+ */
+@Internal
+final class DexMapper {
+  private static final String EXTENSION = ".dex";
+  private static final int EOCD_SIGNATURE = 0x06054b50;
+  private static final int CEN_SIGNATURE = 0x02014b50;
+  private static final int LOC_SIGNATURE = 0x04034b50;
+  private static final int EOCD_SIZE = 22;
+  private static final int CEN_SIZE = 46;
+  private static final int LOC_SIZE = 30;
+  private static final int MAX_COMMENT_SIZE = 0xFFFF;
+  private static final int HEADER_SIZE = HeaderItem.SIGNATURE_OFFSET + HeaderItem.SIGNATURE_SIZE;
+  private static final long MAX_CACHE_SIZE = 1L << 30;
+  private static final long STALE_TEMP_AGE = 60 * 60 * 1000;
+
+  private final File zipFile;
+  private final File cacheDirectory;
+  private final Map<String, MappedByteBuffer> mapped = new HashMap<>();
+  private Map<String, Long> localHeaders;
+
+  DexMapper(@Nonnull File zipFile, @Nonnull File cacheDirectory) {
+    this.zipFile = zipFile;
+    this.cacheDirectory = cacheDirectory;
+  }
+
+  @Nonnull
+  static File getDefaultCacheDirectory() {
+    return new File(System.getProperty("java.io.tmpdir"), "dexplore");
+  }
+
+  /**
+   * @return the content of the entry, copied from its mapped region
+   */
+  @Nonnull
+  synchronized byte[] read(@Nonnull ZipFile zip, @Nonnull ZipEntry entry) throws IOException {
+    ByteBuffer buffer = mapped.get(entry.getName());
+    if (buffer == null) {
+      try {
+        buffer = map(zip, entry);
+      } catch (IOException e) {
+        DexLog.w("Failed to map dex entry: " + entry.getName());
+        return inflate(zip, entry);
+      }
+      mapped.put(entry.getName(), (MappedByteBuffer) buffer);
+    }
+    byte[] bytes = new byte[buffer.capacity()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  private MappedByteBuffer map(ZipFile zip, ZipEntry entry) throws IOException {
+    if (entry.getMethod() == ZipEntry.STORED) {
+      long offset = getDataOffset(entry.getName());
+      if (offset >= 0) return map(zipFile, offset, entry.getSize());
+    }
+    File file = extract(zip, entry);
+    return map(file, 0, file.length());
+  }
+
+  private static MappedByteBuffer map(File file, long offset, long size) throws IOException {
+    if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+      throw new IOException("Invalid dex size: " + size);
+    }
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+    }
+  }
+
+  private File extract(ZipFile zip, ZipEntry entry) throws IOException {
+    try (InputStream input = zip.getInputStream(entry)) {
+      byte[] header = new byte[HEADER_SIZE];
+      readFully(input, header, header.length);
+      byte[] signature = Arrays.copyOfRange(header, HeaderItem.SIGNATURE_OFFSET, HEADER_SIZE);
+      File file = new File(cacheDirectory, Utils.toHex(signature) + EXTENSION);
+      if (isIntact(file, header, entry.getSize())) {
+        //noinspection ResultOfMethodCallIgnored
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+      }
+      if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+        throw new IOException("Failed to create directory: " + cacheDirectory);
+      }
+      DexLog.d("Extracting: " + entry.getName());
+      // unique per writer, published atomically once complete
+      File temp = File.createTempFile(file.getName(), ".tmp", cacheDirectory);
+      try {
+        try (OutputStream output = new FileOutputStream(temp)) {
+          output.write(header);
+          byte[] buffer = new byte[8192];
+          for (int n; (n = input.read(buffer)) > 0;) {
+            output.write(buffer, 0, n);
+          }
+        }
+        try {
+          Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                     StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+      } finally {
+        //noinspection ResultOfMethodCallIgnored
+        temp.delete();
+      }
+      trimCache(file);
+      return file;
+    }
+  }
+
+  /**
+   * Checks a cache file before reusing it.
+   * <p>
+   * The cache directory may be shared, so the file must have the header of the entry
+   * and its content must match the SHA-1 signature of the header.
+   * Files of dex entries with an invalid signature are never reused.
+   */
+  private static boolean isIntact(File file, byte[] header, long size) {
+    if (!file.isFile() || file.length() != size) return false;
+    try {
+      ByteBuffer buffer = map(file, 0, size);
+      byte[] actual = new byte[HEADER_SIZE];
+      buffer.get(actual);
+      if (!Arrays.equals(actual, header)) return false;
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      digest.update(buffer);
+      byte[] signature = Arrays.copyOfRange(header, HeaderItem.SIGNATURE_OFFSET, HEADER_SIZE);
+      return MessageDigest.isEqual(signature, digest.digest());
+    } catch (IOException | NoSuchAlgorithmException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Deletes the least recently used cache files beyond {@link #MAX_CACHE_SIZE},
+   * and the temporary files abandoned by interrupted extractions.
+   */
+  private void trimCache(File keep) {
+    File[] files = cacheDirectory.listFiles();
+    if (files == null) return;
+    long now = System.currentTimeMillis(), total = 0;
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+    for (File file : files) {
+      String name = file.getName();
+      if (name.endsWith(".tmp") ? now - file.lastModified() > STALE_TEMP_AGE :
+          name.endsWith(EXTENSION) && (total += file.length()) > MAX_CACHE_SIZE && !file.equals(keep)) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+      }
+    }
+  }
+
+  private static byte[] inflate(ZipFile zip, ZipEntry entry) throws IOException {
+    long size = entry.getSize();
+    if (size < 0 || size > Integer.MAX_VALUE) {
+      throw new IOException("Invalid dex size: " + size);
+    }
+    try (InputStream input = zip.getInputStream(entry)) {
+      byte[] bytes = new byte[(int) size];
+      readFully(input, bytes, bytes.length);
+      return bytes;
+    }
+  }
+
+  private static void readFully(InputStream input, byte[] bytes, int length) throws IOException {
+    for (int n, read = 0; read < length; read += n) {
+      if ((n = input.read(bytes, read, length - read)) < 0) throw new EOFException();
+    }
+  }
+
+  /**
+   * @return offset of the entry data within the zip file, or -1 if unknown
+   */
+  private long getDataOffset(String name) throws IOException {
+    if (localHeaders == null) {
+      localHeaders = readLocalHeaders();
+    }
+    Long header = localHeaders.get(name);
+    if (header == null) return -1;
+    try (FileChannel channel = FileChannel.open(zipFile.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer local = ByteBuffer.allocate(LOC_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      if (channel.read(local, header) != LOC_SIZE || local.getInt(0) != LOC_SIGNATURE) return -1;
+      return header + LOC_SIZE + (local.getShort(26) & 0xFFFF) + (local.getShort(28) & 0xFFFF);
+    }
+  }
+
+  /**
+   * Reads the central directory to locate the local headers of stored entries.
+   * Zip64 archives are not supported, their entries are always extracted.
+   */
+  private Map<String, Long> readLocalHeaders() throws IOException {
+    Map<String, Long> headers = new HashMap<>();
+    try (FileChannel channel = FileChannel.open(zipFile.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      int tail = (int) Math.min(size, EOCD_SIZE + MAX_COMMENT_SIZE);
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, size - tail, tail)
+                                 .order(ByteOrder.LITTLE_ENDIAN);
+      int eocd = tail - EOCD_SIZE;
+      while (eocd >= 0 && buffer.getInt(eocd) != EOCD_SIGNATURE) eocd--;
+      if (eocd < 0) return headers;
+      long cenSize = buffer.getInt(eocd + 12) & 0xFFFFFFFFL;
+      long cenOffset = buffer.getInt(eocd + 16) & 0xFFFFFFFFL;
+      if (cenSize == 0xFFFFFFFFL || cenOffset == 0xFFFFFFFFL || cenOffset + cenSize > size) {
+        return headers;
+      }
+      ByteBuffer cen = channel.map(FileChannel.MapMode.READ_ONLY, cenOffset, cenSize)
+                              .order(ByteOrder.LITTLE_ENDIAN);
+      for (int pos = 0; pos + CEN_SIZE <= cenSize && cen.getInt(pos) == CEN_SIGNATURE;) {
+        int method = cen.getShort(pos + 10) & 0xFFFF;
+        int nameLength = cen.getShort(pos + 28) & 0xFFFF;
+        int extraLength = cen.getShort(pos + 30) & 0xFFFF;
+        int commentLength = cen.getShort(pos + 32) & 0xFFFF;
+        long header = cen.getInt(pos + 42) & 0xFFFFFFFFL;
+        if (method == ZipEntry.STORED && header != 0xFFFFFFFFL) {
+          byte[] name = new byte[nameLength];
+          ((ByteBuffer) cen.duplicate().position(pos + CEN_SIZE)).get(name);
+          headers.put(new String(name, StandardCharsets.UTF_8), header);
+        }
+        pos += CEN_SIZE + nameLength + extraLength + commentLength;
+      }
+    }
+    return headers;
+  }
+}
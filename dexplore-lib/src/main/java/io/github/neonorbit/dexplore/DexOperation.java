@@ -22,37 +22,66 @@ import io.github.neonorbit.dexplore.filter.DexFilter;
 import io.github.neonorbit.dexplore.filter.MethodFilter;
 import io.github.neonorbit.dexplore.iface.Internal;
 import io.github.neonorbit.dexplore.iface.Operator;
+import io.github.neonorbit.dexplore.result.ResultHandle;
 import io.github.neonorbit.dexplore.util.DexLog;
 import org.jf.dexlib2.dexbacked.DexBackedClassDef;
 import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile.IndexedSection;
 import org.jf.dexlib2.dexbacked.DexBackedMethod;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 @Internal
 final class DexOperation {
+  private static final int MIN_RANGE_SIZE = 64;
+  // shared by all the instances, idle workers are retired by the pools themselves
+  private static final Map<Integer, ForkJoinPool> FORK_JOIN_POOLS = new ConcurrentHashMap<>();
+
+  private final int parallelism;
+  private final boolean recording;
   private final DexDecoder dexDecoder;
   private final DexContainer dexContainer;
+  private volatile DexHierarchy hierarchy;
 
   DexOperation(String path, DexOptions options) {
+    this.parallelism = options.parallelism;
+    this.recording = options.searchListener != null;
     this.dexDecoder = new DexDecoder(options);
     this.dexContainer = new DexContainer(path, options);
   }
 
   DexOperation(byte[] buffer, DexOptions options) {
+    this.parallelism = options.parallelism;
+    this.recording = options.searchListener != null;
     this.dexDecoder = new DexDecoder(options);
     this.dexContainer = new DexContainer(buffer, options);
   }
 
   public void onDexFiles(@Nonnull DexFilter dexFilter,
                          @Nonnull Operator<DexBackedDexFile> operator) {
+    onDexEntries(dexFilter, entry -> operator.operate(entry.getDexFile()));
+  }
+
+  private void onDexEntries(@Nonnull DexFilter dexFilter,
+                            @Nonnull Operator<DexEntry> operator) {
     LazyDecoder<DexEntry> decoder = dexDecoder::decode;
     try {
       for (DexEntry entry : dexContainer.getEntries(dexFilter.preferredList())) {
         if (dexFilter.verify(entry, decoder)) {
-          DexBackedDexFile dexFile = entry.getDexFile();
           logDexProcess(dexFilter, "Searching: " + entry.getDexName());
-          if (operator.operate(dexFile) || dexFilter.isUnique()) {
+          if (operator.operate(entry) || dexFilter.isUnique()) {
             return;
           }
         } else {
@@ -72,35 +101,338 @@ final class DexOperation {
   public void onClasses(@Nonnull DexFilter dexFilter,
                         @Nonnull ClassFilter classFilter,
                         @Nonnull Operator<DexBackedClassDef> operator) {
-    boolean unique = classFilter.isUnique();
-    LazyDecoder<DexBackedClassDef> decoder = dexDecoder::decode;
-    onDexFiles(dexFilter, dexFile -> {
+    onClasses(dexFilter, classFilter, null, decoder -> classScanner(), operator);
+  }
+
+  public void onClassHandles(@Nonnull DexFilter dexFilter,
+                             @Nonnull ClassFilter classFilter,
+                             @Nonnull Operator<ResultHandle> operator) {
+    boolean synth = classFilter.synthItems();
+    onClasses(dexFilter, classFilter, null,
+            decoder -> new HandleScanner<>(decoder, classScanner(), false, synth), operator);
+  }
+
+  private <T> void onClasses(@Nonnull DexFilter dexFilter,
+                             @Nonnull ClassFilter classFilter,
+                             @Nullable MethodFilter methodFilter,
+                             @Nonnull Function<DexDecoder.ClassDecoder, ClassScanner<T>> scanner,
+                             @Nonnull Operator<T> operator) {
+    if (parallelism > 1) {
+      onClassesInParallel(dexFilter, classFilter, methodFilter, scanner, operator);
+      return;
+    }
+    onDexEntries(dexFilter, entry -> {
+      DexBackedDexFile dexFile = entry.getDexFile();
+      if (!isSatisfiable(entry, classFilter, methodFilter)) return false;
+      DexIndex.Query query = getIndexQuery(entry, classFilter, methodFilter);
+      if (query != null && query.isEmpty()) return false;
+      int[] candidates = getCandidates(entry, classFilter, query);
+      if (candidates != null && candidates.length == 0) return false;
       try {
-        for (DexBackedClassDef dexClass : dexFile.getClasses()) {
-          if (classFilter.verify(dexClass, decoder)) {
-            if (operator.operate(dexClass) || unique) {
-              return true;
-            }
-          }
-        }
+        return scanClasses(entry, query, candidates, 0, rangeOf(dexFile, candidates),
+                classFilter, scanner, operator, null);
       } catch (AbortException e) {
         DexLog.w("Aborted: " + e.getMessage());
         return true;
       }
-      return false;
     });
   }
 
+  /**
+   * Splits the classes of each dex file into ranges and scans them in a fork-join pool.
+   * <p>
+   * Only a limited number of ranges are scheduled ahead of the caller.
+   * The results of each range are collected by the workers and delivered
+   * to the operator from the calling thread, in the sequential order.
+   * <p>
+   * Once the search ends, early or not, the ranges still running are stopped
+   * at the next class and the ones not yet started are skipped.
+   */
+  private <T> void onClassesInParallel(@Nonnull DexFilter dexFilter,
+                                       @Nonnull ClassFilter classFilter,
+                                       @Nullable MethodFilter methodFilter,
+                                       @Nonnull Function<DexDecoder.ClassDecoder, ClassScanner<T>> scanner,
+                                       @Nonnull Operator<T> operator) {
+    ForkJoinPool pool = getForkJoinPool(parallelism);
+    AtomicBoolean stopped = new AtomicBoolean();
+    Deque<ForkJoinTask<Range<T>>> pending = new ArrayDeque<>();
+    SearchRecorder.Probe probe = recording ? SearchRecorder.probe() : null;
+    try {
+      boolean[] terminated = {false};
+      onDexEntries(dexFilter, entry -> {
+        DexBackedDexFile dexFile = entry.getDexFile();
+        if (!isSatisfiable(entry, classFilter, methodFilter)) return false;
+        DexIndex.Query query = getIndexQuery(entry, classFilter, methodFilter);
+        if (query != null && query.isEmpty()) return false;
+        int[] candidates = getCandidates(entry, classFilter, query);
+        if (candidates != null && candidates.length == 0) return false;
+        int size = rangeOf(dexFile, candidates);
+        int step = Math.max(MIN_RANGE_SIZE, size / (parallelism * 4));
+        for (int from = 0; from < size; from += step) {
+          int to = Math.min(size, from + step), start = from;
+          pending.add(pool.submit(() -> {
+            Range<T> range = new Range<>();
+            SearchRecorder.Probe previous = probe == null ? null : probe.recorder().attach();
+            try {
+              range.terminal = scanClasses(entry, query, candidates, start, to,
+                      classFilter, scanner, range, stopped);
+            } catch (AbortException e) {
+              range.aborted = e;
+            } finally {
+              if (probe != null) SearchRecorder.detach(previous);
+            }
+            return range;
+          }));
+          if (pending.size() >= parallelism * 2 && deliver(pending.poll(), operator)) {
+            return terminated[0] = true;
+          }
+        }
+        return false;
+      });
+      while (!terminated[0] && !pending.isEmpty()) {
+        terminated[0] = deliver(pending.poll(), operator);
+      }
+    } finally {
+      stopped.set(true);
+      pending.forEach(task -> task.cancel(false));
+    }
+  }
+
+  private static <T> boolean deliver(ForkJoinTask<Range<T>> task, Operator<T> operator) {
+    Range<T> range = task.join();
+    for (T item : range.items) {
+      if (operator.operate(item)) return true;
+    }
+    if (range.aborted != null) {
+      DexLog.w("Aborted: " + range.aborted.getMessage());
+      return true;
+    }
+    return range.terminal;
+  }
+
+  private <T> boolean scanClasses(@Nonnull DexEntry entry,
+                                  @Nullable DexIndex.Query query,
+                                  @Nullable int[] candidates,
+                                  int from, int to,
+                                  @Nonnull ClassFilter classFilter,
+                                  @Nonnull Function<DexDecoder.ClassDecoder, ClassScanner<T>> factory,
+                                  @Nonnull Operator<T> operator,
+                                  @Nullable AtomicBoolean stopped) {
+    boolean unique = classFilter.isUnique();
+    SearchRecorder.Probe probe = recording ? SearchRecorder.probe() : null;
+    DexDecoder.ClassDecoder decoder = dexDecoder.newClassDecoder();
+    ClassScanner<T> scanner = factory.apply(decoder);
+    IndexedSection<DexBackedClassDef> classes = entry.getDexFile().getClassSection();
+    for (int k = from; k < to; k++) {
+      if (stopped != null && stopped.get()) return false;
+      int i = candidates == null ? k : candidates[k];
+      if (query != null && !query.test(i)) continue;
+      DexBackedClassDef dexClass = classes.get(i);
+      if (SearchRecorder.verify(probe, classFilter, dexClass, decoder.at(entry, i))) {
+        if (scanner.scan(dexClass, query, operator) || unique) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static int rangeOf(DexBackedDexFile dexFile, @Nullable int[] candidates) {
+    return candidates == null ? dexFile.getClassSection().size() : candidates.length;
+  }
+
+  /**
+   * Selects the candidate classes of a dex file.
+   * <p>
+   * Classes selected by name or by package are located directly. Without an index query,
+   * classes selected by super class or interfaces are located through the class hierarchy.
+   * The other criteria are left to the index query, if any, and to the filter.
+   *
+   * @return sorted indices of the candidate classes, or null if all classes are candidates
+   */
+  @Nullable
+  int[] getCandidates(DexEntry entry, ClassFilter classFilter, @Nullable DexIndex.Query query) {
+    int[] candidates = query == null ? null : query.getCandidates();
+    if (classFilter.classNames() != null) {
+      int[] named = entry.getSymbols().getClassTable().findClasses(classFilter.classNames());
+      candidates = DexIndex.intersect(candidates, named);
+    } else if (classFilter.simpleNames() != null) {
+      int[] named = entry.getSymbols().getClassTable().findClassesBySimpleName(classFilter.simpleNames());
+      candidates = DexIndex.intersect(candidates, named);
+    }
+    if (classFilter.typePrefixes() != null) {
+      int[] ranged = entry.getSymbols().getClassTable().findClassesByPrefix(classFilter.typePrefixes());
+      candidates = DexIndex.intersect(candidates, ranged);
+    }
+    // the index query already covers the hierarchy,
+    // and unique filters must reach ClassFilter.verify to abort the search
+    int[] subtypes = query != null || classFilter.isUnique() ? null : getSubtypes(entry, classFilter);
+    if (subtypes != null) candidates = DexIndex.intersect(candidates, subtypes);
+    return candidates;
+  }
+
+  /**
+   * @return sorted indices of the classes extending the super class and implementing
+   *         the interfaces of the filter, or null if the filter has neither
+   */
+  @Nullable
+  private int[] getSubtypes(DexEntry entry, ClassFilter classFilter) {
+    List<String> interfaces = classFilter.interfaces();
+    boolean hasInterfaces = interfaces != null && !interfaces.isEmpty();
+    if (classFilter.superClass() == null && !hasInterfaces) return null;
+    int dexIndex = dexContainer.indexOf(entry);
+    if (dexIndex < 0) return null;
+    DexHierarchy hierarchy = getHierarchy();
+    int[] result = null;
+    if (classFilter.superClass() != null) {
+      result = hierarchy.directSubtypes(classFilter.superClass(), dexIndex);
+    }
+    if (hasInterfaces) {
+      for (String type : interfaces) {
+        result = DexIndex.intersect(result, hierarchy.directSubtypes(type, dexIndex));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the common pool if it has the requested parallelism, otherwise
+   * a long-lived pool of daemon threads, shared by all the searches of that parallelism.
+   */
+  private static ForkJoinPool getForkJoinPool(int parallelism) {
+    if (parallelism == ForkJoinPool.getCommonPoolParallelism()) {
+      return ForkJoinPool.commonPool();
+    }
+    return FORK_JOIN_POOLS.computeIfAbsent(parallelism, size -> new ForkJoinPool(size, pool -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName("dexplore-" + size + "-worker-" + thread.getPoolIndex());
+      thread.setDaemon(true);
+      return thread;
+    }, null, false));
+  }
+
+  /**
+   * @return {@code false} if the values required by the filters do not exist in the dex file
+   */
+  static boolean isSatisfiable(DexEntry entry, ClassFilter classFilter, @Nullable MethodFilter methodFilter) {
+    // unique filters must reach verify to abort the search
+    DexSymbols symbols = entry.getSymbols();
+    return (classFilter.isUnique() || classFilter.isSatisfiable(symbols)) &&
+           (methodFilter == null || methodFilter.isUnique() || methodFilter.isSatisfiable(symbols));
+  }
+
+  @Nullable
+  DexIndex.Query getIndexQuery(DexEntry entry,
+                               ClassFilter classFilter,
+                               MethodFilter methodFilter) {
+    // unique filters must reach ClassFilter.verify to abort the search
+    if (!dexContainer.isIndexing() || classFilter.isUnique() ||
+        (classFilter == ClassFilter.MATCH_ALL &&
+        (methodFilter == null || methodFilter == MethodFilter.MATCH_ALL))) {
+      return null;
+    }
+    DexIndex index = entry.getDexIndex();
+    return index == null ? null : index.newQuery(entry.getDexFile(), classFilter, methodFilter);
+  }
+
   public void onMethods(@Nonnull DexFilter dexFilter,
                         @Nonnull ClassFilter classFilter,
                         @Nonnull MethodFilter methodFilter,
                         @Nonnull Operator<DexBackedMethod> operator) {
-    LazyDecoder<DexBackedMethod> decoder = dexDecoder::decode;
-    onClasses(dexFilter, classFilter, dexClass -> {
+    onClasses(dexFilter, classFilter, methodFilter,
+            decoder -> methodScanner(methodFilter, decoder.methods()), operator);
+  }
+
+  public void onMethodHandles(@Nonnull DexFilter dexFilter,
+                              @Nonnull ClassFilter classFilter,
+                              @Nonnull MethodFilter methodFilter,
+                              @Nonnull Operator<ResultHandle> operator) {
+    boolean synth = classFilter.synthItems();
+    onClasses(dexFilter, classFilter, methodFilter, decoder -> new HandleScanner<>(
+            decoder, methodScanner(methodFilter, decoder.methods()), true, synth), operator);
+  }
+
+  /**
+   * @return the class referred to by the handle
+   * @throws IllegalArgumentException if the handle does not refer to a class of the dex files
+   */
+  @Nonnull
+  DexBackedClassDef resolveClass(@Nonnull ResultHandle handle) {
+    try {
+      DexBackedDexFile dexFile = dexContainer.getEntry(handle.getDexIndex()).getDexFile();
+      return dexFile.getClassSection().get(handle.getClassIndex());
+    } catch (IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Invalid handle: " + handle, e);
+    }
+  }
+
+  /**
+   * @return the method referred to by the handle
+   * @throws IllegalArgumentException if the handle does not refer to a method of the dex files
+   */
+  @Nonnull
+  DexBackedMethod resolveMethod(@Nonnull ResultHandle handle) {
+    if (handle.isMethod()) {
+      for (DexBackedMethod dexMethod : resolveClass(handle).getMethods()) {
+        if (dexMethod.methodIndex == handle.getMethodIndex()) return dexMethod;
+      }
+    }
+    throw new IllegalArgumentException("Invalid handle: " + handle);
+  }
+
+  /**
+   * @param descriptor a dex type descriptor
+   * @param transitive whether to include indirect subtypes
+   * @return the classes extending or implementing the type
+   */
+  @Nonnull
+  List<DexBackedClassDef> findSubtypes(@Nonnull String descriptor, boolean transitive) {
+    List<DexBackedClassDef> classes = new ArrayList<>();
+    for (DexHierarchy.Definition definition : getHierarchy().subtypes(descriptor, transitive)) {
+      DexBackedDexFile dexFile = dexContainer.getEntry(definition.dexIndex).getDexFile();
+      classes.add(dexFile.getClassSection().get(definition.classIndex));
+    }
+    return classes;
+  }
+
+  private DexHierarchy getHierarchy() {
+    if (this.hierarchy == null) {
+      synchronized (this) {
+        if (this.hierarchy == null) {
+          this.hierarchy = DexHierarchy.build(dexContainer.getEntries());
+        }
+      }
+    }
+    return this.hierarchy;
+  }
+
+  @Nullable
+  CacheStats getCacheStats() {
+    return dexDecoder.getCacheStats();
+  }
+
+  /**
+   * @return a new scan for running multiple queries in a single pass
+   */
+  @Nonnull
+  SharedScan newSharedScan() {
+    return new SharedScan(this, dexContainer, dexDecoder);
+  }
+
+  static ClassScanner<DexBackedClassDef> classScanner() {
+    return (dexClass, query, sink) -> sink.operate(dexClass);
+  }
+
+  static ClassScanner<DexBackedMethod> methodScanner(@Nonnull MethodFilter methodFilter,
+                                                     @Nonnull LazyDecoder<DexBackedMethod> decoder) {
+    // scanners are created by the thread that uses them
+    SearchRecorder.Probe probe = SearchRecorder.probe();
+    return (dexClass, query, sink) -> {
       try {
         for (DexBackedMethod dexMethod : dexClass.getMethods()) {
-          if (methodFilter.verify(dexMethod, decoder)) {
-            if (operator.operate(dexMethod)) return true;
+          if (query != null && !query.testMethod(dexMethod.methodIndex)) continue;
+          if (SearchRecorder.verify(probe, methodFilter, dexMethod, decoder)) {
+            if (sink.operate(dexMethod)) return true;
             if (methodFilter.isUnique()) break;
           }
         }
@@ -108,6 +440,62 @@ final class DexOperation {
         DexLog.w("Aborted: " + e.getMessage());
       }
       return false;
-    });
+    };
+  }
+
+  interface ClassScanner<T> {
+    /**
+     * Passes the matching items of a class to the given operator.
+     *
+     * @return {@code true} to terminate, {@code false} to continue.
+     */
+    boolean scan(DexBackedClassDef dexClass, @Nullable DexIndex.Query query, Operator<T> sink);
+  }
+
+  /**
+   * Maps the items of a scanner to the handles of their positions.
+   */
+  private final class HandleScanner<T> implements ClassScanner<ResultHandle> {
+    private final DexDecoder.ClassDecoder decoder;
+    private final ClassScanner<T> scanner;
+    private final boolean methods;
+    private final boolean synthetic;
+    private DexEntry dexEntry;
+    private int dexIndex;
+
+    HandleScanner(DexDecoder.ClassDecoder decoder, ClassScanner<T> scanner, boolean methods, boolean synthetic) {
+      this.decoder = decoder;
+      this.scanner = scanner;
+      this.methods = methods;
+      this.synthetic = synthetic;
+    }
+
+    @Override
+    public boolean scan(DexBackedClassDef dexClass, @Nullable DexIndex.Query query, Operator<ResultHandle> sink) {
+      if (dexEntry != decoder.entry()) {
+        dexEntry = decoder.entry();
+        dexIndex = dexContainer.indexOf(dexEntry);
+      }
+      int classIndex = decoder.classIndex();
+      return scanner.scan(dexClass, query, item -> sink.operate(methods ?
+              ResultHandle.ofMethod(dexIndex, classIndex, ((DexBackedMethod) item).methodIndex, synthetic) :
+              ResultHandle.ofClass(dexIndex, classIndex, synthetic)
+      ));
+    }
+  }
+
+  /**
+   * The items collected from a range of classes by a parallel scan.
+   */
+  private static final class Range<T> implements Operator<T> {
+    final List<T> items = new ArrayList<>();
+    AbortException aborted;
+    boolean terminal;
+
+    @Override
+    public boolean operate(T item) {
+      items.add(item);
+      return false;
+    }
   }
 }
@@ -23,7 +23,15 @@ package io.github.neonorbit.dexplore;
  * <ul>
  *   <li>{@link #opcodes}</li>
  *   <li>{@link #enableCache}</li>
+ *   <li>{@link #maxCacheSize}</li>
  *   <li>{@link #rootDexOnly}</li>
+ *   <li>{@link #enableIndex}</li>
+ *   <li>{@link #indexDirectory}</li>
+ *   <li>{@link #parallelism}</li>
+ *   <li>{@link #memoryMapping}</li>
+ *   <li>{@link #mappingDirectory}</li>
+ *   <li>{@link #searchListener}</li>
+ *   <li>{@link #eagerResults}</li>
  * </ul>
  *
  * @author NeonOrbit
@@ -50,6 +58,22 @@ public final class DexOptions {
    */
   public boolean enableCache = false;
 
+  /**
+   * The maximum size of the cache, in bytes.
+   * <p>
+   * If positive, the cache evicts the least recently used entries
+   * once their estimated size exceeds the limit. Otherwise, the cache
+   * is memory-sensitive and entries are released by the garbage collector.
+   * <p>
+   * <b>Note:</b> This has no effect unless {@link #enableCache} is set.
+   * <p>
+   *   <b>Default:</b> {@code 0}
+   * </p>
+   * @see Dexplore#getCacheStats()
+   * @since 1.5.0
+   */
+  public long maxCacheSize = 0;
+
   /**
    * If enabled, only the root dex files of an apk are loaded.
    * <p>
@@ -61,6 +85,118 @@ public final class DexOptions {
    */
   public boolean rootDexOnly = false;
 
+  /**
+   * Enables dex indexing.
+   * <p>
+   * Each dex file is summarized once, on its first search.
+   * Subsequent class and method searches use the summary
+   * to skip the classes that cannot match without decoding them.
+   * Filters with {@linkplain io.github.neonorbit.dexplore.filter.ClassFilter.Builder#setNumbers(Number...)
+   * number literals} only visit the classes that use all of the literals.
+   * <p>
+   * Useful for conducting multiple dex queries on a single dexplore instance,
+   * such as repeated resource ID lookups.
+   * <p>
+   *   <b>Default:</b> {@code false}
+   * </p>
+   * @see #indexDirectory
+   * @since 1.5.0
+   */
+  public boolean enableIndex = false;
+
+  /**
+   * A directory for storing dex indexes.
+   * <p>
+   * If specified, the indexes are saved to the directory and reused
+   * by later dexplore instances, even across processes.
+   * Indexes are identified by the SHA-1 signature of the dex files.
+   * <p>
+   * <b>Note:</b> This implies {@link #enableIndex}.
+   * <p>
+   *   <b>Default:</b> {@code null}
+   * </p>
+   * @see #enableIndex
+   * @since 1.5.0
+   */
+  public String indexDirectory = null;
+
+  /**
+   * The number of threads a single search may use.
+   * <p>
+   * If greater than 1, the classes of each dex file are split into ranges
+   * and scanned concurrently. Results are still delivered in the sequential
+   * order, and callbacks are always invoked from the calling thread.
+   * <p>
+   * Useful for heavy searches on large, multi-dex apk files.
+   * <p>
+   *   <b>Default:</b> {@code 1}
+   * </p>
+   * @since 1.5.0
+   */
+  public int parallelism = 1;
+
+  /**
+   * Loads the dex files of apk and zip files through memory-mapped files.
+   * <p>
+   * Uncompressed dex entries are mapped directly from the file.
+   * Compressed entries are extracted once into the {@link #mappingDirectory},
+   * and reused by later dexplore instances, even across processes.
+   * <p>
+   * The loaded dex files are released when memory runs low,
+   * and reloaded from the mapped files on demand.
+   * <p>
+   * <b>Note:</b> A loaded dex file still occupies its full size on the heap,
+   * only the dex files not in use are released.
+   * <p>
+   *   <b>Default:</b> {@code false}
+   * </p>
+   * @see #mappingDirectory
+   * @since 1.5.0
+   */
+  public boolean memoryMapping = false;
+
+  /**
+   * A directory for storing the dex files extracted by {@link #memoryMapping}.
+   * <p>
+   * Extracted files are verified against their signature before being reused,
+   * and the least recently used ones are deleted once the directory grows too large.
+   * <p>
+   *   <b>Default:</b> {@code null} (a {@code dexplore} directory in the temporary directory)
+   * </p>
+   * @see #memoryMapping
+   * @since 1.5.0
+   */
+  public String mappingDirectory = null;
+
+  /**
+   * A listener for receiving the statistics of each search.
+   * <p>
+   * Reports the dex files loaded, the classes and methods visited,
+   * the rejections of each filter criterion, the pools decoded,
+   * the cache hits and misses, and the time spent in each phase.
+   * <p>
+   * Searches are only instrumented while a listener is attached.
+   * <p>
+   *   <b>Default:</b> {@code null}
+   * </p>
+   * @see SearchStats
+   * @since 1.5.0
+   */
+  public SearchListener searchListener = null;
+
+  /**
+   * Decodes the members and reference pools of results as soon as they are found.
+   * <p>
+   * By default, they are decoded on first access, and the matched dex items
+   * are retained until then. Enable this option if the results are kept
+   * longer than the dexplore instance, or accessed from a released dex file.
+   * <p>
+   *   <b>Default:</b> {@code false}
+   * </p>
+   * @since 1.5.0
+   */
+  public boolean eagerResults = false;
+
   /**
    * @return a default {@code DexOptions} instance
    */
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.filter.ValueResolver;
+import io.github.neonorbit.dexplore.iface.Internal;
+import io.github.neonorbit.dexplore.util.DexUtils;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves query values to their indices in a dex file.
+ * <p>
+ * Resolved values are remembered, so that the pools of a dex file
+ * can answer repeated queries without searching the id sections again.
+ */
+@Internal
+final class DexSymbols implements ValueResolver {
+  // Values of opaque filters are arbitrary, the cache must not grow with them
+  private static final int MAX_ENTRIES = 1024;
+
+  final DexBackedDexFile dexFile;
+  private final Map<String, Integer> strings = new ConcurrentHashMap<>();
+  private final Map<String, Integer> types = new ConcurrentHashMap<>();
+  private volatile DexClassTable classTable;
+
+  DexSymbols(@Nonnull DexBackedDexFile dexFile) {
+    this.dexFile = dexFile;
+  }
+
+  @Nonnull
+  @Override
+  public DexBackedDexFile getDexFile() {
+    return dexFile;
+  }
+
+  @Override
+  public int findString(@Nonnull String value) {
+    Integer index = strings.get(value);
+    if (index == null) {
+      index = DexLookup.findString(dexFile, value);
+      if (strings.size() < MAX_ENTRIES) strings.put(value, index);
+    }
+    return index;
+  }
+
+  /**
+   * @return the class table of the dex file, built on first use
+   */
+  @Nonnull
+  DexClassTable getClassTable() {
+    if (classTable == null) {
+      synchronized (this) {
+        if (classTable == null) {
+          classTable = new DexClassTable(dexFile);
+        }
+      }
+    }
+    return classTable;
+  }
+
+  // a name that does not map back from its descriptor is UNRESOLVABLE
+  @Override
+  public int findJavaType(@Nonnull String javaName) {
+    Integer index = types.get(javaName);
+    if (index == null) {
+      String descriptor = DexUtils.javaToDexTypeName(javaName);
+      index = !DexUtils.dexToJavaTypeName(descriptor).equals(javaName) ? UNRESOLVABLE :
+              DexLookup.findType(dexFile, descriptor);
+      if (types.size() < MAX_ENTRIES) types.put(javaName, index);
+    }
+    return index;
+  }
+}
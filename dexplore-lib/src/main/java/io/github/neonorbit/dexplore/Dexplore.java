@@ -22,6 +22,7 @@ import io.github.neonorbit.dexplore.filter.MethodFilter;
 import io.github.neonorbit.dexplore.result.ClassData;
 import io.github.neonorbit.dexplore.result.DexItemData;
 import io.github.neonorbit.dexplore.result.MethodData;
+import io.github.neonorbit.dexplore.result.ResultHandle;
 import io.github.neonorbit.dexplore.iface.KOperator;
 import io.github.neonorbit.dexplore.iface.Operator;
 import io.github.neonorbit.dexplore.util.DexHelper;
@@ -30,6 +31,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * A dex explorer for locating classes and methods within dex files.
@@ -208,4 +210,84 @@ public interface Dexplore {
    * @see #findAll(QueryBatch, int) Dexplore.findAll(batch, limit)
    */
   void onQueryResult(@Nonnull QueryBatch batch, @Nonnull KOperator<DexItemData> operator);
+
+  /**
+   * Returns a stream of handles to the classes matching the specified filters.
+   * <p>
+   * The search runs when the stream is consumed, and the results are only
+   * {@linkplain #resolve(ResultHandle) resolved} on demand.
+   * <p>
+   * <b>Note:</b> Bulk operations, such as {@code forEach()} and {@code collect()},
+   * receive the handles as they are found. Short-circuiting operations collect
+   * all the handles first, use the limit to stop the search early.
+   *
+   * @param dexFilter filter to select the desired dex files
+   * @param classFilter filter to select the desired dex classes
+   * @param limit the maximum number of results to return or -1 if no limit
+   * @return a sequential stream of handles to the matching classes
+   * @see #streamMethods(DexFilter, ClassFilter, MethodFilter, int)
+   * @since 1.5.0
+   */
+  @Nonnull
+  Stream<ResultHandle> streamClasses(@Nonnull DexFilter dexFilter,
+                                     @Nonnull ClassFilter classFilter, int limit);
+
+  /**
+   * Returns a stream of handles to the methods matching the specified filters.
+   * <p>
+   * The search runs when the stream is consumed, and the results are only
+   * {@linkplain #resolve(ResultHandle) resolved} on demand.
+   *
+   * @param dexFilter filter to select the desired dex files
+   * @param classFilter filter to select the desired dex classes
+   * @param methodFilter filter to select the desired dex methods
+   * @param limit the maximum number of results to return or -1 if no limit
+   * @return a sequential stream of handles to the matching methods
+   * @see #streamClasses(DexFilter, ClassFilter, int)
+   * @since 1.5.0
+   */
+  @Nonnull
+  Stream<ResultHandle> streamMethods(@Nonnull DexFilter dexFilter,
+                                     @Nonnull ClassFilter classFilter,
+                                     @Nonnull MethodFilter methodFilter, int limit);
+
+  /**
+   * Resolves a handle into a {@link ClassData} or a {@link MethodData} object.
+   *
+   * @param handle a handle produced by this instance
+   * @return the class or method referred to by the handle
+   * @throws IllegalArgumentException if the handle does not belong to the dex files of this instance
+   * @since 1.5.0
+   */
+  @Nonnull
+  DexItemData resolve(@Nonnull ResultHandle handle);
+
+  /**
+   * Finds the classes that extend or implement the specified type.
+   * <p>
+   * The subtypes are found using a class hierarchy of all the dex files,
+   * built on the first call, without visiting the other classes.
+   * Transitive subtypes are listed in breadth-first order.
+   * <p>
+   * Example: Find all the implementations of an interface
+   * <pre>{@code
+   *    List<ClassData> implementations = dexplore.findSubtypes("a.b.Callback", true);
+   * }</pre>
+   *
+   * @param className {@linkplain Class#getName() full name} of a class or an interface
+   * @param transitive {@code true} to include indirect subtypes, {@code false} for direct subtypes only
+   * @return a list of the subtypes or an empty list if none is found
+   * @since 1.5.0
+   */
+  @Nonnull
+  List<ClassData> findSubtypes(@Nonnull String className, boolean transitive);
+
+  /**
+   * Returns the statistics of the reference pool cache.
+   *
+   * @return a snapshot of the cache statistics, or null if the cache is not {@linkplain DexOptions#enableCache enabled}
+   * @since 1.5.0
+   */
+  @Nullable
+  CacheStats getCacheStats();
 }
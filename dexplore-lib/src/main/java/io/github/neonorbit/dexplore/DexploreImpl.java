@@ -16,6 +16,9 @@
 
 package io.github.neonorbit.dexplore;
 
+import io.github.neonorbit.dexplore.QueryBatch.ClassQuery;
+import io.github.neonorbit.dexplore.QueryBatch.MethodQuery;
+import io.github.neonorbit.dexplore.QueryBatch.Query;
 import io.github.neonorbit.dexplore.filter.ClassFilter;
 import io.github.neonorbit.dexplore.filter.DexFilter;
 import io.github.neonorbit.dexplore.filter.MethodFilter;
@@ -25,11 +28,16 @@ import io.github.neonorbit.dexplore.iface.Operator;
 import io.github.neonorbit.dexplore.result.ClassData;
 import io.github.neonorbit.dexplore.result.DexItemData;
 import io.github.neonorbit.dexplore.result.MethodData;
+import io.github.neonorbit.dexplore.result.ResultHandle;
 import io.github.neonorbit.dexplore.result.Results;
 import io.github.neonorbit.dexplore.task.QueryTask;
 import io.github.neonorbit.dexplore.task.QueryTaskFactory;
 import io.github.neonorbit.dexplore.task.TaskHandler;
+import io.github.neonorbit.dexplore.util.DexEvents;
+import io.github.neonorbit.dexplore.util.DexUtils;
 import io.github.neonorbit.dexplore.util.Utils;
+import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.jf.dexlib2.dexbacked.DexBackedMethod;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -38,20 +46,29 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Internal
 final class DexploreImpl implements Dexplore {
   private final DexOperation dexOperation;
+  private final SearchListener listener;
+  private final boolean eagerResults;
   private TaskHandler<Object> taskHandler;
 
   DexploreImpl(String path, DexOptions options) {
     this.dexOperation = new DexOperation(path, options);
+    this.listener = options.searchListener;
+    this.eagerResults = options.eagerResults;
   }
 
   DexploreImpl(byte[] buffer, DexOptions options) {
     this.dexOperation = new DexOperation(buffer, options);
+    this.listener = options.searchListener;
+    this.eagerResults = options.eagerResults;
   }
 
   private synchronized TaskHandler<Object> getTaskHandler(int size) {
@@ -61,6 +78,12 @@ final class DexploreImpl implements Dexplore {
     return taskHandler;
   }
 
+  @Nullable
+  @Override
+  public CacheStats getCacheStats() {
+    return dexOperation.getCacheStats();
+  }
+
   @Nullable
   @Override
   public ClassData findClass(@Nonnull DexFilter dexFilter,
@@ -96,9 +119,9 @@ final class DexploreImpl implements Dexplore {
                             @Nonnull ClassFilter classFilter,
                             @Nonnull Operator<ClassData> operator) {
     boolean synth = classFilter.synthItems();
-    dexOperation.onClasses(
-            dexFilter, classFilter, dexClass -> operator.operate(Results.ofClass(dexClass, synth))
-    );
+    record(null, () -> dexOperation.onClasses(
+            dexFilter, classFilter, dexClass -> operator.operate(classResult(dexClass, synth))
+    ));
   }
 
   @Override
@@ -107,9 +130,9 @@ final class DexploreImpl implements Dexplore {
                              @Nonnull MethodFilter methodFilter,
                              @Nonnull Operator<MethodData> operator) {
     boolean synth = classFilter.synthItems();
-    dexOperation.onMethods(
-            dexFilter, classFilter, methodFilter, dexMethod -> operator.operate(Results.ofMethod(dexMethod, synth))
-    );
+    record(null, () -> dexOperation.onMethods(
+            dexFilter, classFilter, methodFilter, dexMethod -> operator.operate(methodResult(null, dexMethod, synth))
+    ));
   }
 
   @Nonnull
@@ -126,38 +149,85 @@ final class DexploreImpl implements Dexplore {
       current.add(item);
       return (limit > 0 && current.size() >= limit);
     });
-    return results;
+    return batch.isSinglePass() ? inBatchOrder(batch, results) : results;
+  }
+
+  private static <V> Map<String, V> inBatchOrder(QueryBatch batch, Map<String, V> results) {
+    Map<String, V> ordered = new LinkedHashMap<>();
+    for (String key : batch.getKeys()) {
+      V value = results.get(key);
+      if (value != null) ordered.put(key, value);
+    }
+    return ordered;
   }
 
   @Override
   public void onQueryResult(@Nonnull QueryBatch batch,
                             @Nonnull KOperator<DexItemData> operator) {
-    if (batch.isParallel()) {
-      runInParallel(batch, new QueryTaskFactory(this, operator));
+    if (batch.isSinglePass()) {
+      runInSinglePass(batch, operator);
     } else {
-      QueryTaskFactory factory = new QueryTaskFactory(this, operator);
-      batch.getQueries().forEach(query -> factory.newTask(query).call());
+      QueryTaskFactory factory = new QueryTaskFactory(this, operator, listener == null ? null : this::record);
+      if (batch.isParallel()) {
+        runInParallel(batch, factory);
+      } else {
+        batch.getQueries().forEach(query -> factory.newTask(query).call());
+      }
     }
   }
 
   private synchronized void runInParallel(QueryBatch batch,
                                           QueryTaskFactory factory) {
     TaskHandler<Object> taskHandler = getTaskHandler(batch.threadCount());
+    batch.getQueries().forEach(query -> taskHandler.dispatch(factory.newTask(query)));
+    taskHandler.awaitCompletion();
+  }
+
+  private void runInSinglePass(QueryBatch batch,
+                               KOperator<DexItemData> operator) {
+    SharedScan scan = dexOperation.newSharedScan();
+    // each query is recorded separately, unless nested in an enclosing search
+    boolean recording = listener != null && SearchRecorder.probe() == null;
+    Map<String, SearchRecorder> recorders = new LinkedHashMap<>();
+    Map<Query, DexEvents.Event> events = new LinkedHashMap<>();
     batch.getQueries().forEach(query -> {
-      QueryTask task = factory.newTask(query);
-      taskHandler.dispatch(task);
+      DexEvents.Event event = DexEvents.begin(DexEvents.Type.QUERY);
+      if (event != null) events.put(query, event);
+      SearchRecorder recorder = recording ? SearchRecorder.create() : null;
+      if (recorder != null) recorders.put(query.key, recorder);
+      Operator<DexItemData> mapper = item -> {
+        DexItemData mapped = query.map(item);
+        return mapped != null && operator.operate(query.key, mapped);
+      };
+      if (query instanceof MethodQuery) {
+        MethodQuery q = (MethodQuery) query;
+        boolean synth = q.classFilter.synthItems();
+        scan.addMethodQuery(q.dexFilter, q.classFilter, q.methodFilter,
+                dexMethod -> mapper.operate(methodResult(null, dexMethod, synth)), recorder);
+      } else {
+        ClassQuery q = (ClassQuery) query;
+        boolean synth = q.classFilter.synthItems();
+        scan.addClassQuery(q.dexFilter, q.classFilter,
+                dexClass -> mapper.operate(classResult(dexClass, synth)), recorder);
+      }
     });
-    taskHandler.awaitCompletion();
+    try {
+      scan.run();
+    } finally {
+      // the queries share a single pass, each event spans all of it
+      events.forEach((query, event) -> event.commit(query.key, QueryTask.kindOf(query)));
+    }
+    recorders.forEach((key, recorder) -> listener.onSearchCompleted(key, recorder.finish()));
   }
 
   private List<ClassData> classSearch(DexFilter dexFilter,
                                       ClassFilter classFilter, int limit) {
     boolean synth = classFilter.synthItems();
     List<ClassData> results = new ArrayList<>();
-    dexOperation.onClasses(dexFilter, classFilter, dexClass -> {
-      results.add(Results.ofClass(dexClass, synth));
+    record(null, () -> dexOperation.onClasses(dexFilter, classFilter, dexClass -> {
+      results.add(classResult(dexClass, synth));
       return (limit > 0 && results.size() >= limit);
-    });
+    }));
     return results;
   }
 
@@ -167,12 +237,91 @@ final class DexploreImpl implements Dexplore {
     boolean synth = classFilter.synthItems();
     List<MethodData> results = new ArrayList<>();
     AtomicReference<ClassData> shared = new AtomicReference<>();
-    dexOperation.onMethods(dexFilter, classFilter, methodFilter, dexMethod -> {
-      MethodData method = Results.ofMethod(shared.get(), dexMethod, synth);
+    record(null, () -> dexOperation.onMethods(dexFilter, classFilter, methodFilter, dexMethod -> {
+      MethodData method = methodResult(shared.get(), dexMethod, synth);
       shared.set(method.getClassData());
       results.add(method);
       return (limit > 0 && results.size() >= limit);
-    });
+    }));
+    return results;
+  }
+
+  @Nonnull
+  @Override
+  public Stream<ResultHandle> streamClasses(@Nonnull DexFilter dexFilter,
+                                            @Nonnull ClassFilter classFilter, int limit) {
+    return StreamSupport.stream(new HandleSpliterator(operator -> record(null,
+            () -> dexOperation.onClassHandles(dexFilter, classFilter, operator)), limit), false);
+  }
+
+  @Nonnull
+  @Override
+  public Stream<ResultHandle> streamMethods(@Nonnull DexFilter dexFilter,
+                                            @Nonnull ClassFilter classFilter,
+                                            @Nonnull MethodFilter methodFilter, int limit) {
+    return StreamSupport.stream(new HandleSpliterator(operator -> record(null,
+            () -> dexOperation.onMethodHandles(dexFilter, classFilter, methodFilter, operator)), limit), false);
+  }
+
+  @Nonnull
+  @Override
+  public List<ClassData> findSubtypes(@Nonnull String className, boolean transitive) {
+    String descriptor = DexUtils.javaToDexTypeName(Objects.requireNonNull(className));
+    List<ClassData> results = new ArrayList<>();
+    record(null, () -> dexOperation.findSubtypes(descriptor, transitive)
+            .forEach(dexClass -> results.add(classResult(dexClass, false))));
     return results;
   }
+
+  @Nonnull
+  @Override
+  public DexItemData resolve(@Nonnull ResultHandle handle) {
+    if (handle.isMethod()) {
+      return Results.ofMethod(null, dexOperation.resolveMethod(handle), handle.synthItems(), eagerResults);
+    }
+    return Results.ofClass(dexOperation.resolveClass(handle), handle.synthItems(), eagerResults);
+  }
+
+  /**
+   * Runs a search, and reports its statistics if a listener is attached.
+   * Nested searches are recorded as part of the enclosing one.
+   */
+  private void record(@Nullable String key, Runnable search) {
+    SearchRecorder recorder = listener == null ? null : SearchRecorder.start();
+    if (recorder == null) {
+      search.run();
+      return;
+    }
+    SearchStats stats;
+    try {
+      search.run();
+    } finally {
+      stats = recorder.finish();
+    }
+    listener.onSearchCompleted(key, stats);
+  }
+
+  private ClassData classResult(DexBackedClassDef dexClass, boolean synth) {
+    SearchRecorder.Probe probe = listener == null ? null : SearchRecorder.probe();
+    if (probe == null) return Results.ofClass(dexClass, synth, eagerResults);
+    probe.enter(SearchStats.Phase.RESULT);
+    try {
+      probe.resultBuilt();
+      return Results.ofClass(dexClass, synth, eagerResults);
+    } finally {
+      probe.exit();
+    }
+  }
+
+  private MethodData methodResult(@Nullable ClassData shared, DexBackedMethod dexMethod, boolean synth) {
+    SearchRecorder.Probe probe = listener == null ? null : SearchRecorder.probe();
+    if (probe == null) return Results.ofMethod(shared, dexMethod, synth, eagerResults);
+    probe.enter(SearchStats.Phase.RESULT);
+    try {
+      probe.resultBuilt();
+      return Results.ofMethod(shared, dexMethod, synth, eagerResults);
+    } finally {
+      probe.exit();
+    }
+  }
 }
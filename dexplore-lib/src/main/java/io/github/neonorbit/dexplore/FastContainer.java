@@ -18,7 +18,9 @@ package io.github.neonorbit.dexplore;
 
 import io.github.neonorbit.dexplore.iface.Internal;
 import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
 import org.jf.dexlib2.dexbacked.ZipDexContainer;
+import org.jf.dexlib2.iface.MultiDexContainer;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -29,28 +31,53 @@ import java.util.zip.ZipFile;
 
 @Internal
 final class FastContainer extends ZipDexContainer {
+  private final Opcodes opcodes;
   private final boolean isApkFile;
   private final boolean rootDexOnly;
+  private final DexMapper dexMapper;
   private FastContainer(@Nonnull File zipFilePath,
                         @Nullable Opcodes opcodes,
-                        boolean isApkFile, boolean rootDexOnly) {
+                        boolean isApkFile, boolean rootDexOnly,
+                        @Nullable DexMapper dexMapper) {
     super(zipFilePath, opcodes);
+    this.opcodes = opcodes;
     this.isApkFile = isApkFile;
     this.rootDexOnly = rootDexOnly;
+    this.dexMapper = dexMapper;
   }
 
   @Nullable
   public static FastContainer load(@Nonnull File zipFilePath,
                                    @Nullable Opcodes opcodes,
                                    boolean rootDexOnly) {
+    return load(zipFilePath, opcodes, rootDexOnly, null);
+  }
+
+  /**
+   * @param mappingDirectory the cache directory of the memory-mapped dex entries,
+   *                         or null to load the dex entries without mapping
+   * @see DexMapper
+   */
+  @Nullable
+  public static FastContainer load(@Nonnull File zipFilePath,
+                                   @Nullable Opcodes opcodes,
+                                   boolean rootDexOnly, @Nullable File mappingDirectory) {
     try (ZipFile zip = new ZipFile(zipFilePath)) {
       boolean isApkFile = rootDexOnly || zip.getEntry("AndroidManifest.xml") != null;
-      return new FastContainer(zipFilePath, opcodes, isApkFile, rootDexOnly);
+      DexMapper mapper = mappingDirectory == null ? null : new DexMapper(zipFilePath, mappingDirectory);
+      return new FastContainer(zipFilePath, opcodes, isApkFile, rootDexOnly, mapper);
     } catch (IOException ignore) {
       return null;
     }
   }
 
+  /**
+   * @return whether the dex entries are loaded through memory-mapped files
+   */
+  public boolean isMapped() {
+    return dexMapper != null;
+  }
+
   @Override
   protected boolean isDex(@Nonnull ZipFile zipFile,
                           @Nonnull ZipEntry zipEntry) throws IOException {
@@ -60,4 +87,33 @@ final class FastContainer extends ZipDexContainer {
     );
     return filter && super.isDex(zipFile, zipEntry);
   }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  protected MultiDexContainer.DexEntry<DexBackedDexFile> loadEntry(@Nonnull ZipFile zipFile,
+                                                 @Nonnull ZipEntry zipEntry) throws IOException {
+    if (dexMapper == null) {
+      return super.loadEntry(zipFile, zipEntry);
+    }
+    DexBackedDexFile dexFile = new DexBackedDexFile(opcodes, dexMapper.read(zipFile, zipEntry));
+    return new MultiDexContainer.DexEntry<DexBackedDexFile>() {
+      @Nonnull
+      @Override
+      public String getEntryName() {
+        return zipEntry.getName();
+      }
+
+      @Nonnull
+      @Override
+      public DexBackedDexFile getDexFile() {
+        return dexFile;
+      }
+
+      @Nonnull
+      @Override
+      public MultiDexContainer<DexBackedDexFile> getContainer() {
+        return FastContainer.this;
+      }
+    };
+  }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.iface.Internal;
+import io.github.neonorbit.dexplore.iface.Operator;
+import io.github.neonorbit.dexplore.result.ResultHandle;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A spliterator over the handles of a search.
+ * <p>
+ * The search runs when the stream is consumed. Bulk traversal passes each handle
+ * directly from the search to the action. Otherwise, the handles are first
+ * collected into a primitive buffer, one {@code long} per handle.
+ */
+@Internal
+final class HandleSpliterator implements Spliterator<ResultHandle> {
+  private final Consumer<Operator<ResultHandle>> search;
+  private final int limit;
+  private boolean searched;
+  private long[] buffer;
+  private int position, size;
+
+  /**
+   * @param search runs the search with the given operator
+   * @param limit the maximum number of handles or -1 if no limit
+   */
+  HandleSpliterator(Consumer<Operator<ResultHandle>> search, int limit) {
+    this.search = search;
+    this.limit = limit;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super ResultHandle> action) {
+    if (!searched) {
+      searched = true;
+      buffer = new long[16];
+      run(handle -> {
+        if (size == buffer.length) buffer = Arrays.copyOf(buffer, size * 2);
+        buffer[size++] = handle.toLong();
+      });
+    }
+    if (position >= size) return false;
+    action.accept(ResultHandle.of(buffer[position++]));
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super ResultHandle> action) {
+    if (!searched) {
+      searched = true;
+      run(action);
+    } else {
+      while (position < size) {
+        action.accept(ResultHandle.of(buffer[position++]));
+      }
+    }
+  }
+
+  private void run(Consumer<? super ResultHandle> action) {
+    int[] count = {0};
+    search.accept(handle -> {
+      action.accept(handle);
+      return limit > 0 && ++count[0] >= limit;
+    });
+  }
+
+  @Override
+  public Spliterator<ResultHandle> trySplit() {
+    return null;
+  }
+
+  @Override
+  public long estimateSize() {
+    return searched ? size - position : Long.MAX_VALUE;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | DISTINCT | NONNULL | IMMUTABLE;
+  }
+}
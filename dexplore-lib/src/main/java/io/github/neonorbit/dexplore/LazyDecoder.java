@@ -16,10 +16,78 @@
 
 package io.github.neonorbit.dexplore;
 
+import io.github.neonorbit.dexplore.filter.ReferenceCriterion;
 import io.github.neonorbit.dexplore.filter.ReferenceTypes;
 import io.github.neonorbit.dexplore.iface.Internal;
+import io.github.neonorbit.dexplore.util.LiteralSet;
+import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.jf.dexlib2.dexbacked.DexBackedMethod;
+
+import javax.annotation.Nullable;
 
 @Internal
 public interface LazyDecoder<T> {
   ReferencePool decode(T dexItem, ReferenceTypes types);
+
+  /**
+   * Checks whether the references of an item are accepted by a reference filter.
+   * <p>
+   * Decoders that can read the item directly may override this method,
+   * and stop decoding as soon as the result is known.
+   * The default implementation applies the filter to the decoded pool.
+   *
+   * @param dexItem the item to check
+   * @param types the reference types to decode
+   * @param criterion the reference filter
+   * @return {@code true} if the item is accepted
+   */
+  default boolean matches(T dexItem, ReferenceTypes types, ReferenceCriterion criterion) {
+    return criterion.accept(decode(dexItem, types));
+  }
+
+  /**
+   * Checks whether an item contains all the given number literals.
+   * <p>
+   * Decoders that can read the item directly may override this method.
+   * Otherwise, the caller reads the item through dexlib2.
+   *
+   * @param dexItem a class or a method
+   * @param literals the literals to look for
+   * @param synthetic whether to include the synthetic methods of a class
+   * @return {@code true} if the item contains all the literals, or null if the decoder cannot tell
+   */
+  @Nullable
+  default Boolean containsLiterals(T dexItem, LiteralSet literals, boolean synthetic) {
+    return null;
+  }
+
+  /**
+   * Reads the header of the code item of a method.
+   * <p>
+   * Decoders that can locate the code item may override this method.
+   * Otherwise, the caller reads the header through dexlib2,
+   * see {@link DexDecoder#readCodeHeader(DexBackedMethod)}.
+   *
+   * @param dexItem a method
+   * @return the header of the code item, or null if the decoder cannot tell
+   */
+  @Nullable
+  default CodeHeader readCodeHeader(T dexItem) {
+    return null;
+  }
+
+  /**
+   * Counts the fields and methods declared by a class, including the synthetic ones.
+   * <p>
+   * Decoders that can locate the class data may override this method.
+   * Otherwise, the caller counts the members through dexlib2,
+   * see {@link DexDecoder#countMembers(DexBackedClassDef)}.
+   *
+   * @param dexItem a class
+   * @return the number of fields and the number of methods, or null if the decoder cannot tell
+   */
+  @Nullable
+  default int[] countMembers(T dexItem) {
+    return null;
+  }
 }
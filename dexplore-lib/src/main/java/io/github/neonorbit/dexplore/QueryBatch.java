@@ -39,7 +39,8 @@ import static java.util.Collections.unmodifiableMap;
  * Represents a batch of dex queries.
  * <p>
  * Note: The order of queries is preserved,
- * unless the batch is {@linkplain Builder#setParallel(boolean) parallel}.
+ * unless the batch is {@linkplain Builder#setParallel(boolean) parallel}
+ * or {@linkplain Builder#setSinglePass(boolean) single-pass}.
  * <p>
  * Use the {@link Builder Builder} class to create query batches.
  *
@@ -49,11 +50,13 @@ import static java.util.Collections.unmodifiableMap;
 public final class QueryBatch {
   private final int threadCount;
   private final boolean parallel;
+  private final boolean singlePass;
   private final Map<String, Query> map;
 
   private QueryBatch(Builder builder) {
     this.parallel = builder.parallel;
     this.threadCount = builder.threadCount;
+    this.singlePass = builder.singlePass;
     this.map = unmodifiableMap(new LinkedHashMap<>(builder.map));
   }
 
@@ -61,7 +64,15 @@ public final class QueryBatch {
    * @return a boolean indicating whether the batch is parallel
    */
   public boolean isParallel() {
-    return parallel && threadCount > 1 && size() > 1;
+    return !singlePass && parallel && threadCount > 1 && size() > 1;
+  }
+
+  /**
+   * @return a boolean indicating whether the batch runs in a single pass
+   * @since 1.5.0
+   */
+  public boolean isSinglePass() {
+    return singlePass && size() > 1;
   }
 
   /**
@@ -111,11 +122,13 @@ public final class QueryBatch {
    * Builder for creating {@code QueryBatch} instances.
    * <p>
    * Note: The order of queries is preserved,
-   * unless the batch is {@linkplain Builder#setParallel(boolean) parallel}.
+   * unless the batch is {@linkplain Builder#setParallel(boolean) parallel}
+   * or {@linkplain Builder#setSinglePass(boolean) single-pass}.
    */
   public static class Builder {
     private int threadCount;
     private boolean parallel;
+    private boolean singlePass;
     private final Map<String, Query> map = new LinkedHashMap<>();
 
     public QueryBatch build() {
@@ -134,6 +147,26 @@ public final class QueryBatch {
       return this;
     }
 
+    /**
+     * Determines whether the batch should run in a single pass.
+     * <p>
+     * In single-pass mode, the dex files are scanned only once for all the queries:
+     * each class is checked against every query that is still searching,
+     * and the references of each class are decoded only once.
+     * A query stops searching once its results are complete.
+     * <p>
+     * <b>Note:</b> The results of different queries are delivered in the order they are found.
+     * Single-pass mode takes precedence over {@linkplain #setParallel(boolean) parallel} mode.
+     *
+     * @param singlePass {@code true} to set, {@code false} to unset.
+     * @return {@code this} builder
+     * @since 1.5.0
+     */
+    public Builder setSinglePass(boolean singlePass) {
+      this.singlePass = singlePass;
+      return this;
+    }
+
     /**
      * Sets the number of threads to use in parallel mode.
      * <p>Note: {@link #setParallel(boolean) Parallel} mode must be enabled first.
@@ -16,18 +16,25 @@
 
 package io.github.neonorbit.dexplore;
 
+import io.github.neonorbit.dexplore.reference.DexRefData;
 import io.github.neonorbit.dexplore.reference.FieldRefData;
 import io.github.neonorbit.dexplore.reference.MethodRefData;
 import io.github.neonorbit.dexplore.reference.StringRefData;
 import io.github.neonorbit.dexplore.reference.TypeRefData;
 import io.github.neonorbit.dexplore.filter.ReferenceTypes;
+import org.jf.dexlib2.ReferenceType;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.dexbacked.reference.DexBackedStringReference;
+import org.jf.dexlib2.dexbacked.reference.DexBackedTypeReference;
 import org.jf.dexlib2.iface.reference.FieldReference;
 import org.jf.dexlib2.iface.reference.MethodReference;
 import org.jf.dexlib2.iface.reference.StringReference;
 import org.jf.dexlib2.iface.reference.TypeReference;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 final class RefPoolBuffer {
@@ -36,10 +43,22 @@ final class RefPoolBuffer {
   private List<FieldRefData> fields = new ArrayList<>();
   private List<MethodRefData> methods = new ArrayList<>();
   private final boolean fieldDetails, methodDetails;
+  // Indexed references, stored compactly when the pool is built
+  private DexSymbols symbols;
+  private final int[][] indices = new int[ReferenceType.METHOD + 1][];
+  private final int[] counts = new int[ReferenceType.METHOD + 1];
 
   RefPoolBuffer(ReferenceTypes types) {
+    this(types, null);
+  }
+
+  /**
+   * @param symbols the symbols of the dex file whose references are added by index
+   */
+  RefPoolBuffer(ReferenceTypes types, @Nullable DexSymbols symbols) {
     this.fieldDetails = types.hasFieldDetails();
     this.methodDetails = types.hasMethodDetails();
+    this.symbols = symbols;
   }
 
   // TO-DO: Bad idea
@@ -52,6 +71,7 @@ final class RefPoolBuffer {
 
   @Nonnull
   public ReferencePool getPool() {
+    if (symbols != null) compact();
     ReferencePool pool = ReferencePool.build(strings, types, fields, methods);
     this.strings = null; this.types = null; this.fields = null; this.methods = null;
     return pool;
@@ -63,16 +83,99 @@ final class RefPoolBuffer {
     return getPool();
   }
 
+  private void compact() {
+    strings = section(ReferenceType.STRING, strings, false);
+    types = section(ReferenceType.TYPE, types, false);
+    fields = section(ReferenceType.FIELD, fields, fieldDetails);
+    methods = section(ReferenceType.METHOD, methods, methodDetails);
+  }
+
+  // A section mixing objects and indices keeps the objects, in the order they were added
+  private <T extends DexRefData> List<T> section(int type, List<T> objects, boolean details) {
+    if (counts[type] == 0) return objects;
+    CompactSection<T> section = new CompactSection<>(symbols, type, distinct(type), details);
+    if (objects.isEmpty()) return section;
+    objects.addAll(section);
+    return objects;
+  }
+
+  private int[] distinct(int type) {
+    int[] array = indices[type];
+    int count = counts[type];
+    boolean sorted = true;
+    for (int i = 1; i < count && sorted; i++) sorted = array[i - 1] < array[i];
+    if (sorted) return array.length == count ? array : Arrays.copyOf(array, count);
+    Arrays.sort(array, 0, count);
+    int size = 1;
+    for (int i = 1; i < count; i++) {
+      if (array[i] != array[size - 1]) array[size++] = array[i];
+    }
+    return Arrays.copyOf(array, size);
+  }
+
+  /**
+   * Adds a reference by its index.
+   * <p>
+   * Indexed references are stored {@linkplain CompactSection compactly},
+   * sorted and without duplicates.
+   * The buffer must be {@linkplain #RefPoolBuffer(ReferenceTypes, DexSymbols) bound} to the dex file.
+   *
+   * @param type one of {@link ReferenceType#STRING STRING}, {@link ReferenceType#TYPE TYPE},
+   *             {@link ReferenceType#FIELD FIELD} or {@link ReferenceType#METHOD METHOD}
+   * @param index index of the reference in its id section
+   */
+  public void add(int type, int index) {
+    int[] array = indices[type];
+    int count = counts[type];
+    if (array == null) {
+      array = indices[type] = new int[16];
+    } else if (count == array.length) {
+      array = indices[type] = Arrays.copyOf(array, count * 2);
+    }
+    array[count] = index;
+    counts[type] = count + 1;
+  }
+
+  /**
+   * Adds all the references of an id section.
+   *
+   * @param type see {@link #add(int, int)}
+   * @param size size of the id section
+   */
+  public void addAll(int type, int size) {
+    int[] array = new int[size];
+    for (int i = 0; i < size; i++) array[i] = i;
+    indices[type] = array;
+    counts[type] = size;
+  }
+
+  /**
+   * Adds a string value of the given dex file, by its index if possible.
+   */
+  public void add(@Nonnull DexBackedDexFile dexFile, @Nonnull String value) {
+    int index = bind(dexFile) ? DexLookup.findString(dexFile, value) : DexLookup.NOT_FOUND;
+    if (index == DexLookup.NOT_FOUND) add(value);
+    else add(ReferenceType.STRING, index);
+  }
+
   public void add(@Nonnull String value) {
     strings.add(StringRefData.build(value));
   }
 
   public void add(@Nonnull StringReference value) {
-    strings.add(StringRefData.build(value));
+    if (value instanceof DexBackedStringReference && bind(((DexBackedStringReference) value).dexFile)) {
+      add(ReferenceType.STRING, ((DexBackedStringReference) value).stringIndex);
+    } else {
+      strings.add(StringRefData.build(value));
+    }
   }
 
   public void add(@Nonnull TypeReference value) {
-    types.add(TypeRefData.build(value));
+    if (value instanceof DexBackedTypeReference && bind(((DexBackedTypeReference) value).dexFile)) {
+      add(ReferenceType.TYPE, ((DexBackedTypeReference) value).typeIndex);
+    } else {
+      types.add(TypeRefData.build(value));
+    }
   }
 
   public void add(@Nonnull FieldReference value) {
@@ -82,4 +185,9 @@ final class RefPoolBuffer {
   public void add(@Nonnull MethodReference value) {
     methods.add(MethodRefData.build(value, methodDetails));
   }
+
+  private boolean bind(DexBackedDexFile dexFile) {
+    if (symbols == null) symbols = new DexSymbols(dexFile);
+    return symbols.dexFile == dexFile;
+  }
 }
@@ -17,71 +17,281 @@
 package io.github.neonorbit.dexplore;
 
 import io.github.neonorbit.dexplore.filter.ReferenceTypes;
+import io.github.neonorbit.dexplore.iface.Internal;
+import io.github.neonorbit.dexplore.util.DexEvents;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
-final class RefPoolCache<T> {
-  private final Map<Key, Entry> internal = new ConcurrentHashMap<>();
-  private final ReferenceQueue<ReferencePool> queue = new ReferenceQueue<>();
+/**
+ * Caches decoded reference pools.
+ * <p>
+ * Items are identified by their equality, see {@link DexDecoder} for the keys in use.
+ * Each item may hold pools of different reference types:
+ * <ul>
+ *   <li>A pool that {@linkplain ReferenceTypes#covers(ReferenceTypes) covers} the requested
+ *       types answers the request with a {@linkplain ReferencePool#restrict restricted} view.</li>
+ *   <li>A compatible pool that lacks some of the requested types is extended
+ *       by decoding only the missing types.</li>
+ * </ul>
+ * Two implementations are available:
+ * <ul>
+ *   <li>{@link Soft}: memory-sensitive, values are released by the garbage collector.</li>
+ *   <li>{@link Bounded}: LRU eviction within a budget of estimated bytes.</li>
+ * </ul>
+ */
+@Internal
+abstract class RefPoolCache {
+  // Rough estimates of the retained sizes, in bytes
+  private static final int POOL_SIZE = 64;
+  // a materialized reference, or an index of a compact section
+  private static final int REFERENCE_SIZE = 56;
+  private static final int INDEX_SIZE = 4;
+  private static final int COMPACT_SECTION_SIZE = 16;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
 
-  private static Key createKey(Object item, ReferenceTypes types) {
-    return new Key(item.toString(), types);
+  @Nonnull
+  static RefPoolCache newCache(@Nonnull DexOptions options) {
+    return options.maxCacheSize > 0 ? new Bounded(options.maxCacheSize) : new Soft();
   }
 
-  public void put(T item, ReferenceTypes types, ReferencePool value) {
-    Key key = createKey(item, types);
-    internal.put(key, new Entry(key, value, queue));
+  /**
+   * Returns the cached pool of an item, decoding only what is not cached yet.
+   *
+   * @param item the item to look up
+   * @param types the requested reference types
+   * @param decoder decodes the item with the given types
+   * @return the pool of the item
+   */
+  @Nonnull
+  public ReferencePool get(@Nonnull Object item, @Nonnull ReferenceTypes types,
+                           @Nonnull Function<ReferenceTypes, ReferencePool> decoder) {
+    Slot slot = lookup(item);
+    ReferencePool pool = slot == null ? null : slot.find(types);
+    if (pool != null) {
+      hits.increment();
+      return pool;
+    }
+    misses.increment();
+    int partial = slot == null ? -1 : slot.findPartial(types);
+    if (partial < 0) {
+      pool = decoder.apply(types);
+      store(item, types, pool);
+      return pool;
+    }
+    ReferenceTypes cached = slot.types[partial];
+    ReferenceTypes merged = Objects.requireNonNull(cached.merge(types));
+    ReferencePool extended = slot.pools[partial].combine(decoder.apply(types.without(cached)));
+    store(item, merged, extended);
+    return merged.equals(types) ? extended : extended.restrict(types);
   }
 
-  public ReferencePool get(T item, ReferenceTypes types) {
-    cleanStaleEntries();
-    Key key = createKey(item, types);
-    Entry entry = internal.get(key);
-    return entry != null ? entry.get() : null;
+  @Nonnull
+  public CacheStats getStats() {
+    return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size(), estimatedBytes());
   }
 
-  private void cleanStaleEntries() {
-    for (Object o; (o = queue.poll()) != null;) {
-      internal.remove(((Entry) o).key);
+  protected void recordEviction(int count) {
+    evictions.add(count);
+    if (DexEvents.isActive()) {
+      DexEvents.commit(DexEvents.Type.CACHE_EVICTION, getClass().getSimpleName(), count);
     }
   }
 
-  private static class Entry extends SoftReference<ReferencePool> {
-    private final Key key;
-    private Entry(Key key, ReferencePool value,
-                  ReferenceQueue<ReferencePool> queue) {
-      super(value, queue);
-      this.key = key;
+  @Nullable
+  protected abstract Slot lookup(Object item);
+
+  protected abstract void store(Object item, ReferenceTypes types, ReferencePool pool);
+
+  protected abstract int size();
+
+  protected abstract long estimatedBytes();
+
+  static long estimateSize(@Nonnull ReferencePool pool) {
+    return POOL_SIZE + estimateSize(pool.getStringSection()) + estimateSize(pool.getTypeSection()) +
+           estimateSize(pool.getFieldSection()) + estimateSize(pool.getMethodSection());
+  }
+
+  // compact sections only hold the indices, their elements are created on access
+  private static long estimateSize(List<?> section) {
+    if (section instanceof CompactSection) {
+      return COMPACT_SECTION_SIZE + (long) INDEX_SIZE * section.size();
     }
+    return (long) REFERENCE_SIZE * section.size();
   }
 
-  private static class Key {
-    private final Object first;
-    private final Object second;
+  /**
+   * The pools of an item. Instances are immutable.
+   */
+  static final class Slot {
+    private static final Slot EMPTY = new Slot(new ReferenceTypes[0], new ReferencePool[0], 0);
+
+    private final ReferenceTypes[] types;
+    private final ReferencePool[] pools;
+    private final long size;
 
-    private Key(Object first, Object second) {
-      this.first = first;
-      this.second = second;
+    private Slot(ReferenceTypes[] types, ReferencePool[] pools, long size) {
+      this.types = types;
+      this.pools = pools;
+      this.size = size;
+    }
+
+    @Nullable
+    ReferencePool find(ReferenceTypes requested) {
+      for (int i = 0; i < types.length; i++) {
+        if (types[i].equals(requested)) return pools[i];
+      }
+      for (int i = 0; i < types.length; i++) {
+        if (types[i].covers(requested)) return pools[i].restrict(requested);
+      }
+      return null;
+    }
+
+    /**
+     * @return index of a compatible pool that shares some of the requested types, or -1
+     */
+    int findPartial(ReferenceTypes requested) {
+      for (int i = 0; i < types.length; i++) {
+        if (types[i].merge(requested) != null && requested.without(types[i]) != requested) return i;
+      }
+      return -1;
+    }
+
+    /**
+     * @return a new slot with the given pool, without the pools it covers
+     */
+    Slot with(ReferenceTypes added, ReferencePool pool) {
+      List<ReferenceTypes> newTypes = new ArrayList<>(types.length + 1);
+      List<ReferencePool> newPools = new ArrayList<>(types.length + 1);
+      long newSize = estimateSize(pool);
+      for (int i = 0; i < types.length; i++) {
+        if (added.covers(types[i])) continue;
+        newTypes.add(types[i]);
+        newPools.add(pools[i]);
+        newSize += estimateSize(pools[i]);
+      }
+      newTypes.add(added);
+      newPools.add(pool);
+      return new Slot(
+              newTypes.toArray(new ReferenceTypes[0]), newPools.toArray(new ReferencePool[0]), newSize
+      );
+    }
+  }
+
+  /**
+   * Holds values through soft references, which are cleared under memory pressure.
+   */
+  static final class Soft extends RefPoolCache {
+    private final Map<Object, Entry> internal = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Slot> queue = new ReferenceQueue<>();
+
+    @Override
+    protected Slot lookup(Object item) {
+      cleanStaleEntries();
+      Entry entry = internal.get(item);
+      return entry != null ? entry.get() : null;
     }
 
     @Override
-    public int hashCode() {
-      return Objects.hash(first, second);
+    protected void store(Object item, ReferenceTypes types, ReferencePool pool) {
+      internal.compute(item, (key, entry) -> {
+        Slot slot = entry != null ? entry.get() : null;
+        return new Entry(key, (slot != null ? slot : Slot.EMPTY).with(types, pool), queue);
+      });
     }
 
     @Override
-    public boolean equals(Object obj) {
-      if (this == obj) return true;
-      if (obj instanceof Key) {
-        Key another = (Key) obj;
-        return this.first.equals(another.first) &&
-               this.second.equals(another.second);
+    protected int size() {
+      cleanStaleEntries();
+      return internal.size();
+    }
+
+    @Override
+    protected long estimatedBytes() {
+      long bytes = 0;
+      for (Entry entry : internal.values()) {
+        Slot slot = entry.get();
+        if (slot != null) bytes += slot.size;
+      }
+      return bytes;
+    }
+
+    private void cleanStaleEntries() {
+      for (Object o; (o = queue.poll()) != null;) {
+        Entry entry = (Entry) o;
+        if (internal.remove(entry.key, entry)) recordEviction(1);
+      }
+    }
+
+    private static class Entry extends SoftReference<Slot> {
+      private final Object key;
+      private Entry(Object key, Slot value, ReferenceQueue<Slot> queue) {
+        super(value, queue);
+        this.key = key;
+      }
+    }
+  }
+
+  /**
+   * Evicts the least recently used items once the estimated size exceeds the budget.
+   */
+  static final class Bounded extends RefPoolCache {
+    private final long budget;
+    private long bytes;
+    private final LinkedHashMap<Object, Slot> internal = new LinkedHashMap<>(64, 0.75f, true);
+
+    Bounded(long budget) {
+      this.budget = budget;
+    }
+
+    @Override
+    protected synchronized Slot lookup(Object item) {
+      return internal.get(item);
+    }
+
+    @Override
+    protected synchronized void store(Object item, ReferenceTypes types, ReferencePool pool) {
+      Slot previous = internal.remove(item);
+      Slot slot = (previous != null ? previous : Slot.EMPTY).with(types, pool);
+      if (previous != null) bytes -= previous.size;
+      if (slot.size > budget) {
+        if (previous != null) recordEviction(1);
+        return;
+      }
+      int evicted = 0;
+      Iterator<Slot> iterator = internal.values().iterator();
+      while (bytes + slot.size > budget && iterator.hasNext()) {
+        bytes -= iterator.next().size;
+        iterator.remove();
+        evicted++;
       }
-      return false;
+      internal.put(item, slot);
+      bytes += slot.size;
+      if (evicted > 0) recordEviction(evicted);
+    }
+
+    @Override
+    protected synchronized int size() {
+      return internal.size();
+    }
+
+    @Override
+    protected synchronized long estimatedBytes() {
+      return bytes;
     }
   }
 }
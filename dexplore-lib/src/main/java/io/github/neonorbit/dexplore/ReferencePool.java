@@ -16,6 +16,9 @@
 
 package io.github.neonorbit.dexplore;
 
+import io.github.neonorbit.dexplore.filter.ReferenceTypes;
+import io.github.neonorbit.dexplore.filter.ValueResolver;
+import io.github.neonorbit.dexplore.iface.Internal;
 import io.github.neonorbit.dexplore.reference.DexRefData;
 import io.github.neonorbit.dexplore.reference.FieldRefData;
 import io.github.neonorbit.dexplore.reference.MethodRefData;
@@ -23,8 +26,10 @@ import io.github.neonorbit.dexplore.reference.StringRefData;
 import io.github.neonorbit.dexplore.reference.TypeRefData;
 import io.github.neonorbit.dexplore.util.MergedList;
 import io.github.neonorbit.dexplore.util.Utils;
+import org.jf.dexlib2.ReferenceType;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Collections;
 import java.util.List;
 import java.util.StringJoiner;
@@ -78,14 +83,66 @@ public final class ReferencePool {
       return EMPTY_POOL;
     } else {
       return new ReferencePool(
-              Utils.optimizedList(strings),
-              Utils.optimizedList(types),
-              Utils.optimizedList(fields),
-              Utils.optimizedList(methods)
+              optimized(strings),
+              optimized(types),
+              optimized(fields),
+              optimized(methods)
       );
     }
   }
 
+  private static <T> List<T> optimized(List<T> section) {
+    return section instanceof CompactSection ? section : Utils.optimizedList(section);
+  }
+
+  private static boolean contains(List<? extends DexRefData> section, ValueResolver.Resolved value) {
+    if (section instanceof CompactSection) {
+      return ((CompactSection<?>) section).contains(value);
+    }
+    return contains(section, value.value);
+  }
+
+  private static boolean contains(List<? extends DexRefData> section, String value) {
+    if (section instanceof CompactSection) {
+      return ((CompactSection<?>) section).containsValue(value);
+    }
+    for (DexRefData data : section) {
+      if (data.contains(value)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return a pool with only the sections included by the given types
+   */
+  ReferencePool restrict(ReferenceTypes types) {
+    if (isEmpty()) return this;
+    ReferencePool pool = new ReferencePool(
+            types.hasString() ? strings : Collections.emptyList(),
+            types.hasTypeDes() ? this.types : Collections.emptyList(),
+            types.hasField() ? fields : Collections.emptyList(),
+            types.hasMethod() ? methods : Collections.emptyList()
+    );
+    return pool.strings.isEmpty() && pool.types.isEmpty() &&
+           pool.fields.isEmpty() && pool.methods.isEmpty() ? EMPTY_POOL : pool;
+  }
+
+  /**
+   * Combines the sections of two pools decoded with disjoint reference types.
+   *
+   * @return a pool with the non-empty sections of both pools
+   */
+  ReferencePool combine(ReferencePool other) {
+    if (other.isEmpty()) return this;
+    if (this.isEmpty()) return other;
+    return new ReferencePool(
+            strings.isEmpty() ? other.strings : strings,
+            types.isEmpty() ? other.types : types,
+            fields.isEmpty() ? other.fields : fields,
+            methods.isEmpty() ? other.methods : methods
+    );
+  }
+
   public static ReferencePool merge(@Nonnull List<ReferencePool> pools) {
     if (pools.isEmpty() || pools.stream().allMatch(ReferencePool::isEmpty)) return EMPTY_POOL;
     return new ReferencePool(
@@ -96,6 +153,33 @@ public final class ReferencePool {
     );
   }
 
+  /**
+   * @return the resolver of the dex file whose references are stored by index, or null
+   */
+  @Internal
+  @Nullable
+  public ValueResolver getResolver() {
+    List<?> section = strings instanceof CompactSection ? strings :
+                      types instanceof CompactSection ? types :
+                      fields instanceof CompactSection ? fields : methods;
+    return section instanceof CompactSection ? ((CompactSection<?>) section).getResolver() : null;
+  }
+
+  /**
+   * Equivalent to the {@code contains} methods of the given sections, for a resolved value.
+   *
+   * @param value the resolved value
+   * @param sections a bitmask of {@code 1 << }{@link ReferenceType} values
+   * @return {@code true} if the value is found within the given sections of the pool
+   */
+  @Internal
+  public boolean contains(@Nonnull ValueResolver.Resolved value, int sections) {
+    return (sections & (1 << ReferenceType.STRING)) != 0 && contains(strings, value) ||
+           (sections & (1 << ReferenceType.TYPE)) != 0 && contains(types, value) ||
+           (sections & (1 << ReferenceType.FIELD)) != 0 && contains(fields, value) ||
+           (sections & (1 << ReferenceType.METHOD)) != 0 && contains(methods, value);
+  }
+
   public static ReferencePool emptyPool() {
     return EMPTY_POOL;
   }
@@ -193,7 +277,7 @@ public final class ReferencePool {
    * @see #getStringSection()
    */
   public boolean stringsContain(@Nonnull String value) {
-    return strings.stream().anyMatch(s -> s.contains(value));
+    return contains(strings, value);
   }
 
   /**
@@ -207,7 +291,7 @@ public final class ReferencePool {
    * @see #getTypeSection()
    */
   public boolean typesContain(@Nonnull String value) {
-    return types.stream().anyMatch(t -> t.contains(value));
+    return contains(types, value);
   }
 
   /**
@@ -221,7 +305,7 @@ public final class ReferencePool {
    * @see #getFieldSection()
    */
   public boolean fieldsContain(@Nonnull String value) {
-    return fields.stream().anyMatch(f -> f.contains(value));
+    return contains(fields, value);
   }
 
   /**
@@ -235,7 +319,7 @@ public final class ReferencePool {
    * @see #getMethodSection()
    */
   public boolean methodsContain(@Nonnull String value) {
-    return methods.stream().anyMatch(m -> m.contains(value));
+    return contains(methods, value);
   }
 
   /**
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.neonorbit.dexplore;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A listener for receiving the {@linkplain SearchStats statistics} of searches.
+ * <p>
+ * Attach it through {@link DexOptions#searchListener}.
+ *
+ * @author NeonOrbit
+ * @since 1.5.0
+ */
+@FunctionalInterface
+public interface SearchListener {
+  /**
+   * Called after each search, from the thread that ran the search.
+   * <p>
+   * Each query of a {@link QueryBatch} is reported separately, with its key.
+   * The queries of a {@linkplain QueryBatch.Builder#setSinglePass(boolean) single-pass}
+   * batch are reported once the pass completes; the work they share, such as
+   * decoding a pool used by several queries, is counted by only one of them.
+   *
+   * @param key the key of the batch query, or {@code null} for other searches
+   * @param stats the statistics of the search
+   */
+  void onSearchCompleted(@Nullable String key, @Nonnull SearchStats stats);
+}
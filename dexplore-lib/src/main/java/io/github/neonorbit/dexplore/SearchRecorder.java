@@ -0,0 +1,337 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.SearchStats.Phase;
+import io.github.neonorbit.dexplore.filter.ClassFilter;
+import io.github.neonorbit.dexplore.filter.FilterCriterion;
+import io.github.neonorbit.dexplore.filter.MethodFilter;
+import io.github.neonorbit.dexplore.iface.Internal;
+import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.dexbacked.DexBackedMethod;
+import org.jf.dexlib2.dexbacked.raw.HeaderItem;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records the statistics of a search.
+ * <p>
+ * Each thread taking part in a search records into its own {@link Probe},
+ * which is bound to the thread for the duration of its work.
+ * The probes are merged once the search completes.
+ * <p>
+ * Searches interleaved on the same thread, such as the queries of a single-pass
+ * batch, are recorded by {@linkplain #create() unbound} recorders instead,
+ * whose probe is bound to the thread while working on their own search.
+ * <p>
+ * Recording is only started when a {@link SearchListener} is attached.
+ * Otherwise, the instrumented code checks a final field and skips the probes.
+ */
+@Internal
+final class SearchRecorder {
+  private static final int PHASES = Phase.values().length;
+  private static final int CRITERIA = FilterCriterion.values().length;
+  private static final ThreadLocal<Probe> CURRENT = new ThreadLocal<>();
+
+  private final long startTime = System.nanoTime();
+  private final ThreadMXBean threads = cpuTimeBean();
+  private final Queue<Probe> probes = new ConcurrentLinkedQueue<>();
+  // the probe of an unbound recorder
+  private Probe unbound;
+
+  private SearchRecorder() {}
+
+  /**
+   * @return the probe of the current thread, or null if no search is being recorded
+   */
+  @Nullable
+  static Probe probe() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Starts recording a search on the current thread.
+   *
+   * @return a new recorder, or null if the thread is already recording a search
+   */
+  @Nullable
+  static SearchRecorder start() {
+    if (CURRENT.get() != null) return null;
+    SearchRecorder recorder = new SearchRecorder();
+    CURRENT.set(recorder.newProbe());
+    return recorder;
+  }
+
+  /**
+   * Creates a recorder that is not bound to any thread.
+   * Its probe only records while {@linkplain #bind() bound}.
+   *
+   * @return a new recorder
+   */
+  @Nonnull
+  static SearchRecorder create() {
+    SearchRecorder recorder = new SearchRecorder();
+    recorder.unbound = recorder.newProbe();
+    return recorder;
+  }
+
+  /**
+   * Binds the probe of an {@linkplain #create() unbound} recorder to the current thread.
+   *
+   * @return the previous probe of the thread, to be restored by {@link #unbind(Probe)}
+   */
+  @Nullable
+  Probe bind() {
+    Probe previous = CURRENT.get();
+    unbound.resume();
+    CURRENT.set(unbound);
+    return previous;
+  }
+
+  /**
+   * Pauses the probe bound by {@link #bind()} and restores the previous one.
+   */
+  void unbind(@Nullable Probe previous) {
+    unbound.charge();
+    restore(previous);
+  }
+
+  /**
+   * Binds a new probe of this recording to the current thread.
+   *
+   * @return the previous probe of the thread, to be restored by {@link #detach(Probe)}
+   */
+  @Nullable
+  Probe attach() {
+    Probe previous = CURRENT.get();
+    CURRENT.set(newProbe());
+    return previous;
+  }
+
+  /**
+   * Closes the probe of the current thread and restores the previous one.
+   */
+  static void detach(@Nullable Probe previous) {
+    Probe probe = CURRENT.get();
+    if (probe != null) probe.close();
+    restore(previous);
+  }
+
+  private static void restore(@Nullable Probe previous) {
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+    }
+  }
+
+  /**
+   * Stops recording on the current thread.
+   *
+   * @return the merged statistics of the search
+   */
+  @Nonnull
+  SearchStats finish() {
+    if (unbound != null) {
+      // paused since the last unbind
+      unbound.resume();
+      unbound.close();
+    } else {
+      detach(null);
+    }
+    long totalTime = System.nanoTime() - startTime;
+    long dexFiles = 0, bytes = 0, classes = 0, methods = 0;
+    long pools = 0, hits = 0, misses = 0, results = 0;
+    long[] rejections = new long[CRITERIA];
+    long[] wallTimes = new long[PHASES];
+    long[] cpuTimes = threads == null ? null : new long[PHASES];
+    for (Probe probe : probes) {
+      dexFiles += probe.dexFiles;
+      bytes += probe.bytes;
+      classes += probe.classes;
+      methods += probe.methods;
+      pools += probe.pools;
+      hits += probe.hits;
+      misses += probe.misses;
+      results += probe.results;
+      for (int i = 0; i < CRITERIA; i++) rejections[i] += probe.rejections[i];
+      for (int i = 0; i < PHASES; i++) {
+        wallTimes[i] += probe.wallTimes[i];
+        if (cpuTimes != null) cpuTimes[i] += probe.cpuTimes[i];
+      }
+    }
+    return new SearchStats(dexFiles, bytes, classes, methods, pools, hits,
+            misses, results, rejections, wallTimes, cpuTimes, totalTime);
+  }
+
+  /**
+   * Verifies a class, through the probe if the search is being recorded.
+   */
+  static boolean verify(@Nullable Probe probe, ClassFilter filter, DexBackedClassDef dexClass,
+                        LazyDecoder<DexBackedClassDef> decoder) {
+    return probe == null ? filter.verify(dexClass, decoder) : probe.verify(filter, dexClass, decoder);
+  }
+
+  /**
+   * Verifies a method, through the probe if the search is being recorded.
+   */
+  static boolean verify(@Nullable Probe probe, MethodFilter filter, DexBackedMethod dexMethod,
+                        LazyDecoder<DexBackedMethod> decoder) {
+    return probe == null ? filter.verify(dexMethod, decoder) : probe.verify(filter, dexMethod, decoder);
+  }
+
+  private Probe newProbe() {
+    Probe probe = new Probe(this);
+    probes.add(probe);
+    return probe;
+  }
+
+  private static ThreadMXBean cpuTimeBean() {
+    try {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      return bean.isCurrentThreadCpuTimeSupported() && bean.isThreadCpuTimeEnabled() ? bean : null;
+    } catch (Throwable e) {
+      return null;
+    }
+  }
+
+  /**
+   * The statistics recorded by a single thread. Not thread-safe.
+   */
+  static final class Probe {
+    private final SearchRecorder recorder;
+    private final ThreadMXBean threads;
+    private long dexFiles, bytes, classes, methods;
+    private long pools, hits, misses, results;
+    private final long[] rejections = new long[CRITERIA];
+    private final long[] wallTimes = new long[PHASES];
+    private final long[] cpuTimes = new long[PHASES];
+    private int[] phases = new int[8];
+    private int depth;
+    private long wallMark;
+    private long cpuMark;
+
+    private Probe(SearchRecorder recorder) {
+      this.recorder = recorder;
+      this.threads = recorder.threads;
+      this.wallMark = System.nanoTime();
+      this.cpuMark = cpuTime();
+      this.phases[depth++] = Phase.SCAN.ordinal();
+    }
+
+    /**
+     * @return the recording this probe belongs to
+     */
+    SearchRecorder recorder() {
+      return recorder;
+    }
+
+    void enter(Phase phase) {
+      charge();
+      if (depth == phases.length) phases = Arrays.copyOf(phases, depth * 2);
+      phases[depth++] = phase.ordinal();
+    }
+
+    void exit() {
+      charge();
+      depth--;
+    }
+
+    private void close() {
+      charge();
+      depth = 0;
+    }
+
+    // restarts the marks, the time since the last charge is not recorded
+    private void resume() {
+      wallMark = System.nanoTime();
+      cpuMark = cpuTime();
+    }
+
+    // adds the time since the last mark to the current phase
+    private void charge() {
+      if (depth == 0) return;
+      long wall = System.nanoTime(), cpu = cpuTime();
+      int phase = phases[depth - 1];
+      wallTimes[phase] += wall - wallMark;
+      cpuTimes[phase] += cpu - cpuMark;
+      wallMark = wall;
+      cpuMark = cpu;
+    }
+
+    private long cpuTime() {
+      return threads == null ? 0 : threads.getCurrentThreadCpuTime();
+    }
+
+    boolean verify(ClassFilter filter, DexBackedClassDef dexClass,
+                   LazyDecoder<DexBackedClassDef> decoder) {
+      classes++;
+      enter(Phase.FILTER);
+      try {
+        return accepted(filter.check(dexClass, decoder));
+      } finally {
+        exit();
+      }
+    }
+
+    boolean verify(MethodFilter filter, DexBackedMethod dexMethod,
+                   LazyDecoder<DexBackedMethod> decoder) {
+      methods++;
+      enter(Phase.FILTER);
+      try {
+        return accepted(filter.check(dexMethod, decoder));
+      } finally {
+        exit();
+      }
+    }
+
+    private boolean accepted(@Nullable FilterCriterion rejected) {
+      if (rejected == null) return true;
+      rejections[rejected.ordinal()]++;
+      return false;
+    }
+
+    void dexLoaded(DexBackedDexFile dexFile) {
+      dexFiles++;
+      bytes += dexFile.getBuffer().readSmallUint(HeaderItem.FILE_SIZE_OFFSET);
+    }
+
+    void poolDecoded() {
+      pools++;
+    }
+
+    long poolCount() {
+      return pools;
+    }
+
+    void cacheLookup(boolean hit) {
+      if (hit) hits++; else misses++;
+    }
+
+    void resultBuilt() {
+      results++;
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.filter.FilterCriterion;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The statistics of a single search.
+ * <p>
+ * Phase times are summed over all the threads that took part in the search,
+ * so they may exceed the {@linkplain #totalTime() total time} of parallel searches.
+ *
+ * @see SearchListener
+ * @see DexOptions#searchListener
+ *
+ * @author NeonOrbit
+ * @since 1.5.0
+ */
+public final class SearchStats {
+  /**
+   * The phases of a search.
+   * Nested phases are excluded from the time of the enclosing phase.
+   */
+  public enum Phase {
+    /** Iteration over dex files and classes, indexing, and anything not covered by other phases */
+    SCAN,
+    /** Loading dex files */
+    LOAD,
+    /** Decoding reference pools */
+    DECODE,
+    /** Evaluating class and method filters */
+    FILTER,
+    /** Building results */
+    RESULT
+  }
+
+  private final long dexFilesLoaded;
+  private final long bytesRead;
+  private final long classesVisited;
+  private final long methodsVisited;
+  private final long poolsDecoded;
+  private final long cacheHits;
+  private final long cacheMisses;
+  private final long resultCount;
+  private final long[] rejections;
+  private final long[] wallTimes;
+  private final long[] cpuTimes;
+  private final long totalTime;
+
+  SearchStats(long dexFilesLoaded, long bytesRead,
+              long classesVisited, long methodsVisited,
+              long poolsDecoded, long cacheHits, long cacheMisses,
+              long resultCount, long[] rejections,
+              long[] wallTimes, long[] cpuTimes, long totalTime) {
+    this.dexFilesLoaded = dexFilesLoaded;
+    this.bytesRead = bytesRead;
+    this.classesVisited = classesVisited;
+    this.methodsVisited = methodsVisited;
+    this.poolsDecoded = poolsDecoded;
+    this.cacheHits = cacheHits;
+    this.cacheMisses = cacheMisses;
+    this.resultCount = resultCount;
+    this.rejections = rejections;
+    this.wallTimes = wallTimes;
+    this.cpuTimes = cpuTimes;
+    this.totalTime = totalTime;
+  }
+
+  /**
+   * @return the number of dex files loaded by the search
+   */
+  public long dexFilesLoaded() {
+    return dexFilesLoaded;
+  }
+
+  /**
+   * @return the total size of the dex files loaded by the search, in bytes
+   */
+  public long bytesRead() {
+    return bytesRead;
+  }
+
+  /**
+   * @return the number of classes verified against the class filter
+   */
+  public long classesVisited() {
+    return classesVisited;
+  }
+
+  /**
+   * @return the number of methods verified against the method filter
+   */
+  public long methodsVisited() {
+    return methodsVisited;
+  }
+
+  /**
+   * @return the number of reference pools decoded
+   */
+  public long poolsDecoded() {
+    return poolsDecoded;
+  }
+
+  /**
+   * @return the number of reference pools found in the cache
+   */
+  public long cacheHits() {
+    return cacheHits;
+  }
+
+  /**
+   * @return the number of cache lookups that required decoding
+   */
+  public long cacheMisses() {
+    return cacheMisses;
+  }
+
+  /**
+   * @return the number of results built
+   */
+  public long resultCount() {
+    return resultCount;
+  }
+
+  /**
+   * @param criterion a filter criterion
+   * @return the number of classes and methods rejected by the criterion
+   */
+  public long rejectionCount(@Nonnull FilterCriterion criterion) {
+    return rejections[criterion.ordinal()];
+  }
+
+  /**
+   * @return the number of classes and methods rejected by each criterion,
+   *         criteria that rejected nothing are omitted
+   */
+  @Nonnull
+  public Map<FilterCriterion, Long> rejections() {
+    Map<FilterCriterion, Long> map = new EnumMap<>(FilterCriterion.class);
+    for (FilterCriterion criterion : FilterCriterion.values()) {
+      long count = rejections[criterion.ordinal()];
+      if (count > 0) map.put(criterion, count);
+    }
+    return Collections.unmodifiableMap(map);
+  }
+
+  /**
+   * @param phase a search phase
+   * @return the wall-clock time spent in the phase, in nanoseconds
+   */
+  public long wallTime(@Nonnull Phase phase) {
+    return wallTimes[phase.ordinal()];
+  }
+
+  /**
+   * @param phase a search phase
+   * @return the CPU time spent in the phase, in nanoseconds,
+   *         or -1 if thread CPU time measurement is not supported
+   */
+  public long cpuTime(@Nonnull Phase phase) {
+    return cpuTimes == null ? -1 : cpuTimes[phase.ordinal()];
+  }
+
+  /**
+   * @return the wall-clock time of the search, in nanoseconds
+   */
+  public long totalTime() {
+    return totalTime;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("SearchStats{");
+    builder.append("dexFiles=").append(dexFilesLoaded)
+           .append(", bytes=").append(bytesRead)
+           .append(", classes=").append(classesVisited)
+           .append(", methods=").append(methodsVisited)
+           .append(", pools=").append(poolsDecoded)
+           .append(", hits=").append(cacheHits)
+           .append(", misses=").append(cacheMisses)
+           .append(", results=").append(resultCount)
+           .append(", rejections=").append(rejections())
+           .append(", time=").append(totalTime / 1000).append("us");
+    for (Phase phase : Phase.values()) {
+      builder.append(", ").append(phase.name().toLowerCase()).append('=')
+             .append(wallTime(phase) / 1000).append("us");
+    }
+    return builder.append('}').toString();
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.filter.ReferenceTypes;
+import io.github.neonorbit.dexplore.iface.Internal;
+import io.github.neonorbit.dexplore.util.LiteralSet;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * A decoder shared by the filters of multiple queries.
+ * <p>
+ * The reference types requested by the queries are merged in advance.
+ * Each item is then decoded at most once per merged type, and each filter
+ * receives a view of the pool restricted to the types it requested.
+ * <p>
+ * Only the pools of the most recent item are retained, items being compared by identity.
+ * Decoders created with an {@linkplain #SharedDecoder(LazyDecoder, List, ToIntFunction) index}
+ * retain the pools of all items until {@linkplain #reset() reset} instead, since the scanners
+ * of different queries visit the same items in turn, each with its own instances.
+ */
+@Internal
+final class SharedDecoder<T> implements LazyDecoder<T> {
+  private final LazyDecoder<T> decoder;
+  private final Map<ReferenceTypes, ReferenceTypes> merged;
+  private final Map<ReferenceTypes, ReferencePool> pools = new HashMap<>();
+  private final Map<Integer, Map<ReferenceTypes, ReferencePool>> retained = new HashMap<>();
+  private final ToIntFunction<T> indexOf;
+  private T current;
+
+  SharedDecoder(@Nonnull LazyDecoder<T> decoder, @Nonnull List<ReferenceTypes> requested) {
+    this(decoder, requested, null);
+  }
+
+  /**
+   * @param indexOf identifies the items until the next {@linkplain #reset() reset}
+   */
+  SharedDecoder(@Nonnull LazyDecoder<T> decoder, @Nonnull List<ReferenceTypes> requested,
+                @Nullable ToIntFunction<T> indexOf) {
+    this.decoder = decoder;
+    this.merged = mergeAll(requested);
+    this.indexOf = indexOf;
+  }
+
+  /**
+   * Discards the retained pools.
+   */
+  void reset() {
+    current = null;
+    pools.clear();
+    retained.clear();
+  }
+
+  // merging only adds sections, so each group keeps covering its former members
+  private static Map<ReferenceTypes, ReferenceTypes> mergeAll(List<ReferenceTypes> requested) {
+    List<ReferenceTypes> groups = new ArrayList<>();
+    Map<ReferenceTypes, Integer> members = new HashMap<>();
+    for (ReferenceTypes types : requested) {
+      if (members.containsKey(types)) continue;
+      int i = 0;
+      for (; i < groups.size(); i++) {
+        ReferenceTypes group = groups.get(i).merge(types);
+        if (group != null) {
+          groups.set(i, group);
+          break;
+        }
+      }
+      if (i == groups.size()) groups.add(types);
+      members.put(types, i);
+    }
+    Map<ReferenceTypes, ReferenceTypes> merged = new HashMap<>();
+    members.forEach((types, i) -> merged.put(types, groups.get(i)));
+    return merged;
+  }
+
+  @Override
+  public ReferencePool decode(T dexItem, ReferenceTypes types) {
+    Map<ReferenceTypes, ReferencePool> pools = poolsOf(dexItem);
+    ReferenceTypes group = merged.getOrDefault(types, types);
+    ReferencePool pool = pools.get(group);
+    if (pool == null) {
+      pool = decoder.decode(dexItem, group);
+      pools.put(group, pool);
+    }
+    return group.equals(types) ? pool : pool.restrict(types);
+  }
+
+  private Map<ReferenceTypes, ReferencePool> poolsOf(T dexItem) {
+    if (indexOf != null) {
+      return retained.computeIfAbsent(indexOf.applyAsInt(dexItem), i -> new HashMap<>());
+    }
+    if (dexItem != current) {
+      current = dexItem;
+      pools.clear();
+    }
+    return pools;
+  }
+
+  @Override
+  public Boolean containsLiterals(T dexItem, LiteralSet literals, boolean synthetic) {
+    return decoder.containsLiterals(dexItem, literals, synthetic);
+  }
+
+  @Override
+  public CodeHeader readCodeHeader(T dexItem) {
+    return decoder.readCodeHeader(dexItem);
+  }
+
+  @Override
+  public int[] countMembers(T dexItem) {
+    return decoder.countMembers(dexItem);
+  }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.DexOperation.ClassScanner;
+import io.github.neonorbit.dexplore.exception.AbortException;
+import io.github.neonorbit.dexplore.filter.ClassFilter;
+import io.github.neonorbit.dexplore.filter.DexFilter;
+import io.github.neonorbit.dexplore.filter.MethodFilter;
+import io.github.neonorbit.dexplore.filter.ReferenceTypes;
+import io.github.neonorbit.dexplore.iface.Internal;
+import io.github.neonorbit.dexplore.iface.Operator;
+import io.github.neonorbit.dexplore.util.DexLog;
+import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile.IndexedSection;
+import org.jf.dexlib2.dexbacked.DexBackedMethod;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Runs multiple queries in a single pass over the dex files.
+ * <p>
+ * Each class is visited once and verified against all the queries
+ * that are still active in the current dex file. The references
+ * of each item are decoded at most once, using {@link SharedDecoder}.
+ * A query retires as soon as its operator terminates.
+ * <p>
+ * Each query may be recorded by its own {@linkplain SearchRecorder#create() unbound}
+ * recorder, bound to the thread while the scan works on that query.
+ * The pools shared by several queries are counted by the first one to decode them.
+ * <p>
+ * Queries with {@linkplain DexFilter#preferredList() preferred} dex files
+ * or {@linkplain DexFilter#isUnique() unique} dex filters depend on their own
+ * search order, and are therefore run separately.
+ */
+@Internal
+final class SharedScan {
+  private final DexOperation operation;
+  private final DexContainer container;
+  private final DexDecoder dexDecoder;
+  private final List<Member<?>> members = new ArrayList<>();
+
+  SharedScan(DexOperation operation, DexContainer container, DexDecoder dexDecoder) {
+    this.operation = operation;
+    this.container = container;
+    this.dexDecoder = dexDecoder;
+  }
+
+  /**
+   * @param recorder records the query, or null if the query is not recorded separately
+   */
+  void addClassQuery(@Nonnull DexFilter dexFilter,
+                     @Nonnull ClassFilter classFilter,
+                     @Nonnull Operator<DexBackedClassDef> operator,
+                     @Nullable SearchRecorder recorder) {
+    members.add(new Member<>(dexFilter, classFilter, null,
+            decoder -> DexOperation.classScanner(), operator, recorder));
+  }
+
+  /**
+   * @param recorder records the query, or null if the query is not recorded separately
+   */
+  void addMethodQuery(@Nonnull DexFilter dexFilter,
+                      @Nonnull ClassFilter classFilter,
+                      @Nonnull MethodFilter methodFilter,
+                      @Nonnull Operator<DexBackedMethod> operator,
+                      @Nullable SearchRecorder recorder) {
+    members.add(new Member<>(dexFilter, classFilter, methodFilter,
+            decoder -> DexOperation.methodScanner(methodFilter, decoder), operator, recorder));
+  }
+
+  void run() {
+    List<Member<?>> active = new ArrayList<>();
+    for (Member<?> member : members) {
+      if (member.isShareable()) {
+        active.add(member);
+      } else {
+        member.run(member::runSeparately);
+      }
+    }
+    if (active.isEmpty()) return;
+    SharedDecoder<DexEntry> entryDecoder = newDecoder(dexDecoder::decode, active, m -> m.dexFilter.referenceTypes());
+    DexDecoder.ClassDecoder positioned = dexDecoder.newClassDecoder();
+    SharedDecoder<DexBackedClassDef> classDecoder = newDecoder(positioned, active, m -> m.classFilter.referenceTypes());
+    // the methods of each class are retained for all the queries
+    SharedDecoder<DexBackedMethod> methodDecoder = new SharedDecoder<>(positioned.methods(),
+            requestedTypes(active, m -> m.methodFilter == null ? null : m.methodFilter.referenceTypes()),
+            dexMethod -> dexMethod.methodIndex);
+    active.forEach(member -> member.run(() -> member.prepare(methodDecoder)));
+    SearchRecorder.Probe probe = SearchRecorder.probe();
+    for (DexEntry entry : container.getEntries()) {
+      List<Member<?>> current = new ArrayList<>();
+      for (Member<?> member : active) {
+        if (member.call(() -> member.enter(entry, entryDecoder))) current.add(member);
+      }
+      if (!current.isEmpty()) {
+        DexLog.d("Searching: " + entry.getDexName() + " [" + current.size() + " queries]");
+        scan(entry, current, positioned, classDecoder, methodDecoder, probe);
+      }
+      active.removeIf(member -> member.retired);
+      if (active.isEmpty()) break;
+    }
+  }
+
+  private static void scan(DexEntry entry, List<Member<?>> members,
+                           DexDecoder.ClassDecoder positioned,
+                           LazyDecoder<DexBackedClassDef> decoder,
+                           SharedDecoder<DexBackedMethod> methodDecoder,
+                           @Nullable SearchRecorder.Probe probe) {
+    IndexedSection<DexBackedClassDef> classes = entry.getDexFile().getClassSection();
+    for (int i = 0, size = classes.size(); i < size && !members.isEmpty(); i++) {
+      DexBackedClassDef dexClass = null;
+      for (int k = 0; k < members.size(); k++) {
+        Member<?> member = members.get(k);
+        if (!member.accepts(i)) continue;
+        if (dexClass == null) {
+          dexClass = classes.get(i);
+          positioned.at(entry, i);
+          methodDecoder.reset();
+        }
+        if (member.scan(dexClass, decoder, probe)) {
+          member.retired = true;
+          members.remove(k--);
+        }
+      }
+    }
+  }
+
+  private static <T> SharedDecoder<T> newDecoder(LazyDecoder<T> decoder, List<Member<?>> members,
+                                                 Function<Member<?>, ReferenceTypes> mapper) {
+    return new SharedDecoder<>(decoder, requestedTypes(members, mapper));
+  }
+
+  private static List<ReferenceTypes> requestedTypes(List<Member<?>> members,
+                                                     Function<Member<?>, ReferenceTypes> mapper) {
+    List<ReferenceTypes> requested = new ArrayList<>();
+    for (Member<?> member : members) {
+      ReferenceTypes types = mapper.apply(member);
+      if (types != null) requested.add(types);
+    }
+    return requested;
+  }
+
+  private final class Member<T> {
+    final DexFilter dexFilter;
+    final ClassFilter classFilter;
+    final MethodFilter methodFilter;
+    final Function<LazyDecoder<DexBackedMethod>, ClassScanner<T>> factory;
+    final Operator<T> operator;
+    final SearchRecorder recorder;
+    ClassScanner<T> scanner;
+    DexIndex.Query query;
+    int[] candidates;
+    boolean retired;
+
+    Member(DexFilter dexFilter, ClassFilter classFilter, @Nullable MethodFilter methodFilter,
+           Function<LazyDecoder<DexBackedMethod>, ClassScanner<T>> factory, Operator<T> operator,
+           @Nullable SearchRecorder recorder) {
+      this.dexFilter = dexFilter;
+      this.classFilter = classFilter;
+      this.methodFilter = methodFilter;
+      this.factory = factory;
+      this.operator = operator;
+      this.recorder = recorder;
+    }
+
+    /**
+     * Runs a step of this query, with its recorder bound to the thread.
+     */
+    void run(Runnable step) {
+      call(() -> {
+        step.run();
+        return true;
+      });
+    }
+
+    boolean call(BooleanSupplier step) {
+      if (recorder == null) return step.getAsBoolean();
+      SearchRecorder.Probe previous = recorder.bind();
+      try {
+        return step.getAsBoolean();
+      } finally {
+        recorder.unbind(previous);
+      }
+    }
+
+    boolean isShareable() {
+      return dexFilter.preferredList() == null && !dexFilter.isUnique();
+    }
+
+    void prepare(LazyDecoder<DexBackedMethod> decoder) {
+      this.scanner = factory.apply(decoder);
+    }
+
+    @SuppressWarnings("unchecked")
+    void runSeparately() {
+      if (methodFilter == null) {
+        operation.onClasses(dexFilter, classFilter, (Operator<DexBackedClassDef>) operator);
+      } else {
+        operation.onMethods(dexFilter, classFilter, methodFilter, (Operator<DexBackedMethod>) operator);
+      }
+    }
+
+    boolean enter(DexEntry entry, LazyDecoder<DexEntry> decoder) {
+      try {
+        if (!dexFilter.verify(entry, decoder)) return false;
+      } catch (AbortException e) {
+        if (!e.isSilent()) DexLog.w("Aborted: " + e.getMessage());
+        retired = true;
+        return false;
+      }
+      if (!DexOperation.isSatisfiable(entry, classFilter, methodFilter)) return false;
+      query = operation.getIndexQuery(entry, classFilter, methodFilter);
+      if (query != null && query.isEmpty()) return false;
+      candidates = operation.getCandidates(entry, classFilter, query);
+      return candidates == null || candidates.length > 0;
+    }
+
+    boolean accepts(int classIndex) {
+      return (candidates == null || Arrays.binarySearch(candidates, classIndex) >= 0) &&
+             (query == null || query.test(classIndex));
+    }
+
+    boolean scan(DexBackedClassDef dexClass, LazyDecoder<DexBackedClassDef> decoder,
+                 @Nullable SearchRecorder.Probe probe) {
+      if (recorder != null) return call(() -> verifyAndScan(dexClass, decoder, SearchRecorder.probe()));
+      return verifyAndScan(dexClass, decoder, probe);
+    }
+
+    private boolean verifyAndScan(DexBackedClassDef dexClass, LazyDecoder<DexBackedClassDef> decoder,
+                                  @Nullable SearchRecorder.Probe probe) {
+      try {
+        if (SearchRecorder.verify(probe, classFilter, dexClass, decoder)) {
+          return scanner.scan(dexClass, query, operator) || classFilter.isUnique();
+        }
+      } catch (AbortException e) {
+        DexLog.w("Aborted: " + e.getMessage());
+        return true;
+      }
+      return false;
+    }
+  }
+}
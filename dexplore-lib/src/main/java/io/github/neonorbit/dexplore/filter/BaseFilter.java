@@ -19,15 +19,25 @@ package io.github.neonorbit.dexplore.filter;
 import io.github.neonorbit.dexplore.LazyDecoder;
 import io.github.neonorbit.dexplore.ReferencePool;
 import io.github.neonorbit.dexplore.iface.Internal;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 abstract class BaseFilter<T> {
   private final boolean skip;
   protected final boolean unique;
   protected final ReferenceTypes types;
   protected final ReferenceFilter filter;
+  private final ReferenceCriterion criterion = new Criterion();
+  private volatile Compiled compiled;
+  // guarded by itself, compiled forms only weakly refer to their dex files
+  private final Map<DexBackedDexFile, Compiled> compiledForms = new WeakHashMap<>();
 
   protected BaseFilter(Builder<?,?> builder, boolean unique) {
     this.skip = shouldSkip(builder);
@@ -41,9 +51,89 @@ abstract class BaseFilter<T> {
     return unique;
   }
 
+  /**
+   * @return the reference types decoded by the filter, or null if references are not checked
+   */
+  @Internal
+  @Nullable
+  public ReferenceTypes referenceTypes() {
+    return skip ? null : types;
+  }
+
+  /**
+   * @return the values required by the reference filter, see {@link StructuredFilter#requirements()}
+   */
+  @Internal
+  @Nullable
+  public List<Set<String>> requiredReferences() {
+    return skip ? null : StructuredFilter.requirementsOf(filter);
+  }
+
+  /**
+   * Returns {@code false} if no item of a dex file can match the reference filter,
+   * because some of the values it requires do not exist in the dex file.
+   *
+   * @param resolver the resolver of the dex file
+   * @return {@code false} if the dex file can be skipped
+   */
+  @Internal
+  public boolean isSatisfiable(@Nonnull ValueResolver resolver) {
+    return skip || !(filter instanceof StructuredFilter) ||
+           compiledFor(resolver).filter != StructuredFilter.NEVER;
+  }
+
+  /**
+   * Applies the reference filter to an item.
+   * <p>
+   * Decoders may evaluate the filter while decoding, see {@link ReferenceCriterion}.
+   */
   @Internal
   public boolean verify(@Nonnull T dexItem, @Nonnull LazyDecoder<T> decoder) {
-    return skip || filter.accept(decoder.decode(dexItem, types));
+    return skip || decoder.matches(dexItem, types, criterion);
+  }
+
+  // Compiled once per dex file, the most recent one is also kept for lock-free access
+  private Compiled compiledFor(ValueResolver resolver) {
+    DexBackedDexFile dexFile = resolver.getDexFile();
+    Compiled compiled = this.compiled;
+    if (compiled != null && compiled.dexFile.get() == dexFile) return compiled;
+    synchronized (compiledForms) {
+      compiled = compiledForms.get(dexFile);
+      if (compiled == null) {
+        compiled = new Compiled(dexFile, StructuredFilter.compile(filter, resolver));
+        compiledForms.put(dexFile, compiled);
+      }
+    }
+    this.compiled = compiled;
+    return compiled;
+  }
+
+  private final class Criterion implements ReferenceCriterion {
+    @Override
+    public boolean accept(@Nonnull ReferencePool pool) {
+      ValueResolver resolver = pool.getResolver();
+      if (resolver == null || !(filter instanceof StructuredFilter)) return filter.accept(pool);
+      return compiledFor(resolver).filter.accept(pool);
+    }
+
+    @Override
+    public ReferenceMatcher newMatcher(@Nonnull ValueResolver resolver) {
+      if (!(filter instanceof StructuredFilter)) return null;
+      ReferenceMatcher.Factory factory = compiledFor(resolver).factory;
+      return factory == null ? null : factory.newMatcher();
+    }
+  }
+
+  private static final class Compiled {
+    final WeakReference<DexBackedDexFile> dexFile;
+    final ReferenceFilter filter;
+    final ReferenceMatcher.Factory factory;
+
+    Compiled(DexBackedDexFile dexFile, ReferenceFilter filter) {
+      this.dexFile = new WeakReference<>(dexFile);
+      this.filter = filter;
+      this.factory = StructuredFilter.matcherOf(filter);
+    }
   }
 
   private static boolean shouldSkip(Builder<?,?> builder) {
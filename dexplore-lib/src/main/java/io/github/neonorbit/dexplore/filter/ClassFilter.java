@@ -21,6 +21,7 @@ import io.github.neonorbit.dexplore.LazyDecoder;
 import io.github.neonorbit.dexplore.exception.AbortException;
 import io.github.neonorbit.dexplore.iface.Internal;
 import io.github.neonorbit.dexplore.util.DexUtils;
+import io.github.neonorbit.dexplore.util.LiteralSet;
 import io.github.neonorbit.dexplore.util.Utils;
 import org.jf.dexlib2.dexbacked.DexBackedClassDef;
 
@@ -61,6 +62,8 @@ public final class ClassFilter extends BaseFilter<DexBackedClassDef> {
   private final String superClass;
   private final Pattern pkgPattern;
   private final Pattern clsPattern;
+  private final List<String> pkgPrefixes;
+  private final List<String> typePrefixes;
   private final Set<String> classNames;
   private final Set<String> shortNames;
   private final List<String> interfaces;
@@ -68,6 +71,10 @@ public final class ClassFilter extends BaseFilter<DexBackedClassDef> {
   private final Set<String> annotations;
   private final Set<String> annotValues;
   private final Set<Long> numLiterals;
+  private final LiteralSet literals;
+  private final int[] fieldCount;
+  private final int[] methodCount;
+  private final CriteriaPlan plan;
 
   private ClassFilter(Builder builder) {
     super(builder, isSingle(builder.classNames));
@@ -78,6 +85,8 @@ public final class ClassFilter extends BaseFilter<DexBackedClassDef> {
     this.superClass = builder.superClass;
     this.pkgPattern = builder.pkgPattern;
     this.clsPattern = builder.clsPattern;
+    this.pkgPrefixes = builder.pkgPrefixes;
+    this.typePrefixes = FilterUtils.typePrefixes(pkgPrefixes, clsPattern);
     this.classNames = builder.classNames;
     this.shortNames = builder.shortNames;
     this.interfaces = builder.interfaces;
@@ -85,6 +94,20 @@ public final class ClassFilter extends BaseFilter<DexBackedClassDef> {
     this.annotations = builder.annotations;
     this.annotValues = builder.annotValues;
     this.numLiterals = builder.numLiterals;
+    this.literals = numLiterals == null ? null : LiteralSet.of(numLiterals);
+    this.fieldCount = builder.fieldCount;
+    this.methodCount = builder.methodCount;
+    this.plan = new CriteriaPlan.Builder()
+            .add(FilterCriterion.MODIFIERS, 1, flag != NEG || skipFlag != NEG)
+            .add(FilterCriterion.SOURCE_NAME, 2, sourceNames != null)
+            .add(FilterCriterion.SUPER_CLASS, 2, superClass != null)
+            .add(FilterCriterion.INTERFACES, 3, interfaces != null)
+            .add(FilterCriterion.MEMBER_COUNT, 3, fieldCount != null || methodCount != null)
+            .add(FilterCriterion.PACKAGE, 4, pkgPattern != null)
+            .add(FilterCriterion.ANNOTATIONS, 20, annotations != null)
+            .add(FilterCriterion.ANNOTATION_VALUES, 40, annotValues != null)
+            .add(FilterCriterion.NUMBERS, 100, literals != null)
+            .build();
   }
 
   @Internal
@@ -92,30 +115,143 @@ public final class ClassFilter extends BaseFilter<DexBackedClassDef> {
     return synthItems;
   }
 
+  @Internal
+  public int modifiers() {
+    return flag;
+  }
+
+  @Internal
+  public int skippedModifiers() {
+    return skipFlag;
+  }
+
+  @Internal
+  @Nullable
+  public String superClass() {
+    return superClass;
+  }
+
+  /**
+   * Every class accepted by this filter has a type descriptor
+   * starting with one of the returned prefixes.
+   *
+   * @return the prefixes, or null if the classes are not restricted by prefix
+   */
+  @Internal
+  @Nullable
+  public List<String> typePrefixes() {
+    return typePrefixes;
+  }
+
+  @Internal
+  @Nullable
+  public Set<String> classNames() {
+    return classNames;
+  }
+
+  @Internal
+  @Nullable
+  public Set<String> simpleNames() {
+    return shortNames;
+  }
+
+  @Internal
+  @Nullable
+  public List<String> interfaces() {
+    return interfaces;
+  }
+
+  @Internal
+  @Nullable
+  public Set<String> annotations() {
+    return annotations;
+  }
+
+  @Internal
+  @Nullable
+  public Set<String> annotationValues() {
+    return annotValues;
+  }
+
+  @Internal
+  @Nullable
+  public Set<Long> numLiterals() {
+    return numLiterals;
+  }
+
   @Internal
   @Override
   public boolean verify(@Nonnull DexBackedClassDef dexClass,
                         @Nonnull LazyDecoder<DexBackedClassDef> decoder) {
-    if (this == MATCH_ALL) return true;
+    return check(dexClass, decoder) == null;
+  }
+
+  /**
+   * Same as {@link #verify(DexBackedClassDef, LazyDecoder) verify()},
+   * but reports the criterion that rejected the class.
+   *
+   * @return {@code null} if the class matches, otherwise the first criterion that rejected it
+   */
+  @Internal
+  @Nullable
+  public FilterCriterion check(@Nonnull DexBackedClassDef dexClass,
+                               @Nonnull LazyDecoder<DexBackedClassDef> decoder) {
+    if (this == MATCH_ALL) return null;
     int classAccessFlags = dexClass.getAccessFlags();
-    if (DexUtils.skipSynthetic(synthClass, classAccessFlags)) return false;
-    if (!checkClassNames(dexClass.getType())) return false;
-    boolean result = (
-            (flag == NEG || (classAccessFlags & flag) == flag) &&
-            (skipFlag == NEG || (classAccessFlags & skipFlag) == 0) &&
-            (sourceNames == null || containsSourceFileName(dexClass.getSourceFile())) &&
-            (superClass == null || superClass.equals(dexClass.getSuperclass())) &&
-            (pkgPattern == null || pkgPattern.matcher(dexClass.getType()).matches()) &&
-            (interfaces == null || dexClass.getInterfaces().equals(interfaces)) &&
-            (annotations == null || FilterUtils.containsAllAnnotations(dexClass, annotations, synthItems)) &&
-            (annotValues == null || FilterUtils.containsAllAnnotationValues(dexClass, annotValues, synthItems)) &&
-            (numLiterals == null || DexDecoder.decodeNumberLiterals(dexClass, synthItems).containsAll(numLiterals)) &&
-            super.verify(dexClass, decoder)
-    );
-    if (unique && !result) {
+    if (DexUtils.skipSynthetic(synthClass, classAccessFlags)) return FilterCriterion.SYNTHETIC;
+    if (!checkClassNames(dexClass.getType())) return FilterCriterion.CLASS_NAME;
+    FilterCriterion rejected = checkDetails(dexClass, classAccessFlags, decoder);
+    if (unique && rejected != null) {
       throw new AbortException("Class found but the filter didn't match");
     }
-    return result;
+    return rejected;
+  }
+
+  // The references are decoded last, regardless of the plan:
+  // they are the most expensive, and the reference filter is user code.
+  private FilterCriterion checkDetails(DexBackedClassDef dexClass, int classAccessFlags,
+                                       LazyDecoder<DexBackedClassDef> decoder) {
+    for (int index : plan.order()) {
+      FilterCriterion criterion = plan.criterion(index);
+      boolean passed = passes(criterion, dexClass, classAccessFlags, decoder);
+      plan.record(index, passed);
+      if (!passed) return criterion;
+    }
+    return super.verify(dexClass, decoder) ? null : FilterCriterion.REFERENCES;
+  }
+
+  private boolean passes(FilterCriterion criterion, DexBackedClassDef dexClass, int classAccessFlags,
+                         LazyDecoder<DexBackedClassDef> decoder) {
+    switch (criterion) {
+      case MODIFIERS:
+        return (flag == NEG || (classAccessFlags & flag) == flag) &&
+               (skipFlag == NEG || (classAccessFlags & skipFlag) == 0);
+      case SOURCE_NAME:
+        return containsSourceFileName(dexClass.getSourceFile());
+      case SUPER_CLASS:
+        return superClass.equals(dexClass.getSuperclass());
+      case PACKAGE:
+        return pkgPattern.matcher(dexClass.getType()).matches();
+      case INTERFACES:
+        return dexClass.getInterfaces().equals(interfaces);
+      case MEMBER_COUNT:
+        return checkMemberCount(dexClass, decoder);
+      case ANNOTATIONS:
+        return FilterUtils.containsAllAnnotations(dexClass, annotations, synthItems);
+      case ANNOTATION_VALUES:
+        return FilterUtils.containsAllAnnotationValues(dexClass, annotValues, synthItems);
+      case NUMBERS:
+        Boolean contains = decoder.containsLiterals(dexClass, literals, synthItems);
+        return contains != null ? contains : DexDecoder.containsLiterals(dexClass, literals, synthItems);
+      default:
+        throw new AssertionError(criterion);
+    }
+  }
+
+  private boolean checkMemberCount(DexBackedClassDef dexClass, LazyDecoder<DexBackedClassDef> decoder) {
+    int[] counts = decoder.countMembers(dexClass);
+    if (counts == null) counts = DexDecoder.countMembers(dexClass);
+    return FilterUtils.inRange(counts[0], fieldCount) && FilterUtils.inRange(counts[1], methodCount);
   }
 
   private boolean containsSourceFileName(String source) {
@@ -177,12 +313,15 @@ public final class ClassFilter extends BaseFilter<DexBackedClassDef> {
     private String superClass;
     private Pattern pkgPattern;
     private Pattern clsPattern;
+    private List<String> pkgPrefixes;
     private Set<String> classNames;
     private List<String> interfaces;
     private Set<String> sourceNames;
     private Set<String> annotations;
     private Set<String> annotValues;
     private Set<Long> numLiterals;
+    private int[] fieldCount;
+    private int[] methodCount;
     private Set<String> shortNames;
 
     public Builder() {}
@@ -196,6 +335,7 @@ public final class ClassFilter extends BaseFilter<DexBackedClassDef> {
       this.superClass = instance.superClass;
       this.pkgPattern = instance.pkgPattern;
       this.clsPattern = instance.clsPattern;
+      this.pkgPrefixes = instance.pkgPrefixes;
       this.classNames = instance.classNames;
       this.shortNames = instance.shortNames;
       this.interfaces = instance.interfaces;
@@ -203,6 +343,8 @@ public final class ClassFilter extends BaseFilter<DexBackedClassDef> {
       this.annotations = instance.annotations;
       this.annotValues = instance.annotValues;
       this.numLiterals = instance.numLiterals;
+      this.fieldCount = instance.fieldCount;
+      this.methodCount = instance.methodCount;
     }
 
     @Override
@@ -221,7 +363,9 @@ public final class ClassFilter extends BaseFilter<DexBackedClassDef> {
               sourceNames == null &&
               annotations == null &&
               annotValues == null &&
-              numLiterals == null;
+              numLiterals == null &&
+              fieldCount  == null &&
+              methodCount == null;
     }
 
     @Override
@@ -252,10 +396,12 @@ public final class ClassFilter extends BaseFilter<DexBackedClassDef> {
       List<String> pkg = Utils.nonNullList(packages);
       if (!Utils.hasItem(pkg)) {
         this.pkgPattern = null;
+        this.pkgPrefixes = null;
       } else if (!isValidName(pkg)) {
         throw new IllegalArgumentException("Invalid Package Name");
       } else {
         this.pkgPattern = getPackagePattern(pkg, null);
+        this.pkgPrefixes = pkg.stream().map(PACKAGE_PREFIX).collect(Collectors.toList());
       }
       return this;
     }
@@ -273,6 +419,7 @@ public final class ClassFilter extends BaseFilter<DexBackedClassDef> {
      */
     public Builder skipPackages(@Nullable List<String> packages,
                                 @Nullable List<String> exception) {
+      this.pkgPrefixes = null;
       if (!Utils.hasItem(packages)) {
         this.pkgPattern = null;
       } else if (!isValidName(packages) || Utils.hasItem(exception) && !isValidName(exception)) {
@@ -459,6 +606,38 @@ public final class ClassFilter extends BaseFilter<DexBackedClassDef> {
       return setInterfaces(Collections.emptyList());
     }
 
+    /**
+     * Set a condition to match only the classes whose number of fields is within the specified range.
+     * <p>
+     * <b>Note:</b> The count includes static, instance and synthetic fields.
+     * It is read from the header of the class data, without decoding the fields.
+     *
+     * @param min minimum count, inclusive
+     * @param max maximum count, inclusive, or -1 for no limit
+     * @return {@code this} builder
+     * @since 1.5.0
+     */
+    public Builder setFieldCount(int min, int max) {
+      this.fieldCount = FilterUtils.range(min, max);
+      return this;
+    }
+
+    /**
+     * Set a condition to match only the classes whose number of methods is within the specified range.
+     * <p>
+     * <b>Note:</b> The count includes direct, virtual and synthetic methods.
+     * It is read from the header of the class data, without decoding the methods.
+     *
+     * @param min minimum count, inclusive
+     * @param max maximum count, inclusive, or -1 for no limit
+     * @return {@code this} builder
+     * @since 1.5.0
+     */
+    public Builder setMethodCount(int min, int max) {
+      this.methodCount = FilterUtils.range(min, max);
+      return this;
+    }
+
     /**
      * Set a condition to match only the classes that contain all the specified annotations.
      * <p>
@@ -512,16 +691,17 @@ public final class ClassFilter extends BaseFilter<DexBackedClassDef> {
       return this;
     }
 
+    private static final Function<String, String> PACKAGE_PREFIX = s -> 'L' + s.replace('.', '/') + '/';
+
     private static Pattern getPackagePattern(List<String> includes, List<String> excludes) {
-      Function<String, String> mapper = s -> 'L' + s.replaceAll("\\.", "/") + '/';
       String regex = "^(";
       if (Utils.hasItem(includes)) {
-        regex += includes.stream().map(mapper).collect(Collectors.joining("|"));
+        regex += includes.stream().map(PACKAGE_PREFIX).collect(Collectors.joining("|"));
       }
       if (Utils.hasItem(excludes)) {
         boolean multiple = regex.length() > 2;
         if (multiple) regex += "|(";
-        regex += "?!" + excludes.stream().map(mapper).collect(Collectors.joining("|"));
+        regex += "?!" + excludes.stream().map(PACKAGE_PREFIX).collect(Collectors.joining("|"));
         if (multiple) regex += ")";
       }
       regex += ").*$";
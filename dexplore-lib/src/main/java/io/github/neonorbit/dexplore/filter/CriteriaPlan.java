@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.neonorbit.dexplore.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Orders the criteria of a filter by their expected cost per rejection.
+ * <p>
+ * Each criterion has a fixed cost estimate and a rejection rate learned from
+ * the items it has evaluated. The criteria are re-ordered periodically, so that
+ * cheap and selective criteria are evaluated first. An item matches only if
+ * all the criteria are satisfied, so the order never changes the result.
+ * <p>
+ * The counters are updated without synchronization by concurrent scans.
+ * Lost updates only affect the order.
+ */
+final class CriteriaPlan {
+  private static final int REPLAN_INTERVAL = 1024;
+
+  private final FilterCriterion[] criteria;
+  private final int[] costs;
+  private final long[] evaluated;
+  private final long[] rejected;
+  private volatile int[] order;
+  private int countdown = REPLAN_INTERVAL;
+
+  private CriteriaPlan(Builder builder) {
+    int size = builder.criteria.size();
+    this.criteria = builder.criteria.toArray(new FilterCriterion[0]);
+    this.costs = new int[size];
+    for (int i = 0; i < size; i++) costs[i] = builder.costs.get(i);
+    this.evaluated = new long[size];
+    this.rejected = new long[size];
+    this.order = plan();
+  }
+
+  /**
+   * @return indices of the criteria, in evaluation order
+   */
+  int[] order() {
+    return order;
+  }
+
+  FilterCriterion criterion(int index) {
+    return criteria[index];
+  }
+
+  /**
+   * Records the outcome of a criterion.
+   *
+   * @param index index of the criterion
+   * @param passed whether the item satisfied the criterion
+   */
+  void record(int index, boolean passed) {
+    evaluated[index]++;
+    if (!passed) rejected[index]++;
+    if (--countdown <= 0) {
+      countdown = REPLAN_INTERVAL;
+      order = plan();
+    }
+  }
+
+  /**
+   * Sorts the criteria by cost per rejection, in ascending order.
+   * Ties keep the declaration order.
+   */
+  private int[] plan() {
+    Integer[] indices = new Integer[criteria.length];
+    double[] ranks = new double[criteria.length];
+    for (int i = 0; i < criteria.length; i++) {
+      indices[i] = i;
+      // a rejection rate of 0.5 is assumed until the criterion is evaluated
+      double rate = (rejected[i] + 1.0) / (evaluated[i] + 2.0);
+      ranks[i] = costs[i] / rate;
+    }
+    Arrays.sort(indices, Comparator.comparingDouble(i -> ranks[i]));
+    int[] order = new int[indices.length];
+    for (int i = 0; i < order.length; i++) order[i] = indices[i];
+    return order;
+  }
+
+  static final class Builder {
+    private final List<FilterCriterion> criteria = new ArrayList<>();
+    private final List<Integer> costs = new ArrayList<>();
+
+    /**
+     * @param criterion the criterion
+     * @param cost relative cost of evaluating the criterion
+     * @param enabled whether the criterion is set in the filter
+     * @return {@code this} builder
+     */
+    Builder add(FilterCriterion criterion, int cost, boolean enabled) {
+      if (enabled) {
+        criteria.add(criterion);
+        costs.add(cost);
+      }
+      return this;
+    }
+
+    CriteriaPlan build() {
+      return new CriteriaPlan(this);
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.neonorbit.dexplore.filter;
+
+/**
+ * The criteria of class and method filters.
+ * <p>
+ * Used to report which criterion rejected an item.
+ *
+ * @see io.github.neonorbit.dexplore.SearchStats#rejections()
+ *
+ * @author NeonOrbit
+ * @since 1.5.0
+ */
+public enum FilterCriterion {
+  /** Synthetic items are disabled */
+  SYNTHETIC,
+  /** Class names, simple names or class pattern */
+  CLASS_NAME,
+  /** Method names, parameters or parameter size */
+  METHOD_SIGNATURE,
+  /** Required or skipped modifiers */
+  MODIFIERS,
+  /** Source file names */
+  SOURCE_NAME,
+  /** Super class */
+  SUPER_CLASS,
+  /** Packages */
+  PACKAGE,
+  /** Interfaces */
+  INTERFACES,
+  /** Method return type */
+  RETURN_TYPE,
+  /** Field or method counts */
+  MEMBER_COUNT,
+  /** Code size, register count or try count */
+  CODE_HEADER,
+  /** Annotations */
+  ANNOTATIONS,
+  /** Annotation values */
+  ANNOTATION_VALUES,
+  /** Number literals */
+  NUMBERS,
+  /** Reference filter */
+  REFERENCES
+}
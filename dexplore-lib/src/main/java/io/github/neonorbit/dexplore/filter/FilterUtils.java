@@ -19,6 +19,7 @@ package io.github.neonorbit.dexplore.filter;
 import io.github.neonorbit.dexplore.util.DexUtils;
 import org.jf.dexlib2.ValueType;
 import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.jf.dexlib2.dexbacked.DexBackedField;
 import org.jf.dexlib2.dexbacked.DexBackedMethod;
 import org.jf.dexlib2.iface.Annotation;
 import org.jf.dexlib2.iface.AnnotationElement;
@@ -29,83 +30,221 @@ import org.jf.dexlib2.iface.value.StringEncodedValue;
 import org.jf.dexlib2.iface.value.TypeEncodedValue;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
-
-import static java.util.stream.Collectors.toSet;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 final class FilterUtils {
   public static boolean containsAllAnnotations(@Nonnull DexBackedClassDef dexClass,
                                                @Nonnull Set<String> annotations, boolean synthetic) {
-    return containsAllAnnotations(getAllAnnotations(dexClass, synthetic), annotations);
+    Set<String> remaining = new HashSet<>(annotations);
+    return remaining.isEmpty() || anyAnnotation(dexClass, synthetic, a -> removeType(a, remaining));
   }
 
   public static boolean containsAllAnnotationValues(@Nonnull DexBackedClassDef dexClass,
                                                     @Nonnull Set<String> annotationValues, boolean synthetic) {
-    return containsAllAnnotationValues(getAllAnnotations(dexClass, synthetic), annotationValues);
+    Set<String> remaining = new HashSet<>(annotationValues);
+    return remaining.isEmpty() || anyAnnotation(dexClass, synthetic, a -> removeValues(a, remaining));
   }
 
   public static boolean containsAllAnnotations(@Nonnull DexBackedMethod dexMethod,
                                                @Nonnull Set<String> annotations) {
     Set<? extends Annotation> source = dexMethod.getAnnotations();
-    return source.size() >= annotations.size() && containsAllAnnotations(source.stream(), annotations);
+    if (source.size() < annotations.size()) return false;
+    Set<String> remaining = new HashSet<>(annotations);
+    return remaining.isEmpty() || anyAnnotation(source, a -> removeType(a, remaining));
   }
 
   public static boolean containsAllAnnotationValues(@Nonnull DexBackedMethod dexMethod,
                                                     @Nonnull Set<String> annotationValues) {
-    return containsAllAnnotationValues(dexMethod.getAnnotations().stream(), annotationValues);
+    Set<String> remaining = new HashSet<>(annotationValues);
+    return remaining.isEmpty() || anyAnnotation(dexMethod.getAnnotations(), a -> removeValues(a, remaining));
   }
 
-  private static boolean containsAllAnnotations(@Nonnull Stream<? extends Annotation> source,
-                                                @Nonnull Set<String> annotations) {
-    Set<String> combinedSource = source.map(Annotation::getType).collect(toSet());
-    return combinedSource.size() >= annotations.size() && combinedSource.containsAll(annotations);
+  /**
+   * @return {@code true} if all the remaining types are found
+   */
+  private static boolean removeType(Annotation annotation, Set<String> remaining) {
+    return remaining.remove(annotation.getType()) && remaining.isEmpty();
   }
 
-  private static boolean containsAllAnnotationValues(@Nonnull Stream<? extends Annotation> source,
-                                                     @Nonnull Set<String> annotationValues) {
-    Set<String> values = new HashSet<>();
-    source.forEach(annotation -> {
-      if (annotation.getType().startsWith("Ldalvik/annotation/")) return;
-      for (AnnotationElement element : annotation.getElements()) {
-        decode(element.getValue(), values);
-      }
-    });
-    return values.containsAll(annotationValues);
+  /**
+   * @return {@code true} if all the remaining values are found
+   */
+  private static boolean removeValues(Annotation annotation, Set<String> remaining) {
+    if (annotation.getType().startsWith("Ldalvik/annotation/")) return false;
+    for (AnnotationElement element : annotation.getElements()) {
+      if (removeValues(element.getValue(), remaining)) return true;
+    }
+    return false;
   }
 
-  private static void decode(@Nonnull EncodedValue encoded, @Nonnull Set<String> writer) {
+  private static boolean removeValues(@Nonnull EncodedValue encoded, @Nonnull Set<String> remaining) {
     switch (encoded.getValueType()) {
       case ValueType.STRING:
-        writer.add(((StringEncodedValue)encoded).getValue());
-        break;
+        return remaining.remove(((StringEncodedValue)encoded).getValue()) && remaining.isEmpty();
       case ValueType.TYPE:
-        writer.add(DexUtils.dexToJavaTypeName(((TypeEncodedValue)encoded).getValue()));
-        break;
+        String type = DexUtils.dexToJavaTypeName(((TypeEncodedValue)encoded).getValue());
+        return remaining.remove(type) && remaining.isEmpty();
       case ValueType.ARRAY:
         for (EncodedValue e : ((ArrayEncodedValue)encoded).getValue()) {
-          decode(e, writer);
+          if (removeValues(e, remaining)) return true;
         }
-        break;
+        return false;
       case ValueType.ANNOTATION:
         for (AnnotationElement e : ((AnnotationEncodedValue)encoded).getElements()) {
-          decode(e.getValue(), writer);
+          if (removeValues(e.getValue(), remaining)) return true;
         }
-        break;
+        return false;
       default:
+        return false;
+    }
+  }
+
+  /**
+   * Visits the annotations of a class and its members, until the predicate returns {@code true}.
+   */
+  private static boolean anyAnnotation(DexBackedClassDef dexClass, boolean synthetic,
+                                       Predicate<Annotation> predicate) {
+    if (anyAnnotation(dexClass.getAnnotations(), predicate)) return true;
+    for (DexBackedMethod dexMethod : DexUtils.dexMethods(dexClass, synthetic)) {
+      if (anyAnnotation(dexMethod.getAnnotations(), predicate)) return true;
+    }
+    for (DexBackedField dexField : DexUtils.dexFields(dexClass, synthetic)) {
+      if (anyAnnotation(dexField.getAnnotations(), predicate)) return true;
+    }
+    return false;
+  }
+
+  private static boolean anyAnnotation(Set<? extends Annotation> annotations,
+                                       Predicate<Annotation> predicate) {
+    for (Annotation annotation : annotations) {
+      if (predicate.test(annotation)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * @param min lower bound, inclusive
+   * @param max upper bound, inclusive, or -1 for no upper bound
+   * @return the range, or null if both bounds are -1
+   */
+  @Nullable
+  public static int[] range(int min, int max) {
+    if (min < 0 && max < 0) return null;
+    if (min < -1 || max < -1 || max >= 0 && max < Math.max(0, min)) {
+      throw new IllegalArgumentException("Invalid range: [" + min + ", " + max + "]");
+    }
+    return new int[]{Math.max(0, min), max};
+  }
+
+  public static boolean inRange(int value, @Nullable int[] range) {
+    return range == null || value >= range[0] && (range[1] < 0 || value <= range[1]);
+  }
+
+  /**
+   * Combines package prefixes and the literal prefix of a class pattern.
+   *
+   * @param packages type prefixes of the included packages, or null
+   * @param pattern a pattern matched against type descriptors, or null
+   * @return prefixes of all the types accepted by both, or null if unrestricted
+   */
+  @Nullable
+  public static List<String> typePrefixes(@Nullable List<String> packages, @Nullable Pattern pattern) {
+    String literal = pattern == null ? "" : literalPrefix(pattern);
+    if (packages == null) return literal.isEmpty() ? null : Collections.singletonList(literal);
+    List<String> prefixes = new ArrayList<>(packages.size());
+    for (String prefix : packages) {
+      if (prefix.startsWith(literal)) prefixes.add(prefix);
+      else if (literal.startsWith(prefix)) prefixes.add(literal);
+    }
+    return prefixes;
+  }
+
+  /**
+   * Extracts the literal text that every input matched by a pattern must start with.
+   * <p>
+   * The extraction is conservative: it stops at the first construct
+   * that is not a plain or quoted character, and drops a character
+   * that is followed by an optional quantifier.
+   *
+   * @param pattern a pattern, matched against the whole input
+   * @return the literal prefix, possibly empty
+   */
+  @Nonnull
+  public static String literalPrefix(@Nonnull Pattern pattern) {
+    String regex = pattern.pattern();
+    if ((pattern.flags() & (Pattern.CASE_INSENSITIVE | Pattern.COMMENTS | Pattern.CANON_EQ)) != 0) return "";
+    if ((pattern.flags() & Pattern.LITERAL) != 0) return regex;
+    if (hasAlternation(regex)) return "";
+    StringBuilder prefix = new StringBuilder();
+    int i = regex.startsWith("^") ? 1 : 0;
+    while (i < regex.length()) {
+      char current = regex.charAt(i);
+      if (current == '\\') {
+        if (i + 1 == regex.length()) break;
+        char next = regex.charAt(i + 1);
+        if (next == 'Q') {
+          int end = regex.indexOf("\\E", i + 2);
+          prefix.append(regex, i + 2, end < 0 ? regex.length() : end);
+          i = end < 0 ? regex.length() : end + 2;
+        } else if (Character.isLetterOrDigit(next)) {
+          break;
+        } else {
+          prefix.append(next);
+          i += 2;
+        }
+      } else if ("[](){}.*+?|^$".indexOf(current) >= 0) {
         break;
+      } else {
+        prefix.append(current);
+        i++;
+      }
+      if (i < regex.length()) {
+        char next = regex.charAt(i);
+        if (next == '?' || next == '*' || next == '{') {
+          prefix.setLength(Math.max(0, prefix.length() - 1));
+          break;
+        }
+        if (next == '+') break;
+      }
     }
+    return prefix.toString();
   }
 
-  private static Stream<Annotation> getAllAnnotations(DexBackedClassDef dexClass, boolean synthetic) {
-    Stream<Annotation> members = Stream.concat(
-            StreamSupport.stream(DexUtils.dexMethods(dexClass, synthetic).spliterator(), false)
-                    .flatMap(m -> m.getAnnotations().stream()),
-            StreamSupport.stream(DexUtils.dexFields(dexClass, synthetic).spliterator(), false)
-                    .flatMap(f -> f.getAnnotations().stream())
-    );
-    return Stream.concat(dexClass.getAnnotations().stream(), members);
+  /**
+   * @return {@code true} if the regex has an alternation outside any group
+   */
+  private static boolean hasAlternation(String regex) {
+    int groups = 0, brackets = 0;
+    for (int i = 0; i < regex.length(); i++) {
+      char current = regex.charAt(i);
+      if (current == '\\') {
+        if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+          int end = regex.indexOf("\\E", i + 2);
+          if (end < 0) break;
+          i = end + 1;
+        } else {
+          i++;
+        }
+      } else if (brackets > 0) {
+        if (current == '[') brackets++;
+        else if (current == ']') brackets--;
+      } else if (current == '[') {
+        brackets++;
+      } else if (current == '(') {
+        groups++;
+      } else if (current == ')') {
+        groups--;
+      } else if (current == '|' && groups == 0) {
+        return true;
+      }
+    }
+    return false;
   }
 }
@@ -16,11 +16,13 @@
 
 package io.github.neonorbit.dexplore.filter;
 
+import io.github.neonorbit.dexplore.CodeHeader;
 import io.github.neonorbit.dexplore.DexDecoder;
 import io.github.neonorbit.dexplore.LazyDecoder;
 import io.github.neonorbit.dexplore.exception.AbortException;
 import io.github.neonorbit.dexplore.iface.Internal;
 import io.github.neonorbit.dexplore.util.DexUtils;
+import io.github.neonorbit.dexplore.util.LiteralSet;
 import io.github.neonorbit.dexplore.util.Utils;
 import org.jf.dexlib2.dexbacked.DexBackedMethod;
 
@@ -59,6 +61,11 @@ public final class MethodFilter extends BaseFilter<DexBackedMethod> {
   private final Set<String> annotations;
   private final Set<String> annotValues;
   private final Set<Long> numLiterals;
+  private final LiteralSet literals;
+  private final int[] codeSize;
+  private final int[] registers;
+  private final int[] tryBlocks;
+  private final CriteriaPlan plan;
 
   private MethodFilter(Builder builder) {
     super(builder, isUniqueSig(builder));
@@ -72,12 +79,48 @@ public final class MethodFilter extends BaseFilter<DexBackedMethod> {
     this.annotations = builder.annotations;
     this.annotValues = builder.annotValues;
     this.numLiterals = builder.numLiterals;
+    this.literals = numLiterals == null ? null : LiteralSet.of(numLiterals);
+    this.codeSize = builder.codeSize;
+    this.registers = builder.registers;
+    this.tryBlocks = builder.tryBlocks;
+    this.plan = new CriteriaPlan.Builder()
+            .add(FilterCriterion.MODIFIERS, 1, flag != NEG || skipFlag != NEG)
+            .add(FilterCriterion.RETURN_TYPE, 2, returnType != null)
+            .add(FilterCriterion.CODE_HEADER, 3, codeSize != null || registers != null || tryBlocks != null)
+            .add(FilterCriterion.ANNOTATIONS, 10, annotations != null)
+            .add(FilterCriterion.ANNOTATION_VALUES, 20, annotValues != null)
+            .add(FilterCriterion.NUMBERS, 50, literals != null)
+            .build();
   }
 
   public boolean synthEnabled() {
     return synthetic;
   }
 
+  @Internal
+  @Nullable
+  public Set<String> methodNames() {
+    return methodNames;
+  }
+
+  @Internal
+  @Nullable
+  public Set<String> annotations() {
+    return annotations;
+  }
+
+  @Internal
+  @Nullable
+  public Set<String> annotationValues() {
+    return annotValues;
+  }
+
+  @Internal
+  @Nullable
+  public Set<Long> numLiterals() {
+    return numLiterals;
+  }
+
   private static boolean isUniqueSig(Builder b) {
     if (!Utils.isSingle(b.methodNames)) return false;
     return (b.parameters != null || b.paramSize == 0) && (!b.synthetic || b.returnType != null);
@@ -87,22 +130,68 @@ public final class MethodFilter extends BaseFilter<DexBackedMethod> {
   @Override
   public boolean verify(@Nonnull DexBackedMethod dexMethod,
                         @Nonnull LazyDecoder<DexBackedMethod> decoder) {
-    if (this == MATCH_ALL) return true;
-    if (DexUtils.skipSynthetic(synthetic, dexMethod.accessFlags)) return false;
-    if (!checkMethodSignature(dexMethod)) return false;
-    boolean result = (
-            (flag == NEG || (dexMethod.accessFlags & flag) == flag) &&
-            (skipFlag == NEG || (dexMethod.accessFlags & skipFlag) == 0) &&
-            (returnType == null || returnType.equals(dexMethod.getReturnType())) &&
-            (annotations == null || FilterUtils.containsAllAnnotations(dexMethod, annotations)) &&
-            (annotValues == null || FilterUtils.containsAllAnnotationValues(dexMethod, annotValues)) &&
-            (numLiterals == null || DexDecoder.decodeNumberLiterals(dexMethod).containsAll(numLiterals)) &&
-            super.verify(dexMethod, decoder)
-    );
-    if (unique && !result) {
+    return check(dexMethod, decoder) == null;
+  }
+
+  /**
+   * Same as {@link #verify(DexBackedMethod, LazyDecoder) verify()},
+   * but reports the criterion that rejected the method.
+   *
+   * @return {@code null} if the method matches, otherwise the first criterion that rejected it
+   */
+  @Internal
+  @Nullable
+  public FilterCriterion check(@Nonnull DexBackedMethod dexMethod,
+                               @Nonnull LazyDecoder<DexBackedMethod> decoder) {
+    if (this == MATCH_ALL) return null;
+    if (DexUtils.skipSynthetic(synthetic, dexMethod.accessFlags)) return FilterCriterion.SYNTHETIC;
+    if (!checkMethodSignature(dexMethod)) return FilterCriterion.METHOD_SIGNATURE;
+    FilterCriterion rejected = checkDetails(dexMethod, decoder);
+    if (unique && rejected != null) {
       throw new AbortException("Method found but the filter didn't match");
     }
-    return result;
+    return rejected;
+  }
+
+  // The references are decoded last, see ClassFilter
+  private FilterCriterion checkDetails(DexBackedMethod dexMethod, LazyDecoder<DexBackedMethod> decoder) {
+    for (int index : plan.order()) {
+      FilterCriterion criterion = plan.criterion(index);
+      boolean passed = passes(criterion, dexMethod, decoder);
+      plan.record(index, passed);
+      if (!passed) return criterion;
+    }
+    return super.verify(dexMethod, decoder) ? null : FilterCriterion.REFERENCES;
+  }
+
+  private boolean passes(FilterCriterion criterion, DexBackedMethod dexMethod,
+                         LazyDecoder<DexBackedMethod> decoder) {
+    switch (criterion) {
+      case MODIFIERS:
+        return (flag == NEG || (dexMethod.accessFlags & flag) == flag) &&
+               (skipFlag == NEG || (dexMethod.accessFlags & skipFlag) == 0);
+      case RETURN_TYPE:
+        return returnType.equals(dexMethod.getReturnType());
+      case CODE_HEADER:
+        return checkCodeHeader(dexMethod, decoder);
+      case ANNOTATIONS:
+        return FilterUtils.containsAllAnnotations(dexMethod, annotations);
+      case ANNOTATION_VALUES:
+        return FilterUtils.containsAllAnnotationValues(dexMethod, annotValues);
+      case NUMBERS:
+        Boolean contains = decoder.containsLiterals(dexMethod, literals, false);
+        return contains != null ? contains : DexDecoder.containsLiterals(dexMethod, literals);
+      default:
+        throw new AssertionError(criterion);
+    }
+  }
+
+  private boolean checkCodeHeader(DexBackedMethod dexMethod, LazyDecoder<DexBackedMethod> decoder) {
+    CodeHeader header = decoder.readCodeHeader(dexMethod);
+    if (header == null) header = DexDecoder.readCodeHeader(dexMethod);
+    return FilterUtils.inRange(header.codeSize(), codeSize) &&
+           FilterUtils.inRange(header.registerCount(), registers) &&
+           FilterUtils.inRange(header.tryCount(), tryBlocks);
   }
 
   private boolean checkMethodSignature(DexBackedMethod dexMethod) {
@@ -171,6 +260,9 @@ public final class MethodFilter extends BaseFilter<DexBackedMethod> {
     private Set<String> annotations;
     private Set<String> annotValues;
     private Set<Long> numLiterals;
+    private int[] codeSize;
+    private int[] registers;
+    private int[] tryBlocks;
 
     public Builder() {}
 
@@ -186,6 +278,9 @@ public final class MethodFilter extends BaseFilter<DexBackedMethod> {
       this.annotations = instance.annotations;
       this.annotValues = instance.annotValues;
       this.numLiterals = instance.numLiterals;
+      this.codeSize = instance.codeSize;
+      this.registers = instance.registers;
+      this.tryBlocks = instance.tryBlocks;
     }
 
     @Override
@@ -200,7 +295,10 @@ public final class MethodFilter extends BaseFilter<DexBackedMethod> {
               methodNames == null &&
               annotations == null &&
               annotValues == null &&
-              numLiterals == null;
+              numLiterals == null &&
+              codeSize    == null &&
+              registers   == null &&
+              tryBlocks   == null;
     }
 
     @Override
@@ -300,6 +398,53 @@ public final class MethodFilter extends BaseFilter<DexBackedMethod> {
       return this;
     }
 
+    /**
+     * Set a condition to match only the methods whose code size is within the specified range.
+     * <p>
+     * The size is measured in 16-bit code units.
+     * Methods without code, such as abstract and native methods, have a size of 0.
+     * <p>
+     * <b>Note:</b> This condition is checked from the header of the code,
+     * without decoding the instructions.
+     *
+     * @param min minimum size, inclusive
+     * @param max maximum size, inclusive, or -1 for no limit
+     * @return {@code this} builder
+     * @since 1.5.0
+     */
+    public Builder setCodeSize(int min, int max) {
+      this.codeSize = FilterUtils.range(min, max);
+      return this;
+    }
+
+    /**
+     * Set a condition to match only the methods whose register count is within the specified range.
+     * <p>
+     * Methods without code have no registers.
+     *
+     * @param min minimum count, inclusive
+     * @param max maximum count, inclusive, or -1 for no limit
+     * @return {@code this} builder
+     * @since 1.5.0
+     */
+    public Builder setRegisterCount(int min, int max) {
+      this.registers = FilterUtils.range(min, max);
+      return this;
+    }
+
+    /**
+     * Set a condition to match only the methods whose number of try blocks is within the specified range.
+     *
+     * @param min minimum count, inclusive
+     * @param max maximum count, inclusive, or -1 for no limit
+     * @return {@code this} builder
+     * @since 1.5.0
+     */
+    public Builder setTryCount(int min, int max) {
+      this.tryBlocks = FilterUtils.range(min, max);
+      return this;
+    }
+
     /**
      * Set a condition to match only the methods that contain all the specified annotations.
      * @param annotations {@linkplain Class#getName() full names} of the annotation types
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.neonorbit.dexplore.filter;
+
+import io.github.neonorbit.dexplore.ReferencePool;
+import io.github.neonorbit.dexplore.iface.Internal;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The reference filter of a class or method filter, as applied by the decoders.
+ *
+ * @see io.github.neonorbit.dexplore.LazyDecoder#matches(Object, ReferenceTypes, ReferenceCriterion)
+ */
+@Internal
+public interface ReferenceCriterion {
+  /**
+   * @param pool the fully decoded pool of an item
+   * @return {@code true} if the pool is accepted by the reference filter
+   */
+  boolean accept(@Nonnull ReferencePool pool);
+
+  /**
+   * @param resolver the resolver of the dex file of the item
+   * @return a matcher for the references of an item,
+   *         or null if the reference filter must be applied to the full pool
+   */
+  @Nullable
+  ReferenceMatcher newMatcher(@Nonnull ValueResolver resolver);
+}
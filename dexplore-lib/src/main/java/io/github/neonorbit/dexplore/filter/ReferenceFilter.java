@@ -19,7 +19,6 @@ package io.github.neonorbit.dexplore.filter;
 import io.github.neonorbit.dexplore.ReferencePool;
 
 import javax.annotation.Nonnull;
-import java.util.Arrays;
 
 /**
  * A filter to apply to the {@link ReferencePool} of each dex item.
@@ -45,7 +44,7 @@ public interface ReferenceFilter {
    * @return the logical negation of the filter
    */
   default ReferenceFilter negate() {
-    return pool -> !accept(pool);
+    return new StructuredFilter.Not(this);
   }
 
   /**
@@ -53,7 +52,7 @@ public interface ReferenceFilter {
    * @return a new filter combining this and the other filter with a logical AND operator.
    */
   default ReferenceFilter and(@Nonnull ReferenceFilter other) {
-    return pool -> accept(pool) && other.accept(pool);
+    return new StructuredFilter.And(this, other);
   }
 
   /**
@@ -61,7 +60,7 @@ public interface ReferenceFilter {
    * @return a new filter combining this and the other filter with a logical OR operator.
    */
   default ReferenceFilter or(@Nonnull ReferenceFilter other) {
-    return pool -> accept(pool) || other.accept(pool);
+    return new StructuredFilter.Or(this, other);
   }
 
   /**
@@ -70,7 +69,7 @@ public interface ReferenceFilter {
    * @return a reference filter
    */
   static ReferenceFilter contains(@Nonnull String value) {
-    return pool -> pool.contains(value);
+    return new StructuredFilter.Contains(StructuredFilter.CONTAINS, value);
   }
 
   /**
@@ -79,7 +78,7 @@ public interface ReferenceFilter {
    * @return a reference filter
    */
   static ReferenceFilter containsSignature(@Nonnull String signature) {
-    return pool -> pool.containsSignature(signature);
+    return new StructuredFilter.Contains(StructuredFilter.SIGNATURE, signature);
   }
 
   /**
@@ -90,7 +89,7 @@ public interface ReferenceFilter {
    */
   static ReferenceFilter containsAny(@Nonnull String... values) {
     if (values.length == 0) throw new IllegalArgumentException();
-    return pool -> Arrays.stream(values).anyMatch(pool::contains);
+    return new StructuredFilter.Any(values.clone());
   }
 
   /**
@@ -101,7 +100,7 @@ public interface ReferenceFilter {
    */
   static ReferenceFilter containsAll(@Nonnull String... values) {
     if (values.length == 0) throw new IllegalArgumentException();
-    return pool -> Arrays.stream(values).allMatch(pool::contains);
+    return new StructuredFilter.All(values.clone());
   }
 
   /**
@@ -110,7 +109,7 @@ public interface ReferenceFilter {
    * @return a reference filter
    */
   static ReferenceFilter stringsContain(@Nonnull String value) {
-    return pool -> pool.stringsContain(value);
+    return new StructuredFilter.Contains(StructuredFilter.STRINGS, value);
   }
 
   /**
@@ -119,7 +118,7 @@ public interface ReferenceFilter {
    * @return a reference filter
    */
   static ReferenceFilter typesContain(@Nonnull String value) {
-    return pool -> pool.typesContain(value);
+    return new StructuredFilter.Contains(StructuredFilter.TYPES, value);
   }
 
   /**
@@ -128,7 +127,7 @@ public interface ReferenceFilter {
    * @return a reference filter
    */
   static ReferenceFilter fieldsContain(@Nonnull String value) {
-    return pool -> pool.fieldsContain(value);
+    return new StructuredFilter.Contains(StructuredFilter.FIELDS, value);
   }
 
   /**
@@ -137,6 +136,6 @@ public interface ReferenceFilter {
    * @return a reference filter
    */
   static ReferenceFilter methodsContain(@Nonnull String value) {
-    return pool -> pool.methodsContain(value);
+    return new StructuredFilter.Contains(StructuredFilter.METHODS, value);
   }
 }
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.neonorbit.dexplore.filter;
+
+import io.github.neonorbit.dexplore.iface.Internal;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Evaluates a reference filter incrementally, while the references of an item are decoded.
+ * <p>
+ * A value, once found, remains found as more references are decoded.
+ * The filter is therefore evaluated in three-valued logic, where the values
+ * not found yet are unknown, and the decoding may stop as soon as the
+ * result is known. The values still unknown at the end are absent.
+ * <p>
+ * Instances are created for each item by a {@link Factory},
+ * see {@link ReferenceCriterion#newMatcher(ValueResolver)}.
+ */
+@Internal
+public final class ReferenceMatcher {
+  static final int UNKNOWN = 0;
+  static final int TRUE = 1;
+  static final int FALSE = 2;
+
+  private final Factory factory;
+  private final boolean[] found;
+  private int state;
+
+  private ReferenceMatcher(Factory factory) {
+    this.factory = factory;
+    this.found = new boolean[factory.values.length];
+    this.state = factory.root.eval(found, false);
+  }
+
+  /**
+   * @return the number of values required by the filter
+   */
+  public int size() {
+    return found.length;
+  }
+
+  @Nonnull
+  public ValueResolver.Resolved value(int i) {
+    return factory.values[i];
+  }
+
+  /**
+   * @return the reference sections in which the value is looked for,
+   *         a bit set of {@link org.jf.dexlib2.ReferenceType ReferenceType} values
+   */
+  public int sections(int i) {
+    return factory.sections[i];
+  }
+
+  public boolean isFound(int i) {
+    return found[i];
+  }
+
+  /**
+   * Marks a value as found.
+   *
+   * @param i index of the value
+   * @return {@code true} if the result is known
+   */
+  public boolean found(int i) {
+    if (!found[i]) {
+      found[i] = true;
+      state = factory.root.eval(found, false);
+    }
+    return state != UNKNOWN;
+  }
+
+  /**
+   * @return {@code true} if the result is known, regardless of the references not decoded yet
+   */
+  public boolean isDecided() {
+    return state != UNKNOWN;
+  }
+
+  /**
+   * @return the result of the filter, the values not found being absent
+   */
+  public boolean result() {
+    return (state == UNKNOWN ? factory.root.eval(found, true) : state) == TRUE;
+  }
+
+  /**
+   * A reference filter compiled for a dex file, from which matchers are created.
+   */
+  static final class Factory {
+    private final Node root;
+    private final ValueResolver.Resolved[] values;
+    private final int[] sections;
+
+    Factory(@Nonnull Node root, @Nonnull List<ValueResolver.Resolved> values, @Nonnull List<Integer> sections) {
+      this.root = root;
+      this.values = values.toArray(new ValueResolver.Resolved[0]);
+      this.sections = new int[values.size()];
+      for (int i = 0; i < this.sections.length; i++) this.sections[i] = sections.get(i);
+    }
+
+    @Nonnull
+    ReferenceMatcher newMatcher() {
+      return new ReferenceMatcher(this);
+    }
+  }
+
+  abstract static class Node {
+    /**
+     * @param found the values found so far
+     * @param complete whether all the references have been decoded
+     * @return {@link #TRUE}, {@link #FALSE} or, unless complete, {@link #UNKNOWN}
+     */
+    abstract int eval(boolean[] found, boolean complete);
+  }
+
+  static final class Constant extends Node {
+    private final int value;
+
+    Constant(boolean value) {
+      this.value = value ? TRUE : FALSE;
+    }
+
+    @Override
+    int eval(boolean[] found, boolean complete) {
+      return value;
+    }
+  }
+
+  /**
+   * Requires any or all of a range of values.
+   */
+  static final class Values extends Node {
+    private final int from, to;
+    private final boolean all;
+
+    Values(int from, int to, boolean all) {
+      this.from = from;
+      this.to = to;
+      this.all = all;
+    }
+
+    @Override
+    int eval(boolean[] found, boolean complete) {
+      for (int i = from; i < to; i++) {
+        if (found[i] != all) return all ? (complete ? FALSE : UNKNOWN) : TRUE;
+      }
+      return all ? TRUE : (complete ? FALSE : UNKNOWN);
+    }
+  }
+
+  static final class Not extends Node {
+    private final Node node;
+
+    Not(Node node) {
+      this.node = node;
+    }
+
+    @Override
+    int eval(boolean[] found, boolean complete) {
+      int value = node.eval(found, complete);
+      return value == UNKNOWN ? UNKNOWN : value == TRUE ? FALSE : TRUE;
+    }
+  }
+
+  static final class And extends Node {
+    private final Node first, second;
+
+    And(Node first, Node second) {
+      this.first = first;
+      this.second = second;
+    }
+
+    @Override
+    int eval(boolean[] found, boolean complete) {
+      int a = first.eval(found, complete);
+      if (a == FALSE) return FALSE;
+      int b = second.eval(found, complete);
+      if (b == FALSE) return FALSE;
+      return a == TRUE && b == TRUE ? TRUE : UNKNOWN;
+    }
+  }
+
+  static final class Or extends Node {
+    private final Node first, second;
+
+    Or(Node first, Node second) {
+      this.first = first;
+      this.second = second;
+    }
+
+    @Override
+    int eval(boolean[] found, boolean complete) {
+      int a = first.eval(found, complete);
+      if (a == TRUE) return TRUE;
+      int b = second.eval(found, complete);
+      if (b == TRUE) return TRUE;
+      return a == FALSE && b == FALSE ? FALSE : UNKNOWN;
+    }
+  }
+}
@@ -23,6 +23,7 @@ import io.github.neonorbit.dexplore.reference.StringRefData;
 import io.github.neonorbit.dexplore.reference.TypeRefData;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Objects;
 
 /**
@@ -98,6 +99,64 @@ public final class ReferenceTypes {
     return toBuilder().enableSynthetic(enable).build();
   }
 
+  /**
+   * Merges two compatible instances.
+   * <p>
+   * Instances are compatible if they have the same scope and synthetic setting,
+   * and agree on the details of the field and method references they both include.
+   * A pool decoded with the merged instance contains the sections of both instances,
+   * each section being identical to the one decoded with the original instance.
+   *
+   * @param other the instance to merge with
+   * @return the merged instance, or null if the instances are not compatible
+   */
+  @Internal
+  @Nullable
+  public ReferenceTypes merge(@Nonnull ReferenceTypes other) {
+    if (this.equals(other)) return this;
+    if (scope != other.scope || synthetic != other.synthetic ||
+        (hasField() && other.hasField() && hasFieldDetails() != other.hasFieldDetails()) ||
+        (hasMethod() && other.hasMethod() && hasMethodDetails() != other.hasMethodDetails())) {
+      return null;
+    }
+    Builder builder = toBuilder();
+    builder.flags |= other.flags;
+    return builder.build();
+  }
+
+  /**
+   * Returns {@code true} if a pool decoded with this instance
+   * contains all the sections of a pool decoded with the other instance.
+   *
+   * @param other the instance to compare with
+   * @return {@code true} if this instance covers the other
+   * @see #merge(ReferenceTypes)
+   */
+  @Internal
+  public boolean covers(@Nonnull ReferenceTypes other) {
+    return this.equals(merge(other));
+  }
+
+  /**
+   * Removes the reference types of another instance.
+   * <p>
+   * The result is only meaningful for {@linkplain #merge(ReferenceTypes) compatible} instances.
+   *
+   * @param other the instance whose types are to be removed
+   * @return an instance with the remaining types
+   */
+  @Internal
+  @Nonnull
+  public ReferenceTypes without(@Nonnull ReferenceTypes other) {
+    int remaining = flags & ~(other.flags & (STRING | TYPED | FIELD | METHOD));
+    if ((remaining & FIELD) == NONE) remaining &= ~F_INFO;
+    if ((remaining & METHOD) == NONE) remaining &= ~M_INFO;
+    if (remaining == flags) return this;
+    Builder builder = toBuilder();
+    builder.flags = remaining;
+    return builder.build();
+  }
+
   public Scope getScope() {
     return scope;
   }
@@ -162,6 +221,18 @@ public final class ReferenceTypes {
     return false;
   }
 
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("[");
+    if (hasString()) builder.append("string, ");
+    if (hasTypeDes()) builder.append("type, ");
+    if (hasField()) builder.append(hasFieldDetails() ? "field+details, " : "field, ");
+    if (hasMethod()) builder.append(hasMethodDetails() ? "method+details, " : "method, ");
+    builder.append("scope=").append(scope);
+    if (synthetic) builder.append(", synthetic");
+    return builder.append(']').toString();
+  }
+
   /**
    * @return an instance that includes all reference types.
    */
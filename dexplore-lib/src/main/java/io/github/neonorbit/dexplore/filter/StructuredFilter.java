@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.neonorbit.dexplore.filter;
+
+import io.github.neonorbit.dexplore.ReferencePool;
+import io.github.neonorbit.dexplore.iface.Internal;
+import org.jf.dexlib2.ReferenceType;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The {@link ReferenceFilter} implementations returned by its factory methods.
+ * <p>
+ * Unlike opaque lambdas, these filters can describe the values they require,
+ * allowing the search engine to preselect candidates from an index.
+ * They can also be {@linkplain #compile(ValueResolver) compiled} for each dex file,
+ * matching values by their indices.
+ */
+@Internal
+abstract class StructuredFilter implements ReferenceFilter {
+  // An upper bound for the clauses produced by OR combinations
+  private static final int MAX_CLAUSES = 32;
+
+  static final int CONTAINS = 0;
+  static final int STRINGS = 1;
+  static final int TYPES = 2;
+  static final int FIELDS = 3;
+  static final int METHODS = 4;
+  static final int SIGNATURE = 5;
+
+  private static final int ALL_SECTIONS = (1 << ReferenceType.STRING) | (1 << ReferenceType.TYPE) |
+                                          (1 << ReferenceType.FIELD) | (1 << ReferenceType.METHOD);
+
+  // Constant results of compiled filters
+  static final ReferenceFilter NEVER = pool -> false;
+  static final ReferenceFilter ALWAYS = pool -> true;
+
+  /**
+   * Returns the values required by the filter in conjunctive normal form.
+   * <p>
+   * Each clause is a set of values, at least one of which must be
+   * {@linkplain ReferencePool#contains(String) contained} in the pool.
+   * All the clauses must be satisfied for the filter to match.
+   *
+   * @return a list of clauses, or null if nothing is known about the filter
+   */
+  @Nullable
+  abstract List<Set<String>> requirements();
+
+  @Nullable
+  static List<Set<String>> requirementsOf(@Nullable ReferenceFilter filter) {
+    return filter instanceof StructuredFilter ? ((StructuredFilter) filter).requirements() : null;
+  }
+
+  /**
+   * Resolves the values of the filter against a dex file.
+   * <p>
+   * Values that do not exist in the dex file are folded into constants.
+   *
+   * @return the compiled filter, or {@link #NEVER} if no pool of the dex file can match
+   */
+  @Nonnull
+  abstract ReferenceFilter compile(@Nonnull ValueResolver resolver);
+
+  @Nonnull
+  static ReferenceFilter compile(@Nonnull ReferenceFilter filter, @Nonnull ValueResolver resolver) {
+    return filter instanceof StructuredFilter ? ((StructuredFilter) filter).compile(resolver) : filter;
+  }
+
+  /**
+   * Converts a compiled filter for {@linkplain ReferenceMatcher incremental evaluation}.
+   * <p>
+   * Only the compiled values and their combinations can be evaluated incrementally.
+   * Opaque lambdas, signatures and values with an
+   * {@linkplain ValueResolver#UNRESOLVABLE unresolvable} type require the full pool.
+   *
+   * @param compiled a filter returned by {@link #compile(ReferenceFilter, ValueResolver)}
+   * @return a matcher factory, or null if the filter must be applied to the full pool
+   */
+  @Nullable
+  static ReferenceMatcher.Factory matcherOf(@Nonnull ReferenceFilter compiled) {
+    List<ValueResolver.Resolved> values = new ArrayList<>();
+    List<Integer> sections = new ArrayList<>();
+    ReferenceMatcher.Node root = nodeOf(compiled, values, sections);
+    return root == null ? null : new ReferenceMatcher.Factory(root, values, sections);
+  }
+
+  @Nullable
+  private static ReferenceMatcher.Node nodeOf(ReferenceFilter filter,
+                                              List<ValueResolver.Resolved> values,
+                                              List<Integer> sections) {
+    if (filter == ALWAYS || filter == NEVER) {
+      return new ReferenceMatcher.Constant(filter == ALWAYS);
+    } else if (filter instanceof Compiled) {
+      Compiled compiled = (Compiled) filter;
+      int from = values.size();
+      for (ValueResolver.Resolved value : compiled.values) {
+        if (value.typeIndex == ValueResolver.UNRESOLVABLE &&
+            compiled.sections != 1 << ReferenceType.STRING) return null;
+        values.add(value);
+        sections.add(compiled.sections);
+      }
+      return new ReferenceMatcher.Values(from, values.size(), compiled.all);
+    } else if (filter instanceof Not) {
+      ReferenceMatcher.Node node = nodeOf(((Not) filter).filter, values, sections);
+      return node == null ? null : new ReferenceMatcher.Not(node);
+    } else if (filter instanceof And) {
+      ReferenceMatcher.Node a = nodeOf(((And) filter).first, values, sections);
+      ReferenceMatcher.Node b = a == null ? null : nodeOf(((And) filter).second, values, sections);
+      return b == null ? null : new ReferenceMatcher.And(a, b);
+    } else if (filter instanceof Or) {
+      ReferenceMatcher.Node a = nodeOf(((Or) filter).first, values, sections);
+      ReferenceMatcher.Node b = a == null ? null : nodeOf(((Or) filter).second, values, sections);
+      return b == null ? null : new ReferenceMatcher.Or(a, b);
+    }
+    return null;
+  }
+
+  static final class Contains extends StructuredFilter {
+    final int kind;
+    final String value;
+
+    Contains(int kind, @Nonnull String value) {
+      this.kind = kind;
+      this.value = value;
+    }
+
+    @Override
+    public boolean accept(@Nonnull ReferencePool pool) {
+      switch (kind) {
+        case STRINGS: return pool.stringsContain(value);
+        case TYPES: return pool.typesContain(value);
+        case FIELDS: return pool.fieldsContain(value);
+        case METHODS: return pool.methodsContain(value);
+        case SIGNATURE: return pool.containsSignature(value);
+        default: return pool.contains(value);
+      }
+    }
+
+    @Override
+    List<Set<String>> requirements() {
+      // signatures are not indexed
+      if (kind == SIGNATURE) return null;
+      return Collections.singletonList(Collections.singleton(value));
+    }
+
+    @Override
+    ReferenceFilter compile(ValueResolver resolver) {
+      if (kind == SIGNATURE) return this;
+      ValueResolver.Resolved resolved = resolver.resolve(value);
+      switch (kind) {
+        case STRINGS:
+          if (resolved.stringIndex == ValueResolver.NOT_FOUND) return NEVER;
+          return new Compiled(resolved, 1 << ReferenceType.STRING);
+        case TYPES:
+          if (resolved.typeIndex == ValueResolver.NOT_FOUND) return NEVER;
+          return new Compiled(resolved, 1 << ReferenceType.TYPE);
+        case FIELDS:
+          return resolved.isAbsent() ? NEVER : new Compiled(resolved, 1 << ReferenceType.FIELD);
+        case METHODS:
+          return resolved.isAbsent() ? NEVER : new Compiled(resolved, 1 << ReferenceType.METHOD);
+        default:
+          return resolved.isAbsent() ? NEVER : new Compiled(resolved, ALL_SECTIONS);
+      }
+    }
+  }
+
+  static final class Any extends StructuredFilter {
+    final String[] values;
+
+    Any(@Nonnull String[] values) {
+      this.values = values;
+    }
+
+    @Override
+    public boolean accept(@Nonnull ReferencePool pool) {
+      return Arrays.stream(values).anyMatch(pool::contains);
+    }
+
+    @Override
+    List<Set<String>> requirements() {
+      return Collections.singletonList(new LinkedHashSet<>(Arrays.asList(values)));
+    }
+
+    @Override
+    ReferenceFilter compile(ValueResolver resolver) {
+      List<ValueResolver.Resolved> present = new ArrayList<>(values.length);
+      for (String value : values) {
+        ValueResolver.Resolved resolved = resolver.resolve(value);
+        if (!resolved.isAbsent()) present.add(resolved);
+      }
+      if (present.isEmpty()) return NEVER;
+      return new Compiled(present.toArray(new ValueResolver.Resolved[0]), false);
+    }
+  }
+
+  static final class All extends StructuredFilter {
+    final String[] values;
+
+    All(@Nonnull String[] values) {
+      this.values = values;
+    }
+
+    @Override
+    public boolean accept(@Nonnull ReferencePool pool) {
+      return Arrays.stream(values).allMatch(pool::contains);
+    }
+
+    @Override
+    List<Set<String>> requirements() {
+      List<Set<String>> clauses = new ArrayList<>(values.length);
+      for (String value : values) clauses.add(Collections.singleton(value));
+      return clauses;
+    }
+
+    @Override
+    ReferenceFilter compile(ValueResolver resolver) {
+      ValueResolver.Resolved[] resolved = new ValueResolver.Resolved[values.length];
+      for (int i = 0; i < values.length; i++) {
+        resolved[i] = resolver.resolve(values[i]);
+        if (resolved[i].isAbsent()) return NEVER;
+      }
+      return new Compiled(resolved, true);
+    }
+  }
+
+  static final class Not extends StructuredFilter {
+    final ReferenceFilter filter;
+
+    Not(@Nonnull ReferenceFilter filter) {
+      this.filter = filter;
+    }
+
+    @Override
+    public boolean accept(@Nonnull ReferencePool pool) {
+      return !filter.accept(pool);
+    }
+
+    @Override
+    List<Set<String>> requirements() {
+      return null;
+    }
+
+    @Override
+    ReferenceFilter compile(ValueResolver resolver) {
+      ReferenceFilter compiled = compile(filter, resolver);
+      if (compiled == NEVER) return ALWAYS;
+      if (compiled == ALWAYS) return NEVER;
+      return compiled == filter ? this : new Not(compiled);
+    }
+  }
+
+  static final class And extends StructuredFilter {
+    final ReferenceFilter first;
+    final ReferenceFilter second;
+
+    And(@Nonnull ReferenceFilter first, @Nonnull ReferenceFilter second) {
+      this.first = first;
+      this.second = second;
+    }
+
+    @Override
+    public boolean accept(@Nonnull ReferencePool pool) {
+      return first.accept(pool) && second.accept(pool);
+    }
+
+    @Override
+    List<Set<String>> requirements() {
+      List<Set<String>> a = requirementsOf(first), b = requirementsOf(second);
+      if (a == null || b == null) return a == null ? b : a;
+      List<Set<String>> clauses = new ArrayList<>(a);
+      clauses.addAll(b);
+      return clauses;
+    }
+
+    @Override
+    ReferenceFilter compile(ValueResolver resolver) {
+      ReferenceFilter a = compile(first, resolver);
+      if (a == NEVER) return NEVER;
+      ReferenceFilter b = compile(second, resolver);
+      if (b == NEVER) return NEVER;
+      if (a == ALWAYS) return b;
+      if (b == ALWAYS) return a;
+      return a == first && b == second ? this : new And(a, b);
+    }
+  }
+
+  static final class Or extends StructuredFilter {
+    final ReferenceFilter first;
+    final ReferenceFilter second;
+
+    Or(@Nonnull ReferenceFilter first, @Nonnull ReferenceFilter second) {
+      this.first = first;
+      this.second = second;
+    }
+
+    @Override
+    public boolean accept(@Nonnull ReferencePool pool) {
+      return first.accept(pool) || second.accept(pool);
+    }
+
+    @Override
+    List<Set<String>> requirements() {
+      List<Set<String>> a = requirementsOf(first), b = requirementsOf(second);
+      if (a == null || b == null || a.size() * b.size() > MAX_CLAUSES) return null;
+      // (a1 & a2) | (b1 & b2) => (a1 | b1) & (a1 | b2) & (a2 | b1) & (a2 | b2)
+      List<Set<String>> clauses = new ArrayList<>(a.size() * b.size());
+      for (Set<String> x : a) {
+        for (Set<String> y : b) {
+          Set<String> clause = new LinkedHashSet<>(x);
+          clause.addAll(y);
+          clauses.add(clause);
+        }
+      }
+      return clauses;
+    }
+
+    @Override
+    ReferenceFilter compile(ValueResolver resolver) {
+      ReferenceFilter a = compile(first, resolver);
+      if (a == ALWAYS) return ALWAYS;
+      ReferenceFilter b = compile(second, resolver);
+      if (b == ALWAYS) return ALWAYS;
+      if (a == NEVER) return b;
+      if (b == NEVER) return a;
+      return a == first && b == second ? this : new Or(a, b);
+    }
+  }
+
+  /**
+   * Matches values resolved against a dex file, see {@link #compile(ValueResolver)}.
+   */
+  static final class Compiled extends StructuredFilter {
+    final ValueResolver.Resolved[] values;
+    final int sections;
+    final boolean all;
+
+    Compiled(@Nonnull ValueResolver.Resolved value, int sections) {
+      this(new ValueResolver.Resolved[] {value}, sections, false);
+    }
+
+    Compiled(@Nonnull ValueResolver.Resolved[] values, boolean all) {
+      this(values, ALL_SECTIONS, all);
+    }
+
+    private Compiled(ValueResolver.Resolved[] values, int sections, boolean all) {
+      this.values = values;
+      this.sections = sections;
+      this.all = all;
+    }
+
+    @Override
+    public boolean accept(@Nonnull ReferencePool pool) {
+      for (ValueResolver.Resolved value : values) {
+        if (pool.contains(value, sections) != all) return !all;
+      }
+      return all;
+    }
+
+    @Override
+    List<Set<String>> requirements() {
+      return null;
+    }
+
+    @Override
+    ReferenceFilter compile(ValueResolver resolver) {
+      return this;
+    }
+  }
+}
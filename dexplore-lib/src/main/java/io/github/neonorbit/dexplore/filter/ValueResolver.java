@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.neonorbit.dexplore.filter;
+
+import io.github.neonorbit.dexplore.iface.Internal;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+
+import javax.annotation.Nonnull;
+import java.lang.ref.WeakReference;
+
+/**
+ * Resolves the values of reference filters to their indices in a dex file.
+ */
+@Internal
+public interface ValueResolver {
+  /** The value does not exist in the dex file. */
+  int NOT_FOUND = -1;
+  /** The value is not a valid java type name, and cannot be resolved to a type. */
+  int UNRESOLVABLE = -2;
+
+  @Nonnull
+  DexBackedDexFile getDexFile();
+
+  /**
+   * @return index of the string in the string_ids section, or {@link #NOT_FOUND}
+   */
+  int findString(@Nonnull String value);
+
+  /**
+   * @param javaName a java type name, eg: {@code java.lang.Object}
+   * @return index of the type in the type_ids section, {@link #NOT_FOUND} or {@link #UNRESOLVABLE}
+   */
+  int findJavaType(@Nonnull String javaName);
+
+  @Nonnull
+  default Resolved resolve(@Nonnull String value) {
+    return new Resolved(getDexFile(), value, findString(value), findJavaType(value));
+  }
+
+  /**
+   * A value resolved against a dex file.
+   * <p>
+   * The dex file is only weakly referenced, compiled filters must not keep it alive.
+   */
+  final class Resolved {
+    private final WeakReference<DexBackedDexFile> dexFile;
+    public final String value;
+    public final int stringIndex;
+    public final int typeIndex;
+
+    Resolved(DexBackedDexFile dexFile, String value, int stringIndex, int typeIndex) {
+      this.dexFile = new WeakReference<>(dexFile);
+      this.value = value;
+      this.stringIndex = stringIndex;
+      this.typeIndex = typeIndex;
+    }
+
+    /**
+     * @return {@code true} if the value was resolved against the given dex file
+     */
+    public boolean isOf(@Nonnull DexBackedDexFile dexFile) {
+      return this.dexFile.get() == dexFile;
+    }
+
+    /**
+     * @return {@code true} if neither a string nor a type of the dex file matches the value
+     */
+    public boolean isAbsent() {
+      return stringIndex == NOT_FOUND && typeIndex == NOT_FOUND;
+    }
+  }
+}
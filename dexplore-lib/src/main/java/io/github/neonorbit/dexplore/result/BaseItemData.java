@@ -20,11 +20,38 @@ import org.jf.dexlib2.AccessFlags;
 
 abstract class BaseItemData implements DexItemData {
   private int modifier = Integer.MIN_VALUE;
+  private volatile Runnable loader;
 
   void setModifier(int modifier) {
     this.modifier = modifier;
   }
 
+  /**
+   * Defers the decoding of the remaining data until it is first accessed.
+   */
+  void setLoader(Runnable loader) {
+    this.loader = loader;
+  }
+
+  boolean isLoaded() {
+    return loader == null;
+  }
+
+  /**
+   * Runs the pending loader, if any.
+   */
+  final void load() {
+    if (loader != null) {
+      synchronized (this) {
+        Runnable loader = this.loader;
+        if (loader != null) {
+          loader.run();
+          this.loader = null;
+        }
+      }
+    }
+  }
+
   @Override
   public int getModifiers() {
     return modifier;
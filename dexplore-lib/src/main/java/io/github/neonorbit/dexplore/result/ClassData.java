@@ -24,10 +24,13 @@ import io.github.neonorbit.dexplore.util.Utils;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
@@ -52,6 +55,7 @@ public final class ClassData extends BaseItemData implements DexItemData, Compar
 
   private List<FieldData> fields;
   private Map<String, MethodData> methods;
+  private Map<String, MethodData> attached;
   private ReferencePool referencePool;
 
   ClassData(@Nonnull String clazz) {
@@ -82,9 +86,54 @@ public final class ClassData extends BaseItemData implements DexItemData, Compar
   }
 
   MethodData getMethodBySignature(String signature) {
+    load();
     return Objects.requireNonNull(methods).get(signature);
   }
 
+  /**
+   * @return a boolean indicating whether the members of the class are known
+   */
+  boolean hasMembers() {
+    return !isLoaded() || methods != null;
+  }
+
+  /**
+   * Returns the specified method, without loading the other members if they are not loaded yet.
+   * A method created before the members are loaded is retained by the loader.
+   *
+   * @param signature the signature of the method
+   * @param factory creates the method if it does not exist yet
+   * @return the {@code MethodData} object of the specified method
+   */
+  synchronized MethodData resolveMethod(String signature, Function<ClassData, MethodData> factory) {
+    if (isLoaded()) {
+      MethodData method = methods == null ? null : methods.get(signature);
+      return method != null ? method : factory.apply(this);
+    }
+    if (attached == null) {
+      attached = new LinkedHashMap<>();
+    }
+    return attached.computeIfAbsent(signature, s -> factory.apply(this));
+  }
+
+  /**
+   * Called by the loader. Returns the method previously created by {@link #resolveMethod}.
+   */
+  @Nullable
+  MethodData takeAttached(String signature) {
+    return attached == null ? null : attached.remove(signature);
+  }
+
+  /**
+   * Called by the loader. Returns the remaining methods created by {@link #resolveMethod}.
+   */
+  @Nonnull
+  Collection<MethodData> takeAttached() {
+    Map<String, MethodData> remaining = attached;
+    attached = null;
+    return remaining == null ? Collections.emptyList() : remaining.values();
+  }
+
   /**
    * Loads the {@code Class} object associated with the dex class.
    * @param classLoader the class loader to use
@@ -116,6 +165,7 @@ public final class ClassData extends BaseItemData implements DexItemData, Compar
    */
   @Nonnull
   public List<FieldData> getFields() {
+    load();
     if (fields == null) {
       fields = Collections.emptyList();
     }
@@ -145,6 +195,7 @@ public final class ClassData extends BaseItemData implements DexItemData, Compar
    */
   @Nonnull
   public List<MethodData> getMethods() {
+    load();
     if (methods == null) {
       methods = Collections.emptyMap();
     }
@@ -171,7 +222,7 @@ public final class ClassData extends BaseItemData implements DexItemData, Compar
    */
   @Nonnull
   public List<MethodData> getConstructors() {
-    return methods.values().stream().filter(MethodData::isConstructor).collect(toList());
+    return getMethods().stream().filter(MethodData::isConstructor).collect(toList());
   }
 
   /**
@@ -197,7 +248,7 @@ public final class ClassData extends BaseItemData implements DexItemData, Compar
   public ReferencePool getReferencePool() {
     if (referencePool == null) {
       referencePool = ReferencePool.merge(Stream
-              .concat(fields.stream(), methods.values().stream())
+              .concat(getFields().stream(), getMethods().stream())
               .map(DexItemData::getReferencePool).filter(r -> !r.isEmpty()).collect(toList())
       );
     }
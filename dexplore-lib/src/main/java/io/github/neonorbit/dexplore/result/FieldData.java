@@ -119,6 +119,7 @@ public final class FieldData extends BaseItemData implements DexItemData, Compar
    */
   @Nullable
   public Object getInitialValue() {
+    load();
     return value;
   }
 
@@ -145,6 +146,7 @@ public final class FieldData extends BaseItemData implements DexItemData, Compar
   @Nonnull
   @Override
   public ReferencePool getReferencePool() {
+    load();
     if (referencePool == null) {
       referencePool = ReferencePool.emptyPool();
     }
@@ -168,6 +168,7 @@ public final class MethodData extends BaseItemData implements DexItemData, Compa
   @Nonnull
   @Override
   public ReferencePool getReferencePool() {
+    load();
     if (referencePool == null) {
       referencePool = ReferencePool.emptyPool();
     }
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.neonorbit.dexplore.result;
+
+import io.github.neonorbit.dexplore.Dexplore;
+import io.github.neonorbit.dexplore.iface.Internal;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A compact handle to a matched dex class or method.
+ * <p>
+ * A handle identifies an item by its position: the dex file, the class_def index,
+ * and the method_id index. It is resolved into a {@link ClassData} or {@link MethodData}
+ * only when requested, with {@link Dexplore#resolve(ResultHandle)}.
+ * <p>
+ * Handles are immutable and can be freely passed between threads.
+ * Each handle is encoded in a single {@code long}, see {@link #toLong()},
+ * so large result sets can be stored in primitive arrays.
+ * <p>
+ * <b>Note:</b> A handle is only valid for the {@code Dexplore} instance
+ * that produced it, or for another instance loaded from the same file.
+ *
+ * @see Dexplore#streamClasses(io.github.neonorbit.dexplore.filter.DexFilter,
+ *      io.github.neonorbit.dexplore.filter.ClassFilter, int) Dexplore.streamClasses()
+ *
+ * @author NeonOrbit
+ * @since 1.5.0
+ */
+public final class ResultHandle implements Comparable<ResultHandle> {
+  private static final int INDEX_BITS = 20;
+  private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+  private static final int CLASS_SHIFT = INDEX_BITS;
+  private static final int DEX_SHIFT = CLASS_SHIFT + INDEX_BITS;
+  private static final long DEX_MASK = 0xFFFF;
+  private static final int SYNTH_SHIFT = DEX_SHIFT + 16;
+
+  private final long value;
+
+  private ResultHandle(long value) {
+    this.value = value;
+  }
+
+  @Internal
+  @Nonnull
+  public static ResultHandle ofClass(int dexIndex, int classIndex, boolean synthetic) {
+    return new ResultHandle(encode(dexIndex, classIndex, 0, synthetic));
+  }
+
+  @Internal
+  @Nonnull
+  public static ResultHandle ofMethod(int dexIndex, int classIndex, int methodIndex, boolean synthetic) {
+    return new ResultHandle(encode(dexIndex, classIndex, methodIndex + 1, synthetic));
+  }
+
+  private static long encode(int dex, int clazz, int method, boolean synthetic) {
+    if (dex < 0 || dex > DEX_MASK || clazz < 0 || clazz > INDEX_MASK || method < 0 || method > INDEX_MASK) {
+      throw new IllegalArgumentException("Index out of range");
+    }
+    return (long) dex << DEX_SHIFT | (synthetic ? 1L : 0L) << SYNTH_SHIFT |
+           (long) clazz << CLASS_SHIFT | method;
+  }
+
+  /**
+   * Decodes a handle from its {@linkplain #toLong() long} form.
+   *
+   * @param value the encoded handle
+   * @return the decoded handle
+   */
+  @Nonnull
+  public static ResultHandle of(long value) {
+    return new ResultHandle(value);
+  }
+
+  /**
+   * @return the handle encoded in a {@code long}
+   */
+  public long toLong() {
+    return value;
+  }
+
+  /**
+   * @return a boolean indicating whether the handle refers to a method
+   */
+  public boolean isMethod() {
+    return (value & INDEX_MASK) != 0;
+  }
+
+  /**
+   * @return the handle of the class, or of the declaring class of the method
+   */
+  @Nonnull
+  public ResultHandle getClassHandle() {
+    return isMethod() ? new ResultHandle(value & ~INDEX_MASK) : this;
+  }
+
+  /**
+   * @return the index of the dex file
+   */
+  public int getDexIndex() {
+    return (int) (value >>> DEX_SHIFT & DEX_MASK);
+  }
+
+  /**
+   * @return the index of the class in the class_defs section
+   */
+  public int getClassIndex() {
+    return (int) (value >>> CLASS_SHIFT & INDEX_MASK);
+  }
+
+  /**
+   * @return the index of the method in the method_ids section, or -1 if the handle refers to a class
+   */
+  public int getMethodIndex() {
+    return (int) (value & INDEX_MASK) - 1;
+  }
+
+  /**
+   * @return a boolean indicating whether synthetic members are included in the resolved results
+   */
+  @Internal
+  public boolean synthItems() {
+    return (value >>> SYNTH_SHIFT & 1) != 0;
+  }
+
+  @Override
+  public int compareTo(@Nonnull ResultHandle o) {
+    return Long.compare(this.value, o.value);
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(value);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return (this == obj) || (obj instanceof ResultHandle) && (
+            this.value == ((ResultHandle) obj).value
+    );
+  }
+
+  @Override
+  public String toString() {
+    return "ResultHandle{dex=" + getDexIndex() + ", class=" + getClassIndex() +
+           (isMethod() ? ", method=" + getMethodIndex() : "") + "}";
+  }
+}
@@ -21,7 +21,6 @@ import io.github.neonorbit.dexplore.ReferencePool;
 import io.github.neonorbit.dexplore.iface.Internal;
 import io.github.neonorbit.dexplore.reference.StringRefData;
 import io.github.neonorbit.dexplore.util.DexUtils;
-import org.jf.dexlib2.AccessFlags;
 import org.jf.dexlib2.dexbacked.DexBackedClassDef;
 import org.jf.dexlib2.dexbacked.DexBackedField;
 import org.jf.dexlib2.dexbacked.DexBackedMethod;
@@ -34,55 +33,76 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Builds the results of dex searches.
+ * <p>
+ * By default, the members of a class and the reference pools of its members are
+ * decoded on first access, from the retained dex item. Eager results are fully
+ * decoded before they are returned.
+ */
 @Internal
 public final class Results {
   public static ClassData ofClass(@Nonnull DexBackedClassDef dexClass, boolean synthetic) {
-    return buildClassData(dexClass, null, synthetic);
+    return ofClass(dexClass, synthetic, false);
+  }
+
+  public static ClassData ofClass(@Nonnull DexBackedClassDef dexClass, boolean synthetic, boolean eager) {
+    ClassData instance = buildClassData(dexClass, synthetic, eager);
+    if (eager) instance.load();
+    return instance;
   }
 
   public static MethodData ofMethod(@Nonnull DexBackedMethod dexMethod, boolean synthetic) {
-    return ofMethod(null, dexMethod, synthetic);
+    return ofMethod(null, dexMethod, synthetic, false);
   }
 
   public static MethodData ofMethod(@Nullable ClassData sharedInstance,
                                     @Nonnull DexBackedMethod dexMethod, boolean synthetic) {
-    if (sharedInstance == null || sharedInstance.getMethods().isEmpty() ||
+    return ofMethod(sharedInstance, dexMethod, synthetic, false);
+  }
+
+  public static MethodData ofMethod(@Nullable ClassData sharedInstance,
+                                    @Nonnull DexBackedMethod dexMethod, boolean synthetic, boolean eager) {
+    if (sharedInstance == null || !sharedInstance.hasMembers() ||
             !DexUtils.dexClassToJavaTypeName(dexMethod.classDef).equals(sharedInstance.clazz)) {
-      sharedInstance = buildClassData(dexMethod.classDef, dexMethod, synthetic);
-    }
-    MethodData method = sharedInstance.getMethodBySignature(DexUtils.getMethodSignature(dexMethod));
-    if (method == null) {
-      throw new AssertionError();
+      sharedInstance = buildClassData(dexMethod.classDef, synthetic, eager);
     }
+    MethodData method = sharedInstance.resolveMethod(
+            DexUtils.getMethodSignature(dexMethod), instance -> buildMethodData(instance, dexMethod, eager)
+    );
+    if (eager) sharedInstance.load();
     return method;
   }
 
-  private static ClassData buildClassData(@Nonnull DexBackedClassDef dexClass,
-                                          @Nullable DexBackedMethod forMethod, boolean synthetic) {
+  private static ClassData buildClassData(@Nonnull DexBackedClassDef dexClass, boolean synthetic, boolean eager) {
     String clazz = DexUtils.dexClassToJavaTypeName(dexClass);
     ClassData instance = new ClassData(clazz);
+    instance.setModifier(dexClass.getAccessFlags());
+    instance.setLoader(() -> loadMembers(instance, dexClass, synthetic, eager));
+    return instance;
+  }
+
+  private static void loadMembers(@Nonnull ClassData instance, @Nonnull DexBackedClassDef dexClass,
+                                  boolean synthetic, boolean eager) {
     List<FieldData> fields = new ArrayList<>();
     DexUtils.dexFields(dexClass, synthetic).forEach(dexField -> {
-      FieldData fieldData = buildFieldData(instance, dexField);
+      FieldData fieldData = buildFieldData(instance, dexField, eager);
       fields.add(fieldData);
     });
     Map<String, MethodData> methods = new LinkedHashMap<>();
     DexUtils.dexMethods(dexClass, synthetic).forEach(dexMethod -> {
-      MethodData method = buildMethodData(instance, dexMethod);
-      methods.put(method.getSignature(), method);
+      String signature = DexUtils.getMethodSignature(dexMethod);
+      MethodData method = instance.takeAttached(signature);
+      methods.put(signature, method != null ? method : buildMethodData(instance, dexMethod, eager));
     });
-    if (!synthetic && forMethod != null && AccessFlags.SYNTHETIC.isSet(forMethod.accessFlags)) {
-      MethodData method = buildMethodData(instance, forMethod);
-      methods.put(method.getSignature(), method);
-    }
-    instance.setModifier(dexClass.getAccessFlags());
+    // synthetic methods that were matched explicitly
+    instance.takeAttached().forEach(method -> methods.put(method.getSignature(), method));
     instance.setFields(Collections.unmodifiableList(fields));
     instance.setMethods(Collections.unmodifiableMap(methods));
-    return instance;
   }
 
   private static MethodData buildMethodData(@Nonnull ClassData sharedInstance,
-                                            @Nonnull DexBackedMethod dexMethod) {
+                                            @Nonnull DexBackedMethod dexMethod, boolean eager) {
     MethodData instance = new MethodData(
             sharedInstance.clazz,
             dexMethod.getName(),
@@ -91,12 +111,16 @@ public final class Results {
     );
     instance.setClassData(sharedInstance);
     instance.setModifier(dexMethod.accessFlags);
-    instance.setReferencePool(DexDecoder.decodeFully(dexMethod));
+    if (eager) {
+      instance.setReferencePool(DexDecoder.decodeFully(dexMethod));
+    } else {
+      instance.setLoader(() -> instance.setReferencePool(DexDecoder.decodeFully(dexMethod)));
+    }
     return instance;
   }
 
   private static FieldData buildFieldData(@Nonnull ClassData sharedInstance,
-                                          @Nonnull DexBackedField dexField) {
+                                          @Nonnull DexBackedField dexField, boolean eager) {
     FieldData instance = new FieldData(
             sharedInstance.clazz,
             dexField.getName(),
@@ -104,13 +128,21 @@ public final class Results {
     );
     instance.setModifier(dexField.accessFlags);
     if (DexUtils.hasValue(dexField)) {
-      ReferencePool pool = DexDecoder.decodeFully(dexField);
-      List<StringRefData> strings = pool.getStringSection();
-      instance.setValue(
-              !strings.isEmpty() ? strings.get(0).getString() : DexDecoder.decodeFieldValue(dexField)
-      );
-      instance.setReferencePool(pool);
+      if (eager) {
+        loadFieldValue(instance, dexField);
+      } else {
+        instance.setLoader(() -> loadFieldValue(instance, dexField));
+      }
     }
     return instance;
   }
+
+  private static void loadFieldValue(@Nonnull FieldData instance, @Nonnull DexBackedField dexField) {
+    ReferencePool pool = DexDecoder.decodeFully(dexField);
+    List<StringRefData> strings = pool.getStringSection();
+    instance.setValue(
+            !strings.isEmpty() ? strings.get(0).getString() : DexDecoder.decodeFieldValue(dexField)
+    );
+    instance.setReferencePool(pool);
+  }
 }
@@ -28,6 +28,11 @@ abstract class KeyedTask<V> implements Callable<V> {
     this.key = key;
   }
 
+  @Nonnull
+  String getKey() {
+    return key;
+  }
+
   protected abstract V run();
 
   @Override
@@ -23,26 +23,46 @@ import io.github.neonorbit.dexplore.QueryBatch.Query;
 import io.github.neonorbit.dexplore.iface.Internal;
 import io.github.neonorbit.dexplore.iface.KOperator;
 import io.github.neonorbit.dexplore.result.DexItemData;
+import io.github.neonorbit.dexplore.util.DexEvents;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.function.BiConsumer;
 
 @Internal
 public final class QueryTask extends KeyedTask<Object> {
   private final Query query;
   private final Dexplore dexplore;
   private final KOperator<DexItemData> operator;
+  private final BiConsumer<String, Runnable> recorder;
 
   QueryTask(@Nonnull Query query,
             @Nonnull Dexplore dexplore,
-            @Nonnull KOperator<DexItemData> operator) {
+            @Nonnull KOperator<DexItemData> operator,
+            @Nullable BiConsumer<String, Runnable> recorder) {
     super(query.key);
     this.query = query;
     this.dexplore = dexplore;
     this.operator = operator;
+    this.recorder = recorder;
   }
 
   @Override
   public Object run() {
+    DexEvents.Event event = DexEvents.begin(DexEvents.Type.QUERY);
+    try {
+      if (recorder == null) {
+        search();
+      } else {
+        recorder.accept(query.key, this::search);
+      }
+    } finally {
+      if (event != null) event.commit(query.key, kindOf(query));
+    }
+    return null;
+  }
+
+  private void search() {
     if (query instanceof MethodQuery) {
       MethodQuery query = (MethodQuery) this.query;
       dexplore.onMethodResult(query.dexFilter, query.classFilter, query.methodFilter, this::map);
@@ -50,7 +70,14 @@ public final class QueryTask extends KeyedTask<Object> {
       ClassQuery query = (ClassQuery) this.query;
       dexplore.onClassResult(query.dexFilter, query.classFilter, this::map);
     }
-    return null;
+  }
+
+  /**
+   * @return the kind reported by the query events
+   */
+  @Nonnull
+  public static String kindOf(@Nonnull Query query) {
+    return query instanceof MethodQuery ? "method" : "class";
   }
 
   private boolean map(DexItemData result) {
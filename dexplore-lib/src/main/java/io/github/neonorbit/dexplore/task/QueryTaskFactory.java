@@ -23,20 +23,34 @@ import io.github.neonorbit.dexplore.iface.KOperator;
 import io.github.neonorbit.dexplore.result.DexItemData;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.function.BiConsumer;
 
 @Internal
 public final class QueryTaskFactory {
   private final Dexplore dexplore;
   private final KOperator<DexItemData> operator;
+  private final BiConsumer<String, Runnable> recorder;
 
   public QueryTaskFactory(@Nonnull Dexplore dexplore,
                           @Nonnull KOperator<DexItemData> operator) {
+    this(dexplore, operator, null);
+  }
+
+  /**
+   * @param recorder runs the search of each task under the key of its query,
+   *                 or null to run the searches directly
+   */
+  public QueryTaskFactory(@Nonnull Dexplore dexplore,
+                          @Nonnull KOperator<DexItemData> operator,
+                          @Nullable BiConsumer<String, Runnable> recorder) {
     this.dexplore = dexplore;
     this.operator = operator;
+    this.recorder = recorder;
   }
 
   @Nonnull
   public QueryTask newTask(@Nonnull QueryBatch.Query query) {
-    return new QueryTask(query, dexplore, operator);
+    return new QueryTask(query, dexplore, operator, recorder);
   }
 }
@@ -18,6 +18,7 @@ package io.github.neonorbit.dexplore.task;
 
 import io.github.neonorbit.dexplore.exception.DexException;
 import io.github.neonorbit.dexplore.iface.Internal;
+import io.github.neonorbit.dexplore.util.DexEvents;
 
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
@@ -120,10 +121,20 @@ public final class TaskHandler<V> {
   public boolean hasTask() { return completed < total; }
 
   private void dispatchAndUpdate(Callable<V> task) {
-    submittedTasks.add(taskDispatcher.submit(task));
+    submittedTasks.add(taskDispatcher.submit(traced(task)));
     total++;
   }
 
+  private static <V> Callable<V> traced(Callable<V> task) {
+    DexEvents.Event queued = DexEvents.begin(DexEvents.Type.TASK_QUEUE);
+    if (queued == null) return task;
+    String name = task instanceof KeyedTask ? ((KeyedTask<?>) task).getKey() : task.getClass().getName();
+    return () -> {
+      queued.commit(name);
+      return task.call();
+    };
+  }
+
   private Future<V> retrieveAndUpdate() throws InterruptedException {
     Future<V> next = taskDispatcher.take();
     submittedTasks.remove(next);
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.neonorbit.dexplore.util;
+
+import io.github.neonorbit.dexplore.iface.Internal;
+
+import javax.annotation.Nullable;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <b>This is an internal API.</b>
+ * <p>
+ * Emits Java Flight Recorder events, so that dex operations can be
+ * correlated with the rest of a JFR timeline (GC, allocations, threads).
+ * <p>
+ * The library targets Java 8 and Android, where the {@code jdk.jfr} module
+ * is not available at compile time. The events are therefore defined at runtime
+ * through {@code jdk.jfr.EventFactory}, and are only created while a recording
+ * is running. Otherwise, {@link #begin(Type)} costs a single volatile read.
+ *
+ * @author NeonOrbit
+ */
+@Internal
+public final class DexEvents {
+  private static final String PREFIX = "io.github.neonorbit.dexplore.";
+  private static final String CATEGORY = "Dexplore";
+
+  private static final Jfr JFR = Jfr.load();
+  private static volatile boolean active;
+
+  static {
+    if (JFR != null) JFR.register();
+  }
+
+  private DexEvents() {
+    throw new AssertionError();
+  }
+
+  /**
+   * The event types, with the names and types of their fields.
+   */
+  public enum Type {
+    DEX_LOAD("DexLoad", "Dex Load", "Loading of a dex file",
+            "dexName", String.class, "size", long.class),
+    POOL_DECODE("PoolDecode", "Pool Decode", "Decoding of a reference pool",
+            "item", String.class, "referenceTypes", String.class, "size", int.class),
+    QUERY("Query", "Query Execution", "Execution of a batch query",
+            "key", String.class, "kind", String.class),
+    TASK_QUEUE("TaskQueue", "Task Queueing", "Time spent by a task in the queue",
+            "task", String.class),
+    CACHE_EVICTION("CacheEviction", "Cache Eviction", "Eviction of cached reference pools",
+            "cache", String.class, "count", int.class);
+
+    private final String name, label, description;
+    private final Object[] fields;
+    private volatile Object factory;
+
+    Type(String name, String label, String description, Object... fields) {
+      this.name = name;
+      this.label = label;
+      this.description = description;
+      this.fields = fields;
+    }
+  }
+
+  /**
+   * @return {@code true} if a flight recording is running
+   */
+  public static boolean isActive() {
+    return active;
+  }
+
+  /**
+   * Begins an event. The event is timed until it is {@linkplain Event#commit committed}.
+   *
+   * @param type the event type
+   * @return the event, or null if no recording is running
+   */
+  @Nullable
+  public static Event begin(Type type) {
+    if (!active) return null;
+    try {
+      Object event = JFR.newEvent(type);
+      JFR.begin.invoke(event);
+      return new Event(type, event);
+    } catch (Throwable t) {
+      return null;
+    }
+  }
+
+  /**
+   * Commits an instant event, if a recording is running.
+   *
+   * @param type the event type
+   * @param values the field values, in declaration order
+   */
+  public static void commit(Type type, Object... values) {
+    Event event = begin(type);
+    if (event != null) event.commit(values);
+  }
+
+  /**
+   * A running event.
+   */
+  @Internal
+  public static final class Event {
+    private final Type type;
+    private final Object event;
+
+    private Event(Type type, Object event) {
+      this.type = type;
+      this.event = event;
+    }
+
+    /**
+     * Ends the event and writes it to the recording, unless it is filtered out by the settings.
+     *
+     * @param values the field values, in declaration order
+     */
+    public void commit(Object... values) {
+      try {
+        JFR.end.invoke(event);
+        if (!(Boolean) JFR.shouldCommit.invoke(event)) return;
+        for (int i = 0; i < values.length && i < type.fields.length / 2; i++) {
+          JFR.set.invoke(event, i, values[i]);
+        }
+        JFR.commit.invoke(event);
+      } catch (Throwable ignore) {}
+    }
+  }
+
+  /**
+   * Reflective access to the {@code jdk.jfr} API.
+   */
+  private static final class Jfr {
+    final Class<?> flightRecorder;
+    final Method create, newEvent, begin, end, shouldCommit, set, commit;
+    final Constructor<?> annotation, descriptor;
+    final Class<? extends Annotation> name, label, description, category;
+
+    @SuppressWarnings("unchecked")
+    private Jfr() throws ReflectiveOperationException {
+      ClassLoader loader = ClassLoader.getSystemClassLoader();
+      Class<?> factory = Class.forName("jdk.jfr.EventFactory", false, loader);
+      Class<?> event = Class.forName("jdk.jfr.Event", false, loader);
+      Class<?> element = Class.forName("jdk.jfr.AnnotationElement", false, loader);
+      Class<?> value = Class.forName("jdk.jfr.ValueDescriptor", false, loader);
+      flightRecorder = Class.forName("jdk.jfr.FlightRecorder", false, loader);
+      create = factory.getMethod("create", List.class, List.class);
+      newEvent = factory.getMethod("newEvent");
+      begin = event.getMethod("begin");
+      end = event.getMethod("end");
+      shouldCommit = event.getMethod("shouldCommit");
+      set = event.getMethod("set", int.class, Object.class);
+      commit = event.getMethod("commit");
+      annotation = element.getConstructor(Class.class, Object.class);
+      descriptor = value.getConstructor(Class.class, String.class);
+      name = (Class<? extends Annotation>) Class.forName("jdk.jfr.Name", false, loader);
+      label = (Class<? extends Annotation>) Class.forName("jdk.jfr.Label", false, loader);
+      description = (Class<? extends Annotation>) Class.forName("jdk.jfr.Description", false, loader);
+      category = (Class<? extends Annotation>) Class.forName("jdk.jfr.Category", false, loader);
+    }
+
+    @Nullable
+    static Jfr load() {
+      try {
+        return new Jfr();
+      } catch (Throwable t) {
+        return null;
+      }
+    }
+
+    /**
+     * Tracks the state of the recordings, without initializing the recorder.
+     */
+    void register() {
+      try {
+        Class<?> listener = Class.forName("jdk.jfr.FlightRecorderListener", false, flightRecorder.getClassLoader());
+        Object proxy = Proxy.newProxyInstance(listener.getClassLoader(), new Class<?>[]{listener}, (p, m, args) -> {
+          switch (m.getName()) {
+            case "recorderInitialized":
+            case "recordingStateChanged": refresh(); return null;
+            case "hashCode": return System.identityHashCode(p);
+            case "equals": return p == args[0];
+            case "toString": return DexEvents.class.getName();
+            default: return null;
+          }
+        });
+        flightRecorder.getMethod("addListener", listener).invoke(null, proxy);
+        if ((Boolean) flightRecorder.getMethod("isInitialized").invoke(null)) refresh();
+      } catch (Throwable ignore) {}
+    }
+
+    private void refresh() {
+      boolean running = false;
+      try {
+        Object recorder = flightRecorder.getMethod("getFlightRecorder").invoke(null);
+        for (Object recording : (List<?>) flightRecorder.getMethod("getRecordings").invoke(recorder)) {
+          Object state = recording.getClass().getMethod("getState").invoke(recording);
+          if ("RUNNING".equals(((Enum<?>) state).name())) {
+            running = true;
+            break;
+          }
+        }
+      } catch (Throwable ignore) {}
+      active = running;
+    }
+
+    Object newEvent(Type type) throws ReflectiveOperationException {
+      Object factory = type.factory;
+      if (factory == null) {
+        synchronized (type) {
+          factory = type.factory;
+          if (factory == null) {
+            factory = create.invoke(null, annotations(type), fields(type));
+            type.factory = factory;
+          }
+        }
+      }
+      return newEvent.invoke(factory);
+    }
+
+    private List<Object> annotations(Type type) throws ReflectiveOperationException {
+      List<Object> list = new ArrayList<>();
+      list.add(annotation.newInstance(name, PREFIX + type.name));
+      list.add(annotation.newInstance(label, type.label));
+      list.add(annotation.newInstance(description, type.description));
+      list.add(annotation.newInstance(category, new String[]{CATEGORY}));
+      return list;
+    }
+
+    private List<Object> fields(Type type) throws ReflectiveOperationException {
+      List<Object> list = new ArrayList<>();
+      for (int i = 0; i < type.fields.length; i += 2) {
+        list.add(descriptor.newInstance(type.fields[i + 1], type.fields[i]));
+      }
+      return Collections.unmodifiableList(list);
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.neonorbit.dexplore.util;
+
+import io.github.neonorbit.dexplore.iface.Internal;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.LongPredicate;
+
+/**
+ * <b>This is an internal API.</b>
+ * <p>
+ * An immutable set of number literals, stored in a primitive open-addressing table.
+ * <p>
+ * Each literal is assigned a dense index, so that a {@link Matcher} can track
+ * the literals found so far in a bit set, without boxing or hashing objects.
+ *
+ * @author NeonOrbit
+ */
+@Internal
+public final class LiteralSet {
+  private static final int EMPTY = -1;
+
+  private final long[] values;
+  private final int[] slots;
+  private final int mask;
+
+  private LiteralSet(long[] values) {
+    int capacity = Integer.highestOneBit(Math.max(values.length, 2) * 2 - 1) * 2;
+    this.values = values;
+    this.slots = new int[capacity];
+    this.mask = capacity - 1;
+    Arrays.fill(slots, EMPTY);
+    for (int i = 0; i < values.length; i++) {
+      slots[find(values[i])] = i;
+    }
+  }
+
+  /**
+   * @param literals the literals of the set
+   * @return a new set containing the given literals
+   */
+  @Nonnull
+  public static LiteralSet of(@Nonnull Collection<Long> literals) {
+    return new LiteralSet(literals.stream().distinct().mapToLong(Long::longValue).toArray());
+  }
+
+  private int find(long value) {
+    int slot = mix(value) & mask;
+    while (slots[slot] != EMPTY && values[slots[slot]] != value) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private static int mix(long value) {
+    long h = value * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /**
+   * @return the number of literals in the set
+   */
+  public int size() {
+    return values.length;
+  }
+
+  /**
+   * @param value the literal to look up
+   * @return the index of the literal, or -1 if the set does not contain it
+   */
+  public int indexOf(long value) {
+    return slots[find(value)];
+  }
+
+  /**
+   * @param value the literal to look up
+   * @return {@code true} if the set contains the literal
+   */
+  public boolean contains(long value) {
+    return indexOf(value) >= 0;
+  }
+
+  /**
+   * @return a new matcher for finding all the literals of the set
+   */
+  @Nonnull
+  public Matcher newMatcher() {
+    return new Matcher(this);
+  }
+
+  /**
+   * Tracks the literals of a set found so far.
+   * <p>
+   * {@link #test(long)} returns {@code true} once all the literals are found,
+   * so the matcher can be used to stop a scan early.
+   * <p>
+   * Instances are not thread-safe.
+   */
+  @Internal
+  public static final class Matcher implements LongPredicate {
+    private final LiteralSet set;
+    private final long[] found;
+    private int remaining;
+
+    private Matcher(LiteralSet set) {
+      this.set = set;
+      this.found = new long[(set.size() + 63) >>> 6];
+      this.remaining = set.size();
+    }
+
+    /**
+     * Records a literal.
+     *
+     * @param value the literal
+     * @return {@code true} if all the literals are found
+     */
+    @Override
+    public boolean test(long value) {
+      int index = set.indexOf(value);
+      if (index >= 0) {
+        long bit = 1L << index;
+        if ((found[index >>> 6] & bit) == 0) {
+          found[index >>> 6] |= bit;
+          remaining--;
+        }
+      }
+      return remaining == 0;
+    }
+
+    /**
+     * @return {@code true} if all the literals are found
+     */
+    public boolean isComplete() {
+      return remaining == 0;
+    }
+  }
+}
@@ -55,6 +55,16 @@ public final class Utils {
     return Class.forName(name, true, classLoader);
   }
 
+  @Nonnull
+  public static String toHex(@Nonnull byte[] bytes) {
+    StringBuilder builder = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+      builder.append(Character.forDigit(b & 0xF, 16));
+    }
+    return builder.toString();
+  }
+
   public static boolean hasItem(@Nullable Collection<?> c) {
     return c != null && !c.isEmpty();
   }
@@ -0,0 +1,93 @@
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.filter.ClassFilter;
+import io.github.neonorbit.dexplore.filter.DexFilter;
+import io.github.neonorbit.dexplore.result.ClassData;
+import io.github.neonorbit.dexplore.util.DexUtils;
+import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+class DexClassTableTest extends DexBasedTest {
+  @Test
+  void testFindClasses() {
+    for (DexEntry entry : getDexEntries()) {
+      DexBackedDexFile dexFile = entry.getDexFile();
+      DexClassTable table = entry.getSymbols().getClassTable();
+      List<DexBackedClassDef> classes = dexFile.getClassSection();
+      for (int i = 0; i < classes.size(); i++) {
+        String type = classes.get(i).getType();
+        Assertions.assertArrayEquals(new int[]{i}, table.findClasses(Arrays.asList(type, type, "L{DUMMY};")));
+        String simpleName = type.substring(Math.max(type.lastIndexOf('/'), type.lastIndexOf('$')) + 1);
+        int[] expected = IntStream.range(0, classes.size())
+                .filter(k -> matches(classes.get(k).getType(), simpleName)).toArray();
+        Assertions.assertArrayEquals(expected, table.findClassesBySimpleName(Collections.singleton(simpleName)));
+      }
+      Assertions.assertEquals(0, table.findClasses(Collections.singleton("Ljava/lang/String;")).length);
+      Assertions.assertEquals(0, table.findClassesBySimpleName(Collections.singleton("{DUMMY};")).length);
+    }
+  }
+
+  @Test
+  void testFindClassesByPrefix() {
+    for (DexEntry entry : getDexEntries()) {
+      List<DexBackedClassDef> classes = entry.getDexFile().getClassSection();
+      DexClassTable table = entry.getSymbols().getClassTable();
+      for (String prefix : Arrays.asList("L", "Lio/", "Lio/neonorbit/", "Lio/neonorbit/Sample", "Lx", "L{")) {
+        int[] expected = IntStream.range(0, classes.size())
+                .filter(k -> classes.get(k).getType().startsWith(prefix)).toArray();
+        Assertions.assertArrayEquals(expected, table.findClassesByPrefix(Collections.singleton(prefix)));
+      }
+      Assertions.assertEquals(classes.size(), table.findClassesByPrefix(Arrays.asList("L", "Lio/")).length);
+    }
+  }
+
+  @Test
+  void testClassFilters() {
+    Dexplore dexplore = DexFactory.load(Util.getResPath("classes.dex"));
+    List<String> all = getDexEntries().stream()
+            .flatMap(entry -> entry.getDexFile().getClassSection().stream())
+            .map(DexBackedClassDef::getType).collect(Collectors.toList());
+    Set<String> simpleNames = IntStream.range(0, all.size()).filter(i -> i % 7 == 0)
+            .mapToObj(all::get)
+            .map(type -> type.substring(type.lastIndexOf('/') + 1, type.length() - 1))
+            .collect(Collectors.toSet());
+    Assertions.assertFalse(simpleNames.isEmpty());
+    String[] names = simpleNames.toArray(new String[0]);
+    Set<String> expected = all.stream()
+            .filter(type -> simpleNames.stream().anyMatch(name -> matches(type, name + ';')))
+            .map(DexUtils::dexToJavaTypeName).collect(Collectors.toCollection(TreeSet::new));
+    Assertions.assertEquals(expected, names(dexplore.findClasses(DexFilter.MATCH_ALL,
+            ClassFilter.builder().setClassSimpleNames(names).build(), -1)));
+    Set<String> packaged = all.stream().filter(type -> type.startsWith("Lio/neonorbit/"))
+            .map(DexUtils::dexToJavaTypeName).collect(Collectors.toCollection(TreeSet::new));
+    Assertions.assertFalse(packaged.isEmpty());
+    Assertions.assertEquals(packaged, names(dexplore.findClasses(DexFilter.MATCH_ALL,
+            ClassFilter.builder().setPackages("io.neonorbit").build(), -1)));
+    Assertions.assertEquals(packaged, names(dexplore.findClasses(DexFilter.MATCH_ALL,
+            ClassFilter.builder().setClassPattern(Pattern.compile("^io\\.neonorbit\\..*")).build(), -1)));
+    String[] classes = expected.toArray(new String[0]);
+    Assertions.assertEquals(expected, names(dexplore.findClasses(DexFilter.MATCH_ALL,
+            ClassFilter.builder().setClasses(classes).build(), -1)));
+  }
+
+  private static boolean matches(String type, String simpleName) {
+    if (!type.endsWith(simpleName) || type.length() == simpleName.length()) return false;
+    char separator = type.charAt(type.length() - simpleName.length() - 1);
+    return separator == '/' || separator == '$';
+  }
+
+  private static Set<String> names(List<ClassData> classes) {
+    return classes.stream().map(c -> c.clazz).collect(Collectors.toCollection(TreeSet::new));
+  }
+}
@@ -1,10 +1,26 @@
 package io.github.neonorbit.dexplore;
 
+import io.github.neonorbit.dexplore.filter.ClassFilter;
+import io.github.neonorbit.dexplore.filter.MethodFilter;
 import io.github.neonorbit.dexplore.filter.ReferenceFilter;
+import io.github.neonorbit.dexplore.filter.ReferenceTypes;
+import io.github.neonorbit.dexplore.util.DexUtils;
+import io.github.neonorbit.dexplore.util.LiteralSet;
+import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.dexbacked.DexBackedMethod;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 class DexDecoderTest extends DexBasedTest {
 
@@ -45,4 +61,208 @@ class DexDecoderTest extends DexBasedTest {
             .filter(dexClass -> filter.accept(DexDecoder.decodeFully(dexClass)))
             .count();
   }
+
+  @Test
+  void testCodeScannerReferences() {
+    DexDecoder decoder = new DexDecoder(new DexOptions());
+    DexDecoder.ClassDecoder positioned = decoder.newClassDecoder();
+    ReferenceTypes[] variants = {
+            ReferenceTypes.all(),
+            ReferenceTypes.STRINGS_ONLY,
+            ReferenceTypes.builder().addTypeDes().addField().setScope(ReferenceTypes.Scope.DIRECT).build(),
+            ReferenceTypes.builder().addMethodWithDetails().setScope(ReferenceTypes.Scope.VIRTUAL).build()
+    };
+    DexEntry entry = getDexEntries().get(0);
+    int i = 0;
+    for (DexBackedClassDef dexClass : entry.getDexFile().getClasses()) {
+      positioned.at(entry, i++);
+      for (ReferenceTypes types : variants) {
+        Assertions.assertEquals(
+                signatures(decoder.decode(dexClass, types)),
+                signatures(positioned.decode(dexClass, types))
+        );
+        List<DexBackedMethod> methods = new ArrayList<>();
+        dexClass.getMethods().forEach(methods::add);
+        for (DexBackedMethod dexMethod : methods) {
+          Assertions.assertEquals(
+                  signatures(decoder.decode(dexMethod, types)),
+                  signatures(positioned.methods().decode(dexMethod, types))
+          );
+        }
+        // out of order lookups
+        Collections.reverse(methods);
+        for (DexBackedMethod dexMethod : methods) {
+          Assertions.assertEquals(
+                  signatures(decoder.decode(dexMethod, types)),
+                  signatures(positioned.methods().decode(dexMethod, types))
+          );
+        }
+      }
+    }
+  }
+
+  @Test
+  void testCodeScannerLiterals() {
+    DexDecoder.ClassDecoder positioned = dexDecoder.newClassDecoder();
+    for (DexEntry entry : getDexEntries()) {
+      int i = 0;
+      for (DexBackedClassDef dexClass : entry.getDexFile().getClasses()) {
+        positioned.at(entry, i++);
+        for (boolean synthetic : new boolean[]{false, true}) {
+          Set<Long> numbers = DexDecoder.decodeNumberLiterals(dexClass, synthetic);
+          for (Set<Long> literals : literalVariants(numbers)) {
+            boolean expected = numbers.containsAll(literals);
+            LiteralSet set = LiteralSet.of(literals);
+            Assertions.assertEquals(expected, DexDecoder.containsLiterals(dexClass, set, synthetic));
+            Assertions.assertEquals(expected, positioned.containsLiterals(dexClass, set, synthetic));
+          }
+        }
+        for (DexBackedMethod dexMethod : dexClass.getMethods()) {
+          Set<Long> numbers = DexDecoder.decodeNumberLiterals(dexMethod);
+          for (Set<Long> literals : literalVariants(numbers)) {
+            boolean expected = numbers.containsAll(literals);
+            LiteralSet set = LiteralSet.of(literals);
+            Assertions.assertEquals(expected, DexDecoder.containsLiterals(dexMethod, set));
+            Assertions.assertEquals(expected, positioned.methods().containsLiterals(dexMethod, set, false));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void testCodeScannerHeaders() {
+    DexDecoder.ClassDecoder positioned = dexDecoder.newClassDecoder();
+    for (DexEntry entry : getDexEntries()) {
+      int i = 0;
+      for (DexBackedClassDef dexClass : entry.getDexFile().getClasses()) {
+        positioned.at(entry, i++);
+        Assertions.assertArrayEquals(DexDecoder.countMembers(dexClass), positioned.countMembers(dexClass));
+        for (DexBackedMethod dexMethod : dexClass.getMethods()) {
+          CodeHeader expected = DexDecoder.readCodeHeader(dexMethod);
+          CodeHeader header = positioned.methods().readCodeHeader(dexMethod);
+          Assertions.assertEquals(expected.codeSize(), header.codeSize());
+          Assertions.assertEquals(expected.registerCount(), header.registerCount());
+          Assertions.assertEquals(expected.tryCount(), header.tryCount());
+          Assertions.assertEquals(dexMethod.getImplementation() == null, header.codeSize() == 0);
+        }
+      }
+    }
+  }
+
+  @Test
+  void testStreamingMatches() {
+    DexDecoder decoder = new DexDecoder(new DexOptions());
+    DexDecoder.ClassDecoder positioned = decoder.newClassDecoder();
+    ReferenceTypes[] variants = {
+            ReferenceTypes.all(),
+            ReferenceTypes.STRINGS_ONLY,
+            ReferenceTypes.builder().addTypeDes().addField().setScope(ReferenceTypes.Scope.DIRECT).build(),
+            ReferenceTypes.builder().addMethodWithDetails().setScope(ReferenceTypes.Scope.VIRTUAL).build()
+    };
+    ReferenceFilter unique = ReferenceFilter.contains("A unique string");
+    ReferenceFilter absent = ReferenceFilter.contains("{DUMMY}");
+    ReferenceFilter[] filters = {
+            unique, absent, absent.negate(),
+            ReferenceFilter.stringsContain("Dex Samples"),
+            ReferenceFilter.typesContain("java.io.File"),
+            ReferenceFilter.fieldsContain("TITLE"),
+            ReferenceFilter.methodsContain("println"),
+            ReferenceFilter.contains("java.lang.String"),
+            ReferenceFilter.contains("Ljava/lang/String;"),
+            ReferenceFilter.containsAny("{DUMMY}", "println", "<init>"),
+            ReferenceFilter.containsAll("java.lang.String", "<init>"),
+            ReferenceFilter.containsAll("println", "{DUMMY}"),
+            unique.or(ReferenceFilter.methodsContain("println").and(absent.negate())),
+            unique.negate().and(ReferenceFilter.contains("int")),
+            unique.and(pool -> pool.contains("java.io.File")),
+            ReferenceFilter.containsSignature("java.io.PrintStream.println(java.lang.String):void")
+    };
+    for (DexEntry entry : getDexEntries()) {
+      int i = 0;
+      for (DexBackedClassDef dexClass : entry.getDexFile().getClasses()) {
+        positioned.at(entry, i++);
+        for (ReferenceTypes types : variants) {
+          for (ReferenceFilter filter : filters) {
+            ClassFilter classFilter = ClassFilter.builder()
+                    .setReferenceTypes(types).setReferenceFilter(filter).build();
+            Assertions.assertEquals(classFilter.verify(dexClass, decoder::decode),
+                    classFilter.verify(dexClass, positioned));
+            MethodFilter methodFilter = MethodFilter.builder()
+                    .setReferenceTypes(types).setReferenceFilter(filter).build();
+            for (DexBackedMethod dexMethod : dexClass.getMethods()) {
+              Assertions.assertEquals(methodFilter.verify(dexMethod, decoder::decode),
+                      methodFilter.verify(dexMethod, positioned.methods()));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static List<Set<Long>> literalVariants(Set<Long> numbers) {
+    List<Set<Long>> variants = new ArrayList<>();
+    variants.add(numbers);
+    variants.add(new TreeSet<>(Collections.singleton(Long.MIN_VALUE + 7)));
+    numbers.stream().limit(2).forEach(n -> variants.add(Collections.singleton(n)));
+    Set<Long> extended = new TreeSet<>(numbers);
+    extended.add(Long.MIN_VALUE + 7);
+    variants.add(extended);
+    return variants;
+  }
+
+  private static Set<String> signatures(ReferencePool pool) {
+    return new TreeSet<>(Arrays.asList(pool.toString().split("\n")));
+  }
+
+  @Test
+  void testCompactPools() {
+    DexBackedDexFile dexFile = getDexEntries().get(0).getDexFile();
+    ReferencePool pool = DexDecoder.decodeFully(dexFile);
+    Assertions.assertTrue(pool.getStringSection() instanceof CompactSection);
+    Assertions.assertEquals(dexFile.getStringSection().size(), pool.getStringSection().size());
+    Assertions.assertEquals(dexFile.getMethodSection().size(), pool.getMethodSection().size());
+    List<String> values = new ArrayList<>(Arrays.asList(
+            "{DUMMY}", "", "int", "int[]", "java.lang.String", "Ljava/lang/String;", "[I", "<init>"
+    ));
+    pool.getStringSection().forEach(s -> values.add(s.getString()));
+    pool.getTypeSection().forEach(t -> values.add(t.getType()));
+    pool.getFieldSection().forEach(f -> values.add(f.getName()));
+    pool.getMethodSection().forEach(m -> values.add(m.getName()));
+    for (String value : values) {
+      Assertions.assertEquals(pool.getStringSection().stream().anyMatch(s -> s.contains(value)),
+              pool.stringsContain(value), value);
+      Assertions.assertEquals(pool.getTypeSection().stream().anyMatch(t -> t.contains(value)),
+              pool.typesContain(value), value);
+      Assertions.assertEquals(pool.getFieldSection().stream().anyMatch(f -> f.contains(value)),
+              pool.fieldsContain(value), value);
+      Assertions.assertEquals(pool.getMethodSection().stream().anyMatch(m -> m.contains(value)),
+              pool.methodsContain(value), value);
+    }
+  }
+
+  @Test
+  void testCachedClassesOfDistinctDexFiles() {
+    DexOptions options = new DexOptions();
+    options.enableCache = true;
+    DexDecoder cached = new DexDecoder(options);
+    DexDecoder plain = new DexDecoder(new DexOptions());
+    ReferenceTypes types = ReferenceTypes.STRINGS_ONLY;
+    List<DexBackedClassDef> classes = new ArrayList<>();
+    for (long seed = 1; seed <= 2; seed++) {
+      SyntheticCorpus corpus = SyntheticCorpus.builder().setClassCount(10).setSeed(seed).build();
+      DexBackedDexFile dexFile = new DexBackedDexFile(Opcodes.getDefault(), corpus.toDex());
+      String type = DexUtils.javaToDexTypeName(corpus.className(0));
+      for (DexBackedClassDef dexClass : dexFile.getClasses()) {
+        if (dexClass.getType().equals(type)) classes.add(dexClass);
+      }
+    }
+    Assertions.assertEquals(2, classes.size());
+    Assertions.assertNotEquals(signatures(plain.decode(classes.get(0), types)),
+            signatures(plain.decode(classes.get(1), types)));
+    for (DexBackedClassDef dexClass : classes) {
+      Assertions.assertEquals(signatures(plain.decode(dexClass, types)),
+              signatures(cached.decode(dexClass, types)));
+    }
+  }
 }
@@ -0,0 +1,97 @@
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.filter.ClassFilter;
+import io.github.neonorbit.dexplore.filter.DexFilter;
+import io.github.neonorbit.dexplore.result.ClassData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class DexHierarchyTest {
+  private final SyntheticCorpus corpus = SyntheticCorpus.builder()
+          .setClassCount(400).setMaxClassesPerDex(150).build();
+  private Dexplore dexplore;
+  private Dexplore indexed;
+  private String path;
+
+  @TempDir
+  File tempDir;
+
+  @BeforeAll
+  void setUp() throws IOException {
+    path = corpus.writeApk(new File(tempDir, "corpus.apk")).getAbsolutePath();
+    DexOptions options = new DexOptions();
+    options.enableIndex = true;
+    dexplore = DexFactory.load(path);
+    indexed = DexFactory.load(path, options);
+  }
+
+  @Test
+  void testSubtypes() {
+    Assertions.assertTrue(corpus.getDexCount() > 1);
+    Set<String> direct = classes(i -> corpus.hasInterface(i));
+    Set<String> transitive = classes(i -> corpus.hasInterface(i) ||
+            corpus.hasSuperClass(i) && corpus.hasInterface(i - 1));
+    Assertions.assertEquals(direct, names(dexplore.findSubtypes(SyntheticCorpus.INTERFACE, false)));
+    Assertions.assertEquals(transitive, names(dexplore.findSubtypes(SyntheticCorpus.INTERFACE, true)));
+    for (int i = 3; i < 400; i += 5) {
+      Assertions.assertEquals(Collections.singleton(corpus.className(i + 1)),
+              names(dexplore.findSubtypes(corpus.className(i), true)));
+      Assertions.assertTrue(dexplore.findSubtypes(corpus.className(i + 1), true).isEmpty());
+    }
+    Set<String> roots = names(dexplore.findSubtypes("java.lang.Object", false));
+    Assertions.assertTrue(roots.containsAll(classes(i -> !corpus.hasSuperClass(i))));
+    Assertions.assertTrue(Collections.disjoint(roots, classes(corpus::hasSuperClass)));
+    Assertions.assertTrue(dexplore.findSubtypes("{DUMMY}", true).isEmpty());
+  }
+
+  @Test
+  void testHierarchyQueries() {
+    for (int i = 3; i < 400; i += 25) {
+      ClassFilter filter = ClassFilter.builder().setSuperClass(corpus.className(i)).build();
+      Assertions.assertEquals(names(dexplore.findClasses(DexFilter.MATCH_ALL, filter, -1)),
+              names(indexed.findClasses(DexFilter.MATCH_ALL, filter, -1)));
+    }
+    ClassFilter filter = ClassFilter.builder()
+            .setInterfaces(Collections.singletonList(SyntheticCorpus.INTERFACE)).build();
+    Assertions.assertEquals(classes(i -> corpus.hasInterface(i)),
+            names(indexed.findClasses(DexFilter.MATCH_ALL, filter, -1)));
+  }
+
+  @Test
+  void testHierarchyCandidates() {
+    List<SearchStats> reports = new ArrayList<>();
+    DexOptions options = new DexOptions();
+    options.searchListener = (key, stats) -> reports.add(stats);
+    Dexplore recorded = DexFactory.load(path, options);
+    ClassFilter filter = ClassFilter.builder()
+            .setInterfaces(Collections.singletonList(SyntheticCorpus.INTERFACE)).build();
+    Set<String> expected = classes(i -> corpus.hasInterface(i));
+    Assertions.assertEquals(expected, names(recorded.findClasses(DexFilter.MATCH_ALL, filter, -1)));
+    Assertions.assertEquals(1, reports.size());
+    Assertions.assertEquals(expected.size(), reports.get(0).classesVisited());
+  }
+
+  private Set<String> classes(IntPredicate predicate) {
+    return IntStream.range(0, 400).filter(predicate).mapToObj(corpus::className)
+            .collect(Collectors.toCollection(TreeSet::new));
+  }
+
+  private static Set<String> names(List<ClassData> classes) {
+    return classes.stream().map(ClassData::getClazz).collect(Collectors.toCollection(TreeSet::new));
+  }
+}
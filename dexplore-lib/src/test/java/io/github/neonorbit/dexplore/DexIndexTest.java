@@ -0,0 +1,257 @@
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.filter.ClassFilter;
+import io.github.neonorbit.dexplore.filter.DexFilter;
+import io.github.neonorbit.dexplore.filter.MethodFilter;
+import io.github.neonorbit.dexplore.filter.ReferenceFilter;
+import io.github.neonorbit.dexplore.filter.ReferenceTypes;
+import io.github.neonorbit.dexplore.result.ClassData;
+import io.github.neonorbit.dexplore.util.DexUtils;
+import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.ReferenceType;
+import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.dexbacked.DexBackedMethod;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class DexIndexTest extends DexBasedTest {
+
+  @Test
+  void testCodeScanner() {
+    DexBackedDexFile dexFile = getDexEntries().get(0).getDexFile();
+    Assertions.assertTrue(CodeScanner.isSupported(dexFile));
+    for (int i = 0; i < dexFile.getClassSection().size(); i++) {
+      DexBackedClassDef dexClass = dexFile.getClassSection().get(i);
+      List<Integer> indices = new ArrayList<>();
+      CodeScanner.scanMethods(dexFile, i, (methodIndex, flags, code, direct) -> indices.add(methodIndex));
+      List<Integer> expected = new ArrayList<>();
+      dexClass.getMethods().forEach(m -> expected.add(m.methodIndex));
+      Assertions.assertEquals(expected, indices);
+    }
+    for (DexBackedClassDef dexClass : dexFile.getClasses()) {
+      for (DexBackedMethod dexMethod : dexClass.getMethods()) {
+        Set<Long> literals = new HashSet<>();
+        Set<String> strings = new HashSet<>();
+        collect(dexMethod, literals, strings);
+        Assertions.assertEquals(DexDecoder.decodeNumberLiterals(dexMethod), literals);
+        Set<String> expected = new HashSet<>();
+        DexDecoder.decodeFully(dexMethod).getStringSection().forEach(s -> expected.add(s.getString()));
+        Assertions.assertEquals(expected, strings);
+      }
+    }
+  }
+
+  private static void collect(DexBackedMethod dexMethod, Set<Long> literals, Set<String> strings) {
+    DexBackedDexFile dexFile = dexMethod.dexFile;
+    CodeScanner.scanMethods(dexFile, dexFile.getClassSection().indexOf(dexMethod.classDef),
+            (methodIndex, flags, codeOffset, direct) -> {
+      if (methodIndex != dexMethod.methodIndex) return;
+      CodeScanner.scanCode(dexFile, codeOffset, new CodeScanner.Visitor() {
+        @Override
+        public void visitReference(int type, int index) {
+          if (type == ReferenceType.STRING) strings.add(dexFile.getStringSection().get(index));
+        }
+
+        @Override
+        public void visitLiteral(long literal) {
+          literals.add(literal);
+        }
+      });
+    });
+  }
+
+  @Test
+  void testLookup() {
+    DexBackedDexFile dexFile = getDexEntries().get(0).getDexFile();
+    for (int i = 0; i < dexFile.getStringSection().size(); i++) {
+      Assertions.assertEquals(i, DexLookup.findString(dexFile, dexFile.getStringSection().get(i)));
+    }
+    for (int i = 0; i < dexFile.getTypeSection().size(); i++) {
+      Assertions.assertEquals(i, DexLookup.findType(dexFile, dexFile.getTypeSection().get(i)));
+    }
+    Assertions.assertEquals(DexLookup.NOT_FOUND, DexLookup.findString(dexFile, "{DUMMY}"));
+    Assertions.assertEquals(DexLookup.NOT_FOUND, DexLookup.findType(dexFile, "L{DUMMY};"));
+  }
+
+  @Test
+  void testQueries() {
+    DexBackedDexFile dexFile = getDexEntries().get(0).getDexFile();
+    DexIndex index = DexIndex.load(dexFile, null);
+    Assertions.assertNotNull(index);
+    Assertions.assertNull(index.newQuery(dexFile, ClassFilter.MATCH_ALL, null));
+    Assertions.assertEquals(1, count(index, dexFile, ClassFilter.builder()
+            .setNumbers(1010, 201L, 301f, 401d, 501.55).build(), null));
+    Assertions.assertEquals(1, count(index, dexFile, ClassFilter.builder()
+            .setSuperClass("io.neonorbit.SampleSuper").build(), null));
+    Assertions.assertEquals(1, count(index, dexFile, ClassFilter.builder()
+            .containsAnnotations("io.neonorbit.SampleAnnotation").build(), null));
+    Assertions.assertEquals(0, count(index, dexFile, ClassFilter.builder()
+            .setSuperClass("{DUMMY}").build(), null));
+    Assertions.assertTrue(Objects.requireNonNull(index.newQuery(dexFile, ClassFilter.MATCH_ALL,
+            MethodFilter.builder().setMethodNames("{DUMMY}").build())).isEmpty());
+    Assertions.assertTrue(count(index, dexFile, ClassFilter.MATCH_ALL,
+            MethodFilter.builder().setMethodNames("receive").build()) > 0);
+  }
+
+  @Test
+  void testReferenceQueries() {
+    DexBackedDexFile dexFile = getDexEntries().get(0).getDexFile();
+    DexIndex index = Objects.requireNonNull(DexIndex.load(dexFile, null));
+    Assertions.assertEquals(1, candidates(index, dexFile, ReferenceFilter.stringsContain("A unique string")));
+    Assertions.assertEquals(1, candidates(index, dexFile, ReferenceFilter.containsAll("A unique string", "TITLE")));
+    Assertions.assertEquals(0, candidates(index, dexFile, ReferenceFilter.containsAll("A unique string", "{DUMMY}")));
+    Assertions.assertTrue(candidates(index, dexFile, ReferenceFilter.typesContain("java.io.File")) >= 1);
+    Assertions.assertTrue(candidates(index, dexFile, ReferenceFilter.methodsContain("println")) >= 1);
+    Assertions.assertEquals(candidates(index, dexFile, ReferenceFilter.contains("A unique string")),
+            candidates(index, dexFile, ReferenceFilter.contains("A unique string").or(ReferenceFilter.contains("{DUMMY}"))));
+    Assertions.assertEquals(-1, candidates(index, dexFile, ReferenceFilter.contains("A unique string").negate()));
+    Assertions.assertEquals(-1, candidates(index, dexFile, ReferenceFilter.contains("A unique string").or(pool -> true)));
+    Assertions.assertEquals(1, candidates(index, dexFile, ReferenceFilter.contains("A unique string").and(pool -> true)));
+  }
+
+  @Test
+  void testLiteralQueries() {
+    SyntheticCorpus corpus = SyntheticCorpus.builder().setClassCount(300).setLiteralDensity(0.5).build();
+    DexBackedDexFile dexFile = new DexBackedDexFile(Opcodes.getDefault(), corpus.toDex());
+    DexIndex index = Objects.requireNonNull(DexIndex.load(dexFile, null));
+    List<? extends DexBackedClassDef> classes = new ArrayList<>(dexFile.getClasses());
+    for (int i = 0; i < 300; i += 7) {
+      for (int m = 0; m < corpus.getMethodsPerClass(); m++) {
+        long literal = corpus.numberLiteral(i, m);
+        ClassFilter classFilter = ClassFilter.builder().setNumbers(literal).build();
+        DexIndex.Query query = Objects.requireNonNull(index.newQuery(dexFile, classFilter, null));
+        int[] expected = IntStream.range(0, classes.size()).filter(c -> DexDecoder
+                .decodeNumberLiterals(classes.get(c), true).contains(literal)).toArray();
+        Assertions.assertArrayEquals(expected, query.getCandidates());
+        MethodFilter methodFilter = MethodFilter.builder().setNumbers(literal).build();
+        query = Objects.requireNonNull(index.newQuery(dexFile, ClassFilter.MATCH_ALL, methodFilter));
+        for (DexBackedClassDef dexClass : classes) {
+          for (DexBackedMethod dexMethod : dexClass.getMethods()) {
+            Assertions.assertEquals(DexDecoder.decodeNumberLiterals(dexMethod).contains(literal),
+                    query.isCandidate(classes.indexOf(dexClass)) && query.testMethod(dexMethod.methodIndex));
+          }
+        }
+      }
+    }
+    Assertions.assertTrue(Objects.requireNonNull(index.newQuery(dexFile,
+            ClassFilter.builder().setNumbers(Long.MIN_VALUE + 7).build(), null)).isEmpty());
+  }
+
+  @Test
+  void testAnnotationQueries() {
+    SyntheticCorpus corpus = SyntheticCorpus.builder().setClassCount(300).setAnnotationDensity(0.2).build();
+    DexBackedDexFile dexFile = new DexBackedDexFile(Opcodes.getDefault(), corpus.toDex());
+    DexIndex index = Objects.requireNonNull(DexIndex.load(dexFile, null));
+    List<String> types = new ArrayList<>();
+    dexFile.getClasses().forEach(dexClass -> types.add(dexClass.getType()));
+    int[] annotated = IntStream.range(0, 300).filter(corpus::hasAnnotation)
+            .map(i -> types.indexOf(DexUtils.javaToDexTypeName(corpus.className(i)))).sorted().toArray();
+    DexIndex.Query query = Objects.requireNonNull(index.newQuery(dexFile, ClassFilter.builder()
+            .containsAnnotations(SyntheticCorpus.ANNOTATION).build(), null));
+    Assertions.assertArrayEquals(annotated, query.getCandidates());
+    for (int i = 0; i < 300; i++) {
+      if (!corpus.hasAnnotation(i)) continue;
+      query = Objects.requireNonNull(index.newQuery(dexFile, ClassFilter.builder()
+              .containsAnnotations(SyntheticCorpus.ANNOTATION)
+              .containsAnnotationValues(corpus.annotationValue(i)).build(), null));
+      Assertions.assertArrayEquals(new int[]{types.indexOf(DexUtils.javaToDexTypeName(corpus.className(i)))},
+              query.getCandidates());
+    }
+    Assertions.assertTrue(Objects.requireNonNull(index.newQuery(dexFile, ClassFilter.builder()
+            .containsAnnotationValues("{DUMMY}").build(), null)).isEmpty());
+    Assertions.assertTrue(Objects.requireNonNull(index.newQuery(dexFile, ClassFilter.MATCH_ALL,
+            MethodFilter.builder().containsAnnotations(SyntheticCorpus.ANNOTATION).build())).isEmpty());
+  }
+
+  private static long candidates(DexIndex index, DexBackedDexFile dexFile, ReferenceFilter filter) {
+    ClassFilter classFilter = ClassFilter.builder()
+            .setReferenceTypes(ReferenceTypes.ALL_TYPES)
+            .setReferenceFilter(filter)
+            .build();
+    DexIndex.Query query = index.newQuery(dexFile, classFilter, null);
+    if (query == null) return -1;
+    return query.isEmpty() ? 0 : Objects.requireNonNull(query.getCandidates()).length;
+  }
+
+  private static long count(DexIndex index, DexBackedDexFile dexFile,
+                            ClassFilter classFilter, MethodFilter methodFilter) {
+    DexIndex.Query query = Objects.requireNonNull(index.newQuery(dexFile, classFilter, methodFilter));
+    long count = 0;
+    for (int i = 0; i < index.getClassCount(); i++) {
+      if (query.test(i)) count++;
+    }
+    return count;
+  }
+
+  @Test
+  void testPersistence(@TempDir File directory) {
+    DexBackedDexFile dexFile = getDexEntries().get(0).getDexFile();
+    DexIndex built = DexIndex.load(dexFile, directory);
+    File[] files = directory.listFiles();
+    Assertions.assertNotNull(built);
+    Assertions.assertNotNull(files);
+    Assertions.assertEquals(1, files.length);
+    DexIndex loaded = DexIndex.load(dexFile, directory);
+    Assertions.assertNotNull(loaded);
+    ClassFilter filter = ClassFilter.builder().setNumbers(1010, 201L).build();
+    Assertions.assertEquals(count(built, dexFile, filter, null), count(loaded, dexFile, filter, null));
+  }
+
+  @Test
+  void testSearches(@TempDir File directory) {
+    DexOptions options = new DexOptions();
+    options.indexDirectory = directory.getAbsolutePath();
+    Dexplore indexed = DexFactory.load(Util.getResPath("classes.dex"), options);
+    Dexplore plain = DexFactory.load(Util.getResPath("classes.dex"));
+    List<ClassFilter> classFilters = new ArrayList<>();
+    classFilters.add(ClassFilter.builder().setNumbers(1010, 201L, 301f, 401d, 501.55).build());
+    classFilters.add(ClassFilter.builder().setModifiers(Modifier.FINAL).build());
+    classFilters.add(ClassFilter.builder().skipModifiers(Modifier.PUBLIC).build());
+    classFilters.add(ClassFilter.builder().defaultSuperClass().build());
+    classFilters.add(ClassFilter.builder().containsAnnotations("io.neonorbit.SampleAnnotation").build());
+    classFilters.add(ClassFilter.builder()
+            .setReferenceTypes(ReferenceTypes.ALL_TYPES)
+            .setReferenceFilter(ReferenceFilter.containsAny("A unique string", "java.io.File"))
+            .build());
+    for (ClassFilter filter : classFilters) {
+      Assertions.assertEquals(
+              names(plain.findClasses(DexFilter.MATCH_ALL, filter, -1)),
+              names(indexed.findClasses(DexFilter.MATCH_ALL, filter, -1))
+      );
+    }
+    List<MethodFilter> methodFilters = new ArrayList<>();
+    methodFilters.add(MethodFilter.builder().setMethodNames("receive").build());
+    methodFilters.add(MethodFilter.builder().containsAnnotations("io.neonorbit.SampleAnnotation").build());
+    methodFilters.add(MethodFilter.builder()
+            .setReferenceTypes(ReferenceTypes.ALL_TYPES)
+            .setReferenceFilter(ReferenceFilter.methodsContain("println"))
+            .build());
+    for (MethodFilter filter : methodFilters) {
+      Assertions.assertEquals(
+              plain.findMethods(DexFilter.MATCH_ALL, ClassFilter.MATCH_ALL, filter, -1).size(),
+              indexed.findMethods(DexFilter.MATCH_ALL, ClassFilter.MATCH_ALL, filter, -1).size()
+      );
+    }
+  }
+
+  private static List<String> names(List<ClassData> list) {
+    List<String> names = new ArrayList<>();
+    list.forEach(c -> names.add(c.getClazz()));
+    Collections.sort(names);
+    return names;
+  }
+}
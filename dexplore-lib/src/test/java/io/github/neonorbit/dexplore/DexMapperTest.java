@@ -0,0 +1,108 @@
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.filter.ClassFilter;
+import io.github.neonorbit.dexplore.filter.DexFilter;
+import io.github.neonorbit.dexplore.filter.MethodFilter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class DexMapperTest {
+
+  @Test
+  void testRead(@TempDir File directory) throws IOException {
+    byte[] dex = Files.readAllBytes(Paths.get(Util.getResPath("classes.dex")));
+    File apk = createApk(directory, dex);
+    File cache = new File(directory, "cache");
+    DexMapper mapper = new DexMapper(apk, cache);
+    try (ZipFile zip = new ZipFile(apk)) {
+      Assertions.assertArrayEquals(dex, mapper.read(zip, zip.getEntry("classes.dex")));
+      Assertions.assertFalse(cache.exists());
+      Assertions.assertArrayEquals(dex, mapper.read(zip, zip.getEntry("classes2.dex")));
+      Assertions.assertArrayEquals(dex, mapper.read(zip, zip.getEntry("classes2.dex")));
+      File[] files = cache.listFiles();
+      Assertions.assertNotNull(files);
+      Assertions.assertEquals(1, files.length);
+    }
+    try (ZipFile zip = new ZipFile(apk)) {
+      DexMapper another = new DexMapper(apk, cache);
+      Assertions.assertArrayEquals(dex, another.read(zip, zip.getEntry("classes2.dex")));
+    }
+  }
+
+  @Test
+  void testCacheVerification(@TempDir File directory) throws IOException {
+    byte[] dex = Files.readAllBytes(Paths.get(Util.getResPath("classes.dex")));
+    File apk = createApk(directory, dex);
+    File cache = new File(directory, "cache");
+    try (ZipFile zip = new ZipFile(apk)) {
+      Assertions.assertArrayEquals(dex, new DexMapper(apk, cache).read(zip, zip.getEntry("classes2.dex")));
+      File[] files = cache.listFiles();
+      Assertions.assertNotNull(files);
+      Object key = Files.readAttributes(files[0].toPath(), BasicFileAttributes.class).fileKey();
+      Assertions.assertArrayEquals(dex, new DexMapper(apk, cache).read(zip, zip.getEntry("classes2.dex")));
+      if (key != null) {
+        Assertions.assertEquals(key, Files.readAttributes(files[0].toPath(), BasicFileAttributes.class).fileKey());
+      }
+      byte[] tampered = dex.clone();
+      tampered[tampered.length - 1] ^= 1;
+      Files.write(files[0].toPath(), tampered);
+      Assertions.assertArrayEquals(dex, new DexMapper(apk, cache).read(zip, zip.getEntry("classes2.dex")));
+      Assertions.assertArrayEquals(dex, Files.readAllBytes(files[0].toPath()));
+    }
+  }
+
+  @Test
+  void testSearches(@TempDir File directory) throws IOException {
+    byte[] dex = Files.readAllBytes(Paths.get(Util.getResPath("classes.dex")));
+    File apk = createApk(directory, dex);
+    DexOptions options = new DexOptions();
+    options.memoryMapping = true;
+    options.mappingDirectory = new File(directory, "cache").getAbsolutePath();
+    Dexplore mapped = DexFactory.load(apk.getAbsolutePath(), options);
+    Dexplore plain = DexFactory.load(apk.getAbsolutePath());
+    Assertions.assertEquals(
+            plain.findClasses(DexFilter.MATCH_ALL, ClassFilter.MATCH_ALL, -1),
+            mapped.findClasses(DexFilter.MATCH_ALL, ClassFilter.MATCH_ALL, -1)
+    );
+    Assertions.assertEquals(
+            plain.findMethods(DexFilter.MATCH_ALL, ClassFilter.MATCH_ALL, MethodFilter.MATCH_ALL, -1),
+            mapped.findMethods(DexFilter.MATCH_ALL, ClassFilter.MATCH_ALL, MethodFilter.MATCH_ALL, -1)
+    );
+    Assertions.assertTrue(new File(options.mappingDirectory).isDirectory());
+  }
+
+  private static File createApk(File directory, byte[] dex) throws IOException {
+    File apk = new File(directory, "sample.apk");
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(apk))) {
+      out.putNextEntry(new ZipEntry("AndroidManifest.xml"));
+      out.closeEntry();
+      CRC32 crc = new CRC32();
+      crc.update(dex);
+      ZipEntry stored = new ZipEntry("classes.dex");
+      stored.setMethod(ZipEntry.STORED);
+      stored.setSize(dex.length);
+      stored.setCrc(crc.getValue());
+      out.putNextEntry(stored);
+      out.write(dex);
+      out.closeEntry();
+      out.putNextEntry(new ZipEntry("classes2.dex"));
+      out.write(dex);
+      out.closeEntry();
+    }
+    return apk;
+  }
+}
@@ -4,6 +4,8 @@ import io.github.neonorbit.dexplore.filter.ClassFilter;
 import io.github.neonorbit.dexplore.filter.DexFilter;
 import io.github.neonorbit.dexplore.filter.MethodFilter;
 import io.github.neonorbit.dexplore.filter.ReferenceTypes;
+import io.github.neonorbit.dexplore.result.ClassData;
+import io.github.neonorbit.dexplore.result.DexItemData;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
@@ -11,8 +13,14 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 class DexploreTest {
@@ -86,4 +94,83 @@ class DexploreTest {
             Objects.requireNonNull(dexplore.findMethod(dexFilter, classFilter, methodFilter)).getSignature()
     );
   }
+
+  @Test
+  void testParallelSearches() {
+    DexOptions options = new DexOptions();
+    options.parallelism = 4;
+    Dexplore parallel = DexFactory.load(Util.getResPath("classes.dex"), options);
+    Assertions.assertEquals(
+            names(dexplore.findClasses(DexFilter.MATCH_ALL, ClassFilter.MATCH_ALL, -1)),
+            names(parallel.findClasses(DexFilter.MATCH_ALL, ClassFilter.MATCH_ALL, -1))
+    );
+    Assertions.assertEquals(
+            names(dexplore.findClasses(DexFilter.MATCH_ALL, ClassFilter.MATCH_ALL, 3)),
+            names(parallel.findClasses(DexFilter.MATCH_ALL, ClassFilter.MATCH_ALL, 3))
+    );
+    Assertions.assertEquals(
+            dexplore.findMethods(DexFilter.MATCH_ALL, ClassFilter.MATCH_ALL, MethodFilter.MATCH_ALL, -1),
+            parallel.findMethods(DexFilter.MATCH_ALL, ClassFilter.MATCH_ALL, MethodFilter.MATCH_ALL, -1)
+    );
+    ClassFilter unique = ClassFilter.ofClass("io.neonorbit.Sample");
+    Assertions.assertEquals(1, parallel.findClasses(DexFilter.MATCH_ALL, unique, -1).size());
+    AtomicInteger count = new AtomicInteger();
+    parallel.onClassResult(DexFilter.MATCH_ALL, ClassFilter.MATCH_ALL, data -> count.incrementAndGet() == 2);
+    Assertions.assertEquals(2, count.get());
+  }
+
+  @Test
+  void testParallelPools() {
+    DexOptions options = new DexOptions();
+    options.parallelism = ForkJoinPool.getCommonPoolParallelism() + 1;
+    String prefix = "dexplore-" + options.parallelism + "-worker-";
+    for (int i = 0; i < 3; i++) {
+      Dexplore parallel = DexFactory.load(Util.getResPath("classes.dex"), options);
+      AtomicInteger count = new AtomicInteger();
+      parallel.onClassResult(DexFilter.MATCH_ALL, ClassFilter.MATCH_ALL, data -> count.incrementAndGet() == 1);
+      Assertions.assertEquals(1, count.get());
+      Assertions.assertFalse(parallel.findClasses(DexFilter.MATCH_ALL, ClassFilter.MATCH_ALL, -1).isEmpty());
+    }
+    List<Thread> workers = Thread.getAllStackTraces().keySet().stream()
+            .filter(thread -> thread.getName().startsWith(prefix))
+            .collect(Collectors.toList());
+    Assertions.assertTrue(workers.size() <= options.parallelism);
+    Assertions.assertTrue(workers.stream().allMatch(Thread::isDaemon));
+  }
+
+  @Test
+  void testSinglePassBatch() {
+    QueryBatch.Builder builder = QueryBatch.builder()
+            .addClassQuery("all", ClassFilter.MATCH_ALL)
+            .addClassQuery("strings", ClassFilter.builder()
+                    .setReferenceTypes(ReferenceTypes.STRINGS_ONLY)
+                    .setReferenceFilter(pool -> pool.contains("A unique string"))
+                    .build())
+            .addClassQuery("types", ClassFilter.builder()
+                    .setReferenceTypes(ReferenceTypes.builder().addString().addTypeDes().build())
+                    .setReferenceFilter(pool -> pool.typesContain("java.io.File") &&
+                            !pool.stringsContain("A unique string"))
+                    .build())
+            .addClassQuery("unique", ClassFilter.ofClass("io.neonorbit.Sample"))
+            .addMethodQuery("methods", ClassFilter.MATCH_ALL, MethodFilter.builder()
+                    .setReferenceTypes(ReferenceTypes.ALL_TYPES)
+                    .setReferenceFilter(pool -> pool.methodsContain("println"))
+                    .build())
+            .addMethodQuery("preferred", DexFilter.builder().setPreferredDexNames("classes.dex").build(),
+                    ClassFilter.MATCH_ALL, MethodFilter.ofMethod("receive"));
+    QueryBatch sequential = builder.build();
+    QueryBatch shared = builder.setSinglePass(true).build();
+    Assertions.assertFalse(sequential.isSinglePass());
+    Assertions.assertTrue(shared.isSinglePass());
+    for (int limit : new int[] {-1, 1, 2}) {
+      Map<String, List<DexItemData>> expected = dexplore.findAll(sequential, limit);
+      Map<String, List<DexItemData>> actual = dexplore.findAll(shared, limit);
+      Assertions.assertEquals(expected, actual);
+      Assertions.assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+    }
+  }
+
+  private static List<String> names(List<ClassData> list) {
+    return list.stream().map(ClassData::getClazz).collect(Collectors.toList());
+  }
 }
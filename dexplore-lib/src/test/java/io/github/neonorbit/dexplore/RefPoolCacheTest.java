@@ -0,0 +1,118 @@
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.filter.ClassFilter;
+import io.github.neonorbit.dexplore.filter.DexFilter;
+import io.github.neonorbit.dexplore.filter.ReferenceTypes;
+import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RefPoolCacheTest extends DexBasedTest {
+
+  @Test
+  void testBoundedCache() {
+    DexBackedClassDef dexClass = getDexEntries().get(0).getDexFile().getClasses().iterator().next();
+    ReferencePool pool = DexDecoder.decodeFully(dexClass);
+    long size = RefPoolCache.estimateSize(pool);
+    RefPoolCache cache = new RefPoolCache.Bounded(size * 2);
+    Assertions.assertSame(pool, cache.get("A", ReferenceTypes.ALL_TYPES, t -> pool));
+    Assertions.assertSame(pool, cache.get("B", ReferenceTypes.ALL_TYPES, t -> pool));
+    Assertions.assertSame(pool, cache.get("A", ReferenceTypes.ALL_TYPES, this::fail));
+    Assertions.assertSame(pool, cache.get("C", ReferenceTypes.ALL_TYPES, t -> pool));
+    Assertions.assertSame(pool, cache.get("A", ReferenceTypes.ALL_TYPES, this::fail));
+    Assertions.assertSame(pool, cache.get("C", ReferenceTypes.ALL_TYPES, this::fail));
+    CacheStats stats = cache.getStats();
+    Assertions.assertEquals(3, stats.hitCount());
+    Assertions.assertEquals(3, stats.missCount());
+    Assertions.assertEquals(1, stats.evictionCount());
+    Assertions.assertEquals(2, stats.entryCount());
+    Assertions.assertEquals(size * 2, stats.estimatedBytes());
+    RefPoolCache small = new RefPoolCache.Bounded(size - 1);
+    small.get("A", ReferenceTypes.ALL_TYPES, t -> pool);
+    Assertions.assertEquals(0, small.getStats().entryCount());
+  }
+
+  @Test
+  void testCompactPoolSize() {
+    DexBackedDexFile dexFile = getDexEntries().get(0).getDexFile();
+    ReferencePool pool = DexDecoder.decodeFully(dexFile);
+    long references = dexFile.getStringSection().size() + dexFile.getTypeSection().size() +
+                      dexFile.getFieldSection().size() + dexFile.getMethodSection().size();
+    long size = RefPoolCache.estimateSize(pool);
+    Assertions.assertTrue(size < 8 * references, "Estimated: " + size);
+    RefPoolCache cache = new RefPoolCache.Bounded(1 << 20);
+    cache.get(dexFile, ReferenceTypes.ALL_TYPES, t -> pool);
+    Assertions.assertSame(pool, cache.get(dexFile, ReferenceTypes.ALL_TYPES, this::fail));
+    Assertions.assertEquals(1, cache.getStats().entryCount());
+    Assertions.assertEquals(size, cache.getStats().estimatedBytes());
+  }
+
+  @Test
+  void testSubsumption() {
+    DexBackedClassDef dexClass = getDexEntries().get(0).getDexFile().getClasses().iterator().next();
+    ReferencePool pool = DexDecoder.decodeFully(dexClass);
+    ReferenceTypes strings = ReferenceTypes.STRINGS_ONLY;
+    ReferenceTypes methods = ReferenceTypes.builder().addMethod().build();
+    ReferenceTypes both = Objects.requireNonNull(strings.merge(methods));
+    RefPoolCache cache = new RefPoolCache.Soft();
+    cache.get("A", ReferenceTypes.ALL_TYPES, t -> pool);
+    ReferencePool restricted = cache.get("A", strings, this::fail);
+    Assertions.assertEquals(pool.getStringSection(), restricted.getStringSection());
+    Assertions.assertTrue(restricted.getMethodSection().isEmpty());
+
+    List<ReferenceTypes> decoded = new ArrayList<>();
+    cache.get("B", strings, t -> record(decoded, t, pool.restrict(t)));
+    ReferencePool extended = cache.get("B", both, t -> record(decoded, t, pool.restrict(t)));
+    Assertions.assertEquals(Arrays.asList(strings, methods), decoded);
+    Assertions.assertEquals(pool.getStringSection(), extended.getStringSection());
+    Assertions.assertEquals(pool.getMethodSection(), extended.getMethodSection());
+    Assertions.assertSame(extended, cache.get("B", both, this::fail));
+    Assertions.assertEquals(pool.getStringSection(), cache.get("B", strings, this::fail).getStringSection());
+    Assertions.assertEquals(pool.getMethodSection(), cache.get("B", methods, this::fail).getMethodSection());
+
+    ReferenceTypes directOnly = ReferenceTypes.builder().addString().setScope(ReferenceTypes.Scope.DIRECT).build();
+    cache.get("B", directOnly, t -> record(decoded, t, pool));
+    Assertions.assertEquals(Arrays.asList(strings, methods, directOnly), decoded);
+    Assertions.assertEquals(4, cache.getStats().hitCount());
+    Assertions.assertEquals(4, cache.getStats().missCount());
+  }
+
+  private ReferencePool fail(ReferenceTypes types) {
+    return Assertions.fail("Unexpected decoding: " + types);
+  }
+
+  private static ReferencePool record(List<ReferenceTypes> list, ReferenceTypes types, ReferencePool pool) {
+    list.add(types);
+    return pool;
+  }
+
+  @Test
+  void testSearchCache() {
+    DexOptions options = new DexOptions();
+    options.enableCache = true;
+    options.maxCacheSize = 1 << 20;
+    Dexplore dexplore = DexFactory.load(Util.getResPath("classes.dex"), options);
+    Assertions.assertNull(DexFactory.load(Util.getResPath("classes.dex")).getCacheStats());
+    ClassFilter filter = ClassFilter.builder()
+            .setReferenceTypes(ReferenceTypes.STRINGS_ONLY)
+            .setReferenceFilter(pool -> pool.contains("A unique string"))
+            .build();
+    int classes = getDexEntries().get(0).getDexFile().getClasses().size();
+    Assertions.assertEquals(1, dexplore.findClasses(DexFilter.MATCH_ALL, filter, -1).size());
+    CacheStats stats = Objects.requireNonNull(dexplore.getCacheStats());
+    Assertions.assertEquals(0, stats.hitCount());
+    Assertions.assertEquals(classes, stats.missCount());
+    Assertions.assertEquals(1, dexplore.findClasses(DexFilter.MATCH_ALL, filter, -1).size());
+    stats = Objects.requireNonNull(dexplore.getCacheStats());
+    Assertions.assertEquals(classes, stats.hitCount());
+    Assertions.assertEquals(classes, stats.missCount());
+  }
+}
@@ -0,0 +1,127 @@
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.SearchStats.Phase;
+import io.github.neonorbit.dexplore.filter.ClassFilter;
+import io.github.neonorbit.dexplore.filter.DexFilter;
+import io.github.neonorbit.dexplore.filter.FilterCriterion;
+import io.github.neonorbit.dexplore.filter.MethodFilter;
+import io.github.neonorbit.dexplore.filter.ReferenceFilter;
+import io.github.neonorbit.dexplore.filter.ReferenceTypes;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SearchStatsTest {
+  private final SyntheticCorpus corpus = new SyntheticCorpus(300);
+
+  @Test
+  void testClassSearch() {
+    Map<String, SearchStats> reports = new ConcurrentHashMap<>();
+    Dexplore dexplore = DexFactory.load(corpus.toDex(), options(reports, false));
+    int index = 201;
+    Assertions.assertFalse(dexplore.findClasses(DexFilter.MATCH_ALL, ClassFilter.builder()
+            .setReferenceTypes(ReferenceTypes.STRINGS_ONLY)
+            .setReferenceFilter(ReferenceFilter.stringsContain(corpus.stringValue(index, 2)))
+            .build(), -1).isEmpty());
+    SearchStats stats = reports.remove("");
+    Assertions.assertNotNull(stats);
+    Assertions.assertEquals(1, stats.dexFilesLoaded());
+    Assertions.assertTrue(stats.bytesRead() > 0);
+    Assertions.assertTrue(stats.classesVisited() >= 300);
+    Assertions.assertEquals(stats.classesVisited(), stats.poolsDecoded());
+    Assertions.assertTrue(stats.resultCount() > 0);
+    Assertions.assertEquals(stats.classesVisited() - stats.resultCount(),
+            stats.rejectionCount(FilterCriterion.REFERENCES));
+    Assertions.assertEquals(Collections.singleton(FilterCriterion.REFERENCES), stats.rejections().keySet());
+    Assertions.assertTrue(stats.totalTime() > 0);
+    Assertions.assertTrue(stats.wallTime(Phase.DECODE) > 0);
+
+    Assertions.assertNotNull(dexplore.findClass(ClassFilter.ofClass(corpus.className(index))));
+    stats = reports.remove("");
+    Assertions.assertNotNull(stats);
+    Assertions.assertEquals(0, stats.dexFilesLoaded());
+    Assertions.assertTrue(stats.classesVisited() > 0);
+    Assertions.assertEquals(stats.classesVisited() - 1, stats.rejectionCount(FilterCriterion.CLASS_NAME));
+    Assertions.assertEquals(1, stats.resultCount());
+  }
+
+  @Test
+  void testMethodSearch() {
+    Map<String, SearchStats> reports = new ConcurrentHashMap<>();
+    Dexplore dexplore = DexFactory.load(corpus.toDex(), options(reports, false));
+    int index = 124;
+    Assertions.assertNotNull(dexplore.findMethod(ClassFilter.ofClass(corpus.className(index)),
+            MethodFilter.builder().setNumbers(corpus.numberLiteral(index, 3)).build()));
+    SearchStats stats = reports.get("");
+    Assertions.assertTrue(stats.classesVisited() > 0);
+    Assertions.assertTrue(stats.methodsVisited() > 1);
+    Assertions.assertEquals(stats.methodsVisited() - 1, stats.rejectionCount(FilterCriterion.NUMBERS));
+    Assertions.assertEquals(1, stats.resultCount());
+  }
+
+  @Test
+  void testBatchKeys() {
+    Map<String, SearchStats> reports = new ConcurrentHashMap<>();
+    Dexplore dexplore = DexFactory.load(corpus.toDex(), options(reports, true));
+    QueryBatch.Builder builder = QueryBatch.builder()
+            .addClassQuery("first", ClassFilter.ofClass(corpus.className(10)))
+            .addClassQuery("second", ClassFilter.builder()
+                    .setReferenceTypes(ReferenceTypes.STRINGS_ONLY)
+                    .setReferenceFilter(ReferenceFilter.stringsContain(corpus.stringValue(20, 1)))
+                    .build());
+    dexplore.findAll(builder.build(), -1);
+    Assertions.assertEquals(2, reports.size());
+    Assertions.assertEquals(1, reports.get("first").resultCount());
+    long misses = reports.get("second").cacheMisses();
+    Assertions.assertTrue(misses >= 300);
+
+    reports.clear();
+    dexplore.findAll(builder.setParallel(true).setThreadCount(2).build(), -1);
+    Assertions.assertEquals(2, reports.size());
+    Assertions.assertEquals(misses, reports.get("second").cacheHits());
+    Assertions.assertEquals(0, reports.get("second").poolsDecoded());
+
+    reports.clear();
+    dexplore.findAll(builder.setParallel(false).setSinglePass(true).build(), -1);
+    Assertions.assertEquals(2, reports.size());
+    Assertions.assertEquals(1, reports.get("first").resultCount());
+    Assertions.assertTrue(reports.get("first").classesVisited() > 0);
+    Assertions.assertTrue(reports.get("second").resultCount() > 0);
+    Assertions.assertTrue(reports.get("second").classesVisited() >= 300);
+    Assertions.assertEquals(misses, reports.get("second").cacheHits());
+  }
+
+  @Test
+  void testSharedMethodPools() {
+    Map<String, SearchStats> reports = new ConcurrentHashMap<>();
+    Dexplore dexplore = DexFactory.load(corpus.toDex(), options(reports, false));
+    long[] decoded = new long[3];
+    for (int queries = 1; queries <= decoded.length; queries++) {
+      QueryBatch.Builder builder = QueryBatch.builder().setSinglePass(true);
+      for (int q = 0; q < queries; q++) {
+        builder.addMethodQuery("method" + q, ClassFilter.MATCH_ALL, MethodFilter.builder()
+                .setReferenceTypes(ReferenceTypes.STRINGS_ONLY)
+                .setReferenceFilter(ReferenceFilter.stringsContain(corpus.stringValue(q * 50, q)))
+                .build());
+      }
+      reports.clear();
+      dexplore.findAll(builder.build(), -1);
+      decoded[queries - 1] = reports.values().stream().mapToLong(SearchStats::poolsDecoded).sum();
+    }
+    Assertions.assertTrue(decoded[0] > 0);
+    Assertions.assertEquals(decoded[0], decoded[1]);
+    Assertions.assertEquals(decoded[0], decoded[2]);
+  }
+
+  private static DexOptions options(Map<String, SearchStats> reports, boolean cache) {
+    DexOptions options = new DexOptions();
+    options.enableCache = cache;
+    options.searchListener = (key, stats) -> reports.put(key == null ? "" : key, stats);
+    return options;
+  }
+}
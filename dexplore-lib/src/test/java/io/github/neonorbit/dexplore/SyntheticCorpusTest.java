@@ -0,0 +1,168 @@
+package io.github.neonorbit.dexplore;
+
+import io.github.neonorbit.dexplore.filter.ClassFilter;
+import io.github.neonorbit.dexplore.filter.DexFilter;
+import io.github.neonorbit.dexplore.filter.MethodFilter;
+import io.github.neonorbit.dexplore.filter.ReferenceFilter;
+import io.github.neonorbit.dexplore.filter.ReferenceTypes;
+import io.github.neonorbit.dexplore.result.ClassData;
+import io.github.neonorbit.dexplore.result.DexItemData;
+import io.github.neonorbit.dexplore.result.MethodData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SyntheticCorpusTest {
+  private final SyntheticCorpus corpus = new SyntheticCorpus(300);
+  private final Dexplore dexplore = DexFactory.load(corpus.toDex());
+
+  @TempDir
+  File tempDir;
+
+  @Test
+  void testReproducible() {
+    Assertions.assertArrayEquals(corpus.toDex(), new SyntheticCorpus(300).toDex());
+    Assertions.assertFalse(Arrays.equals(corpus.toDex(),
+            SyntheticCorpus.builder().setClassCount(300).setSeed(1).build().toDex()));
+  }
+
+  @Test
+  void testClasses() {
+    int index = 124;
+    ClassData data = dexplore.findClass(ClassFilter.ofClass(corpus.className(index)));
+    Assertions.assertNotNull(data);
+    Assertions.assertEquals(corpus.className(index - 1), corpus.superClassName(index));
+    Assertions.assertNotNull(dexplore.findClass(ClassFilter.builder()
+            .setClasses(corpus.className(index))
+            .setSuperClass(corpus.superClassName(index))
+            .build()));
+    int annotated = IntStream.range(0, 300).filter(corpus::hasAnnotation).findFirst().orElse(-1);
+    Assertions.assertNotNull(dexplore.findClass(ClassFilter.builder()
+            .setClasses(corpus.className(annotated))
+            .containsAnnotationValues(corpus.annotationValue(annotated))
+            .build()));
+    Assertions.assertEquals(IntStream.range(0, 300).filter(corpus::hasAnnotation).count(),
+            count(ClassFilter.builder().containsAnnotations(SyntheticCorpus.ANNOTATION).build()));
+    Assertions.assertEquals(100, count(ClassFilter.builder()
+            .setInterfaces(Collections.singletonList(SyntheticCorpus.INTERFACE)).build()));
+    Assertions.assertEquals(50, count(ClassFilter.builder()
+            .setPackages(corpus.packageName(index)).build()));
+  }
+
+  @Test
+  void testReferences() {
+    int index = 201;
+    List<ClassData> classes = dexplore.findClasses(DexFilter.MATCH_ALL, ClassFilter.builder()
+            .setReferenceTypes(ReferenceTypes.STRINGS_ONLY)
+            .setReferenceFilter(ReferenceFilter.stringsContain(corpus.stringValue(index, 2)))
+            .build(), -1);
+    Assertions.assertTrue(classes.stream().anyMatch(c -> c.clazz.equals(corpus.className(index))));
+    MethodData method = dexplore.findMethod(ClassFilter.ofClass(corpus.className(index)),
+            MethodFilter.builder().setNumbers(corpus.numberLiteral(index, 3)).build());
+    Assertions.assertNotNull(method);
+    Assertions.assertEquals("m3", method.method);
+    String callee = corpus.className(corpus.calleeOf(index, 3));
+    Assertions.assertNotNull(dexplore.findMethod(ClassFilter.ofClass(corpus.className(index)),
+            MethodFilter.builder()
+                    .setReferenceTypes(ReferenceTypes.builder().addMethodWithDetails().build())
+                    .setReferenceFilter(ReferenceFilter.containsSignature(callee + ".m3():void"))
+                    .build()));
+  }
+
+  @Test
+  void testMultiDexStress() throws IOException {
+    SyntheticCorpus corpus = SyntheticCorpus.builder()
+            .setClassCount(6000)
+            .setStringPoolSize(3000)
+            .setMethodSize(3)
+            .setLiteralDensity(0.5)
+            .setAnnotationDensity(0.1)
+            .setMaxClassesPerDex(1500)
+            .setObfuscated(true)
+            .build();
+    Assertions.assertEquals(4, corpus.getDexCount());
+    String path = corpus.writeApk(new File(tempDir, "corpus.apk")).getAbsolutePath();
+
+    Map<String, Set<String>> expected = new TreeMap<>();
+    QueryBatch.Builder builder = QueryBatch.builder();
+    for (int q = 0; q < 24; q++) {
+      int index = q * 250 + 17, method = q % corpus.getMethodsPerClass();
+      if (q % 2 == 0) {
+        String value = corpus.stringValue(index, method, 1);
+        builder.addClassQuery("class" + q, ClassFilter.builder()
+                .setReferenceTypes(ReferenceTypes.STRINGS_ONLY)
+                .setReferenceFilter(ReferenceFilter.stringsContain(value))
+                .build());
+        expected.put("class" + q, classesReferencing(corpus, value));
+      } else {
+        int block = IntStream.range(0, corpus.getMethodSize())
+                .filter(b -> corpus.hasNumberLiteral(index, method, b)).findFirst().orElse(-1);
+        if (block < 0) continue;
+        builder.addMethodQuery("method" + q, ClassFilter.ofClass(corpus.className(index)),
+                MethodFilter.builder().setNumbers(corpus.numberLiteral(index, method, block)).build());
+        expected.put("method" + q, Collections.singleton(
+                corpus.className(index) + "." + corpus.methodName(method) + "():void"));
+      }
+    }
+    QueryBatch serial = builder.build();
+    QueryBatch parallel = builder.setParallel(true).setThreadCount(4).build();
+    QueryBatch singlePass = builder.setParallel(false).setSinglePass(true).build();
+
+    DexOptions options = new DexOptions();
+    options.parallelism = 4;
+    options.enableCache = true;
+    options.enableIndex = true;
+    Dexplore[] instances = {DexFactory.load(path), DexFactory.load(path, options)};
+    for (Dexplore instance : instances) {
+      for (QueryBatch batch : new QueryBatch[]{serial, parallel, singlePass}) {
+        Assertions.assertEquals(expected, signatures(instance.findAll(batch, -1)));
+      }
+      Assertions.assertEquals(expected.get("class0"),
+              signatures(instance.findClasses(DexFilter.MATCH_ALL, ClassFilter.builder()
+                      .setReferenceTypes(ReferenceTypes.STRINGS_ONLY)
+                      .setReferenceFilter(ReferenceFilter.stringsContain(corpus.stringValue(17, 0, 1)))
+                      .build(), -1)));
+    }
+  }
+
+  private static Set<String> classesReferencing(SyntheticCorpus corpus, String value) {
+    Set<String> classes = new TreeSet<>();
+    for (int i = 0; i < corpus.getClassCount(); i++) {
+      for (int m = 0; m < corpus.getMethodsPerClass(); m++) {
+        for (int b = 0; b < corpus.getMethodSize(); b++) {
+          if (corpus.stringValue(i, m, b).equals(value)) classes.add(corpus.className(i));
+        }
+      }
+    }
+    return classes;
+  }
+
+  private static Map<String, Set<String>> signatures(Map<String, List<DexItemData>> results) {
+    Map<String, Set<String>> map = new TreeMap<>();
+    results.forEach((key, items) -> map.put(key, signatures(items)));
+    return map;
+  }
+
+  private static Set<String> signatures(List<? extends DexItemData> items) {
+    Set<String> set = new TreeSet<>();
+    items.forEach(item -> set.add(item.toString()));
+    return set;
+  }
+
+  private int count(ClassFilter filter) {
+    return dexplore.findClasses(DexFilter.MATCH_ALL, filter, -1).size();
+  }
+}
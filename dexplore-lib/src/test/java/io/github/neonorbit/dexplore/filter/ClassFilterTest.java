@@ -1,6 +1,7 @@
 package io.github.neonorbit.dexplore.filter;
 
 import io.github.neonorbit.dexplore.DexBasedTest;
+import io.github.neonorbit.dexplore.DexDecoder;
 import io.github.neonorbit.dexplore.exception.AbortException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -9,6 +10,7 @@ import org.junit.jupiter.api.TestInstance;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.regex.Pattern;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 class ClassFilterTest extends DexBasedTest {
@@ -72,6 +74,60 @@ class ClassFilterTest extends DexBasedTest {
     Assertions.assertEquals(0, match(ClassFilter.builder().skipModifiers(Modifier.PUBLIC).build()));
   }
 
+  @Test
+  void testTypePrefixes() {
+    Assertions.assertEquals("Lio/neonorbit/Sample", prefix("^\\QLio/neonorbit/Sample\\E(\\$.*)?;$"));
+    Assertions.assertEquals("Lio/neonorbit/", prefix("^Lio/neonorbit/.*"));
+    Assertions.assertEquals("Lio/neonorbit/Sample", prefix("Lio/neonorbit/Samples?;"));
+    Assertions.assertEquals("Lio/neonorbit/S", prefix("Lio/neonorbit/S+;"));
+    Assertions.assertEquals("Lio/n", prefix("Lio/n\\w+;"));
+    Assertions.assertEquals("La.b", prefix("La\\.b[a-z]"));
+    Assertions.assertEquals("", prefix("Lio/neonorbit/A;|Lio/neonorbit/B;"));
+    Assertions.assertEquals("Lio/neonorbit/", prefix("Lio/neonorbit/(A|B);"));
+    Assertions.assertEquals("", FilterUtils.literalPrefix(Pattern.compile("Lio/", Pattern.CASE_INSENSITIVE)));
+    Assertions.assertEquals("Lio/(", FilterUtils.literalPrefix(Pattern.compile("Lio/(", Pattern.LITERAL)));
+
+    Assertions.assertNull(ClassFilter.MATCH_ALL.typePrefixes());
+    Assertions.assertEquals(Arrays.asList("Lio/neonorbit/", "Lxyz/"),
+            ClassFilter.builder().setPackages("io.neonorbit", "xyz").build().typePrefixes());
+    Assertions.assertNull(ClassFilter.builder().setPackages("io.neonorbit")
+            .skipPackages(Collections.singletonList("xyz"), null).build().typePrefixes());
+    Assertions.assertEquals(Collections.singletonList("Lio/neonorbit/Sample"),
+            ClassFilter.builder().setPackages("io.neonorbit", "xyz")
+                    .setClassPattern(Pattern.compile("^io\\.neonorbit\\.Sample.*")).build().typePrefixes());
+    Assertions.assertEquals(Collections.emptyList(),
+            ClassFilter.builder().setPackages("xyz")
+                    .setClassPattern(Pattern.compile("^io\\.neonorbit\\.Sample.*")).build().typePrefixes());
+  }
+
+  @Test
+  void testMemberCount() {
+    ClassFilter filter = ClassFilter.builder().setClasses("io.neonorbit.Sample").build();
+    int[] counts = DexDecoder.countMembers(getDexEntries().stream()
+            .flatMap(entry -> entry.getDexFile().getClasses().stream())
+            .filter(dexClass -> dexClass.getType().equals("Lio/neonorbit/Sample;"))
+            .findFirst().orElseThrow(AssertionError::new));
+    Assertions.assertEquals(1, match(filter.toBuilder()
+            .setFieldCount(counts[0], counts[0]).setMethodCount(counts[1], -1).build()));
+    Assertions.assertThrows(AbortException.class, () -> match(filter.toBuilder()
+            .setMethodCount(counts[1] + 1, -1).build()));
+    Assertions.assertEquals(match(ClassFilter.MATCH_ALL), match(ClassFilter.builder().setFieldCount(0, -1).build()));
+  }
+
+  @Test
+  void testAdaptiveOrder() {
+    ClassFilter filter = ClassFilter.builder()
+            .setModifiers(Modifier.PUBLIC)
+            .containsAnnotations("io.neonorbit.SampleAnnotation")
+            .setNumbers(1010)
+            .build();
+    long expected = match(filter);
+    Assertions.assertEquals(1, expected);
+    for (int i = 0; i < 200; i++) {
+      Assertions.assertEquals(expected, match(filter));
+    }
+  }
+
   @Test
   void testIsDefault() {
     ClassFilter filter = ClassFilter.builder()
@@ -80,16 +136,22 @@ class ClassFilterTest extends DexBasedTest {
             .setSuperClass("...").setClasses("...")
             .setInterfaces(Collections.singletonList("..."))
             .containsAnnotations("...").containsAnnotationValues("...")
+            .setFieldCount(0, 1).setMethodCount(1, -1)
             .build().toBuilder()
             .setModifiers(-1).skipModifiers(-1).setNumbers()
             .setPackages().skipPackages(null, null)
             .setSuperClass(null).setClasses().setClassSimpleNames()
             .setInterfaces(null)
             .containsAnnotations().containsAnnotationValues()
+            .setFieldCount(-1, -1).setMethodCount(-1, -1)
             .build();
     Assertions.assertSame(filter, ClassFilter.MATCH_ALL);
   }
 
+  private static String prefix(String regex) {
+    return FilterUtils.literalPrefix(Pattern.compile(regex));
+  }
+
   private long match(ClassFilter filter) {
     return getDexEntries().stream()
             .flatMap(entry -> entry.getDexFile().getClasses().stream())
@@ -0,0 +1,36 @@
+package io.github.neonorbit.dexplore.filter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CriteriaPlanTest {
+  @Test
+  void testOrdering() {
+    CriteriaPlan plan = new CriteriaPlan.Builder()
+            .add(FilterCriterion.MODIFIERS, 1, true)
+            .add(FilterCriterion.RETURN_TYPE, 5, false)
+            .add(FilterCriterion.NUMBERS, 100, true)
+            .add(FilterCriterion.ANNOTATIONS, 10, true)
+            .build();
+    Assertions.assertArrayEquals(new FilterCriterion[]{
+            FilterCriterion.MODIFIERS, FilterCriterion.ANNOTATIONS, FilterCriterion.NUMBERS
+    }, criteria(plan));
+    for (int i = 0; i < 2048; i++) {
+      for (int index : plan.order()) {
+        FilterCriterion criterion = plan.criterion(index);
+        boolean passed = criterion != FilterCriterion.NUMBERS;
+        plan.record(index, passed);
+        if (!passed) break;
+      }
+    }
+    Assertions.assertEquals(FilterCriterion.NUMBERS, criteria(plan)[0]);
+    Assertions.assertEquals(0, new CriteriaPlan.Builder().build().order().length);
+  }
+
+  private static FilterCriterion[] criteria(CriteriaPlan plan) {
+    int[] order = plan.order();
+    FilterCriterion[] criteria = new FilterCriterion[order.length];
+    for (int i = 0; i < order.length; i++) criteria[i] = plan.criterion(order[i]);
+    return criteria;
+  }
+}
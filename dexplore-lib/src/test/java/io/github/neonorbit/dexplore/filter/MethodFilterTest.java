@@ -2,12 +2,14 @@ package io.github.neonorbit.dexplore.filter;
 
 import io.github.neonorbit.dexplore.DexBasedTest;
 import io.github.neonorbit.dexplore.exception.AbortException;
+import org.jf.dexlib2.dexbacked.DexBackedMethod;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 
 import java.lang.reflect.Modifier;
 import java.util.Collections;
+import java.util.function.Predicate;
 import java.util.stream.StreamSupport;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -65,6 +67,20 @@ class MethodFilterTest extends DexBasedTest {
     );
   }
 
+  @Test
+  void testCodeHeader() {
+    Assertions.assertEquals(count(m -> m.getImplementation() == null),
+            match(MethodFilter.builder().setCodeSize(0, 0).build()));
+    Assertions.assertEquals(count(m -> m.getImplementation() != null),
+            match(MethodFilter.builder().setCodeSize(1, -1).build()));
+    Assertions.assertEquals(count(m -> m.getImplementation() != null && m.getImplementation().getRegisterCount() >= 3),
+            match(MethodFilter.builder().setRegisterCount(3, -1).build()));
+    Assertions.assertEquals(count(m -> m.getImplementation() != null && !m.getImplementation().getTryBlocks().isEmpty()),
+            match(MethodFilter.builder().setTryCount(1, -1).build()));
+    Assertions.assertEquals(0, match(MethodFilter.builder().setCodeSize(0, 0).setRegisterCount(1, 5).build()));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> MethodFilter.builder().setCodeSize(5, 4));
+  }
+
   @Test
   void testIsDefault() {
     MethodFilter filter = MethodFilter.builder()
@@ -72,15 +88,25 @@ class MethodFilterTest extends DexBasedTest {
             .setMethodNames("...").setParamSize(0).setReturnType("...")
             .setParamList(Collections.singletonList("..."))
             .containsAnnotations("...").containsAnnotationValues("...")
+            .setCodeSize(1, 2).setRegisterCount(0, -1).setTryCount(0, 0)
             .build().toBuilder()
             .setModifiers(-1).skipModifiers(-1).setNumbers()
             .setMethodNames().setParamSize(-1).setReturnType(null)
             .setParamList(null)
+            .setCodeSize(-1, -1).setRegisterCount(-1, -1).setTryCount(-1, -1)
             .containsAnnotations().containsAnnotationValues()
             .build();
     Assertions.assertSame(filter, MethodFilter.MATCH_ALL);
   }
 
+  private long count(Predicate<DexBackedMethod> predicate) {
+    return getDexEntries().stream()
+            .flatMap(entry -> entry.getDexFile().getClasses().stream())
+            .flatMap(dexClass -> StreamSupport.stream(dexClass.getMethods().spliterator(), false))
+            .filter(predicate)
+            .count();
+  }
+
   private long match(MethodFilter filter) {
     return getDexEntries().stream()
             .flatMap(entry -> entry.getDexFile().getClasses().stream())
@@ -0,0 +1,151 @@
+package io.github.neonorbit.dexplore.filter;
+
+import io.github.neonorbit.dexplore.DexBasedTest;
+import io.github.neonorbit.dexplore.DexDecoder;
+import io.github.neonorbit.dexplore.ReferencePool;
+import io.github.neonorbit.dexplore.SyntheticCorpus;
+import io.github.neonorbit.dexplore.Util;
+import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class StructuredFilterTest extends DexBasedTest {
+
+  @Test
+  void testCompile() {
+    DexBackedDexFile dexFile = getDexEntries().get(0).getDexFile();
+    ValueResolver resolver = Objects.requireNonNull(DexDecoder.decodeFully(dexFile).getResolver());
+    ReferenceFilter dummy = ReferenceFilter.contains("{DUMMY}");
+    ReferenceFilter unique = ReferenceFilter.contains("A unique string");
+    Assertions.assertSame(StructuredFilter.NEVER, StructuredFilter.compile(dummy, resolver));
+    Assertions.assertSame(StructuredFilter.ALWAYS, StructuredFilter.compile(dummy.negate(), resolver));
+    Assertions.assertSame(StructuredFilter.NEVER, StructuredFilter.compile(dummy.and(pool -> true), resolver));
+    Assertions.assertSame(StructuredFilter.NEVER, StructuredFilter.compile(
+            ReferenceFilter.containsAll("A unique string", "{DUMMY}"), resolver));
+    Assertions.assertSame(StructuredFilter.NEVER, StructuredFilter.compile(
+            ReferenceFilter.stringsContain("java.io.File"), resolver));
+    Assertions.assertTrue(StructuredFilter.compile(unique.or(dummy), resolver) instanceof StructuredFilter.Compiled);
+  }
+
+  @Test
+  void testCompiledMatches() {
+    DexBackedDexFile dexFile = getDexEntries().get(0).getDexFile();
+    ValueResolver resolver = Objects.requireNonNull(DexDecoder.decodeFully(dexFile).getResolver());
+    List<ReferenceFilter> filters = Arrays.asList(
+            ReferenceFilter.contains("A unique string"),
+            ReferenceFilter.typesContain("java.io.File"),
+            ReferenceFilter.fieldsContain("TITLE"),
+            ReferenceFilter.methodsContain("println"),
+            ReferenceFilter.contains("java.lang.String"),
+            ReferenceFilter.containsAny("{DUMMY}", "TITLE"),
+            ReferenceFilter.containsAll("println", "java.io.PrintStream"),
+            ReferenceFilter.contains("println").negate().or(ReferenceFilter.contains("TITLE")),
+            ReferenceFilter.containsSignature("java.io.PrintStream.println(java.lang.String):void")
+    );
+    ReferenceTypes types = ReferenceTypes.builder().addString().addTypeDes()
+            .addFieldWithDetails().addMethodWithDetails().build();
+    List<ReferencePool> pools = new ArrayList<>();
+    for (DexBackedClassDef dexClass : dexFile.getClasses()) {
+      pools.add(dexDecoder.decode(dexClass, types));
+    }
+    for (ReferenceFilter filter : filters) {
+      ReferenceFilter compiled = StructuredFilter.compile(filter, resolver);
+      for (ReferencePool pool : pools) {
+        Assertions.assertEquals(filter.accept(pool), compiled.accept(pool));
+      }
+    }
+  }
+
+  @Test
+  void testSatisfiable() {
+    DexBackedDexFile dexFile = getDexEntries().get(0).getDexFile();
+    ValueResolver resolver = Objects.requireNonNull(DexDecoder.decodeFully(dexFile).getResolver());
+    ClassFilter.Builder builder = ClassFilter.builder().setReferenceTypes(ReferenceTypes.STRINGS_ONLY);
+    Assertions.assertTrue(builder.setReferenceFilter(ReferenceFilter.contains("A unique string"))
+            .build().isSatisfiable(resolver));
+    Assertions.assertFalse(builder.setReferenceFilter(ReferenceFilter.contains("{DUMMY}"))
+            .build().isSatisfiable(resolver));
+    Assertions.assertTrue(builder.setReferenceFilter(pool -> pool.contains("{DUMMY}"))
+            .build().isSatisfiable(resolver));
+  }
+
+  @Test
+  void testCompiledPerDex() {
+    ValueResolver first = Objects.requireNonNull(
+            DexDecoder.decodeFully(getDexEntries().get(0).getDexFile()).getResolver());
+    DexBackedDexFile other = new DexBackedDexFile(Opcodes.getDefault(), new SyntheticCorpus(50).toDex());
+    ValueResolver second = Objects.requireNonNull(DexDecoder.decodeFully(other).getResolver());
+    ClassFilter filter = ClassFilter.builder().setReferenceTypes(ReferenceTypes.STRINGS_ONLY)
+            .setReferenceFilter(ReferenceFilter.contains("A unique string")).build();
+    for (int i = 0; i < 3; i++) {
+      Assertions.assertTrue(filter.isSatisfiable(first));
+      Assertions.assertFalse(filter.isSatisfiable(second));
+    }
+  }
+
+  @Test
+  void testMatcher() {
+    DexBackedDexFile dexFile = getDexEntries().get(0).getDexFile();
+    ValueResolver resolver = Objects.requireNonNull(DexDecoder.decodeFully(dexFile).getResolver());
+    ReferenceFilter unique = ReferenceFilter.contains("A unique string");
+    ReferenceFilter title = ReferenceFilter.fieldsContain("TITLE");
+    Assertions.assertNull(matcher(unique.and(pool -> true), resolver));
+    Assertions.assertNull(matcher(ReferenceFilter.containsSignature("java.io.File.exists():boolean"), resolver));
+    Assertions.assertTrue(matcher(ReferenceFilter.contains("{DUMMY}"), resolver).isDecided());
+
+    ReferenceMatcher matcher = matcher(unique.negate().or(title), resolver);
+    Assertions.assertEquals(2, matcher.size());
+    Assertions.assertFalse(matcher.isDecided());
+    Assertions.assertTrue(matcher.result());
+    Assertions.assertFalse(matcher.found(0));
+    Assertions.assertFalse(matcher.result());
+    Assertions.assertTrue(matcher.found(1));
+    Assertions.assertTrue(matcher.result());
+
+    matcher = matcher(ReferenceFilter.containsAll("println", "TITLE"), resolver);
+    Assertions.assertFalse(matcher.found(1));
+    Assertions.assertTrue(matcher.isFound(1));
+    Assertions.assertFalse(matcher.result());
+    Assertions.assertTrue(matcher.found(0));
+    Assertions.assertTrue(matcher.result());
+  }
+
+  private static ReferenceMatcher matcher(ReferenceFilter filter, ValueResolver resolver) {
+    ReferenceMatcher.Factory factory = StructuredFilter.matcherOf(StructuredFilter.compile(filter, resolver));
+    return factory == null ? null : factory.newMatcher();
+  }
+
+  @Test
+  void testCompiledFormsRelease() throws Exception {
+    ClassFilter filter = ClassFilter.builder()
+            .setReferenceTypes(ReferenceTypes.STRINGS_ONLY)
+            .setReferenceFilter(ReferenceFilter.contains("A unique string"))
+            .build();
+    WeakReference<DexBackedDexFile> reference = compileOnNewDexFile(filter);
+    for (int i = 0; i < 50 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(20);
+    }
+    Assertions.assertNull(reference.get());
+  }
+
+  private static WeakReference<DexBackedDexFile> compileOnNewDexFile(ClassFilter filter) throws Exception {
+    byte[] bytes = Files.readAllBytes(Paths.get(Util.getResPath("classes.dex")));
+    DexBackedDexFile dexFile = new DexBackedDexFile(Opcodes.getDefault(), bytes);
+    ValueResolver resolver = Objects.requireNonNull(DexDecoder.decodeFully(dexFile).getResolver());
+    Assertions.assertTrue(filter.isSatisfiable(resolver));
+    return new WeakReference<>(dexFile);
+  }
+}
@@ -0,0 +1,87 @@
+package io.github.neonorbit.dexplore.result;
+
+import io.github.neonorbit.dexplore.DexFactory;
+import io.github.neonorbit.dexplore.DexOptions;
+import io.github.neonorbit.dexplore.Dexplore;
+import io.github.neonorbit.dexplore.SyntheticCorpus;
+import io.github.neonorbit.dexplore.filter.ClassFilter;
+import io.github.neonorbit.dexplore.filter.DexFilter;
+import io.github.neonorbit.dexplore.filter.MethodFilter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ResultHandleTest {
+  private final SyntheticCorpus corpus = SyntheticCorpus.builder()
+          .setClassCount(400).setMaxClassesPerDex(150).build();
+  private String path;
+  private Dexplore dexplore;
+
+  @TempDir
+  File tempDir;
+
+  @BeforeAll
+  void setUp() throws IOException {
+    path = corpus.writeApk(new File(tempDir, "corpus.apk")).getAbsolutePath();
+    dexplore = DexFactory.load(path);
+  }
+
+  @Test
+  void testEncoding() {
+    ResultHandle clazz = ResultHandle.ofClass(3, 65535, true);
+    ResultHandle method = ResultHandle.ofMethod(3, 65535, 0, true);
+    Assertions.assertFalse(clazz.isMethod());
+    Assertions.assertTrue(method.isMethod());
+    Assertions.assertEquals(3, method.getDexIndex());
+    Assertions.assertEquals(65535, method.getClassIndex());
+    Assertions.assertEquals(0, method.getMethodIndex());
+    Assertions.assertEquals(-1, clazz.getMethodIndex());
+    Assertions.assertTrue(method.synthItems());
+    Assertions.assertEquals(clazz, method.getClassHandle());
+    Assertions.assertEquals(method, ResultHandle.of(method.toLong()));
+    Assertions.assertTrue(clazz.compareTo(method) < 0);
+    Assertions.assertThrows(IllegalArgumentException.class, () -> ResultHandle.ofClass(-1, 0, false));
+  }
+
+  @Test
+  void testClasses() {
+    ClassFilter filter = ClassFilter.builder().containsAnnotations(SyntheticCorpus.ANNOTATION).build();
+    List<ClassData> expected = dexplore.findClasses(DexFilter.MATCH_ALL, filter, -1);
+    List<ResultHandle> handles = dexplore.streamClasses(DexFilter.MATCH_ALL, filter, -1)
+            .collect(Collectors.toList());
+    Assertions.assertEquals(expected.size(), handles.size());
+    Assertions.assertTrue(handles.stream().map(ResultHandle::getDexIndex).distinct().count() > 1);
+    Assertions.assertEquals(expected, handles.stream().map(dexplore::resolve).collect(Collectors.toList()));
+    Assertions.assertEquals(handles.subList(0, 3),
+            dexplore.streamClasses(DexFilter.MATCH_ALL, filter, 3).collect(Collectors.toList()));
+    Assertions.assertEquals(handles.get(1),
+            dexplore.streamClasses(DexFilter.MATCH_ALL, filter, -1).skip(1).findFirst().orElse(null));
+  }
+
+  @Test
+  void testMethods() {
+    int index = 321;
+    ClassFilter classFilter = ClassFilter.ofClass(corpus.className(index));
+    List<MethodData> expected = dexplore.findMethods(DexFilter.MATCH_ALL, classFilter, MethodFilter.MATCH_ALL, -1);
+    List<ResultHandle> handles = dexplore.streamMethods(DexFilter.MATCH_ALL, classFilter, MethodFilter.MATCH_ALL, -1)
+            .collect(Collectors.toList());
+    Assertions.assertEquals(expected, handles.stream().map(dexplore::resolve).collect(Collectors.toList()));
+    Assertions.assertTrue(handles.stream().allMatch(h -> h.getClassHandle().equals(handles.get(0).getClassHandle())));
+    Assertions.assertEquals(dexplore.findClass(classFilter), dexplore.resolve(handles.get(0).getClassHandle()));
+
+    DexOptions options = new DexOptions();
+    options.parallelism = 4;
+    Dexplore parallel = DexFactory.load(path, options);
+    Assertions.assertEquals(handles, parallel.streamMethods(DexFilter.MATCH_ALL, classFilter, MethodFilter.MATCH_ALL, -1)
+            .collect(Collectors.toList()));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> dexplore.resolve(ResultHandle.ofClass(9, 0, false)));
+  }
+}
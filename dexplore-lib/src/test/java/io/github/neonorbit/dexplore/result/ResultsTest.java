@@ -0,0 +1,72 @@
+package io.github.neonorbit.dexplore.result;
+
+import io.github.neonorbit.dexplore.DexFactory;
+import io.github.neonorbit.dexplore.DexOptions;
+import io.github.neonorbit.dexplore.Dexplore;
+import io.github.neonorbit.dexplore.SyntheticCorpus;
+import io.github.neonorbit.dexplore.filter.ClassFilter;
+import io.github.neonorbit.dexplore.filter.DexFilter;
+import io.github.neonorbit.dexplore.filter.MethodFilter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.List;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ResultsTest {
+  private final SyntheticCorpus corpus = new SyntheticCorpus(100);
+  private final Dexplore lazy = DexFactory.load(corpus.toDex());
+  private final Dexplore eager;
+
+  ResultsTest() {
+    DexOptions options = new DexOptions();
+    options.eagerResults = true;
+    eager = DexFactory.load(corpus.toDex(), options);
+  }
+
+  @Test
+  void testLazyClass() {
+    ClassFilter filter = ClassFilter.builder().setPackages(corpus.packageName(7)).build();
+    List<ClassData> lazyClasses = lazy.findClasses(DexFilter.MATCH_ALL, filter, -1);
+    List<ClassData> eagerClasses = eager.findClasses(DexFilter.MATCH_ALL, filter, -1);
+    Assertions.assertFalse(lazyClasses.isEmpty());
+    Assertions.assertEquals(eagerClasses, lazyClasses);
+    Assertions.assertTrue(lazyClasses.stream().noneMatch(ClassData::isLoaded));
+    Assertions.assertTrue(eagerClasses.stream().allMatch(ClassData::isLoaded));
+    for (int i = 0; i < lazyClasses.size(); i++) {
+      ClassData expected = eagerClasses.get(i), actual = lazyClasses.get(i);
+      Assertions.assertEquals(expected.getModifiers(), actual.getModifiers());
+      Assertions.assertEquals(expected.getMethods(), actual.getMethods());
+      Assertions.assertEquals(expected.getFields(), actual.getFields());
+      Assertions.assertEquals(expected.getReferencePool().toString(), actual.getReferencePool().toString());
+      for (int f = 0; f < expected.getFields().size(); f++) {
+        Assertions.assertEquals(expected.getFields().get(f).getInitialValue(),
+                actual.getFields().get(f).getInitialValue());
+      }
+    }
+  }
+
+  @Test
+  void testLazyMethod() {
+    int index = 42;
+    ClassFilter classFilter = ClassFilter.ofClass(corpus.className(index));
+    MethodFilter methodFilter = MethodFilter.builder().setNumbers(corpus.numberLiteral(index, 2)).build();
+    MethodData lazyMethod = lazy.findMethod(classFilter, methodFilter);
+    MethodData eagerMethod = eager.findMethod(classFilter, methodFilter);
+    Assertions.assertNotNull(lazyMethod);
+    Assertions.assertEquals(eagerMethod, lazyMethod);
+    Assertions.assertFalse(lazyMethod.isLoaded());
+    Assertions.assertFalse(lazyMethod.getClassData().isLoaded());
+    Assertions.assertEquals(eagerMethod.getReferencePool().toString(), lazyMethod.getReferencePool().toString());
+    Assertions.assertFalse(lazyMethod.getClassData().isLoaded());
+
+    List<MethodData> siblings = lazyMethod.getClassData().getMethods();
+    Assertions.assertEquals(eagerMethod.getClassData().getMethods(), siblings);
+    Assertions.assertTrue(siblings.stream().anyMatch(m -> m == lazyMethod));
+
+    List<MethodData> methods = lazy.findMethods(DexFilter.MATCH_ALL, classFilter, MethodFilter.MATCH_ALL, -1);
+    Assertions.assertEquals(siblings.size(), methods.size());
+    Assertions.assertTrue(methods.stream().allMatch(m -> m.getClassData() == methods.get(0).getClassData()));
+  }
+}
@@ -0,0 +1,113 @@
+package io.github.neonorbit.dexplore.util;
+
+import io.github.neonorbit.dexplore.DexFactory;
+import io.github.neonorbit.dexplore.DexOptions;
+import io.github.neonorbit.dexplore.Dexplore;
+import io.github.neonorbit.dexplore.QueryBatch;
+import io.github.neonorbit.dexplore.SyntheticCorpus;
+import io.github.neonorbit.dexplore.filter.ClassFilter;
+import io.github.neonorbit.dexplore.filter.ReferenceFilter;
+import io.github.neonorbit.dexplore.filter.ReferenceTypes;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class DexEventsTest {
+  private final SyntheticCorpus corpus = new SyntheticCorpus(300);
+
+  @TempDir
+  File tempDir;
+
+  @Test
+  void testInactive() {
+    Assertions.assertFalse(DexEvents.isActive());
+    Assertions.assertNull(DexEvents.begin(DexEvents.Type.QUERY));
+  }
+
+  @Test
+  void testRecording() throws IOException {
+    DexOptions options = new DexOptions();
+    options.enableCache = true;
+    options.maxCacheSize = 4096;
+    Dexplore dexplore = DexFactory.load(corpus.toDex(), options);
+    QueryBatch batch = QueryBatch.builder()
+            .setParallel(true)
+            .setThreadCount(2)
+            .addClassQuery("first", ClassFilter.ofClass(corpus.className(10)))
+            .addClassQuery("second", ClassFilter.builder()
+                    .setReferenceTypes(ReferenceTypes.STRINGS_ONLY)
+                    .setReferenceFilter(ReferenceFilter.stringsContain(corpus.stringValue(20, 1)))
+                    .build())
+            .build();
+    List<RecordedEvent> events = record(dexplore, batch);
+    Set<String> names = events.stream()
+            .map(e -> e.getEventType().getName().substring("io.github.neonorbit.dexplore.".length()))
+            .collect(Collectors.toSet());
+    for (String name : new String[]{"DexLoad", "PoolDecode", "Query", "TaskQueue", "CacheEviction"}) {
+      Assertions.assertTrue(names.contains(name), name);
+    }
+    Set<String> keys = events.stream()
+            .filter(e -> e.getEventType().getName().endsWith(".Query"))
+            .map(e -> e.getString("key"))
+            .collect(Collectors.toSet());
+    Assertions.assertTrue(keys.contains("first") && keys.contains("second"));
+    Assertions.assertTrue(events.stream()
+            .filter(e -> e.getEventType().getName().endsWith(".DexLoad"))
+            .allMatch(e -> e.getLong("size") > 0));
+  }
+
+  @Test
+  void testRecordingWithListener() throws IOException {
+    DexOptions options = new DexOptions();
+    options.searchListener = (key, stats) -> {};
+    Dexplore dexplore = DexFactory.load(corpus.toDex(), options);
+    for (boolean singlePass : new boolean[]{false, true}) {
+      QueryBatch batch = QueryBatch.builder()
+              .setParallel(!singlePass)
+              .setSinglePass(singlePass)
+              .setThreadCount(2)
+              .addClassQuery("first", ClassFilter.ofClass(corpus.className(10)))
+              .addClassQuery("second", ClassFilter.ofClass(corpus.className(20)))
+              .build();
+      List<RecordedEvent> events = record(dexplore, batch);
+      Assertions.assertEquals(Arrays.asList("first", "second"), fields(events, ".Query", "key"));
+      if (!singlePass) {
+        Assertions.assertEquals(Arrays.asList("first", "second"), fields(events, ".TaskQueue", "task"));
+      }
+    }
+  }
+
+  private List<RecordedEvent> record(Dexplore dexplore, QueryBatch batch) throws IOException {
+    File output = new File(tempDir, "dexplore.jfr");
+    try (Recording recording = new Recording()) {
+      recording.start();
+      Assertions.assertTrue(DexEvents.isActive());
+      dexplore.findAll(batch, -1);
+      recording.stop();
+      recording.dump(output.toPath());
+    }
+    Assertions.assertFalse(DexEvents.isActive());
+    return RecordingFile.readAllEvents(output.toPath()).stream()
+            .filter(e -> e.getEventType().getName().startsWith("io.github.neonorbit.dexplore."))
+            .collect(Collectors.toList());
+  }
+
+  private static List<String> fields(List<RecordedEvent> events, String suffix, String field) {
+    return events.stream()
+            .filter(e -> e.getEventType().getName().endsWith(suffix))
+            .map(e -> e.getString(field))
+            .sorted().collect(Collectors.toList());
+  }
+}
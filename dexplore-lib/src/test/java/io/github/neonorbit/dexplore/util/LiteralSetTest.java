@@ -0,0 +1,49 @@
+package io.github.neonorbit.dexplore.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+class LiteralSetTest {
+  @Test
+  void testLookup() {
+    Random random = new Random(7);
+    Set<Long> values = new HashSet<>(Arrays.asList(0L, -1L, 1L, Long.MIN_VALUE, Long.MAX_VALUE, 64L << 32));
+    while (values.size() < 200) values.add(random.nextLong());
+    LiteralSet set = LiteralSet.of(values);
+    Assertions.assertEquals(values.size(), set.size());
+    Set<Integer> indices = new HashSet<>();
+    for (long value : values) {
+      Assertions.assertTrue(set.contains(value));
+      Assertions.assertTrue(indices.add(set.indexOf(value)));
+    }
+    for (int i = 0; i < 1000; i++) {
+      long value = random.nextLong();
+      Assertions.assertEquals(values.contains(value), set.contains(value));
+    }
+    Assertions.assertEquals(2, LiteralSet.of(Arrays.asList(5L, 5L, 6L)).size());
+  }
+
+  @Test
+  void testMatcher() {
+    List<Long> values = new ArrayList<>();
+    for (long i = 0; i < 100; i++) values.add(i * 31);
+    LiteralSet.Matcher matcher = LiteralSet.of(values).newMatcher();
+    for (int i = values.size() - 1; i > 0; i--) {
+      Assertions.assertFalse(matcher.test(values.get(i)));
+      Assertions.assertFalse(matcher.test(values.get(i)));
+      Assertions.assertFalse(matcher.test(1));
+    }
+    Assertions.assertFalse(matcher.isComplete());
+    Assertions.assertTrue(matcher.test(values.get(0)));
+    Assertions.assertTrue(matcher.isComplete());
+    Assertions.assertTrue(LiteralSet.of(Collections.emptyList()).newMatcher().isComplete());
+  }
+}
@@ -0,0 +1,547 @@
+/*
+ * Copyright (C) 2022 NeonOrbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.neonorbit.dexplore;
+
+import org.jf.dexlib2.AccessFlags;
+import org.jf.dexlib2.AnnotationVisibility;
+import org.jf.dexlib2.Opcode;
+import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.builder.MutableMethodImplementation;
+import org.jf.dexlib2.builder.instruction.BuilderInstruction10x;
+import org.jf.dexlib2.builder.instruction.BuilderInstruction21c;
+import org.jf.dexlib2.builder.instruction.BuilderInstruction31i;
+import org.jf.dexlib2.builder.instruction.BuilderInstruction35c;
+import org.jf.dexlib2.iface.Annotation;
+import org.jf.dexlib2.iface.AnnotationElement;
+import org.jf.dexlib2.iface.ClassDef;
+import org.jf.dexlib2.iface.Field;
+import org.jf.dexlib2.iface.Method;
+import org.jf.dexlib2.iface.MethodParameter;
+import org.jf.dexlib2.immutable.ImmutableAnnotation;
+import org.jf.dexlib2.immutable.ImmutableAnnotationElement;
+import org.jf.dexlib2.immutable.ImmutableClassDef;
+import org.jf.dexlib2.immutable.ImmutableField;
+import org.jf.dexlib2.immutable.ImmutableMethod;
+import org.jf.dexlib2.immutable.reference.ImmutableFieldReference;
+import org.jf.dexlib2.immutable.reference.ImmutableMethodReference;
+import org.jf.dexlib2.immutable.reference.ImmutableStringReference;
+import org.jf.dexlib2.immutable.value.ImmutableIntEncodedValue;
+import org.jf.dexlib2.immutable.value.ImmutableStringEncodedValue;
+import org.jf.dexlib2.writer.io.MemoryDataStore;
+import org.jf.dexlib2.writer.pool.DexPool;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates reproducible synthetic dex files and multi-dex APKs.
+ * <p>
+ * Every value is derived from the class index and the seed, so the same
+ * parameters always produce the same bytes, and the expected values of a
+ * class can be queried without inspecting the generated files.
+ * <ul>
+ *   <li>Classes are spread over packages of {@value #PACKAGE_SIZE} classes.</li>
+ *   <li>Every 5th class extends the previous one, the rest extend {@code Object}.</li>
+ *   <li>Every 3rd class implements {@link #INTERFACE}.</li>
+ *   <li>A fraction of the classes are annotated with {@link #ANNOTATION}.</li>
+ *   <li>Each class declares two static fields, a constructor and a number of static methods.
+ *       Each method body consists of blocks that reference a string, a field, a method
+ *       of another class and, for a fraction of the blocks, a number literal.</li>
+ * </ul>
+ * Classes are split into as many dex files as needed to stay within the
+ * dex format limits, and written as {@code classes.dex}, {@code classes2.dex}...
+ * <p>
+ * Run {@code gradlew :dexplore-lib:generateCorpus -Pcorpus.args="..."}
+ * to write a corpus file, see {@link #main(String[])} for the options.
+ */
+public final class SyntheticCorpus {
+  public static final long DEFAULT_SEED = 0x5EED;
+  public static final int PACKAGE_SIZE = 50;
+  public static final String INTERFACE = "com.synthetic.Api";
+  public static final String ANNOTATION = "com.synthetic.Marker";
+
+  private static final String OBJECT = "Ljava/lang/Object;";
+  private static final String STRING = "Ljava/lang/String;";
+  private static final int MAX_DEX_REFERENCES = 65000;
+
+  private static final int SALT_STRING = 1;
+  private static final int SALT_NUMBER = 2;
+  private static final int SALT_CALLEE = 3;
+  private static final int SALT_ANNOTATION = 4;
+  private static final int SALT_HAS_NUMBER = 5;
+
+  private final long seed;
+  private final int classCount;
+  private final int stringPoolSize;
+  private final int methodsPerClass;
+  private final int methodSize;
+  private final double annotationDensity;
+  private final double literalDensity;
+  private final boolean obfuscated;
+  private final int classesPerDex;
+
+  public SyntheticCorpus(int classCount) {
+    this(builder().setClassCount(classCount));
+  }
+
+  private SyntheticCorpus(Builder builder) {
+    this.seed = builder.seed;
+    this.classCount = builder.classCount;
+    this.stringPoolSize = builder.stringPoolSize;
+    this.methodsPerClass = builder.methodsPerClass;
+    this.methodSize = builder.methodSize;
+    this.annotationDensity = builder.annotationDensity;
+    this.literalDensity = builder.literalDensity;
+    this.obfuscated = builder.obfuscated;
+    int references = methodsPerClass * (methodSize + 1) + 2;
+    this.classesPerDex = Math.min(builder.maxClassesPerDex, MAX_DEX_REFERENCES / references);
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public int getClassCount() {
+    return classCount;
+  }
+
+  public int getMethodsPerClass() {
+    return methodsPerClass;
+  }
+
+  public int getMethodSize() {
+    return methodSize;
+  }
+
+  public int getDexCount() {
+    return (classCount + classesPerDex - 1) / classesPerDex;
+  }
+
+  /**
+   * @return the name of the dex file that contains the given class
+   */
+  public String dexNameOf(int index) {
+    return dexName(index / classesPerDex);
+  }
+
+  public String className(int index) {
+    return packageName(index) + '.' + simpleName(index);
+  }
+
+  public String packageName(int index) {
+    int pkg = index / PACKAGE_SIZE;
+    return obfuscated ? shortName(pkg) : "com.synthetic.p" + pkg;
+  }
+
+  public String simpleName(int index) {
+    return obfuscated ? shortName(index % PACKAGE_SIZE) : "C" + index;
+  }
+
+  public String superClassName(int index) {
+    return hasSuperClass(index) ? className(index - 1) : "java.lang.Object";
+  }
+
+  public boolean hasSuperClass(int index) {
+    return index % 5 == 4;
+  }
+
+  public boolean hasInterface(int index) {
+    return index % 3 == 0;
+  }
+
+  public boolean hasAnnotation(int index) {
+    return fraction(index, 0, 0, SALT_ANNOTATION) < annotationDensity;
+  }
+
+  public String annotationValue(int index) {
+    return "marker_" + index;
+  }
+
+  public String methodName(int method) {
+    return obfuscated ? shortName(method) : "m" + method;
+  }
+
+  /**
+   * @return the name of the static int field, initialized with {@link #fieldLiteral(int)}
+   */
+  public String idFieldName() {
+    return obfuscated ? "a" : "ID";
+  }
+
+  /**
+   * @return the name of the static string field, assigned by every block
+   */
+  public String nameFieldName() {
+    return obfuscated ? "b" : "NAME";
+  }
+
+  public int fieldLiteral(int index) {
+    return mix(index, -1, 0, SALT_NUMBER);
+  }
+
+  public String stringValue(int index, int method) {
+    return stringValue(index, method, 0);
+  }
+
+  /**
+   * @return the string referenced by the given block of a method
+   */
+  public String stringValue(int index, int method, int block) {
+    int value = mix(index, method, block, SALT_STRING);
+    if (stringPoolSize > 0) value = Math.floorMod(value, stringPoolSize);
+    return "str_" + Integer.toHexString(value);
+  }
+
+  public boolean hasNumberLiteral(int index, int method, int block) {
+    return fraction(index, method, block, SALT_HAS_NUMBER) < literalDensity;
+  }
+
+  public int numberLiteral(int index, int method) {
+    return numberLiteral(index, method, 0);
+  }
+
+  /**
+   * @return the number literal used by the given block of a method,
+   *         if {@link #hasNumberLiteral(int, int, int) present}
+   */
+  public int numberLiteral(int index, int method, int block) {
+    return mix(index, method, block, SALT_NUMBER);
+  }
+
+  public int calleeOf(int index, int method) {
+    return calleeOf(index, method, 0);
+  }
+
+  /**
+   * @return the class called by the given block of a method
+   */
+  public int calleeOf(int index, int method, int block) {
+    return Math.floorMod(mix(index, method, block, SALT_CALLEE), classCount);
+  }
+
+  /**
+   * @return the method called by the given block of a method
+   */
+  public int calleeMethodOf(int method, int block) {
+    return (method + block) % methodsPerClass;
+  }
+
+  /**
+   * @return the corpus as a single dex file
+   * @throws IllegalStateException if the corpus does not fit in a single dex file
+   */
+  public byte[] toDex() {
+    if (getDexCount() > 1) {
+      throw new IllegalStateException("Corpus requires " + getDexCount() + " dex files");
+    }
+    return toDex(0);
+  }
+
+  /**
+   * @param dex the index of the dex file
+   * @return the dex file containing the given part of the corpus
+   */
+  public byte[] toDex(int dex) {
+    DexPool pool = new DexPool(Opcodes.getDefault());
+    if (dex == 0) {
+      pool.internClass(newMarkerClass(INTERFACE, AccessFlags.INTERFACE.getValue()));
+      pool.internClass(newMarkerClass(ANNOTATION,
+              AccessFlags.INTERFACE.getValue() | AccessFlags.ANNOTATION.getValue()));
+    }
+    int to = Math.min(classCount, (dex + 1) * classesPerDex);
+    for (int i = dex * classesPerDex; i < to; i++) {
+      pool.internClass(newClass(i));
+    }
+    MemoryDataStore store = new MemoryDataStore();
+    try {
+      pool.writeTo(store);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return Arrays.copyOf(store.getBuffer(), store.getSize());
+  }
+
+  public File writeDex(File file) throws IOException {
+    try (OutputStream out = new FileOutputStream(file)) {
+      out.write(toDex());
+    }
+    return file;
+  }
+
+  /**
+   * Writes the dex files of the corpus to an APK (zip) file.
+   * Each dex file is generated and written before the next one.
+   */
+  public File writeApk(File file) throws IOException {
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+      for (int dex = 0; dex < getDexCount(); dex++) {
+        out.putNextEntry(new ZipEntry(dexName(dex)));
+        out.write(toDex(dex));
+        out.closeEntry();
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Writes the corpus as a dex file if it fits in one, otherwise as an APK.
+   */
+  public File write(File file) throws IOException {
+    return getDexCount() > 1 ? writeApk(file) : writeDex(file);
+  }
+
+  private ClassDef newMarkerClass(String name, int flags) {
+    int access = AccessFlags.PUBLIC.getValue() | AccessFlags.ABSTRACT.getValue() | flags;
+    return new ImmutableClassDef(descriptor(name), access, OBJECT,
+            Collections.emptyList(), null, Collections.emptySet(),
+            Collections.<Field>emptyList(), Collections.<Method>emptyList());
+  }
+
+  private ClassDef newClass(int index) {
+    String type = descriptor(className(index));
+    List<Field> fields = Arrays.asList(
+            new ImmutableField(type, idFieldName(), "I",
+                    AccessFlags.PUBLIC.getValue() | AccessFlags.STATIC.getValue() | AccessFlags.FINAL.getValue(),
+                    new ImmutableIntEncodedValue(fieldLiteral(index)),
+                    Collections.<Annotation>emptySet(), null),
+            new ImmutableField(type, nameFieldName(), STRING,
+                    AccessFlags.PUBLIC.getValue() | AccessFlags.STATIC.getValue(),
+                    null, Collections.<Annotation>emptySet(), null)
+    );
+    List<Method> methods = new ArrayList<>(methodsPerClass + 1);
+    methods.add(newConstructor(type, descriptor(superClassName(index))));
+    for (int m = 0; m < methodsPerClass; m++) {
+      methods.add(newMethod(type, index, m));
+    }
+    List<String> interfaces = hasInterface(index) ?
+            Collections.singletonList(descriptor(INTERFACE)) : Collections.emptyList();
+    List<Annotation> annotations = !hasAnnotation(index) ? Collections.emptyList() :
+            Collections.singletonList(new ImmutableAnnotation(
+                    AnnotationVisibility.RUNTIME, descriptor(ANNOTATION),
+                    Collections.<AnnotationElement>singleton(new ImmutableAnnotationElement(
+                            "value", new ImmutableStringEncodedValue(annotationValue(index))
+                    ))
+            ));
+    String source = obfuscated ? "SourceFile" : simpleName(index) + ".java";
+    return new ImmutableClassDef(type, AccessFlags.PUBLIC.getValue(),
+            descriptor(superClassName(index)), interfaces, source,
+            annotations, fields, methods);
+  }
+
+  private static Method newConstructor(String type, String superType) {
+    MutableMethodImplementation code = new MutableMethodImplementation(1);
+    code.addInstruction(new BuilderInstruction35c(Opcode.INVOKE_DIRECT, 1, 0, 0, 0, 0, 0,
+            new ImmutableMethodReference(superType, "<init>", Collections.emptyList(), "V")));
+    code.addInstruction(new BuilderInstruction10x(Opcode.RETURN_VOID));
+    return new ImmutableMethod(type, "<init>", Collections.<MethodParameter>emptyList(), "V",
+            AccessFlags.PUBLIC.getValue() | AccessFlags.CONSTRUCTOR.getValue(),
+            Collections.<Annotation>emptySet(), null, code);
+  }
+
+  private Method newMethod(String type, int index, int method) {
+    MutableMethodImplementation code = new MutableMethodImplementation(2);
+    ImmutableFieldReference field = new ImmutableFieldReference(type, nameFieldName(), STRING);
+    for (int block = 0; block < methodSize; block++) {
+      code.addInstruction(new BuilderInstruction21c(Opcode.CONST_STRING, 0,
+              new ImmutableStringReference(stringValue(index, method, block))));
+      code.addInstruction(new BuilderInstruction21c(Opcode.SPUT_OBJECT, 0, field));
+      if (hasNumberLiteral(index, method, block)) {
+        code.addInstruction(new BuilderInstruction31i(Opcode.CONST, 1, numberLiteral(index, method, block)));
+      }
+      code.addInstruction(new BuilderInstruction35c(Opcode.INVOKE_STATIC, 0, 0, 0, 0, 0, 0,
+              new ImmutableMethodReference(descriptor(className(calleeOf(index, method, block))),
+                      methodName(calleeMethodOf(method, block)), Collections.emptyList(), "V")));
+    }
+    code.addInstruction(new BuilderInstruction10x(Opcode.RETURN_VOID));
+    return new ImmutableMethod(type, methodName(method), Collections.<MethodParameter>emptyList(), "V",
+            AccessFlags.PUBLIC.getValue() | AccessFlags.STATIC.getValue(),
+            Collections.<Annotation>emptySet(), null, code);
+  }
+
+  private int mix(int index, int method, int block, int salt) {
+    long z = seed;
+    z = step(z ^ index);
+    z = step(z ^ method);
+    z = step(z ^ block);
+    z = step(z ^ salt);
+    return (int) z;
+  }
+
+  private double fraction(int index, int method, int block, int salt) {
+    return (mix(index, method, block, salt) >>> 8) / (double) (1 << 24);
+  }
+
+  private static long step(long z) {
+    z = (z + 0x9E3779B97F4A7C15L);
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * @return a short lowercase name, as produced by obfuscators: a, b, ..., z, aa, ab...
+   */
+  private static String shortName(int n) {
+    StringBuilder builder = new StringBuilder();
+    do {
+      builder.append((char) ('a' + n % 26));
+      n = n / 26 - 1;
+    } while (n >= 0);
+    return builder.reverse().toString();
+  }
+
+  private static String dexName(int dex) {
+    return dex == 0 ? "classes.dex" : "classes" + (dex + 1) + ".dex";
+  }
+
+  private static String descriptor(String className) {
+    return 'L' + className.replace('.', '/') + ';';
+  }
+
+  /**
+   * Writes a corpus file.
+   * <pre>
+   * Options:
+   *   --output &lt;file&gt;         the output file (required)
+   *   --classes &lt;n&gt;           number of classes
+   *   --strings &lt;n&gt;           string pool size, 0 for unique strings
+   *   --methods &lt;n&gt;           methods per class
+   *   --method-size &lt;n&gt;       reference blocks per method
+   *   --annotations &lt;d&gt;       fraction of annotated classes [0-1]
+   *   --literals &lt;d&gt;          fraction of blocks with a number literal [0-1]
+   *   --max-dex-classes &lt;n&gt;   maximum classes per dex file
+   *   --seed &lt;n&gt;              the random seed
+   *   --obfuscate              use short obfuscated names
+   * </pre>
+   */
+  public static void main(String[] args) throws IOException {
+    Builder builder = builder();
+    File output = null;
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (arg.equals("--obfuscate")) {
+        builder.setObfuscated(true);
+        continue;
+      }
+      if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value: " + arg);
+      String value = args[++i];
+      switch (arg) {
+        case "--output": output = new File(value); break;
+        case "--classes": builder.setClassCount(Integer.parseInt(value)); break;
+        case "--strings": builder.setStringPoolSize(Integer.parseInt(value)); break;
+        case "--methods": builder.setMethodsPerClass(Integer.parseInt(value)); break;
+        case "--method-size": builder.setMethodSize(Integer.parseInt(value)); break;
+        case "--annotations": builder.setAnnotationDensity(Double.parseDouble(value)); break;
+        case "--literals": builder.setLiteralDensity(Double.parseDouble(value)); break;
+        case "--max-dex-classes": builder.setMaxClassesPerDex(Integer.parseInt(value)); break;
+        case "--seed": builder.setSeed(Long.parseLong(value)); break;
+        default: throw new IllegalArgumentException("Unknown option: " + arg);
+      }
+    }
+    if (output == null) throw new IllegalArgumentException("Missing option: --output");
+    SyntheticCorpus corpus = builder.build();
+    corpus.write(output);
+    System.out.println("Generated: " + output + " [" + corpus.getClassCount() +
+            " classes, " + corpus.getDexCount() + " dex files]");
+  }
+
+  public static class Builder {
+    private long seed = DEFAULT_SEED;
+    private int classCount = 1000;
+    private int stringPoolSize = 0;
+    private int methodsPerClass = 4;
+    private int methodSize = 1;
+    private double annotationDensity = 0.25;
+    private double literalDensity = 1.0;
+    private boolean obfuscated = false;
+    private int maxClassesPerDex = Integer.MAX_VALUE;
+
+    public SyntheticCorpus build() {
+      return new SyntheticCorpus(this);
+    }
+
+    public Builder setSeed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    public Builder setClassCount(int classCount) {
+      if (classCount < 1) throw new IllegalArgumentException("classCount < 1");
+      this.classCount = classCount;
+      return this;
+    }
+
+    /**
+     * @param stringPoolSize number of distinct strings to draw from, or 0 for unique strings
+     */
+    public Builder setStringPoolSize(int stringPoolSize) {
+      if (stringPoolSize < 0) throw new IllegalArgumentException("stringPoolSize < 0");
+      this.stringPoolSize = stringPoolSize;
+      return this;
+    }
+
+    public Builder setMethodsPerClass(int methodsPerClass) {
+      if (methodsPerClass < 1) throw new IllegalArgumentException("methodsPerClass < 1");
+      this.methodsPerClass = methodsPerClass;
+      return this;
+    }
+
+    /**
+     * @param methodSize number of reference blocks in each method body
+     */
+    public Builder setMethodSize(int methodSize) {
+      if (methodSize < 1) throw new IllegalArgumentException("methodSize < 1");
+      this.methodSize = methodSize;
+      return this;
+    }
+
+    public Builder setAnnotationDensity(double density) {
+      if (density < 0 || density > 1) throw new IllegalArgumentException("density: " + density);
+      this.annotationDensity = density;
+      return this;
+    }
+
+    public Builder setLiteralDensity(double density) {
+      if (density < 0 || density > 1) throw new IllegalArgumentException("density: " + density);
+      this.literalDensity = density;
+      return this;
+    }
+
+    public Builder setObfuscated(boolean obfuscated) {
+      this.obfuscated = obfuscated;
+      return this;
+    }
+
+    /**
+     * @param maxClassesPerDex an upper bound for the classes of each dex file,
+     *                         in addition to the dex format limits
+     */
+    public Builder setMaxClassesPerDex(int maxClassesPerDex) {
+      if (maxClassesPerDex < 1) throw new IllegalArgumentException("maxClassesPerDex < 1");
+      this.maxClassesPerDex = maxClassesPerDex;
+      return this;
+    }
+  }
+}